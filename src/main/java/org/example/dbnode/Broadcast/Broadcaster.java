@@ -7,6 +7,7 @@ import org.example.dbnode.Model.Request;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
 
 import java.util.Map;
 
@@ -20,12 +21,15 @@ public class Broadcaster {
         HttpEntity<Object> requestEntity = request.getRequestEntity();
         HttpMethod method = request.getMethod();
         RestTemplate restTemplate = new RestTemplate();
+        DefaultUriBuilderFactory uriBuilderFactory = new DefaultUriBuilderFactory();
+        uriBuilderFactory.setEncodingMode(DefaultUriBuilderFactory.EncodingMode.TEMPLATE_AND_VALUES);
+        restTemplate.setUriTemplateHandler(uriBuilderFactory);
 
         for (int i = 1; i <= NODES_NO; i++) {
             if (i != NODE_ID) {
                 log.info("Broadcasting to node " + i + "...");
                 String url = request.getUrl().replaceAll("NODE_ID", String.valueOf(i));
-                restTemplate.exchange(url, method, requestEntity, String.class);
+                restTemplate.exchange(url, method, requestEntity, String.class, request.getUriVariables());
             }
         }
     }
@@ -1,8 +1,13 @@
 package org.example.dbnode.Controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.log4j.Log4j2;
 import org.example.dbnode.Broadcast.Broadcaster;
+import org.example.dbnode.Enum.DocumentFormat;
+import org.example.dbnode.Enum.IndexKind;
+import org.example.dbnode.Model.CompactionStats;
+import org.example.dbnode.Model.IndexDefinition;
 import org.example.dbnode.Model.Request;
 import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceAlreadyExistsException;
@@ -42,6 +47,8 @@ public class CollectionController {
     public ResponseEntity<String> createCollection(@PathVariable("db_name") String dbName,
                                                    @PathVariable("collection_name") String collectionName,
                                                    @RequestBody JsonNode schema,
+                                                   @RequestParam(value = "storage", required = false) String storage,
+                                                   @RequestParam(value = "format", required = false) String format,
                                                    @RequestHeader(value = "isBroadcast", required = false, defaultValue = "false") Boolean isBroadcasted,
                                                    @RequestHeader("username") String username,
                                                    @RequestHeader("password") String password) throws ResourceAlreadyExistsException, IOException, ResourceNotFoundException, OperationFailedException {
@@ -52,6 +59,13 @@ public class CollectionController {
         }else {
             log.info(logMessage);
         }
+        // The storage mode is kept in the schema so it is persisted and broadcast along with it
+        if (storage != null) {
+            ((ObjectNode) schema).put("storage", storage.toLowerCase());
+        }
+        if (format != null) {
+            ((ObjectNode) schema).put("format", format.toLowerCase());
+        }
         collectionService.createCollection(dbName, collectionName, schema);
         if (!isBroadcasted){
             Broadcaster.broadcast(
@@ -97,4 +111,122 @@ public class CollectionController {
         List<String> collections = collectionService.readCollections(dbName);
         return new ResponseEntity<>(collections, HttpStatus.OK);
     }
-}
\ No newline at end of file
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @GetMapping("/{collection_name}/compaction")
+    public ResponseEntity<CompactionStats> fetchCompactionStats(@PathVariable("db_name") String dbName,
+                                                                @PathVariable("collection_name") String collectionName,
+                                                                @RequestHeader("username") String username,
+                                                                @RequestHeader("password") String password) throws ResourceNotFoundException {
+
+        return new ResponseEntity<>(collectionService.getCompactionStats(dbName, collectionName), HttpStatus.OK);
+    }
+    // Compaction only rewrites the local files of this node, so it is not broadcast
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @PostMapping("/{collection_name}/compaction")
+    public ResponseEntity<CompactionStats> compactCollection(@PathVariable("db_name") String dbName,
+                                                             @PathVariable("collection_name") String collectionName,
+                                                             @RequestHeader("username") String username,
+                                                             @RequestHeader("password") String password) throws ResourceNotFoundException, OperationFailedException {
+
+        log.info("Received request to compact collection: ("+collectionName+") in database: ("+dbName+")");
+        return new ResponseEntity<>(collectionService.compactCollection(dbName, collectionName), HttpStatus.OK);
+    }
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @PostMapping("/{collection_name}/format")
+    public ResponseEntity<String> convertCollectionFormat(@PathVariable("db_name") String dbName,
+                                                          @PathVariable("collection_name") String collectionName,
+                                                          @RequestParam("format") String format,
+                                                          @RequestHeader(value = "isBroadcast", required = false, defaultValue = "false") Boolean isBroadcasted,
+                                                          @RequestHeader("username") String username,
+                                                          @RequestHeader("password") String password) throws ResourceNotFoundException, OperationFailedException, IOException {
+
+        String logMessage = "Received request to convert collection: ("+collectionName+") in database: ("+dbName+") to format: ("+format+")";
+        if(isBroadcasted){
+            log.info("BROADCAST: "+logMessage);
+        }else {
+            log.info(logMessage);
+        }
+        DocumentFormat documentFormat;
+        try {
+            documentFormat = DocumentFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Unknown document format: " + format, HttpStatus.BAD_REQUEST);
+        }
+        collectionService.convertCollectionFormat(dbName, collectionName, documentFormat);
+        if (!isBroadcasted){
+            Broadcaster.broadcast(
+                    new Request()
+                            .setMethod(HttpMethod.POST)
+                            .addAuthHeaders(username, password)
+                            .setUrl("http://nodeNODE_ID:9000/api/databases/"+dbName+"/collections/"+collectionName+"/format?format="+documentFormat.name().toLowerCase()));
+        }
+        return new ResponseEntity<>("Collection converted to " + documentFormat.name().toLowerCase(), HttpStatus.OK);
+    }
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @GetMapping("/{collection_name}/indexes")
+    public ResponseEntity<List<IndexDefinition>> fetchIndexes(@PathVariable("db_name") String dbName,
+                                                              @PathVariable("collection_name") String collectionName,
+                                                              @RequestHeader("username") String username,
+                                                              @RequestHeader("password") String password) throws ResourceNotFoundException {
+
+        return new ResponseEntity<>(collectionService.getIndexes(dbName, collectionName), HttpStatus.OK);
+    }
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @PostMapping("/{collection_name}/indexes")
+    public ResponseEntity<String> createIndex(@PathVariable("db_name") String dbName,
+                                              @PathVariable("collection_name") String collectionName,
+                                              @RequestBody JsonNode index,
+                                              @RequestHeader(value = "isBroadcast", required = false, defaultValue = "false") Boolean isBroadcasted,
+                                              @RequestHeader("username") String username,
+                                              @RequestHeader("password") String password) throws ResourceNotFoundException, ResourceAlreadyExistsException, OperationFailedException, IOException {
+
+        String logMessage = "Received request to create index: ("+index+") on collection: ("+collectionName+") in database: ("+dbName+")";
+        if(isBroadcasted){
+            log.info("BROADCAST: "+logMessage);
+        }else {
+            log.info(logMessage);
+        }
+        collectionService.createIndex(dbName, collectionName, IndexDefinition.of(index));
+        if (!isBroadcasted){
+            Broadcaster.broadcast(
+                    new Request()
+                            .setMethod(HttpMethod.POST)
+                            .addAuthHeaders(username, password)
+                            .setBody(index)
+                            .setUrl("http://nodeNODE_ID:9000/api/databases/"+dbName+"/collections/"+collectionName+"/indexes"));
+        }
+        return new ResponseEntity<>("Index created successfully", HttpStatus.CREATED);
+    }
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @DeleteMapping("/{collection_name}/indexes")
+    public ResponseEntity<String> dropIndex(@PathVariable("db_name") String dbName,
+                                            @PathVariable("collection_name") String collectionName,
+                                            @RequestParam("properties") List<String> properties,
+                                            @RequestParam(value = "kind", required = false) String kind,
+                                            @RequestHeader(value = "isBroadcast", required = false, defaultValue = "false") Boolean isBroadcasted,
+                                            @RequestHeader("username") String username,
+                                            @RequestHeader("password") String password) throws ResourceNotFoundException, OperationFailedException, IOException {
+
+        String logMessage = "Received request to drop index on: ("+properties+") of collection: ("+collectionName+") in database: ("+dbName+")";
+        if(isBroadcasted){
+            log.info("BROADCAST: "+logMessage);
+        }else {
+            log.info(logMessage);
+        }
+        IndexKind indexKind;
+        try {
+            indexKind = kind != null ? IndexKind.valueOf(kind.toUpperCase()) : IndexDefinition.defaultKind(properties);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Unknown index kind: " + kind, HttpStatus.BAD_REQUEST);
+        }
+        collectionService.dropIndex(dbName, collectionName, properties, indexKind);
+        if (!isBroadcasted){
+            Broadcaster.broadcast(
+                    new Request()
+                            .setMethod(HttpMethod.DELETE)
+                            .addAuthHeaders(username, password)
+                            .setUrl("http://nodeNODE_ID:9000/api/databases/"+dbName+"/collections/"+collectionName+"/indexes?properties="+String.join(",", properties)+"&kind="+indexKind.name().toLowerCase()));
+        }
+        return new ResponseEntity<>("Index dropped successfully", HttpStatus.OK);
+    }
+}
@@ -1,8 +1,13 @@
 package org.example.dbnode.Controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.log4j.Log4j2;
 import org.example.dbnode.Affinity.AffinityBalancer;
 import org.example.dbnode.Affinity.RedirectionService;
@@ -12,7 +17,12 @@ import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceNotFoundException;
 import org.example.dbnode.Exception.SchemaMismatchException;
 import org.example.dbnode.Exception.VersionMismatchException;
+import org.example.dbnode.Model.Aggregate;
 import org.example.dbnode.Model.Document;
+import org.example.dbnode.Model.FacetResult;
+import org.example.dbnode.Model.PropertyRange;
+import org.example.dbnode.Model.PropertySort;
+import org.example.dbnode.Model.Query;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.example.dbnode.Model.NodeInfo;
 import org.example.dbnode.Service.AuthenticationServiceImpl;
@@ -22,12 +32,14 @@ import org.example.dbnode.Service.Interfaces.DocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -38,6 +50,9 @@ import java.util.Optional;
 @RequestMapping("/api/databases/{db_name}/collections/{collection_name}/documents")
 public class DocumentController {
 
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    private static final int BULK_BATCH_SIZE = 10_000;
+
     private final AuthenticationService authenticationService;
     private final DocumentService documentService;
 
@@ -76,6 +91,59 @@ public class DocumentController {
         return new ResponseEntity<>("Created document with Id : "+documentObj.getId() +" successfully", HttpStatus.CREATED);
     }
     
+    /**
+     * Inserts the documents of a JSON array or an NDJSON stream. Documents are parsed as they arrive and
+     * inserted in batches of {@value #BULK_BATCH_SIZE}, each batch is one write and one broadcast.
+     */
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_MEDIA_TYPE})
+    public ResponseEntity<String> createDocuments(@PathVariable("db_name") String dbName,
+                                                  @PathVariable("collection_name") String collectionName,
+                                                  InputStream documentsStream,
+                                                  @RequestHeader("username") String username,
+                                                  @RequestHeader("password") String password,
+                                                  @RequestHeader(value = "isBroadcast", required = false, defaultValue = "false") Boolean isBroadcasted) throws SchemaMismatchException, OperationFailedException, IOException, ResourceNotFoundException {
+
+        String logMessage = "Received request to bulk create documents in collection: ("+collectionName+") in database: ("+dbName+")";
+        if(isBroadcasted){
+            log.info("BROADCAST: "+logMessage);
+        }else {
+            log.info(logMessage);
+        }
+
+        int createdDocuments = 0;
+        List<ObjectNode> batch = new ArrayList<>();
+        // A top level array is unwrapped, otherwise the stream is read as whitespace separated documents
+        try (MappingIterator<ObjectNode> documents = new ObjectMapper().readerFor(ObjectNode.class).readValues(documentsStream)) {
+            while (documents.hasNextValue()) {
+                batch.add(documents.nextValue());
+                if (batch.size() == BULK_BATCH_SIZE) {
+                    createdDocuments += createDocumentsBatch(dbName, collectionName, batch, username, password, isBroadcasted);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            createdDocuments += createDocumentsBatch(dbName, collectionName, batch, username, password, isBroadcasted);
+        }
+        return new ResponseEntity<>("Created "+createdDocuments+" documents successfully", HttpStatus.CREATED);
+    }
+
+    private int createDocumentsBatch(String dbName, String collectionName, List<ObjectNode> batch, String username, String password, boolean isBroadcasted) throws SchemaMismatchException, OperationFailedException, ResourceNotFoundException {
+        List<Document> documents = documentService.createDocuments(dbName, collectionName, batch);
+        if (!isBroadcasted){
+            ArrayNode createdDocuments = JsonNodeFactory.instance.arrayNode(documents.size());
+            documents.forEach(document -> createdDocuments.add(document.getContent()));
+            Broadcaster.broadcast(
+                    new Request()
+                            .setMethod(HttpMethod.POST)
+                            .addAuthHeaders(username, password)
+                            .setBody(createdDocuments)
+                            .setUrl("http://nodeNODE_ID:9000/api/databases/"+dbName+"/collections/"+collectionName+"/documents/bulk"));
+        }
+        return documents.size();
+    }
+
     @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
     @PutMapping("/{doc_id}")
     public ResponseEntity<String> updateDocument(@PathVariable("db_name") String dbName,
@@ -153,8 +221,15 @@ public class DocumentController {
                                           @PathVariable("collection_name") String collectionName,
                                           @RequestParam(value = "property_name", required = false) String propertyName,
                                           @RequestParam(value = "property_value", required = false) String propertyValue,
+                                          @RequestHeader(value = "isBroadcast", required = false, defaultValue = "false") Boolean isBroadcasted,
                                           @RequestHeader("username") String username,
                                           @RequestHeader("password") String password) throws OperationFailedException, ResourceNotFoundException {
+        String logMessage = "Received request to delete documents from collection: ("+collectionName+") in database: ("+dbName+")";
+        if(isBroadcasted){
+            log.info("BROADCAST: "+logMessage);
+        }else {
+            log.info(logMessage);
+        }
         List<String> documentsIds;
         if (propertyName != null) {
             if (propertyValue == null) {
@@ -166,20 +241,110 @@ public class DocumentController {
             documentsIds = documentService.fetchAllDocumentsIdsFromCollection(dbName, collectionName);
             log.info("Fetched all documents from collection: "+collectionName+" in database: "+dbName+" successfully");
         }
-        List<String> documentsIdsCopy = new ArrayList<>(documentsIds);
-        for(String documentId : documentsIdsCopy){
-            deleteDocument(dbName, collectionName, documentId, false, username, password);
+        // Every node resolves the filter against its own indexes, so only the filter is replicated
+        int deletedDocuments = documentService.deleteDocuments(dbName, collectionName, documentsIds);
+        if (!isBroadcasted){
+            Request deleteRequest = new Request()
+                    .setMethod(HttpMethod.DELETE)
+                    .addAuthHeaders(username, password)
+                    .setUrl("http://nodeNODE_ID:9000/api/databases/"+dbName+"/collections/"+collectionName+"/documents");
+            if (propertyName != null) {
+                // The filter goes in as uri variables, spliced into the url a value holding &, +, # or { would change the filter
+                deleteRequest.setUrl(deleteRequest.getUrl()+"?property_name={property_name}&property_value={property_value}")
+                        .addUriVariable("property_name", propertyName)
+                        .addUriVariable("property_value", propertyValue);
+            }
+            Broadcaster.broadcast(deleteRequest);
         }
         String responseMessage;
         if(propertyName != null){
-            responseMessage = "Deleted all documents from collection: "+collectionName+" with property: "+propertyName+" having value: "+propertyValue+" successfully";
+            responseMessage = "Deleted "+deletedDocuments+" documents from collection: "+collectionName+" with property: "+propertyName+" having value: "+propertyValue+" successfully";
         }else {
-            responseMessage = "Deleted all documents from collection: "+collectionName+" successfully";
+            responseMessage = "Deleted all "+deletedDocuments+" documents from collection: "+collectionName+" successfully";
         }
         log.info(responseMessage);
         return new ResponseEntity<>(responseMessage, HttpStatus.OK);
     }
 
+    // Answered from the collection index, the document itself is not read
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @RequestMapping(value = "/{doc_id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> documentExists(@PathVariable("db_name") String dbName,
+                                               @PathVariable("collection_name") String collectionName,
+                                               @PathVariable("doc_id") String documentId,
+                                               @RequestHeader("username") String username,
+                                               @RequestHeader("password") String password) throws ResourceNotFoundException {
+
+        boolean exists = documentService.documentExists(dbName, collectionName, documentId);
+        return new ResponseEntity<>(exists ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
+    /**
+     * Counts the documents of the collection, or those matching a property value or range, from the sizes kept by
+     * the indexes. No document is read.
+     */
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @GetMapping("/count")
+    public ResponseEntity<Object> countDocuments(@PathVariable("db_name") String dbName,
+                                                 @PathVariable("collection_name") String collectionName,
+                                                 @RequestParam(value = "property_name", required = false) String propertyName,
+                                                 @RequestParam(value = "property_value", required = false) String propertyValue,
+                                                 @RequestParam(value = "gt", required = false) String greaterThan,
+                                                 @RequestParam(value = "gte", required = false) String greaterThanOrEqual,
+                                                 @RequestParam(value = "lt", required = false) String lessThan,
+                                                 @RequestParam(value = "lte", required = false) String lessThanOrEqual,
+                                                 @RequestParam(value = "between", required = false) String between,
+                                                 @RequestHeader("username") String username,
+                                                 @RequestHeader("password") String password) throws ResourceNotFoundException {
+        PropertyRange range = PropertyRange.of(greaterThan, greaterThanOrEqual, lessThan, lessThanOrEqual, between);
+        if (range != null && (propertyName == null || propertyValue != null)) {
+            return new ResponseEntity<>("Range filters need a property name and can not be combined with a property value", HttpStatus.BAD_REQUEST);
+        }
+        if (propertyName != null && propertyValue == null && range == null) {
+            return new ResponseEntity<>("Property value is required when property name is provided", HttpStatus.BAD_REQUEST);
+        }
+        long count = documentService.countDocuments(dbName, collectionName, propertyName, propertyValue, range);
+        return new ResponseEntity<>(count, HttpStatus.OK);
+    }
+    /**
+     * Counts the documents of each value of the {@code group_by} property, or of the whole collection, and computes
+     * sum, min, max and avg of the numeric {@code property} in each group. Both properties have to be indexed, the
+     * aggregates come from their indexes alone.
+     */
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @GetMapping("/aggregate")
+    public ResponseEntity<List<Aggregate>> aggregateDocuments(@PathVariable("db_name") String dbName,
+                                                              @PathVariable("collection_name") String collectionName,
+                                                              @RequestParam(value = "group_by", required = false) String groupBy,
+                                                              @RequestParam(value = "property", required = false) String propertyName,
+                                                              @RequestHeader("username") String username,
+                                                              @RequestHeader("password") String password) throws ResourceNotFoundException {
+        List<Aggregate> aggregates = documentService.aggregateDocuments(dbName, collectionName, groupBy, propertyName);
+        log.info("Aggregated documents of collection: "+collectionName+" in database: "+dbName+" into "+aggregates.size()+" groups successfully");
+        return new ResponseEntity<>(aggregates, HttpStatus.OK);
+    }
+    /**
+     * Counts the values of the facet properties within the documents matching a filter, in one request. The body
+     * names the properties and optionally the filter, a {@link Query}: {"filter": {...}, "properties": ["status"]}.
+     * Each property gets its {@code limit} most frequent values with their counts.
+     */
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @PostMapping("/facets")
+    public ResponseEntity<FacetResult> facetDocuments(@PathVariable("db_name") String dbName,
+                                                      @PathVariable("collection_name") String collectionName,
+                                                      @RequestBody JsonNode facetsNode,
+                                                      @RequestParam(value = "limit", required = false, defaultValue = "10") Integer limit,
+                                                      @RequestHeader("username") String username,
+                                                      @RequestHeader("password") String password) throws ResourceNotFoundException {
+        if (!facetsNode.path("properties").isArray() || facetsNode.get("properties").isEmpty()) {
+            throw new IllegalArgumentException("Facets need a non empty array of properties");
+        }
+        List<String> propertyNames = new ArrayList<>();
+        facetsNode.get("properties").forEach(propertyName -> propertyNames.add(propertyName.asText()));
+        Query filter = facetsNode.hasNonNull("filter") ? Query.of(facetsNode.get("filter")) : null;
+        FacetResult facets = documentService.facetDocuments(dbName, collectionName, filter, propertyNames, limit);
+        log.info("Counted facets "+propertyNames+" over "+facets.getTotal()+" documents of collection: "+collectionName+" in database: "+dbName+" successfully");
+        return new ResponseEntity<>(facets, HttpStatus.OK);
+    }
     @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
     @GetMapping("/{doc_id}")
     public ResponseEntity<JsonNode> fetchDocumentById(@PathVariable("db_name") String dbName,
@@ -202,24 +367,180 @@ public class DocumentController {
                                                            @PathVariable("collection_name") String collectionName,
                                                            @RequestParam(value = "property_name", required = false) String propertyName,
                                                            @RequestParam(value = "property_value", required = false) String propertyValue,
+                                                           @RequestParam(value = "gt", required = false) String greaterThan,
+                                                           @RequestParam(value = "gte", required = false) String greaterThanOrEqual,
+                                                           @RequestParam(value = "lt", required = false) String lessThan,
+                                                           @RequestParam(value = "lte", required = false) String lessThanOrEqual,
+                                                           @RequestParam(value = "between", required = false) String between,
+                                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                                           @RequestParam(value = "after", required = false) String after,
+                                                           @RequestParam(value = "sort", required = false) String sortParameter,
+                                                           @RequestHeader(value = "Accept", required = false) String accept,
                                                            @RequestHeader("username") String username,
-                                                           @RequestHeader("password") String password) throws JsonProcessingException, ResourceNotFoundException {
-        List<JsonNode> documents;
-        if (propertyName != null) {
-            if (propertyValue == null) {
-                return new ResponseEntity<>("Property value is required when property name is provided", HttpStatus.BAD_REQUEST);
-            }
-            documents = documentService.fetchAllDocumentsByPropertyValue(dbName, collectionName, propertyName, propertyValue);
-            log.info("Fetched all documents from collection: "+collectionName+" in database: "+dbName+" with property: "+propertyName+" having value: "+propertyValue+" successfully");
-        } else {
-            documents = documentService.fetchAllDocumentsFromCollection(dbName, collectionName);
-            log.info("Fetched all documents from collection: "+collectionName+" in database: "+dbName+" successfully");
+                                                           @RequestHeader("password") String password,
+                                                           HttpServletResponse response) throws IOException, ResourceNotFoundException {
+        PropertyRange range = PropertyRange.of(greaterThan, greaterThanOrEqual, lessThan, lessThanOrEqual, between);
+        if (range != null && (propertyName == null || propertyValue != null)) {
+            return new ResponseEntity<>("Range filters need a property name and can not be combined with a property value", HttpStatus.BAD_REQUEST);
+        }
+        if (propertyName != null && propertyValue == null && range == null) {
+            return new ResponseEntity<>("Property value is required when property name is provided", HttpStatus.BAD_REQUEST);
         }
+        PropertySort sort = PropertySort.of(sortParameter);
+        if (sort != null && propertyName != null) {
+            return new ResponseEntity<>("Sorting can not be combined with property filters", HttpStatus.BAD_REQUEST);
+        }
+        boolean ndjson = accept != null && accept.contains(NDJSON_MEDIA_TYPE);
+        if (sort != null) {
+            writeDocumentsSortedByProperty(dbName, collectionName, sort, limit, after, ndjson, response);
+            return null;
+        }
+        if (range != null) {
+            writeDocumentsByPropertyRange(dbName, collectionName, propertyName, range, limit, ndjson, response);
+            return null;
+        }
+        if (propertyName == null) {
+            writeCollectionDocuments(dbName, collectionName, limit, after, ndjson, response);
+            return null;
+        }
+        if (ndjson) {
+            JsonGenerator generator = createDocumentsGenerator(response, true);
+            int writtenDocuments = documentService.writeDocumentsByPropertyValue(dbName, collectionName, propertyName, propertyValue, generator);
+            closeDocumentsGenerator(generator, true);
+            log.info("Streamed "+writtenDocuments+" documents from collection: "+collectionName+" in database: "+dbName+" with property: "+propertyName+" having value: "+propertyValue+" successfully");
+            return null;
+        }
+        List<JsonNode> documents = documentService.fetchAllDocumentsByPropertyValue(dbName, collectionName, propertyName, propertyValue);
+        log.info("Fetched all documents from collection: "+collectionName+" in database: "+dbName+" with property: "+propertyName+" having value: "+propertyValue+" successfully");
 
         ObjectMapper mapper = new ObjectMapper();
         String prettyDocuments = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(documents);
         return new ResponseEntity<>(prettyDocuments, HttpStatus.OK);
     }
+    /**
+     * Streams the collection in id order straight to the response. Without {@code limit} and {@code after} the body is
+     * the array of all documents, otherwise it is one page of documents along with the cursor to pass as {@code after}
+     * to read the next one: {"documents": [...], "next": "<id>"}, next being null on the last page.
+     * NDJSON responses only hold the documents, one per line, the id of the last one being the cursor.
+     */
+    private void writeCollectionDocuments(String dbName, String collectionName, Integer limit, String after, boolean ndjson, HttpServletResponse response) throws IOException, ResourceNotFoundException {
+        JsonGenerator generator = createDocumentsGenerator(response, ndjson);
+        if (ndjson) {
+            documentService.writeCollectionDocuments(dbName, collectionName, after, limit != null ? limit : 0, generator);
+            closeDocumentsGenerator(generator, true);
+            log.info("Streamed documents from collection: "+collectionName+" in database: "+dbName+" successfully");
+            return;
+        }
+        boolean paginated = limit != null || after != null;
+        if (paginated) {
+            generator.writeStartObject();
+            generator.writeFieldName("documents");
+        }
+        generator.writeStartArray();
+        String next = documentService.writeCollectionDocuments(dbName, collectionName, after, limit != null ? limit : 0, generator);
+        generator.writeEndArray();
+        if (paginated) {
+            generator.writeStringField("next", next);
+            generator.writeEndObject();
+        }
+        closeDocumentsGenerator(generator, false);
+        log.info("Fetched documents from collection: "+collectionName+" in database: "+dbName+" successfully");
+    }
+
+    /**
+     * Streams the collection in the order of an indexed property, shaped like {@link #writeCollectionDocuments}: the
+     * array of documents, or one page along with the cursor to pass as {@code after} when {@code limit} or
+     * {@code after} is given. The cursor holds the sort value and a position among the documents sharing it, it is
+     * only found in the JSON form.
+     */
+    private void writeDocumentsSortedByProperty(String dbName, String collectionName, PropertySort sort, Integer limit, String after, boolean ndjson, HttpServletResponse response) throws IOException, ResourceNotFoundException {
+        JsonGenerator generator = createDocumentsGenerator(response, ndjson);
+        boolean paginated = !ndjson && (limit != null || after != null);
+        if (paginated) {
+            generator.writeStartObject();
+            generator.writeFieldName("documents");
+        }
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+        String next = documentService.writeDocumentsSortedByProperty(dbName, collectionName, sort, after, limit != null ? limit : 0, generator);
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        if (paginated) {
+            generator.writeStringField("next", next);
+            generator.writeEndObject();
+        }
+        closeDocumentsGenerator(generator, ndjson);
+        log.info("Fetched documents from collection: "+collectionName+" in database: "+dbName+" sorted by: "+sort.getPropertyName()+" successfully");
+    }
+
+    /**
+     * Streams the documents matching an and/or/not tree of predicates on indexed properties, in id order, as an array
+     * or as NDJSON. See {@link Query} for the shape of the body.
+     */
+    @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
+    @PostMapping("/query")
+    public void queryDocuments(@PathVariable("db_name") String dbName,
+                               @PathVariable("collection_name") String collectionName,
+                               @RequestBody JsonNode queryNode,
+                               @RequestParam(value = "limit", required = false) Integer limit,
+                               @RequestHeader(value = "Accept", required = false) String accept,
+                               @RequestHeader("username") String username,
+                               @RequestHeader("password") String password,
+                               HttpServletResponse response) throws IOException, ResourceNotFoundException {
+        Query query = Query.of(queryNode);
+        boolean ndjson = accept != null && accept.contains(NDJSON_MEDIA_TYPE);
+        JsonGenerator generator = createDocumentsGenerator(response, ndjson);
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+        int writtenDocuments = documentService.writeDocumentsByQuery(dbName, collectionName, query, limit != null ? limit : 0, generator);
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        closeDocumentsGenerator(generator, ndjson);
+        log.info("Streamed "+writtenDocuments+" documents matching the query from collection: "+collectionName+" in database: "+dbName+" successfully");
+    }
+
+    /**
+     * Streams the documents whose indexed property falls in the range, in property value order, as an array or
+     * as NDJSON. The bounds are compared as the type of the property in the schema.
+     */
+    private void writeDocumentsByPropertyRange(String dbName, String collectionName, String propertyName, PropertyRange range, Integer limit, boolean ndjson, HttpServletResponse response) throws IOException, ResourceNotFoundException {
+        JsonGenerator generator = createDocumentsGenerator(response, ndjson);
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+        int writtenDocuments = documentService.writeDocumentsByPropertyRange(dbName, collectionName, propertyName, range, limit != null ? limit : 0, generator);
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        closeDocumentsGenerator(generator, ndjson);
+        log.info("Streamed "+writtenDocuments+" documents from collection: "+collectionName+" in database: "+dbName+" with property: "+propertyName+" between: "+range.getLower()+" and "+range.getUpper()+" successfully");
+    }
+
+    // The generator is not closed on failure, so an error raised before the first flush can still become an error response
+    private JsonGenerator createDocumentsGenerator(HttpServletResponse response, boolean ndjson) throws IOException {
+        response.setContentType(ndjson ? NDJSON_MEDIA_TYPE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        JsonGenerator generator = new ObjectMapper().createGenerator(response.getOutputStream());
+        if (ndjson) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+        } else {
+            generator.useDefaultPrettyPrinter();
+        }
+        return generator;
+    }
+
+    // every document ends with a newline, an empty result is an empty body
+    private void closeDocumentsGenerator(JsonGenerator generator, boolean ndjson) throws IOException {
+        if (ndjson && generator.getOutputContext().getEntryCount() > 0) {
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+
     @PreAuthorize("@authenticationServiceImpl.authenticateAdmin(#username, #password)")
     @GetMapping("/{doc_id}/{propertyName}")
     public ResponseEntity<String> readDocumentProperty(@PathVariable("db_name") String dbName,
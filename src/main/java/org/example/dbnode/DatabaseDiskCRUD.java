@@ -1,23 +1,44 @@
 package org.example.dbnode;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import lombok.extern.log4j.Log4j2;
+import org.example.dbnode.Enum.DocumentFormat;
+import org.example.dbnode.Enum.IndexKind;
+import org.example.dbnode.Enum.StorageMode;
 import org.example.dbnode.Exception.*;
+import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
+import org.example.dbnode.Indexing.CollectionIndex;
+import org.example.dbnode.Indexing.DocumentOrdinals;
 import org.example.dbnode.Indexing.IndexingManager;
+import org.example.dbnode.Indexing.QueryEngine;
+import org.example.dbnode.Indexing.SortCursor;
 import org.example.dbnode.Model.Document;
+import org.example.dbnode.Model.IndexDefinition;
+import org.example.dbnode.Model.PropertyRange;
+import org.example.dbnode.Model.PropertySort;
+import org.example.dbnode.Model.Query;
 import org.example.dbnode.Model.Schema;
 import org.example.dbnode.Service.FileService;
 import org.example.dbnode.Service.LocksManager;
+import org.example.dbnode.Storage.DocumentLocation;
+import org.example.dbnode.Storage.DocumentStorage;
+import org.example.dbnode.Storage.JsonArrayStorage;
+import org.example.dbnode.Storage.MappedFileCache;
+import org.example.dbnode.Storage.SegmentedLogStorage;
+import org.example.dbnode.Storage.WriteAheadLog;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Log4j2
@@ -27,11 +48,28 @@ public class DatabaseDiskCRUD {
     private final FileService fileService;
     private final IndexingManager indexingManager;
     private final LocksManager locksManager;
+    private final SegmentedLogStorage segmentedLogStorage;
+    private final WriteAheadLog writeAheadLog;
+    private final MappedFileCache mappedFiles;
+    private final QueryEngine queryEngine;
+    private final Map<StorageMode, DocumentStorage> storages;
+    private final Map<String, StorageMode> collectionStorageModes;
 
-    public DatabaseDiskCRUD(FileService fileService, IndexingManager indexingManager, LocksManager locksManager) {
+    public DatabaseDiskCRUD(FileService fileService, IndexingManager indexingManager, LocksManager locksManager,
+                            JsonArrayStorage jsonArrayStorage, SegmentedLogStorage segmentedLogStorage, WriteAheadLog writeAheadLog, MappedFileCache mappedFiles,
+                            QueryEngine queryEngine) {
         this.fileService = fileService;
         this.indexingManager = indexingManager;
         this.locksManager = locksManager;
+        this.segmentedLogStorage = segmentedLogStorage;
+        this.writeAheadLog = writeAheadLog;
+        this.mappedFiles = mappedFiles;
+        this.queryEngine = queryEngine;
+        this.storages = new EnumMap<>(StorageMode.class);
+        this.storages.put(StorageMode.ARRAY, jsonArrayStorage);
+        this.storages.put(StorageMode.LOG, segmentedLogStorage);
+        this.collectionStorageModes = new ConcurrentHashMap<>();
+        writeAheadLog.setApplier(this::applyLogEntries);
     }
 
     public void createDatabase(String databaseName) throws ResourceAlreadyExistsException, ResourceNotFoundException {
@@ -71,7 +109,12 @@ public class DatabaseDiskCRUD {
                 log.error("Database deletion failed : database does not exist");
                 throw new ResourceNotFoundException("Database");
             }
+            segmentedLogStorage.closeDatabase(databaseName);
+            collectionStorageModes.keySet().removeIf(key -> key.startsWith(databaseName + "::"));
+            mappedFiles.invalidateDirectory(dbDirectory);
             fileService.deleteDirectory(dbDirectory);
+            // Drop the logged changes of the deleted database so a replay can not bring them back
+            writeAheadLog.dropDatabase(databaseName);
             locksManager.deleteDatabaseLock(databaseName);
             log.info("Database "+databaseName+" deleted successfully.");
         }finally {
@@ -92,21 +135,22 @@ public class DatabaseDiskCRUD {
     }
 
     public void createCollectionFromJsonSchema(String databaseName, String collectionName, JsonNode jsonSchema) throws ResourceAlreadyExistsException, IOException, ResourceNotFoundException, OperationFailedException {
-        File schemaFile = createCollection(databaseName, collectionName);
+        Schema schema = Schema.of(String.valueOf(jsonSchema));
+        File schemaFile = createCollection(databaseName, collectionName, schema.getStorage(), schema.getFormat());
         // Write schema on disk
         fileService.writePrettyJson(schemaFile, jsonSchema);
         log.info("Collection created successfully.");
     }
 
     public void createCollectionFromClass(String databaseName, String collectionName, Class<?> clazz) throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException, OperationFailedException {
-        File schemaFile = createCollection(databaseName, collectionName);
+        File schemaFile = createCollection(databaseName, collectionName, StorageMode.ARRAY, DocumentFormat.JSON);
         JsonNode schema = Schema.fromClass(clazz);
         // Write schema on disk
         fileService.writePrettyJson(schemaFile, schema);
         log.info("Collection created successfully.");
     }
 
-    private File createCollection(String databaseName, String collectionName) throws ResourceNotFoundException, ResourceAlreadyExistsException, OperationFailedException {
+    private File createCollection(String databaseName, String collectionName, StorageMode storageMode, DocumentFormat format) throws ResourceNotFoundException, ResourceAlreadyExistsException, OperationFailedException {
         ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
         collectionLock.lock();
         try {
@@ -118,16 +162,17 @@ public class DatabaseDiskCRUD {
                 log.error("Collection creation failed: database does not exist.");
                 throw new ResourceNotFoundException("Database");
             }
-            File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
             File schemaFile = fileService.getSchemaFilePath(databaseName, collectionName);
-            if (fileService.fileExists(collectionFile.getPath())) {
-                log.error("Collection creation failed: collection already exists.");
-                throw new ResourceAlreadyExistsException("Collection");
+            for (DocumentStorage storage : storages.values()) {
+                if (storage.collectionExists(databaseName, collectionName)) {
+                    log.error("Collection creation failed: collection already exists.");
+                    throw new ResourceAlreadyExistsException("Collection");
+                }
             }
             fileService.createDirectoryIfNotExist(schemaFile.getParentFile().toPath());
-            fileService.createDirectoryIfNotExist(collectionFile.getParentFile().toPath());
-            // Empty Json for Collection
-            fileService.writeToFile(collectionFile, "[]");
+            fileService.createDirectoryIfNotExist(fileService.getCollectionsPath(databaseName).toPath());
+            storages.get(storageMode).createCollection(databaseName, collectionName);
+            rememberStorage(databaseName, collectionName, storageMode, format);
 
             // index the collection
             indexingManager.createCollectionIndex(databaseName, collectionName);
@@ -150,18 +195,24 @@ public class DatabaseDiskCRUD {
                 log.error("Collection deletion failed : database does not exist");
                 throw new ResourceNotFoundException("Database");
             }
-            File collectionFile = fileService.getCollectionFile(databaseName, collectionName),
-                    schemaFile = fileService.getSchemaFilePath(databaseName, collectionName);
-            if (!fileService.fileExists(collectionFile.getPath()) || !fileService.fileExists(schemaFile.getPath())) {
+            File schemaFile = fileService.getSchemaFilePath(databaseName, collectionName);
+            if (!fileService.fileExists(schemaFile.getPath())) {
+                log.error("Collection deletion failed : Collection/Schema or both do not exist");
+                throw new ResourceNotFoundException("Collection/Schema");
+            }
+            DocumentStorage storage = getStorage(databaseName, collectionName);
+            if (!storage.collectionExists(databaseName, collectionName)) {
                 log.error("Collection deletion failed : Collection/Schema or both do not exist");
                 throw new ResourceNotFoundException("Collection/Schema");
             }
-            boolean collectionDeletionFailed = !fileService.deleteFile(collectionFile);
+            boolean collectionDeletionFailed = !storage.deleteCollection(databaseName, collectionName);
+            collectionStorageModes.remove(indexingManager.getCollectionIndexKey(databaseName, collectionName));
             boolean schemaDeletionFailed = !fileService.deleteFile(schemaFile);
             boolean indexesDeletionFailed = !indexingManager.deleteCollectionIndex(databaseName, collectionName);
             if (collectionDeletionFailed || schemaDeletionFailed || indexesDeletionFailed){
                 throw new OperationFailedException("delete collection, associated schema, account directory entries, or index");
             }
+            writeAheadLog.dropCollection(databaseName, collectionName);
             log.info("Collection, its schema, associated account directory entries, and indexes have been successfully deleted");
         }finally {
             collectionLock.unlock();
@@ -169,12 +220,105 @@ public class DatabaseDiskCRUD {
 
     }
 
+    /**
+     * Declares a new index in the schema of the collection and builds it from the documents already there.
+     * Returns the updated schema.
+     */
+    public ObjectNode createIndex(String databaseName, String collectionName, IndexDefinition index) throws ResourceNotFoundException, ResourceAlreadyExistsException, OperationFailedException {
+        ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
+        collectionLock.lock();
+        try {
+            Schema schema = getCollectionSchema(databaseName, collectionName);
+            schema.validateIndex(index);
+            List<IndexDefinition> indexes = new ArrayList<>(schema.getIndexDefinitions());
+            if (indexes.stream().anyMatch(existing -> existing.getPropertyNames().equals(index.getPropertyNames()) && existing.getKind() == index.getKind())) {
+                throw new ResourceAlreadyExistsException("Index on " + index.getPropertyNames());
+            }
+            List<String> newProperties = new ArrayList<>(index.getPropertyNames());
+            newProperties.removeAll(schema.getIndexedProperties());
+            if (!newProperties.isEmpty()) {
+                Map<String, Map<String, String>> valuesByProperty = readPropertyValues(databaseName, collectionName, newProperties);
+                for (String propertyName : newProperties) {
+                    indexingManager.buildPropertyIndex(databaseName, collectionName, propertyName, valuesByProperty.get(propertyName));
+                }
+            }
+            indexes.add(index);
+            return writeIndexDefinitions(databaseName, collectionName, indexes);
+        } finally {
+            collectionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the index of the kind on exactly these properties from the schema of the collection, along with the
+     * property indexes no other declared index needs. Returns the updated schema.
+     */
+    public ObjectNode dropIndex(String databaseName, String collectionName, List<String> propertyNames, IndexKind kind) throws ResourceNotFoundException, OperationFailedException {
+        ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
+        collectionLock.lock();
+        try {
+            Schema schema = getCollectionSchema(databaseName, collectionName);
+            List<IndexDefinition> indexes = new ArrayList<>(schema.getIndexDefinitions());
+            if (!indexes.removeIf(existing -> existing.getPropertyNames().equals(propertyNames) && existing.getKind() == kind)) {
+                throw new ResourceNotFoundException("Index on " + propertyNames);
+            }
+            Set<String> stillIndexed = new HashSet<>();
+            indexes.forEach(remaining -> stillIndexed.addAll(remaining.getPropertyNames()));
+            ObjectNode schemaJson = writeIndexDefinitions(databaseName, collectionName, indexes);
+            for (String propertyName : propertyNames) {
+                if (!stillIndexed.contains(propertyName)) {
+                    indexingManager.dropPropertyIndex(databaseName, collectionName, propertyName);
+                }
+            }
+            return schemaJson;
+        } finally {
+            collectionLock.unlock();
+        }
+    }
+
+    // the JSON values of the properties of every document having them, by property then document id
+    private Map<String, Map<String, String>> readPropertyValues(String databaseName, String collectionName, List<String> propertyNames) throws ResourceNotFoundException, OperationFailedException {
+        DocumentStorage storage = getStorage(databaseName, collectionName);
+        Map<String, Map<String, String>> valuesByProperty = new HashMap<>();
+        propertyNames.forEach(propertyName -> valuesByProperty.put(propertyName, new LinkedHashMap<>()));
+        Iterator<Map.Entry<String, DocumentLocation>> entries = indexingManager.getCollectionIndex(databaseName, collectionName).getBPlusTree().range(null, null, true);
+        while (entries.hasNext()) {
+            Map.Entry<String, DocumentLocation> entry = entries.next();
+            ObjectNode document = storage.readDocument(databaseName, collectionName, entry.getValue());
+            if (document == null) {
+                throw new OperationFailedException("read document " + entry.getKey());
+            }
+            for (String propertyName : propertyNames) {
+                if (document.has(propertyName)) {
+                    valuesByProperty.get(propertyName).put(entry.getKey(), document.get(propertyName).toString());
+                }
+            }
+        }
+        return valuesByProperty;
+    }
+
+    private ObjectNode writeIndexDefinitions(String databaseName, String collectionName, List<IndexDefinition> indexes) throws OperationFailedException {
+        File schemaFile = fileService.getSchemaFilePath(databaseName, collectionName);
+        try {
+            ObjectNode schemaJson = (ObjectNode) new ObjectMapper().readTree(schemaFile);
+            ArrayNode indexesNode = schemaJson.putArray("indexes");
+            indexes.forEach(index -> indexesNode.add(index.toJson()));
+            fileService.writePrettyJson(schemaFile, schemaJson);
+            indexingManager.invalidateIndexDefinitions(databaseName, collectionName);
+            return schemaJson;
+        } catch (IOException e) {
+            log.error("Failed to write the indexes of collection: " + collectionName);
+            throw new OperationFailedException("write the indexes of collection " + collectionName);
+        }
+    }
+
     public List<String> readCollections(String databaseName) {
         File dbDirectory = fileService.getCollectionsPath(databaseName);
         if (fileService.directoryNotExist(dbDirectory)) {
             return Collections.emptyList();
         }
-        File[] collectionFiles = dbDirectory.listFiles((dir, name) -> name.endsWith(".json"));
+        // JSON array collections are single files, log collections are directories of segments
+        File[] collectionFiles = dbDirectory.listFiles((dir, name) -> name.endsWith(".json") || new File(dir, name).isDirectory());
         if (collectionFiles == null) {
             return Collections.emptyList();
         }
@@ -182,194 +326,665 @@ public class DatabaseDiskCRUD {
         for (File collectionFile : collectionFiles) {
             String fileName = collectionFile.getName();
             int extensionIndex = fileName.lastIndexOf(".");
-            if (extensionIndex >= 0) {
-                String collectionName = fileName.substring(0, extensionIndex);
+            String collectionName = collectionFile.isDirectory() ? fileName : fileName.substring(0, extensionIndex);
+            // Both exist for a moment while a collection is converted from an array to a log
+            if (!collectionNames.contains(collectionName)) {
                 collectionNames.add(collectionName);
             }
         }
         return collectionNames;
     }
 
+    /**
+     * Logs the document and returns once the record is durable and applied, see {@link WriteAheadLog}.
+     * Only the document lock is held while waiting, so concurrent writers of a collection share the same fsync.
+     */
     public Document createDocument(String databaseName, String collectionName, Document document , String documentId) throws IOException, OperationFailedException, ResourceNotFoundException {
-        ReentrantLock collectionLock;
-        ReentrantLock documentLock;
-
-        collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
-        documentLock = locksManager.getDocumentLock(databaseName, collectionName, documentId);
-
-        collectionLock.lock();
+        ReentrantLock documentLock = locksManager.getDocumentLock(databaseName, collectionName, documentId);
         documentLock.lock();
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
-            ArrayNode collectionDocs = (ArrayNode) mapper.readTree(collectionFile);
-            if (collectionDocs == null) {
-                locksManager.deleteDocumentLock(databaseName, collectionName, documentId);
-                throw new OperationFailedException("read the existing collection");
+            getStorage(databaseName, collectionName);
+            // a write holds the document lock until it is applied, so the index can not miss an earlier one
+            if (indexingManager.documentExistsInCollectionIndex(databaseName, collectionName, documentId)) {
+                throw new OperationFailedException("insert document, id " + documentId + " is not unique");
             }
-            ObjectNode documentData = document.getContent();
-            documentData = fileService.stampVersionOnDocument(documentData);
-            documentData = fileService.assignIdForDocument(documentData,documentId);
-            document.setContent(documentData);
-
-            fileService.writeDocumentToCollection(collectionFile, documentData);
-            // Index the document
-            indexingManager.insertDocumentIntoCollectionIndex(databaseName, collectionName, document.getId());
-            // Index the properties
-            final ObjectNode finalDocumentData = documentData;
-            finalDocumentData.fieldNames().forEachRemaining(fieldName -> {
-                // Exclude _id and _version from indexing
-                if (!fieldName.equals("_id") && !fieldName.equals("_version")) {
-                    JsonNode fieldValue = finalDocumentData.get(fieldName);
-                    indexingManager.insertIntoPropertyIndex(databaseName, collectionName, fieldName, fieldValue.toString(), document.getId());
-                    indexingManager.insertIntoInvertedPropertyIndex(databaseName, collectionName, fieldName, fieldValue.toString(), document.getId());
-                }
-            });
+            try {
+                ObjectNode documentData = document.getContent();
+                documentData = fileService.stampVersionOnDocument(documentData);
+                documentData = fileService.assignIdForDocument(documentData,documentId);
+                document.setContent(documentData);
 
-            log.info("Document with id " + document.getId() + " added to collection " + collectionName);
-            return document;
-        } catch (Exception e) {
-            // If an exception is thrown during document creation, remove the lock
-            locksManager.deleteDocumentLock(databaseName, collectionName, documentId);
-            throw e;
-        }finally {
-            collectionLock.unlock();
+                long lsn = writeAheadLog.append(WriteAheadLog.Operation.PUT, databaseName, collectionName, document.getId(), documentData);
+                writeAheadLog.awaitApplied(lsn);
+            } catch (Exception e) {
+                // If an exception is thrown during document creation, remove the lock
+                locksManager.deleteDocumentLock(databaseName, collectionName, documentId);
+                throw e;
+            }
+        } finally {
             documentLock.unlock();
         }
+        log.info("Document with id " + document.getId() + " added to collection " + collectionName);
+        return document;
     }
 
-
-    public void deleteDocumentFromCollection(String databaseName, String collectionName, String documentId) throws  OperationFailedException, ResourceNotFoundException {
-
-        ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName),
-                      documentLock = locksManager.getDocumentLock(databaseName, collectionName, documentId);
-
-        ObjectMapper mapper = new ObjectMapper();
-        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
-        ArrayNode collectionDocs;
+    /**
+     * Inserts a batch of documents that already carry their ids. The records are logged together and applied
+     * with one storage write, one collection index update and one property index file append per property.
+     * The batch is rejected as a whole when one of its ids already exists.
+     */
+    public List<Document> createDocuments(String databaseName, String collectionName, List<Document> documents) throws OperationFailedException, ResourceNotFoundException {
+        getStorage(databaseName, collectionName);
+        Set<String> batchIds = new HashSet<>();
+        for (Document document : documents) {
+            if (!batchIds.add(document.getId())) {
+                throw new OperationFailedException("insert documents, id " + document.getId() + " is not unique");
+            }
+        }
+        List<ReentrantLock> documentLocks = lockDocuments(databaseName, collectionName, batchIds);
         try {
-            collectionDocs = (ArrayNode) mapper.readTree(collectionFile);
-        } catch (FileNotFoundException e) {
-            throw new ResourceNotFoundException("File with ID " + documentId + "in collection " + collectionName);
-        }catch (IOException e){
-            throw new OperationFailedException("read the existing collection");
+            CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
+            Map<String, ObjectNode> contents = new LinkedHashMap<>();
+            for (Document document : documents) {
+                if (collectionIndex.search(document.getId()) != null) {
+                    throw new OperationFailedException("insert documents, id " + document.getId() + " is not unique");
+                }
+                ObjectNode documentData = fileService.stampVersionOnDocument(document.getContent());
+                documentData = fileService.assignIdForDocument(documentData, document.getId());
+                document.setContent(documentData);
+                contents.put(document.getId(), documentData);
+            }
+            if (!contents.isEmpty()) {
+                long lastLsn = writeAheadLog.append(WriteAheadLog.Operation.PUT, databaseName, collectionName, contents);
+                writeAheadLog.awaitApplied(lastLsn - contents.size() + 1, lastLsn);
+            }
+        } finally {
+            documentLocks.forEach(ReentrantLock::unlock);
+        }
+        log.info(documents.size() + " documents added to collection " + collectionName);
+        return documents;
+    }
+
+    private void indexDocumentsProperties(String databaseName, String collectionName, List<ObjectNode> documents) throws ResourceNotFoundException {
+        Map<String, Map<String, String>> valuesByProperty = new LinkedHashMap<>();
+        for (ObjectNode documentData : documents) {
+            String documentId = documentData.get("_id").asText();
+            Iterator<Map.Entry<String, JsonNode>> fields = documentData.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                // Only the properties the schema declares indexes on are indexed, never _id and _version
+                if (indexingManager.isPropertyIndexed(databaseName, collectionName, field.getKey())) {
+                    String fieldValue = field.getValue().toString();
+                    valuesByProperty.computeIfAbsent(field.getKey(), propertyName -> new LinkedHashMap<>()).put(documentId, fieldValue);
+                }
+            }
+            indexingManager.insertDocumentIntoCompoundIndexes(databaseName, collectionName, documentId, documentData);
         }
-        if (collectionDocs == null) {
-            throw new OperationFailedException("read the existing collection");
+        for (Map.Entry<String, Map<String, String>> values : valuesByProperty.entrySet()) {
+            indexingManager.insertIntoPropertyIndex(databaseName, collectionName, values.getKey(), values.getValue());
+            indexingManager.insertIntoInvertedPropertyIndex(databaseName, collectionName, values.getKey(), values.getValue());
         }
+    }
 
-        int index = getDocumentIndex(databaseName, collectionName, documentId);
+    /**
+     * Moves the index entries of a document from its current to its updated content, only the properties whose
+     * value changed are touched.
+     */
+    private void reindexDocumentProperties(String databaseName, String collectionName, String documentId, ObjectNode current, ObjectNode updated) throws ResourceNotFoundException {
+        indexingManager.deleteDocumentFromCompoundIndexes(databaseName, collectionName, documentId, current);
+        Set<String> propertyNames = new LinkedHashSet<>();
+        current.fieldNames().forEachRemaining(propertyNames::add);
+        updated.fieldNames().forEachRemaining(propertyNames::add);
+        for (String propertyName : propertyNames) {
+            // Only the properties the schema declares indexes on are indexed, never _id and _version
+            if (!indexingManager.isPropertyIndexed(databaseName, collectionName, propertyName)) {
+                continue;
+            }
+            JsonNode oldValue = current.get(propertyName), newValue = updated.get(propertyName);
+            if (Objects.equals(oldValue, newValue)) {
+                continue;
+            }
+            // the postings of the value being replaced have to go, not those of the new one
+            if (oldValue != null) {
+                indexingManager.deleteFromPropertyIndex(databaseName, collectionName, propertyName, documentId);
+                indexingManager.deleteDocumentFromInvertedPropertyIndex(databaseName, collectionName, propertyName, oldValue.toString(), documentId);
+            }
+            if (newValue != null) {
+                indexingManager.insertIntoPropertyIndex(databaseName, collectionName, propertyName, newValue.toString(), documentId);
+                indexingManager.insertIntoInvertedPropertyIndex(databaseName, collectionName, propertyName, newValue.toString(), documentId);
+            }
+        }
+        indexingManager.insertDocumentIntoCompoundIndexes(databaseName, collectionName, documentId, updated);
+    }
 
-        collectionLock.lock();
+    public void deleteDocumentFromCollection(String databaseName, String collectionName, String documentId) throws  OperationFailedException, ResourceNotFoundException {
+        ReentrantLock documentLock = locksManager.getDocumentLock(databaseName, collectionName, documentId);
         documentLock.lock();
         try {
-            indexingManager.deleteDocumentRelatedIndexes(databaseName, collectionName, documentId);
-            collectionDocs.remove(index);
-            fileService.writeJsonArrayFile(collectionFile.toPath(), collectionDocs);
+            getStorage(databaseName, collectionName);
+            getDocumentLocation(databaseName, collectionName, documentId);
+            long lsn = writeAheadLog.append(WriteAheadLog.Operation.DELETE, databaseName, collectionName, documentId, null);
+            writeAheadLog.awaitApplied(lsn);
         }finally {
-            collectionLock.unlock();
             documentLock.unlock();
         }
         locksManager.deleteDocumentLock(databaseName, collectionName, documentId);
         log.info("Deleted document and its related indexes from collection successfully");
     }
 
+    /**
+     * Deletes the documents with the given ids, the records are logged together and applied in one storage pass
+     * that updates every affected index once. Ids that are not in the collection are skipped, returns how many
+     * documents were deleted.
+     */
+    public int deleteDocumentsFromCollection(String databaseName, String collectionName, List<String> documentIds) throws OperationFailedException, ResourceNotFoundException {
+        getStorage(databaseName, collectionName);
+        CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
+
+        Map<String, ObjectNode> deletedIds = new LinkedHashMap<>();
+        List<ReentrantLock> documentLocks = lockDocuments(databaseName, collectionName, new HashSet<>(documentIds));
+        try {
+            for (String documentId : documentIds) {
+                if (collectionIndex.search(documentId) != null) {
+                    deletedIds.put(documentId, null);
+                }
+            }
+            if (!deletedIds.isEmpty()) {
+                long lastLsn = writeAheadLog.append(WriteAheadLog.Operation.DELETE, databaseName, collectionName, deletedIds);
+                writeAheadLog.awaitApplied(lastLsn - deletedIds.size() + 1, lastLsn);
+            }
+        } finally {
+            documentLocks.forEach(ReentrantLock::unlock);
+        }
+        for (String documentId : deletedIds.keySet()) {
+            locksManager.deleteDocumentLock(databaseName, collectionName, documentId);
+        }
+        log.info("Deleted " + deletedIds.size() + " documents and their related indexes from collection " + collectionName);
+        return deletedIds.size();
+    }
+
     public void updateDocument(String databaseName,
                                String collectionName,
                                String documentId,
                                ObjectNode updatedProperties) throws OperationFailedException, ResourceNotFoundException, VersionMismatchException {
 
-        Document document;
-        Optional<Document> documentOptional = fetchDocumentFromDatabase(databaseName, collectionName, documentId);
-        if (documentOptional.isEmpty()) {
-            throw new ResourceNotFoundException("Document with ID " + documentId + " in collection " + collectionName);
-        }else {
-            document = documentOptional.get();
-        }
-        ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName),
-                      documentLock = locksManager.getDocumentLock(databaseName, collectionName, documentId);
-
-        ArrayNode jsonArray = fileService.getCollectionDocuments(databaseName, collectionName);
-        int index = getDocumentIndex(databaseName, collectionName, documentId);
-        ObjectNode documentData = (ObjectNode) jsonArray.get(index);
-
-        Long expectedVersion = updatedProperties.get("_version").asLong();
-        if (documentData.has("_version") && !Objects.equals(document.getVersion(), expectedVersion)) {
-            throw new VersionMismatchException();
-        }
-
+        ReentrantLock documentLock = locksManager.getDocumentLock(databaseName, collectionName, documentId);
         documentLock.lock();
-        collectionLock.lock();
         try {
+            Document document = fetchDocumentFromDatabase(databaseName, collectionName, documentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Document with ID " + documentId + " in collection " + collectionName));
+            ObjectNode documentData = document.getContent();
+
+            Long expectedVersion = updatedProperties.get("_version").asLong();
+            if (documentData.has("_version") && !Objects.equals(document.getVersion(), expectedVersion)) {
+                throw new VersionMismatchException();
+            }
+
             fileService.incrementDocumentVersion(documentData);
             Iterator<Map.Entry<String, JsonNode>> fields = updatedProperties.fields();
             while (fields.hasNext()) {
                 Map.Entry<String, JsonNode> field = fields.next();
-                String propertyName = field.getKey();
-
                 // For security measures, do not allow updating _id and _version fields
-                if (propertyName.equals("_id") || propertyName.equals("_version")) {
-                    continue;
+                if (!field.getKey().equals("_id") && !field.getKey().equals("_version")) {
+                    documentData.set(field.getKey(), field.getValue());
                 }
+            }
+            long lsn = writeAheadLog.append(WriteAheadLog.Operation.PUT, databaseName, collectionName, documentId, documentData);
+            writeAheadLog.awaitApplied(lsn);
+        } finally {
+            documentLock.unlock();
+        }
+        log.info("Document with id " + documentId + " updated successfully in " + collectionName, HttpStatus.ACCEPTED);
+    }
 
-                String newValue = field.getValue().asText();
-                documentData.set(propertyName, field.getValue());
-                if (documentData.has(propertyName)) {
-                    indexingManager.deleteFromPropertyIndex(databaseName, collectionName, propertyName, newValue);
-                    indexingManager.deleteDocumentFromInvertedPropertyIndex(databaseName, collectionName, propertyName,newValue, documentId);
-                }
-                indexingManager.insertIntoPropertyIndex(databaseName, collectionName, propertyName, newValue, documentId);
-                indexingManager.insertIntoInvertedPropertyIndex(databaseName, collectionName, propertyName, newValue, documentId);
+    // Taken in id order, so that two batches sharing documents can not deadlock
+    private List<ReentrantLock> lockDocuments(String databaseName, String collectionName, Set<String> documentIds) {
+        List<ReentrantLock> documentLocks = new ArrayList<>(documentIds.size());
+        for (String documentId : new TreeSet<>(documentIds)) {
+            ReentrantLock documentLock = locksManager.getDocumentLock(databaseName, collectionName, documentId);
+            documentLock.lock();
+            documentLocks.add(documentLock);
+        }
+        return documentLocks;
+    }
+
+    /**
+     * Brings the collection files and the indexes up to date with the write ahead log after a crash,
+     * then checkpoints the log.
+     */
+    public void replayWriteAheadLog() {
+        writeAheadLog.replay();
+    }
+
+    /**
+     * Applies durable write ahead log records, in log order, to the collection files and the indexes.
+     * Runs on the log committer, off the request path. Consecutive inserts and consecutive deletes on a collection
+     * are each applied with one storage write. Records are applied by document version so applying twice is
+     * harmless. Returns the sequence numbers of the records that could not be applied.
+     */
+    private Set<Long> applyLogEntries(List<WriteAheadLog.LogEntry> entries) {
+        Map<String, List<WriteAheadLog.LogEntry>> entriesByCollection = new LinkedHashMap<>();
+        for (WriteAheadLog.LogEntry entry : entries) {
+            if (entry.operation() != WriteAheadLog.Operation.DROP) {
+                entriesByCollection.computeIfAbsent(indexingManager.getCollectionIndexKey(entry.databaseName(), entry.collectionName()), key -> new ArrayList<>()).add(entry);
             }
-            File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
-            boolean writeStatus = fileService.writeJsonArrayFile(collectionFile.toPath(), jsonArray);
-            if (!writeStatus) {
-                throw new OperationFailedException("update document");
+        }
+        Set<Long> failedLsns = new HashSet<>();
+        for (List<WriteAheadLog.LogEntry> collectionEntries : entriesByCollection.values()) {
+            applyCollectionLogEntries(collectionEntries, failedLsns);
+        }
+        return failedLsns;
+    }
+
+    private void applyCollectionLogEntries(List<WriteAheadLog.LogEntry> entries, Set<Long> failedLsns) {
+        String databaseName = entries.get(0).databaseName(), collectionName = entries.get(0).collectionName();
+        // The collection was deleted after its records were logged
+        if (!indexingManager.collectionIndexExists(databaseName, collectionName)) {
+            return;
+        }
+        ReentrantLock collectionLock;
+        try {
+            collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
+        } catch (ResourceNotFoundException e) {
+            return;
+        }
+        collectionLock.lock();
+        try {
+            DocumentStorage storage = getStorage(databaseName, collectionName);
+            CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
+            Map<String, WriteAheadLog.LogEntry> inserts = new LinkedHashMap<>(), deletes = new LinkedHashMap<>();
+            for (WriteAheadLog.LogEntry entry : entries) {
+                String documentId = entry.documentId();
+                // Records of different documents commute, a batch only has to be written before the next record of one of its documents
+                if (inserts.containsKey(documentId) || deletes.containsKey(documentId)) {
+                    applyInserts(storage, databaseName, collectionName, inserts, failedLsns);
+                    applyDeletes(storage, databaseName, collectionName, deletes, failedLsns);
+                }
+                DocumentLocation location = collectionIndex.search(documentId);
+                if (entry.operation() == WriteAheadLog.Operation.DELETE) {
+                    if (location != null) {
+                        deletes.put(documentId, entry);
+                    }
+                } else if (location == null) {
+                    inserts.put(documentId, entry);
+                } else {
+                    try {
+                        applyUpdate(storage, entry, location);
+                    } catch (Exception e) {
+                        log.error("Failed to apply write ahead log record " + entry.lsn() + ": " + e.getMessage());
+                        failedLsns.add(entry.lsn());
+                    }
+                }
             }
-            log.info("Document with id " + documentId + " updated successfully in " + collectionName, HttpStatus.ACCEPTED);
-        } catch (Exception e) {
-            log.error("Error updating document property: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
-            throw new OperationFailedException("update document property");
+            applyInserts(storage, databaseName, collectionName, inserts, failedLsns);
+            applyDeletes(storage, databaseName, collectionName, deletes, failedLsns);
+        } catch (ResourceNotFoundException e) {
+            log.error("Failed to apply write ahead log records to collection " + collectionName + ": " + e.getMessage());
+            entries.forEach(entry -> failedLsns.add(entry.lsn()));
         } finally {
             collectionLock.unlock();
-            documentLock.unlock();
         }
     }
-    private int getDocumentIndex(String databaseName, String collectionName, String documentId) throws ResourceNotFoundException {
+
+    private void applyInserts(DocumentStorage storage, String databaseName, String collectionName, Map<String, WriteAheadLog.LogEntry> inserts, Set<Long> failedLsns) {
+        if (inserts.isEmpty()) {
+            return;
+        }
+        try {
+            List<ObjectNode> contents = new ArrayList<>(inserts.size());
+            inserts.values().forEach(entry -> contents.add(entry.document()));
+            List<DocumentLocation> locations = storage.appendDocuments(databaseName, collectionName, contents);
+            Map<String, DocumentLocation> indexEntries = new LinkedHashMap<>();
+            int i = 0;
+            for (String documentId : inserts.keySet()) {
+                indexEntries.put(documentId, locations.get(i++));
+            }
+            indexingManager.insertDocumentsIntoCollectionIndex(databaseName, collectionName, indexEntries);
+            indexDocumentsProperties(databaseName, collectionName, contents);
+        } catch (Exception e) {
+            log.error("Failed to apply " + inserts.size() + " write ahead log inserts: " + e.getMessage());
+            inserts.values().forEach(entry -> failedLsns.add(entry.lsn()));
+        }
+        inserts.clear();
+    }
+
+    private void applyDeletes(DocumentStorage storage, String databaseName, String collectionName, Map<String, WriteAheadLog.LogEntry> deletes, Set<Long> failedLsns) {
+        if (deletes.isEmpty()) {
+            return;
+        }
+        try {
+            CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
+            Map<String, DocumentLocation> locations = new LinkedHashMap<>();
+            // The property indexes are keyed by value, so the deleted documents are read to find their entries
+            Map<String, ObjectNode> deletedDocuments = new LinkedHashMap<>();
+            for (String documentId : deletes.keySet()) {
+                DocumentLocation location = collectionIndex.search(documentId);
+                locations.put(documentId, location);
+                ObjectNode document = storage.readDocument(databaseName, collectionName, location);
+                deletedDocuments.put(documentId, document != null ? document : JsonNodeFactory.instance.objectNode());
+            }
+            indexingManager.deleteDocumentsRelatedIndexes(databaseName, collectionName, deletedDocuments);
+            storage.deleteDocuments(databaseName, collectionName, locations);
+        } catch (Exception e) {
+            log.error("Failed to apply " + deletes.size() + " write ahead log deletes: " + e.getMessage());
+            deletes.values().forEach(entry -> failedLsns.add(entry.lsn()));
+        }
+        deletes.clear();
+    }
+
+    private void applyUpdate(DocumentStorage storage, WriteAheadLog.LogEntry entry, DocumentLocation location) throws ResourceNotFoundException, OperationFailedException {
+        String databaseName = entry.databaseName(), collectionName = entry.collectionName(), documentId = entry.documentId();
+        ObjectNode document = entry.document();
+        ObjectNode current = storage.readDocument(databaseName, collectionName, location);
+        if (current != null && current.path("_version").asLong() >= document.path("_version").asLong()) {
+            return;
+        }
+        reindexDocumentProperties(databaseName, collectionName, documentId, current != null ? current : JsonNodeFactory.instance.objectNode(), document);
+        DocumentLocation newLocation = storage.updateDocument(databaseName, collectionName, location, document);
+        if (!newLocation.equals(location)) {
+            indexingManager.relocateDocumentInCollectionIndex(databaseName, collectionName, documentId, newLocation);
+        }
+    }
+
+    private DocumentLocation getDocumentLocation(String databaseName, String collectionName, String documentId) throws ResourceNotFoundException {
         return indexingManager.searchInCollectionIndex(databaseName, collectionName, documentId);
     }
 
+    public DocumentStorage getStorage(String databaseName, String collectionName) throws ResourceNotFoundException {
+        String key = indexingManager.getCollectionIndexKey(databaseName, collectionName);
+        StorageMode storageMode = collectionStorageModes.get(key);
+        if (storageMode == null) {
+            Schema schema = getCollectionSchema(databaseName, collectionName);
+            storageMode = schema == null ? StorageMode.ARRAY : schema.getStorage();
+            rememberStorage(databaseName, collectionName, storageMode, schema == null ? DocumentFormat.JSON : schema.getFormat());
+        }
+        return storages.get(storageMode);
+    }
+
+    private void rememberStorage(String databaseName, String collectionName, StorageMode storageMode, DocumentFormat format) {
+        if (storageMode == StorageMode.LOG) {
+            segmentedLogStorage.setDocumentFormat(databaseName, collectionName, format);
+        }
+        collectionStorageModes.put(indexingManager.getCollectionIndexKey(databaseName, collectionName), storageMode);
+    }
+
+    /**
+     * Rewrites every document of the collection in the given on-disk format while it stays online, writers
+     * only wait for the collection lock. JSON array collections are moved to a log first since binary documents
+     * can not live in an array file. Returns the updated schema, which now records the storage and the format.
+     */
+    public ObjectNode convertCollectionFormat(String databaseName, String collectionName, DocumentFormat format) throws ResourceNotFoundException, OperationFailedException {
+        ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
+        collectionLock.lock();
+        try {
+            DocumentStorage storage = getStorage(databaseName, collectionName);
+            indexingManager.beginCollectionRelocation(databaseName, collectionName);
+            Map<String, DocumentLocation> liveLocations = new LinkedHashMap<>();
+            indexingManager.getCollectionIndex(databaseName, collectionName).getBPlusTree().range(null, null, true)
+                    .forEachRemaining(entry -> liveLocations.put(entry.getKey(), entry.getValue()));
+            segmentedLogStorage.setDocumentFormat(databaseName, collectionName, format);
+
+            Map<String, DocumentLocation> convertedLocations;
+            if (storage == segmentedLogStorage) {
+                convertedLocations = segmentedLogStorage.compact(databaseName, collectionName, liveLocations);
+            } else {
+                // Leftovers of an interrupted conversion, the schema still points at the array file
+                if (segmentedLogStorage.collectionExists(databaseName, collectionName)) {
+                    segmentedLogStorage.deleteCollection(databaseName, collectionName);
+                }
+                segmentedLogStorage.createCollection(databaseName, collectionName);
+                convertedLocations = new LinkedHashMap<>();
+                for (Map.Entry<String, DocumentLocation> entry : liveLocations.entrySet()) {
+                    ObjectNode document = storage.readDocument(databaseName, collectionName, entry.getValue());
+                    if (document == null) {
+                        throw new OperationFailedException("read document " + entry.getKey());
+                    }
+                    convertedLocations.put(entry.getKey(), segmentedLogStorage.appendDocument(databaseName, collectionName, document));
+                }
+            }
+
+            File schemaFile = fileService.getSchemaFilePath(databaseName, collectionName);
+            ObjectNode schemaJson = (ObjectNode) new ObjectMapper().readTree(schemaFile);
+            schemaJson.put("storage", StorageMode.LOG.name().toLowerCase());
+            schemaJson.put("format", format.name().toLowerCase());
+            fileService.writePrettyJson(schemaFile, schemaJson);
+            // The converted documents have to be on disk before the files they replace are gone
+            fileService.forceCollectionFiles(databaseName, collectionName);
+
+            indexingManager.replaceCollectionIndexLocations(databaseName, collectionName, convertedLocations);
+            if (storage != segmentedLogStorage) {
+                storage.deleteCollection(databaseName, collectionName);
+                // Log collections rebuild their index from the segments
+                fileService.writeToFile(fileService.getCollectionIndexFile(databaseName, collectionName), "");
+            }
+            rememberStorage(databaseName, collectionName, StorageMode.LOG, format);
+            log.info("Collection " + collectionName + " converted to " + format + " (" + convertedLocations.size() + " documents)");
+            return schemaJson;
+        } catch (IOException e) {
+            log.error("Failed to update the schema of collection " + collectionName + ": " + e.getMessage());
+            throw new OperationFailedException("convert collection format");
+        } finally {
+            indexingManager.endCollectionRelocation(databaseName, collectionName);
+            collectionLock.unlock();
+        }
+    }
+
     public String readDocumentProperty(String databaseName, String collectionName, String documentId, String propertyName) throws ResourceNotFoundException {
         return indexingManager.searchInPropertyIndex(databaseName, collectionName, propertyName, documentId);
     }
 
     public ObjectNode fetchNodeById(String databaseName, String collectionName, String documentId){
-        ArrayNode jsonArray = fileService.readJsonArrayFile(fileService.getCollectionFile(databaseName, collectionName));
-        int index;
+        ObjectNode document = null;
         try {
-            index = getDocumentIndex(databaseName, collectionName, documentId);
-        } catch (ResourceNotFoundException e) {
+            document = readDocumentAtLocation(databaseName, collectionName, documentId,
+                    (storage, location) -> storage.readDocument(databaseName, collectionName, location));
+        } catch (ResourceNotFoundException | IOException e) {
+            log.error("Failed to read document with ID " + documentId + " from collection " + collectionName + ": " + e.getMessage());
+        }
+        if (document == null) {
             log.error("Document with ID " + documentId + " not found in collection " + collectionName);
-            return null;
         }
-        assert jsonArray != null;
-        return (ObjectNode) jsonArray.get(index);
+        return document;
     }
-    public List<JsonNode> fetchAllDocumentsByIds(String databaseName, String collectionName, List<String> documentIds) {
-        ArrayNode jsonArray = fileService.readJsonArrayFile(fileService.getCollectionFile(databaseName, collectionName));
-        List<JsonNode> nodes = new ArrayList<>();
+    public List<JsonNode> fetchAllDocumentsByIds(String databaseName, String collectionName, List<String> documentIds) throws ResourceNotFoundException {
+        getStorage(databaseName, collectionName);
+        List<JsonNode> documents = new ArrayList<>();
         for (String documentId : documentIds) {
-            int index;
-            try {
-                index = getDocumentIndex(databaseName, collectionName, documentId);
-            } catch (ResourceNotFoundException e) {
-                log.error("Document with ID " + documentId + " not found in collection " + collectionName);
+            ObjectNode document = fetchNodeById(databaseName, collectionName, documentId);
+            if (document != null) {
+                documents.add(document);
+            }
+        }
+        return documents;
+    }
+
+    @FunctionalInterface
+    private interface LocationReader<T> {
+        T read(DocumentStorage storage, DocumentLocation location) throws IOException;
+    }
+
+    /**
+     * Looks the document up in the collection index and reads it at its location, returns null when the collection
+     * does not hold it. Readers do not take the collection lock, so a compaction may move the document between the
+     * lookup and the read : the read is retried when the relocation stamp of the collection index changed meanwhile,
+     * and waits for a relocation in progress to end.
+     */
+    private <T> T readDocumentAtLocation(String databaseName, String collectionName, String documentId, LocationReader<T> reader) throws ResourceNotFoundException, IOException {
+        CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
+        while (true) {
+            long stamp = collectionIndex.getRelocationStamp();
+            if (CollectionIndex.isRelocating(stamp)) {
+                // the relocation holds the collection lock until the new locations are loaded
+                ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
+                collectionLock.lock();
+                collectionLock.unlock();
                 continue;
             }
-            assert jsonArray != null;
-            nodes.add(jsonArray.get(index));
+            DocumentLocation location = collectionIndex.search(documentId);
+            if (location == null) {
+                return null;
+            }
+            T result;
+            try {
+                result = reader.read(getStorage(databaseName, collectionName), location);
+            } catch (IOException | RuntimeException e) {
+                if (collectionIndex.getRelocationStamp() != stamp) {
+                    continue;
+                }
+                throw e;
+            }
+            if (collectionIndex.getRelocationStamp() == stamp) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Copies the document to the generator, returns false when the collection does not hold it. The tokens are
+     * buffered until the read is known not to have overlapped a relocation, so a retried read never leaves
+     * a partial document in the output.
+     */
+    private boolean copyDocumentAtLocation(String databaseName, String collectionName, String documentId, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        TokenBuffer document = readDocumentAtLocation(databaseName, collectionName, documentId, (storage, location) -> {
+            TokenBuffer tokens = new TokenBuffer(generator.getCodec(), false);
+            return storage.copyDocument(databaseName, collectionName, location, tokens) ? tokens : null;
+        });
+        if (document == null) {
+            return false;
         }
-        return nodes;
+        document.serialize(generator);
+        return true;
+    }
+
+    /**
+     * Writes the documents of the collection to the generator in id order, starting after the {@code after} id
+     * (from the first document when null) and stopping after {@code limit} documents (no limit when not positive).
+     * The collection index leaves are walked lazily through a range cursor and each document is copied from
+     * its bytes on disk as soon as it is reached, so memory does not grow with the collection.
+     * Returns the cursor of the next page, or null when there are no more documents.
+     */
+    public String writeCollectionDocuments(String databaseName, String collectionName, String after, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        getStorage(databaseName, collectionName);
+        BPlusTree<String, DocumentLocation> collectionTree = indexingManager.getCollectionIndex(databaseName, collectionName).getBPlusTree();
+        Iterator<Map.Entry<String, DocumentLocation>> entries = collectionTree.range(after, false, null, true);
+        String cursor = after;
+        int remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+        while (remaining > 0 && entries.hasNext()) {
+            // only the ids are taken from the cursor, a compaction may have moved the documents since it was opened
+            Map.Entry<String, DocumentLocation> entry = entries.next();
+            if (copyDocumentAtLocation(databaseName, collectionName, entry.getKey(), generator)) {
+                cursor = entry.getKey();
+                remaining--;
+            }
+        }
+        return entries.hasNext() ? cursor : null;
+    }
+
+    /**
+     * Writes the documents having the property value to the generator, copying each one from disk as it is reached.
+     * Returns how many documents were written.
+     */
+    public int writeDocumentsByPropertyValue(String databaseName, String collectionName, String propertyName, String propertyValue, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        getStorage(databaseName, collectionName);
+        int writtenDocuments = 0;
+        for (String documentId : new ArrayList<>(fetchAllDocumentIdsByPropertyValue(databaseName, collectionName, propertyName, propertyValue))) {
+            if (copyDocumentAtLocation(databaseName, collectionName, documentId, generator)) {
+                writtenDocuments++;
+            }
+        }
+        return writtenDocuments;
+    }
+
+    /**
+     * Writes the documents whose property value falls in the range to the generator in value order, stopping after
+     * {@code limit} documents (no limit when not positive). The inverted index is walked lazily from the lower bound,
+     * so only the matching postings are visited. Returns how many documents were written.
+     */
+    public int writeDocumentsByPropertyRange(String databaseName, String collectionName, String propertyName, PropertyRange range, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        getStorage(databaseName, collectionName);
+        DocumentOrdinals ordinals = indexingManager.getDocumentOrdinals(databaseName, collectionName);
+        ordinals.beginRead();
+        try {
+            Iterator<String> documentIds = indexingManager.searchRangeInInvertedPropertyIndex(databaseName, collectionName, propertyName, range);
+            int remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+            int writtenDocuments = 0;
+            while (writtenDocuments < remaining && documentIds.hasNext()) {
+                if (copyDocumentAtLocation(databaseName, collectionName, documentIds.next(), generator)) {
+                    writtenDocuments++;
+                }
+            }
+            return writtenDocuments;
+        } finally {
+            ordinals.endRead();
+        }
+    }
+
+    /**
+     * Writes up to {@code limit} documents (no limit when not positive) to the generator in the order of the indexed
+     * property, starting right after the position {@code after} or from the first value in that order when null.
+     * Only the postings of the values reached are visited. Returns the position to pass as {@code after} for the next
+     * page, null once the last document was written.
+     */
+    public String writeDocumentsSortedByProperty(String databaseName, String collectionName, PropertySort sort, String after, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        getStorage(databaseName, collectionName);
+        SortCursor<?> documentIds = indexingManager.sortInInvertedPropertyIndex(databaseName, collectionName, sort, after);
+        String cursor = after;
+        int remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+        while (remaining > 0 && documentIds.hasNext()) {
+            if (copyDocumentAtLocation(databaseName, collectionName, documentIds.next(), generator)) {
+                cursor = documentIds.position();
+                remaining--;
+            }
+        }
+        return documentIds.hasNext() ? cursor : null;
+    }
+
+    /**
+     * Writes the documents matching the query to the generator in id order, stopping after {@code limit} documents
+     * (no limit when not positive). The query is answered from the inverted indexes alone, documents are only read
+     * for the final id set. Returns how many documents were written.
+     */
+    public int writeDocumentsByQuery(String databaseName, String collectionName, Query query, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        getStorage(databaseName, collectionName);
+        List<String> documentIds = queryEngine.evaluate(databaseName, collectionName, query);
+        Collections.sort(documentIds);
+        int remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+        int writtenDocuments = 0;
+        for (int i = 0; i < documentIds.size() && writtenDocuments < remaining; i++) {
+            if (copyDocumentAtLocation(databaseName, collectionName, documentIds.get(i), generator)) {
+                writtenDocuments++;
+            }
+        }
+        return writtenDocuments;
+    }
+
+    /**
+     * Tells whether the collection holds the document from the collection index alone.
+     */
+    public boolean documentExists(String databaseName, String collectionName, String documentId) throws ResourceNotFoundException {
+        return indexingManager.documentExistsInCollectionIndex(databaseName, collectionName, documentId);
+    }
+
+    public long countDocuments(String databaseName, String collectionName) throws ResourceNotFoundException {
+        return indexingManager.getCollectionIndex(databaseName, collectionName).getBPlusTree().size();
+    }
+
+    /**
+     * Counts the documents having the property value, or whose property value falls in the range when it is given,
+     * from the sizes of the postings of the inverted index. No document is read.
+     */
+    public long countDocumentsByProperty(String databaseName, String collectionName, String propertyName, String propertyValue, PropertyRange range) throws ResourceNotFoundException {
+        if (!indexingManager.isPropertyIndexed(databaseName, collectionName, propertyName)) {
+            throw new IllegalArgumentException("Property is not indexed: " + propertyName);
+        }
+        // an indexed property no document has yet has no index either
+        if (!indexingManager.invertedPropertyIndexExists(databaseName, collectionName, propertyName)) {
+            return 0;
+        }
+        if (range != null) {
+            return indexingManager.countRangeInInvertedPropertyIndex(databaseName, collectionName, propertyName, range);
+        }
+        return indexingManager.searchPostingsInInvertedPropertyIndex(databaseName, collectionName, propertyName, propertyValue).size();
     }
 
     public Optional<Document> fetchDocumentFromDatabase(String databaseName, String collectionName, String documentId){
@@ -396,20 +1011,13 @@ public class DatabaseDiskCRUD {
         }
     }
     public List<JsonNode> fetchAllDocumentsFromCollection(String databaseName, String collectionName) throws ResourceNotFoundException {
-        ArrayNode jsonArray = fileService.getCollectionDocuments(databaseName, collectionName);
-        List<JsonNode> documents = new ArrayList<>();
-        for (JsonNode jsonNode : jsonArray) {
-            documents.add(jsonNode);
-        }
-        return documents;
+        return getStorage(databaseName, collectionName).readAllDocuments(databaseName, collectionName);
     }
 
     public List<String> fetchAllDocumentsIdsFromCollection(String databaseName, String collectionName) throws ResourceNotFoundException {
-        ArrayNode jsonArray = fileService.getCollectionDocuments(databaseName, collectionName);
-        List<String> documentIds = new ArrayList<>();
-        for (JsonNode jsonNode : jsonArray) {
-            documentIds.add(jsonNode.get("_id").asText());
-        }
+        BPlusTree<String, DocumentLocation> collectionTree = indexingManager.getCollectionIndex(databaseName, collectionName).getBPlusTree();
+        List<String> documentIds = new ArrayList<>((int) collectionTree.size());
+        collectionTree.range(null, null, true).forEachRemaining(entry -> documentIds.add(entry.getKey()));
         return documentIds;
     }
     public List<String> fetchAllDocumentIdsByPropertyValue(String databaseName, String collectionName, String propertyName, String propertyValue) throws ResourceNotFoundException {
@@ -3,6 +3,7 @@ package org.example.dbnode;
 import lombok.extern.log4j.Log4j2;
 import org.example.dbnode.Exception.ResourceNotFoundException;
 import org.example.dbnode.Indexing.IndexingManager;
+import org.example.dbnode.Storage.CollectionCompactor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -13,6 +14,10 @@ import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfi
 public class DbNodeApplication implements CommandLineRunner {
     @Autowired
     IndexingManager indexingManager;
+    @Autowired
+    DatabaseDiskCRUD databaseDiskCRUD;
+    @Autowired
+    CollectionCompactor collectionCompactor;
     public static void main(String[] args) {
         SpringApplication.run(DbNodeApplication.class, args);
     }
@@ -21,5 +26,9 @@ public class DbNodeApplication implements CommandLineRunner {
     public void run(String... args) throws ResourceNotFoundException {
         log.info("Initializing Indexing Manager");
         indexingManager.init();
+        log.info("Replaying write ahead log");
+        databaseDiskCRUD.replayWriteAheadLog();
+        log.info("Starting collection compactor");
+        collectionCompactor.start();
     }
 }
@@ -0,0 +1,7 @@
+package org.example.dbnode.Enum;
+
+public enum IndexKind {
+    INVERTED,
+    COMPOUND,
+    NGRAM
+}
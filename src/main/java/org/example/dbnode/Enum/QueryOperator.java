@@ -0,0 +1,11 @@
+package org.example.dbnode.Enum;
+
+public enum QueryOperator {
+    AND,
+    OR,
+    NOT,
+    EQ,
+    RANGE,
+    PREFIX,
+    CONTAINS
+}
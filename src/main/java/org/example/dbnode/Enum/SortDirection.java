@@ -0,0 +1,6 @@
+package org.example.dbnode.Enum;
+
+public enum SortDirection {
+    ASC,
+    DESC
+}
@@ -0,0 +1,190 @@
+package org.example.dbnode.Indexing;
+
+import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Model.Aggregate;
+import org.example.dbnode.Model.FacetCount;
+import org.example.dbnode.Model.FacetResult;
+import org.example.dbnode.Model.Query;
+import org.example.dbnode.Util.DataTypes.DataTypeCaster;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Computes counts and numeric aggregates of a collection from its inverted property indexes, without reading any
+ * document.
+ * <p>
+ * Groups are the values of the grouping property in index order, each counting the size of its posting list. A
+ * numeric property is aggregated from its own index, whose keys are already typed: over the whole collection each
+ * value weighs the size of its posting list and min and max are the ends of the index. Per group the index is first
+ * turned into a column of values by document ordinal, then each group adds up the values of its ordinals, so the
+ * cost is one walk of both indexes whatever the number of groups.
+ * <p>
+ * Facets count the values of properties within the result set of a {@link Query}: the posting list of every value
+ * is intersected with the bitmap of the result set, a word at a time for the bitmap postings.
+ */
+@Component
+public class AggregationEngine {
+
+    private final IndexingManager indexingManager;
+    private final QueryEngine queryEngine;
+    private final DataTypeCaster dataTypeCaster;
+
+    public AggregationEngine(IndexingManager indexingManager, QueryEngine queryEngine, DataTypeCaster dataTypeCaster) {
+        this.indexingManager = indexingManager;
+        this.queryEngine = queryEngine;
+        this.dataTypeCaster = dataTypeCaster;
+    }
+
+    /**
+     * Aggregates the collection grouped by the values of {@code groupBy}, or as a single group when it is null.
+     * Sum, min, max and avg are computed over {@code propertyName} when it is given.
+     */
+    public List<Aggregate> aggregate(String databaseName, String collectionName, String groupBy, String propertyName) throws ResourceNotFoundException {
+        if (groupBy != null) {
+            checkIndexed(databaseName, collectionName, groupBy);
+        }
+        if (propertyName != null) {
+            checkIndexed(databaseName, collectionName, propertyName);
+            String dataType = dataTypeCaster.getDataType(databaseName, collectionName, propertyName).toUpperCase();
+            if (!dataType.equals("INTEGER") && !dataType.equals("NUMBER")) {
+                throw new IllegalArgumentException("Only integer and number properties can be aggregated: " + propertyName);
+            }
+        }
+        if (groupBy == null) {
+            Aggregate aggregate = new Aggregate(null, indexingManager.getCollectionIndex(databaseName, collectionName).getBPlusTree().size());
+            if (propertyName != null) {
+                Iterator<? extends Map.Entry<?, PostingList>> values = postingsOf(databaseName, collectionName, propertyName);
+                while (values.hasNext()) {
+                    Map.Entry<?, PostingList> value = values.next();
+                    aggregate.add(((Number) value.getKey()).doubleValue(), value.getValue().size());
+                }
+            }
+            return List.of(aggregate);
+        }
+
+        DocumentOrdinals ordinals = indexingManager.getDocumentOrdinals(databaseName, collectionName);
+        // the group and value postings are joined by ordinal
+        ordinals.beginRead();
+        try {
+            ValueColumn column = propertyName == null ? null : new ValueColumn(postingsOf(databaseName, collectionName, propertyName));
+            List<Aggregate> aggregates = new ArrayList<>();
+            Iterator<? extends Map.Entry<?, PostingList>> groups = postingsOf(databaseName, collectionName, groupBy);
+            while (groups.hasNext()) {
+                Map.Entry<?, PostingList> group = groups.next();
+                Aggregate aggregate = new Aggregate(group.getKey(), group.getValue().size());
+                if (column != null) {
+                    group.getValue().forEach(ordinal -> column.addTo(aggregate, ordinal));
+                }
+                aggregates.add(aggregate);
+            }
+            return aggregates;
+        } finally {
+            ordinals.endRead();
+        }
+    }
+
+    /**
+     * Returns the {@code limit} values of each facet property most frequent among the documents matching the filter,
+     * or among every document when it is null. Values are ordered by count, ties in value order, values no matching
+     * document has are left out.
+     */
+    @SuppressWarnings("unchecked")
+    public FacetResult facets(String databaseName, String collectionName, Query filter, List<String> propertyNames, int limit) throws ResourceNotFoundException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Facets need a limit of at least one value");
+        }
+        for (String propertyName : propertyNames) {
+            checkIndexed(databaseName, collectionName, propertyName);
+        }
+        DocumentOrdinals ordinals = indexingManager.getDocumentOrdinals(databaseName, collectionName);
+        // the result set is matched against the value postings by ordinal
+        ordinals.beginRead();
+        try {
+            BitSet matches = filter == null
+                    ? ordinals.liveOrdinals()
+                    : queryEngine.match(databaseName, collectionName, filter);
+            FacetResult result = new FacetResult(matches.cardinality());
+            for (String propertyName : propertyNames) {
+                // the least frequent of the values kept so far on top, a value only gets in by beating it
+                PriorityQueue<FacetCount> top = new PriorityQueue<>(Comparator.comparingLong(FacetCount::getCount));
+                Iterator<? extends Map.Entry<?, PostingList>> values = matches.isEmpty() ? Collections.emptyIterator() : postingsOf(databaseName, collectionName, propertyName);
+                while (values.hasNext()) {
+                    Map.Entry<?, PostingList> value = values.next();
+                    // a value with fewer documents overall can not beat the least frequent one kept
+                    if (top.size() == limit && value.getValue().size() <= top.peek().getCount()) {
+                        continue;
+                    }
+                    int count = value.getValue().intersectionSize(matches);
+                    if (count == 0) {
+                        continue;
+                    }
+                    if (top.size() < limit) {
+                        top.add(new FacetCount(value.getKey(), count));
+                    } else if (count > top.peek().getCount()) {
+                        top.poll();
+                        top.add(new FacetCount(value.getKey(), count));
+                    }
+                }
+                List<FacetCount> counts = new ArrayList<>(top);
+                counts.sort(Comparator.comparingLong(FacetCount::getCount).reversed()
+                        .thenComparing(count -> (Comparable<Object>) count.getValue()));
+                result.addFacet(propertyName, counts);
+            }
+            return result;
+        } finally {
+            ordinals.endRead();
+        }
+    }
+
+    private void checkIndexed(String databaseName, String collectionName, String propertyName) throws ResourceNotFoundException {
+        if (!indexingManager.isPropertyIndexed(databaseName, collectionName, propertyName)) {
+            throw new IllegalArgumentException("Property is not indexed: " + propertyName);
+        }
+    }
+
+    // an indexed property no document has yet has no index either
+    private Iterator<? extends Map.Entry<?, PostingList>> postingsOf(String databaseName, String collectionName, String propertyName) throws ResourceNotFoundException {
+        if (!indexingManager.invertedPropertyIndexExists(databaseName, collectionName, propertyName)) {
+            return Collections.emptyIterator();
+        }
+        InvertedPropertyIndex<?> invertedPropertyIndex = indexingManager.getInvertedPropertyIndex(databaseName, collectionName, propertyName);
+        return invertedPropertyIndex.range(null, true, null, true);
+    }
+
+    /**
+     * The values of a numeric property by document ordinal.
+     */
+    private static final class ValueColumn {
+        private double[] values = new double[64];
+        private final BitSet present = new BitSet();
+
+        ValueColumn(Iterator<? extends Map.Entry<?, PostingList>> postings) {
+            while (postings.hasNext()) {
+                Map.Entry<?, PostingList> posting = postings.next();
+                double value = ((Number) posting.getKey()).doubleValue();
+                posting.getValue().forEach(ordinal -> {
+                    if (ordinal >= values.length) {
+                        values = Arrays.copyOf(values, Math.max(ordinal + 1, values.length * 2));
+                    }
+                    values[ordinal] = value;
+                    present.set(ordinal);
+                });
+            }
+        }
+
+        void addTo(Aggregate aggregate, int ordinal) {
+            if (present.get(ordinal)) {
+                aggregate.add(values[ordinal], 1);
+            }
+        }
+    }
+}
@@ -2,62 +2,296 @@ package org.example.dbnode.Indexing.BPlusTree;// Searching on a B+ tree in Java
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
 
 /**
  * A B+ tree
  * Since the structures and behaviors between internal node and external node are different,
  * so there are two different classes for each kind of node.
+ * <p>
+ * The tree is safe for concurrent use. Every node carries a version latch. Readers never take it: they note
+ * the version of each node on their way down, read it, and start over when a writer changed the node in the
+ * meantime. Writers first find their leaf the same way and latch only that leaf when the change fits in it.
+ * Splits and merges fall back to latch crabbing from the root, where the latches above a node are released
+ * as soon as that node can absorb the change without passing it up.
  * @param <TKey> the content type of the key
  * @param <TValue> the content type of the value
  */
 public class BPlusTree<TKey extends Comparable<TKey>, TValue> {
+    /**
+     * Keys per node. With 128 a binary search touches about 7 keys per node and even half full nodes
+     * keep a tree of ten million keys four levels deep.
+     */
+    public static final int DEFAULT_ORDER = 128;
+    private static final int MIN_ORDER = 3;
+    // optimistic descents retried before a reader waits on the latches instead
+    private static final int OPTIMISTIC_ATTEMPTS = 16;
+
+    private final int order;
+    // empty key slots every new node starts from, primitive arrays for the numeric trees
+    private final NodeKeys<TKey> emptyKeys;
+    // guards the root pointer, writers hold it only while the root itself may be replaced
+    private final StampedLock rootLatch;
     private Node<TKey> root;
+    // kept up to date by every change so neither needs a walk of the tree
+    private final AtomicLong size;
+    private volatile int height;
 
     public BPlusTree() {
-        this.root = new LeafNode<TKey, TValue>();
+        this(DEFAULT_ORDER);
+    }
+
+    public BPlusTree(int order) {
+        this(order, new ObjectNodeKeys<>(checkOrder(order) + 1));
+    }
+
+    BPlusTree(int order, NodeKeys<TKey> emptyKeys) {
+        this.order = checkOrder(order);
+        this.emptyKeys = emptyKeys;
+        this.rootLatch = new StampedLock();
+        this.root = new LeafNode<TKey, TValue>(emptyKeys.newEmpty());
+        this.size = new AtomicLong();
+        this.height = 1;
+    }
+
+    static int checkOrder(int order) {
+        if (order < MIN_ORDER) {
+            throw new IllegalArgumentException("B+ tree order must be at least " + MIN_ORDER);
+        }
+        return order;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * The number of keys in the tree.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * The number of levels from the root down to the leaves, a tree holding a single leaf has a height of 1.
+     */
+    public int height() {
+        return height;
     }
 
     /**
-     * Insert a new key and its associated value into the B+ tree.
+     * Insert a new key and its associated value into the B+ tree,
+     * the value of an already existing key is replaced.
      */
     public void insert(TKey key, TValue value) {
-        LeafNode<TKey, TValue> leaf = this.findLeafNodeShouldContainKey(key);
-        leaf.insertKey(key, value);
-        if (leaf.isNodeOverflowing()) {
-            Node<TKey> n = leaf.handleOverflow();
-            if (n != null)
-                this.root = n;
+        LeafNode<TKey, TValue> leaf = latchLeafIf(key, node -> node.getNumberOfKeys() < order);
+        if (leaf != null) {
+            try {
+                if (leaf.insertKey(key, value))
+                    size.incrementAndGet();
+            } finally {
+                leaf.latch.tryUnlockWrite();
+            }
+            return;
+        }
+
+        // the leaf is full, latch down from the root keeping every node that would split along with it
+        WriteLatches latches = new WriteLatches();
+        try {
+            latches.latchRoot();
+            Node<TKey> node = root;
+            latches.latch(node);
+            if (node.getNumberOfKeys() < order) {
+                latches.releaseRoot();
+            }
+            while (node instanceof InternalNode<TKey> internal) {
+                Node<TKey> child = internal.getChild(internal.search(key));
+                child.latch.writeLock();
+                if (child.getNumberOfKeys() < order) {
+                    latches.releaseAll();
+                }
+                latches.add(child);
+                node = child;
+            }
+            leaf = (LeafNode<TKey, TValue>) node;
+            if (leaf.insertKey(key, value))
+                size.incrementAndGet();
+            if (leaf.isNodeOverflowing()) {
+                Node<TKey> n = leaf.handleOverflow();
+                // a split root gets a new root above it
+                if (n != null && n != this.root) {
+                    this.root = n;
+                    height++;
+                }
+            }
+        } finally {
+            latches.releaseAll();
         }
     }
 
-    public List<Map.Entry<TKey, TValue>> getAllEntries() {
-        List<Map.Entry<TKey, TValue>> entries = new ArrayList<>();
-        LeafNode<TKey, TValue> current = findLeftMostLeaf();
-        while (current != null) {
-            for (int i = 0; i < current.getNumberOfKeys(); i++) {
-                entries.add(new AbstractMap.SimpleEntry<>(current.getKeyAt(i), current.getValue(i)));
+    /**
+     * Replaces the content of the tree with entries given in strictly ascending key order, in one linear pass.
+     * Leaves are filled up to the order one after the other, then each internal level is built on top of the
+     * level below it with the smallest key of every child but the first as separators, until a single root is left.
+     * The new tree is only published once complete, readers and writers of the old one are not blocked meanwhile.
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<TKey, TValue>> sortedEntries) {
+        List<Node<TKey>> level = new ArrayList<>();
+        List<TKey> lowestKeys = new ArrayList<>();
+        LeafNode<TKey, TValue> leaf = null;
+        TKey previousKey = null;
+        long count = 0;
+        while (sortedEntries.hasNext()) {
+            Map.Entry<TKey, TValue> entry = sortedEntries.next();
+            if (previousKey != null && previousKey.compareTo(entry.getKey()) >= 0) {
+                throw new IllegalArgumentException("Bulk loaded keys must be strictly ascending, " + entry.getKey() + " came after " + previousKey);
+            }
+            if (leaf == null || leaf.getNumberOfKeys() == order) {
+                LeafNode<TKey, TValue> next = new LeafNode<>(emptyKeys.newEmpty());
+                if (leaf != null) {
+                    leaf.setRightSibling(next);
+                    next.setLeftSibling(leaf);
+                }
+                leaf = next;
+                level.add(leaf);
+                lowestKeys.add(entry.getKey());
+            }
+            leaf.appendKey(entry.getKey(), entry.getValue());
+            previousKey = entry.getKey();
+            count++;
+        }
+        if (level.isEmpty()) {
+            publishRoot(new LeafNode<TKey, TValue>(emptyKeys.newEmpty()), 0, 1);
+            return;
+        }
+        // only the last leaf can be short, even it out with its full left neighbour so neither underflows
+        if (level.size() > 1 && leaf.isUnderflow()) {
+            LeafNode<TKey, TValue> previous = (LeafNode<TKey, TValue>) level.get(level.size() - 2);
+            previous.moveLastKeysTo(leaf, (previous.getNumberOfKeys() - leaf.getNumberOfKeys()) / 2);
+            lowestKeys.set(lowestKeys.size() - 1, leaf.getKeyAt(0));
+        }
+
+        int levels = 1;
+        while (level.size() > 1) {
+            levels++;
+            // spread the children evenly so no internal node but the root ends up below half full
+            int parentCount = (level.size() + order) / (order + 1);
+            List<Node<TKey>> parents = new ArrayList<>(parentCount);
+            List<TKey> parentLowestKeys = new ArrayList<>(parentCount);
+            InternalNode<TKey> previous = null;
+            int first = 0;
+            for (int p = 0; p < parentCount; p++) {
+                int end = first + (level.size() - first) / (parentCount - p);
+                InternalNode<TKey> parent = new InternalNode<>(emptyKeys.newEmpty());
+                parent.setChild(0, level.get(first));
+                for (int i = first + 1; i < end; i++) {
+                    parent.setKey(i - first - 1, lowestKeys.get(i));
+                    parent.setChild(i - first, level.get(i));
+                }
+                parent.numberOfKeys = end - first - 1;
+                if (previous != null) {
+                    previous.setRightSibling(parent);
+                    parent.setLeftSibling(previous);
+                }
+                previous = parent;
+                parents.add(parent);
+                parentLowestKeys.add(lowestKeys.get(first));
+                first = end;
             }
-            current = (LeafNode<TKey, TValue>) current.getRightSibling();
+            level = parents;
+            lowestKeys = parentLowestKeys;
         }
+        level.get(0).setParent(null);
+        publishRoot(level.get(0), count, levels);
+    }
+
+    /**
+     * Bulk loads the entries of a map in any order. They are sorted first, unless they already come in key order
+     * as they do when read back from an index file the tree itself wrote.
+     */
+    @SuppressWarnings("unchecked")
+    public void bulkLoad(Map<TKey, TValue> entries) {
+        Map.Entry<TKey, TValue>[] sorted = entries.entrySet().toArray((Map.Entry<TKey, TValue>[]) new Map.Entry<?, ?>[0]);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1].getKey().compareTo(sorted[i].getKey()) > 0) {
+                Arrays.parallelSort(sorted, Map.Entry.comparingByKey());
+                break;
+            }
+        }
+        bulkLoad(Arrays.asList(sorted).iterator());
+    }
+
+    /**
+     * Copies every entry into a list, prefer {@link #range} unless the whole index is needed at once.
+     */
+    public List<Map.Entry<TKey, TValue>> getAllEntries() {
+        List<Map.Entry<TKey, TValue>> entries = new ArrayList<>();
+        range(null, null, true).forEachRemaining(entries::add);
         return entries;
     }
-    private LeafNode<TKey, TValue> findLeftMostLeaf() {
-        Node<TKey> node = this.root;
-        while (!(node instanceof LeafNode)) {
-            node = ((InternalNode<TKey>) node).getChild(0);
+    /**
+     * Returns up to {@code limit} entries in key order, starting with the first key greater than {@code after},
+     * or with the smallest key when {@code after} is null. Only the leaves holding the returned entries are visited.
+     */
+    public List<Map.Entry<TKey, TValue>> getEntriesAfter(TKey after, int limit) {
+        List<Map.Entry<TKey, TValue>> entries = new ArrayList<>();
+        Iterator<Map.Entry<TKey, TValue>> cursor = range(after, false, null, true);
+        while (entries.size() < limit && cursor.hasNext()) {
+            entries.add(cursor.next());
         }
-        return (LeafNode<TKey, TValue>) node;
+        return entries;
+    }
+
+    /**
+     * Returns a cursor over the entries with keys between {@code from} and {@code to} in key order, both bounds
+     * included or excluded by {@code inclusive}. A null bound leaves that side of the range open.
+     */
+    public Iterator<Map.Entry<TKey, TValue>> range(TKey from, TKey to, boolean inclusive) {
+        return range(from, inclusive, to, inclusive);
+    }
+
+    /**
+     * Returns a cursor over the entries with keys between {@code from} and {@code to} in key order. A null bound
+     * leaves that side of the range open. The cursor walks the leaf level lazily and holds one leaf worth of
+     * entries at a time, it sees the changes made to leaves it has not reached yet.
+     */
+    public Iterator<Map.Entry<TKey, TValue>> range(TKey from, boolean fromInclusive, TKey to, boolean toInclusive) {
+        return new RangeCursor(from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Returns a cursor over the entries with keys between {@code from} and {@code to} in descending key order,
+     * starting next to {@code to}. A null bound leaves that side of the range open. It walks the leaves lazily
+     * like {@link #range}, right to left.
+     */
+    public Iterator<Map.Entry<TKey, TValue>> descendingRange(TKey from, boolean fromInclusive, TKey to, boolean toInclusive) {
+        return new DescendingRangeCursor(from, fromInclusive, to, toInclusive);
     }
 
     /**
      * Search a key value on the tree and return its associated value.
      */
     public TValue search(TKey key) {
-        LeafNode<TKey, TValue> leaf = this.findLeafNodeShouldContainKey(key);
-        int index = leaf.search(key);
-        return (index == -1) ? null : leaf.getValue(index);
+        while (true) {
+            VersionedLeaf<TKey, TValue> found = findLeaf(key);
+            try {
+                int index = found.leaf().search(key);
+                TValue value = (index == -1) ? null : found.leaf().getValue(index);
+                if (found.leaf().latch.validate(found.stamp()))
+                    return value;
+            } catch (RuntimeException e) {
+                // a leaf changed under the read no longer validates, anything else is a genuine failure
+                if (found.leaf().latch.validate(found.stamp()))
+                    throw e;
+            }
+        }
     }
 
 
@@ -65,37 +299,415 @@ public class BPlusTree<TKey extends Comparable<TKey>, TValue> {
      * Delete a key and its associated value from the tree.
      */
     public void delete(TKey key) {
-        LeafNode<TKey, TValue> leaf = this.findLeafNodeShouldContainKey(key);
-        if (leaf.delete(key) && leaf.isUnderflow()) {
-            Node<TKey> n = leaf.handleUnderflow();
-            if (n != null)
-                this.root = n;
+        LeafNode<TKey, TValue> leaf = latchLeafIf(key, node -> node.canLendAKey() || node.getParentNode() == null);
+        if (leaf != null) {
+            try {
+                if (leaf.delete(key))
+                    size.decrementAndGet();
+            } finally {
+                leaf.latch.tryUnlockWrite();
+            }
+            return;
+        }
+
+        // the leaf would underflow, latch down from the root keeping every node that may borrow or merge,
+        // together with the siblings it would borrow from or merge with
+        WriteLatches latches = new WriteLatches();
+        try {
+            latches.latchRoot();
+            Node<TKey> node = root;
+            latches.latch(node);
+            // only a root left without keys by a merge below it is replaced
+            if (node instanceof LeafNode || node.getNumberOfKeys() > 1) {
+                latches.releaseRoot();
+            }
+            while (node instanceof InternalNode<TKey> internal) {
+                int index = internal.search(key);
+                Node<TKey> leftSibling = index > 0 ? internal.getChild(index - 1) : null;
+                Node<TKey> child = internal.getChild(index);
+                Node<TKey> rightSibling = index < internal.getNumberOfKeys() ? internal.getChild(index + 1) : null;
+                // siblings are latched left to right, the same order scans walk the leaves in
+                if (leftSibling != null)
+                    leftSibling.latch.writeLock();
+                child.latch.writeLock();
+                if (rightSibling != null)
+                    rightSibling.latch.writeLock();
+                if (child.canLendAKey()) {
+                    latches.releaseAll();
+                    if (leftSibling != null)
+                        leftSibling.latch.tryUnlockWrite();
+                    if (rightSibling != null)
+                        rightSibling.latch.tryUnlockWrite();
+                } else {
+                    latches.add(leftSibling);
+                    latches.add(rightSibling);
+                }
+                latches.add(child);
+                node = child;
+            }
+            leaf = (LeafNode<TKey, TValue>) node;
+            if (leaf.delete(key)) {
+                size.decrementAndGet();
+                if (leaf.isUnderflow()) {
+                    Node<TKey> n = leaf.handleUnderflow();
+                    // a root left without keys is replaced by its only child
+                    if (n != null && n != this.root) {
+                        this.root = n;
+                        height--;
+                    }
+                }
+            }
+        } finally {
+            latches.releaseAll();
         }
     }
 
     public void clearTree() {
-        clearTreeRecursive(root);
-        root = new LeafNode<TKey, TValue>();
+        // readers may still be walking the old nodes, they are left as they are for the garbage collector
+        publishRoot(new LeafNode<TKey, TValue>(emptyKeys.newEmpty()), 0, 1);
+    }
+
+    private void publishRoot(Node<TKey> newRoot, long newSize, int newHeight) {
+        long stamp = rootLatch.writeLock();
+        try {
+            this.root = newRoot;
+            this.size.set(newSize);
+            this.height = newHeight;
+        } finally {
+            rootLatch.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Each leaf is copied optimistically and only handed out once its version validates. A leaf that changed
+     * meanwhile sends the cursor back down the tree to resume after the last key it returned.
+     */
+    private final class RangeCursor implements Iterator<Map.Entry<TKey, TValue>> {
+        private final TKey to;
+        private final boolean toInclusive;
+        private final Object[] keys = new Object[order + 1];
+        private final Object[] values = new Object[order + 1];
+        private int position;
+        private int count;
+        // the next key must come after this one, or may equal it while it is still the inclusive lower bound
+        private TKey last;
+        private boolean lastInclusive;
+        private LeafNode<TKey, TValue> nextLeaf;
+        private long nextStamp;
+        private Map.Entry<TKey, TValue> pending;
+        private boolean exhausted;
+
+        RangeCursor(TKey from, boolean fromInclusive, TKey to, boolean toInclusive) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.last = from;
+            this.lastInclusive = fromInclusive;
+            VersionedLeaf<TKey, TValue> found = findLeaf(from);
+            this.nextLeaf = found.leaf();
+            this.nextStamp = found.stamp();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            if (pending != null)
+                return true;
+            while (!exhausted) {
+                while (position < count) {
+                    TKey key = (TKey) keys[position];
+                    TValue value = (TValue) values[position];
+                    position++;
+                    if (last != null && (lastInclusive ? key.compareTo(last) < 0 : key.compareTo(last) <= 0))
+                        continue;
+                    if (to != null && (toInclusive ? key.compareTo(to) > 0 : key.compareTo(to) >= 0)) {
+                        exhausted = true;
+                        return false;
+                    }
+                    last = key;
+                    lastInclusive = false;
+                    pending = new AbstractMap.SimpleImmutableEntry<>(key, value);
+                    return true;
+                }
+                if (nextLeaf == null) {
+                    exhausted = true;
+                } else {
+                    readNextLeaf();
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<TKey, TValue> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Map.Entry<TKey, TValue> entry = pending;
+            pending = null;
+            return entry;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void readNextLeaf() {
+            while (true) {
+                LeafNode<TKey, TValue> leaf = nextLeaf;
+                try {
+                    int keyCount = leaf.getNumberOfKeys();
+                    for (int i = 0; i < keyCount; i++) {
+                        keys[i] = leaf.getKeyAt(i);
+                        values[i] = leaf.getValue(i);
+                    }
+                    // the raw link, getRightSibling() stops at the parent boundary
+                    LeafNode<TKey, TValue> following = (LeafNode<TKey, TValue>) leaf.rightSibling;
+                    long followingStamp = following == null ? 0 : following.latch.tryOptimisticRead();
+                    if (leaf.latch.validate(nextStamp) && (following == null || followingStamp != 0)) {
+                        count = keyCount;
+                        position = 0;
+                        nextLeaf = following;
+                        nextStamp = followingStamp;
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // the leaf changed under the read, it does not validate and is read again below
+                }
+                Thread.onSpinWait();
+                VersionedLeaf<TKey, TValue> found = findLeaf(last);
+                nextLeaf = found.leaf();
+                nextStamp = found.stamp();
+            }
+        }
     }
 
-    // Helper method to recursively clear the tree
-    private void clearTreeRecursive(Node<TKey> node) {
-        if (node instanceof InternalNode<TKey> internalNode) {
-            for (int i = 0; i < internalNode.getNumberOfKeys() + 1; i++) {
-                clearTreeRecursive(internalNode.getChild(i));
+    /**
+     * The mirror of {@link RangeCursor}, walking the leaves right to left. A left link is only trusted when the leaf
+     * it leads to still links back to the leaf it was followed from: a split of that leaf publishes its new right
+     * half before the back link of the leaf after it is updated, and the cursor would skip the new half.
+     */
+    private final class DescendingRangeCursor implements Iterator<Map.Entry<TKey, TValue>> {
+        private final TKey from;
+        private final boolean fromInclusive;
+        private final Object[] keys = new Object[order + 1];
+        private final Object[] values = new Object[order + 1];
+        // counts down, the entries of the leaf not handed out yet are the ones before it
+        private int position;
+        // the next key must come before this one, or may equal it while it is still the inclusive upper bound
+        private TKey last;
+        private boolean lastInclusive;
+        private LeafNode<TKey, TValue> nextLeaf;
+        private long nextStamp;
+        // the leaf whose left link led to nextLeaf, null after a descent from the root
+        private LeafNode<TKey, TValue> linkedFrom;
+        private Map.Entry<TKey, TValue> pending;
+        private boolean exhausted;
+
+        DescendingRangeCursor(TKey from, boolean fromInclusive, TKey to, boolean toInclusive) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.last = to;
+            this.lastInclusive = toInclusive;
+            VersionedLeaf<TKey, TValue> found = findLeaf(to, true);
+            this.nextLeaf = found.leaf();
+            this.nextStamp = found.stamp();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            if (pending != null)
+                return true;
+            while (!exhausted) {
+                while (position > 0) {
+                    position--;
+                    TKey key = (TKey) keys[position];
+                    TValue value = (TValue) values[position];
+                    if (last != null && (lastInclusive ? key.compareTo(last) > 0 : key.compareTo(last) >= 0))
+                        continue;
+                    if (from != null && (fromInclusive ? key.compareTo(from) < 0 : key.compareTo(from) <= 0)) {
+                        exhausted = true;
+                        return false;
+                    }
+                    last = key;
+                    lastInclusive = false;
+                    pending = new AbstractMap.SimpleImmutableEntry<>(key, value);
+                    return true;
+                }
+                if (nextLeaf == null) {
+                    exhausted = true;
+                } else {
+                    readPreviousLeaf();
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<TKey, TValue> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Map.Entry<TKey, TValue> entry = pending;
+            pending = null;
+            return entry;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void readPreviousLeaf() {
+            while (true) {
+                LeafNode<TKey, TValue> leaf = nextLeaf;
+                try {
+                    int keyCount = leaf.getNumberOfKeys();
+                    for (int i = 0; i < keyCount; i++) {
+                        keys[i] = leaf.getKeyAt(i);
+                        values[i] = leaf.getValue(i);
+                    }
+                    Node<TKey> following = leaf.rightSibling;
+                    LeafNode<TKey, TValue> preceding = (LeafNode<TKey, TValue>) leaf.leftSibling;
+                    long precedingStamp = preceding == null ? 0 : preceding.latch.tryOptimisticRead();
+                    if (leaf.latch.validate(nextStamp) && (linkedFrom == null || following == linkedFrom)
+                            && (preceding == null || precedingStamp != 0)) {
+                        position = keyCount;
+                        linkedFrom = leaf;
+                        nextLeaf = preceding;
+                        nextStamp = precedingStamp;
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // the leaf changed under the read, it does not validate and is read again below
+                }
+                Thread.onSpinWait();
+                VersionedLeaf<TKey, TValue> found = findLeaf(last, true);
+                linkedFrom = null;
+                nextLeaf = found.leaf();
+                nextStamp = found.stamp();
             }
         }
-        node.clear(); // Implement a clear method in the Node class to remove entries
     }
 
     /**
-     * Search the leaf node which should contain the specified key
+     * Finds the leaf which should contain the key, or the left most leaf for a null key, along with the version
+     * it was found at. The descent is optimistic, after repeated interference from writers it waits on the read
+     * latches from the root down instead.
      */
-    private LeafNode<TKey, TValue> findLeafNodeShouldContainKey(TKey key) {
+    private VersionedLeaf<TKey, TValue> findLeaf(TKey key) {
+        return findLeaf(key, false);
+    }
+
+    // a null key leads to the right most leaf instead when rightMost is set
+    private VersionedLeaf<TKey, TValue> findLeaf(TKey key, boolean rightMost) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            try {
+                VersionedLeaf<TKey, TValue> found = findLeafOptimistically(key, rightMost);
+                if (found != null)
+                    return found;
+            } catch (RuntimeException e) {
+                // a node changed under the read, start over from the root
+            }
+            Thread.onSpinWait();
+        }
+        return findLeafLatched(key, rightMost);
+    }
+
+    @SuppressWarnings("unchecked")
+    private VersionedLeaf<TKey, TValue> findLeafOptimistically(TKey key, boolean rightMost) {
+        long rootStamp = rootLatch.tryOptimisticRead();
         Node<TKey> node = this.root;
-        while (!(node instanceof LeafNode)) {
-            node = ((InternalNode<TKey>) node).getChild(node.search(key));
+        long stamp = node.latch.tryOptimisticRead();
+        if (stamp == 0 || !rootLatch.validate(rootStamp))
+            return null;
+        while (node instanceof InternalNode<TKey> internal) {
+            Node<TKey> child = internal.getChild(childIndex(internal, key, rightMost));
+            long childStamp = child.latch.tryOptimisticRead();
+            if (childStamp == 0 || !node.latch.validate(stamp))
+                return null;
+            node = child;
+            stamp = childStamp;
+        }
+        return new VersionedLeaf<>((LeafNode<TKey, TValue>) node, stamp);
+    }
+
+    @SuppressWarnings("unchecked")
+    private VersionedLeaf<TKey, TValue> findLeafLatched(TKey key, boolean rightMost) {
+        long rootStamp = rootLatch.readLock();
+        Node<TKey> node = this.root;
+        long stamp = node.latch.readLock();
+        rootLatch.unlockRead(rootStamp);
+        try {
+            while (node instanceof InternalNode<TKey> internal) {
+                Node<TKey> child = internal.getChild(childIndex(internal, key, rightMost));
+                long childStamp = child.latch.readLock();
+                node.latch.unlockRead(stamp);
+                node = child;
+                stamp = childStamp;
+            }
+        } catch (RuntimeException e) {
+            node.latch.unlockRead(stamp);
+            throw e;
+        }
+        // releases the read latch, the version stays valid until the next writer
+        return new VersionedLeaf<>((LeafNode<TKey, TValue>) node, node.latch.tryConvertToOptimisticRead(stamp));
+    }
+
+    private int childIndex(InternalNode<TKey> internal, TKey key, boolean rightMost) {
+        if (key == null)
+            return rightMost ? internal.getNumberOfKeys() : 0;
+        return internal.search(key);
+    }
+
+    /**
+     * Finds the leaf which should contain the key optimistically and write latches it when {@code canChange}
+     * accepts it, the leaf then holds the key range it was found for. Returns null otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private LeafNode<TKey, TValue> latchLeafIf(TKey key, Predicate<LeafNode<TKey, TValue>> canChange) {
+        VersionedLeaf<TKey, TValue> found = findLeaf(key);
+        LeafNode<TKey, TValue> leaf = found.leaf();
+        if (leaf.latch.tryConvertToWriteLock(found.stamp()) == 0)
+            return null;
+        if (!canChange.test(leaf)) {
+            leaf.latch.tryUnlockWrite();
+            return null;
+        }
+        return leaf;
+    }
+
+    private record VersionedLeaf<TKey extends Comparable<TKey>, TValue>(LeafNode<TKey, TValue> leaf, long stamp) {
+    }
+
+    /**
+     * The write latches held by a writer latching down from the root, released all at once
+     * when the node below can take the change on its own.
+     */
+    private final class WriteLatches {
+        private final List<Node<TKey>> nodes = new ArrayList<>();
+        private boolean rootLatched;
+
+        void latchRoot() {
+            rootLatch.writeLock();
+            rootLatched = true;
+        }
+
+        void releaseRoot() {
+            if (rootLatched) {
+                rootLatch.tryUnlockWrite();
+                rootLatched = false;
+            }
+        }
+
+        void latch(Node<TKey> node) {
+            node.latch.writeLock();
+            nodes.add(node);
+        }
+
+        // adds a node the caller already latched
+        void add(Node<TKey> node) {
+            if (node != null)
+                nodes.add(node);
+        }
+
+        void releaseAll() {
+            releaseRoot();
+            for (Node<TKey> node : nodes) {
+                node.latch.tryUnlockWrite();
+            }
+            nodes.clear();
         }
-        return (LeafNode<TKey, TValue>) node;
     }
-}
\ No newline at end of file
+}
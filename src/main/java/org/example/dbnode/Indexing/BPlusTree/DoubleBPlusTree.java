@@ -0,0 +1,16 @@
+package org.example.dbnode.Indexing.BPlusTree;
+
+/**
+ * A B+ tree keyed by doubles. Its nodes keep their keys in double arrays rather than one boxed Double per key.
+ * @param <TValue> the content type of the value
+ */
+public class DoubleBPlusTree<TValue> extends BPlusTree<Double, TValue> {
+
+    public DoubleBPlusTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    public DoubleBPlusTree(int order) {
+        super(order, new DoubleNodeKeys(checkOrder(order) + 1));
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.dbnode.Indexing.BPlusTree;
+
+import java.util.Arrays;
+
+// Arrays.binarySearch orders doubles like Double.compareTo, -0.0 before 0.0 and NaN last
+class DoubleNodeKeys extends NodeKeys<Double> {
+    private final double[] keys;
+
+    DoubleNodeKeys(int capacity) {
+        this.keys = new double[capacity];
+    }
+
+    @Override
+    int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    Double get(int index) {
+        return keys[index];
+    }
+
+    @Override
+    void set(int index, Double key) {
+        keys[index] = key == null ? 0 : key;
+    }
+
+    @Override
+    int binarySearch(int count, Double key) {
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    @Override
+    NodeKeys<Double> newEmpty() {
+        return new DoubleNodeKeys(keys.length);
+    }
+}
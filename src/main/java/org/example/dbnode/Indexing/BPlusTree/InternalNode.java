@@ -1,12 +1,11 @@
 package org.example.dbnode.Indexing.BPlusTree;
 
 class InternalNode<T extends Comparable<T>> extends Node<T>{
-    protected final static int NODE_CAPACITY = 4;
     protected Object[] childrenPointers;
 
-    public InternalNode() {
-        this.nodeKeys = new Object[NODE_CAPACITY + 1];
-        this.childrenPointers = new Object[NODE_CAPACITY + 2];
+    public InternalNode(NodeKeys<T> nodeKeys) {
+        this.nodeKeys = nodeKeys;
+        this.childrenPointers = new Object[nodeKeys.capacity() + 1];
     }
 
     @SuppressWarnings("unchecked")
@@ -22,17 +21,9 @@ class InternalNode<T extends Comparable<T>> extends Node<T>{
 
     @Override
     public int search(T key) {
-        int index;
-        for (index = 0; index < this.getNumberOfKeys(); ++index) {
-            int cmp = this.getKeyAt(index).compareTo(key);
-            if (cmp == 0) {
-                return index + 1;
-            } else if (cmp > 0) {
-                return index;
-            }
-        }
-
-        return index;
+        int index = this.nodeKeys.binarySearch(this.getNumberOfKeys(), key);
+        // an equal key sends the search to its right child
+        return index >= 0 ? index + 1 : -index - 1;
     }
 
 
@@ -61,7 +52,7 @@ class InternalNode<T extends Comparable<T>> extends Node<T>{
     protected Node<T> split() {
         int midIndex = this.getNumberOfKeys() / 2;
 
-        InternalNode<T> newRNode = new InternalNode<>();
+        InternalNode<T> newRNode = new InternalNode<>(this.nodeKeys.newEmpty());
         for (int i = midIndex + 1; i < this.getNumberOfKeys(); ++i) {
             newRNode.setKey(i - midIndex - 1, this.getKeyAt(i));
             this.setKey(i, null);
@@ -109,6 +100,19 @@ class InternalNode<T extends Comparable<T>> extends Node<T>{
     }
 
 
+    // removes the first key along with the child on its left, the one lent to the left sibling
+    private void deleteFirst() {
+        for (int i = 0; i < this.getNumberOfKeys() - 1; ++i) {
+            this.setKey(i, this.getKeyAt(i + 1));
+        }
+        for (int i = 0; i < this.getNumberOfKeys(); ++i) {
+            this.setChild(i, this.getChild(i + 1));
+        }
+        this.setKey(this.getNumberOfKeys() - 1, null);
+        this.setChild(this.getNumberOfKeys(), null);
+        --this.numberOfKeys;
+    }
+
     @Override
     protected void transferKeys(Node<T> borrower, Node<T> donor, int transferIndex) {
         int borrowerChildIndex = 0;
@@ -139,6 +143,11 @@ class InternalNode<T extends Comparable<T>> extends Node<T>{
         // remove the sink key, keep the left child and abandon the right child
         this.deleteAt(index);
 
+        // with an odd order two internal children can add up to one key too many, split them again
+        if (leftChild.isNodeOverflowing()) {
+            return leftChild.handleOverflow();
+        }
+
         // check whether you need to propagate borrow or fusion to parent
         if (this.isUnderflow()) {
             if (this.getParentNode() == null) {
@@ -188,7 +197,7 @@ class InternalNode<T extends Comparable<T>> extends Node<T>{
             this.setChild(index + 1, siblingNode.getChild(transferIndex));
             this.numberOfKeys += 1;
             upKey = siblingNode.getKeyAt(0);
-            siblingNode.deleteAt(transferIndex);
+            siblingNode.deleteFirst();
         } else {
             // borrow the last key from left sibling, insert it to head
             this.insertAt(0, middleKey, siblingNode.getChild(transferIndex + 1), this.getChild(0));
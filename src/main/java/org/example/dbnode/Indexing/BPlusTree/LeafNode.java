@@ -2,12 +2,11 @@ package org.example.dbnode.Indexing.BPlusTree;
 
 
 class LeafNode<T extends Comparable<T>, TValue> extends Node<T> {
-    protected final static int LEAF_ORDER = 4;
     private final Object[] values;
 
-    public LeafNode() {
-        this.nodeKeys = new Object[LEAF_ORDER + 1];
-        this.values = new Object[LEAF_ORDER + 1];
+    public LeafNode(NodeKeys<T> nodeKeys) {
+        this.nodeKeys = nodeKeys;
+        this.values = new Object[nodeKeys.capacity()];
     }
 
     @SuppressWarnings("unchecked")
@@ -21,25 +20,24 @@ class LeafNode<T extends Comparable<T>, TValue> extends Node<T> {
 
     @Override
     public int search(T key) {
-        for (int i = 0; i < this.getNumberOfKeys(); ++i) {
-            int cmp = this.getKeyAt(i).compareTo(key);
-            if (cmp == 0) {
-                return i;
-            } else if (cmp > 0) {
-                return -1;
-            }
-        }
-        return -1;
+        int index = this.nodeKeys.binarySearch(this.getNumberOfKeys(), key);
+        return index >= 0 ? index : -1;
     }
 
 
     /* The codes below are used to support insertion operation */
 
-    public void insertKey(T key, TValue value) {
-        int index = 0;
-        while (index < this.getNumberOfKeys() && this.getKeyAt(index).compareTo(key) < 0)
-            ++index;
-        this.insertAt(index, key, value);
+    /**
+     * Returns true when the key is new to the node, an existing key only gets its value replaced.
+     */
+    public boolean insertKey(T key, TValue value) {
+        int index = this.nodeKeys.binarySearch(this.getNumberOfKeys(), key);
+        if (index >= 0) {
+            this.setValue(index, value);
+            return false;
+        }
+        this.insertAt(-index - 1, key, value);
+        return true;
     }
 
     private void insertAt(int index, T key, TValue value) {
@@ -56,6 +54,34 @@ class LeafNode<T extends Comparable<T>, TValue> extends Node<T> {
     }
 
 
+    /**
+     * Adds a key greater than every key of the node at its end, used by bulk loading.
+     */
+    void appendKey(T key, TValue value) {
+        this.setKey(this.getNumberOfKeys(), key);
+        this.setValue(this.getNumberOfKeys(), value);
+        ++this.numberOfKeys;
+    }
+
+    /**
+     * Moves the last {@code count} keys of this node to the front of its right neighbour, used by bulk loading.
+     */
+    void moveLastKeysTo(LeafNode<T, TValue> right, int count) {
+        for (int i = right.getNumberOfKeys() - 1; i >= 0; --i) {
+            right.setKey(i + count, right.getKeyAt(i));
+            right.setValue(i + count, right.getValue(i));
+        }
+        int from = this.getNumberOfKeys() - count;
+        for (int i = 0; i < count; ++i) {
+            right.setKey(i, this.getKeyAt(from + i));
+            right.setValue(i, this.getValue(from + i));
+            this.setKey(from + i, null);
+            this.setValue(from + i, null);
+        }
+        right.numberOfKeys += count;
+        this.numberOfKeys -= count;
+    }
+
     /**
      * When splits a leaf node, the middle key is kept on new node and be pushed to parent node.
      */
@@ -63,7 +89,7 @@ class LeafNode<T extends Comparable<T>, TValue> extends Node<T> {
     protected Node<T> split() {
         int midIndex = this.getNumberOfKeys() / 2;
 
-        LeafNode<T, TValue> newRNode = new LeafNode<>();
+        LeafNode<T, TValue> newRNode = new LeafNode<>(this.nodeKeys.newEmpty());
         for (int i = midIndex; i < this.getNumberOfKeys(); ++i) {
             newRNode.setKey(i - midIndex, this.getKeyAt(i));
             newRNode.setValue(i - midIndex, this.getValue(i));
@@ -0,0 +1,16 @@
+package org.example.dbnode.Indexing.BPlusTree;
+
+/**
+ * A B+ tree keyed by longs. Its nodes keep their keys in long arrays rather than one boxed Long per key.
+ * @param <TValue> the content type of the value
+ */
+public class LongBPlusTree<TValue> extends BPlusTree<Long, TValue> {
+
+    public LongBPlusTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    public LongBPlusTree(int order) {
+        super(order, new LongNodeKeys(checkOrder(order) + 1));
+    }
+}
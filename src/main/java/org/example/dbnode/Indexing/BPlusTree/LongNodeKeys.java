@@ -0,0 +1,36 @@
+package org.example.dbnode.Indexing.BPlusTree;
+
+import java.util.Arrays;
+
+class LongNodeKeys extends NodeKeys<Long> {
+    private final long[] keys;
+
+    LongNodeKeys(int capacity) {
+        this.keys = new long[capacity];
+    }
+
+    @Override
+    int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    Long get(int index) {
+        return keys[index];
+    }
+
+    @Override
+    void set(int index, Long key) {
+        keys[index] = key == null ? 0 : key;
+    }
+
+    @Override
+    int binarySearch(int count, Long key) {
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    @Override
+    NodeKeys<Long> newEmpty() {
+        return new LongNodeKeys(keys.length);
+    }
+}
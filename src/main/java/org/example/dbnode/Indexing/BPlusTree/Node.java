@@ -1,12 +1,15 @@
 package org.example.dbnode.Indexing.BPlusTree;
 
+import java.util.concurrent.locks.StampedLock;
 
 abstract class Node<T extends Comparable<T>> {
-    protected Object[] nodeKeys;
+    protected NodeKeys<T> nodeKeys;
     protected int numberOfKeys;
     protected Node<T> parentNode;
     protected Node<T> leftSibling;
     protected Node<T> rightSibling;
+    // version latch, writers hold it exclusively while changing the node and readers validate against it
+    final StampedLock latch = new StampedLock();
 
 
     protected Node() {
@@ -16,17 +19,21 @@ abstract class Node<T extends Comparable<T>> {
         this.rightSibling = null;
     }
 
+    // one slot is kept spare so a node can hold the overflowing key until it is split
+    public int getOrder() {
+        return this.nodeKeys.capacity() - 1;
+    }
+
     public int getNumberOfKeys() {
         return this.numberOfKeys;
     }
 
-    @SuppressWarnings("unchecked")
     public T getKeyAt(int index) {
-        return (T) this.nodeKeys[index];
+        return this.nodeKeys.get(index);
     }
 
     public void setKey(int index, T key) {
-        this.nodeKeys[index] = key;
+        this.nodeKeys.set(index, key);
     }
 
     public Node<T> getParentNode() {
@@ -50,7 +57,7 @@ abstract class Node<T extends Comparable<T>> {
     /* The codes below are used to support insertion operation */
 
     public boolean isNodeOverflowing() {
-        return this.getNumberOfKeys() == this.nodeKeys.length;
+        return this.getNumberOfKeys() == this.nodeKeys.capacity();
     }
 
     public Node<T> handleOverflow() {
@@ -58,14 +65,15 @@ abstract class Node<T extends Comparable<T>> {
         T upKey = this.getKeyAt(midIndex);
         Node<T> newRNode = this.split();
         if (this.getParentNode() == null) {
-            this.setParent(new InternalNode<>());
+            this.setParent(new InternalNode<>(this.nodeKeys.newEmpty()));
         }
         newRNode.setParent(this.getParentNode());
         // maintain links of sibling nodes
         newRNode.setLeftSibling(this);
         newRNode.setRightSibling(this.rightSibling);
-        if (this.getRightSibling() != null)
-            this.getRightSibling().setLeftSibling(newRNode);
+        // the raw link, the right neighbour may hang under another parent and still needs its back link updated
+        if (this.rightSibling != null)
+            this.rightSibling.setLeftSibling(newRNode);
         this.setRightSibling(newRNode);
         // push up a key to parent internal node
         return this.getParentNode().promoteKey(upKey, this, newRNode);
@@ -79,11 +87,11 @@ abstract class Node<T extends Comparable<T>> {
     /* The codes below are used to support deletion operation */
 
     public boolean isUnderflow() {
-        return this.getNumberOfKeys() < (this.nodeKeys.length / 2);
+        return this.getNumberOfKeys() < (this.nodeKeys.capacity() / 2);
     }
 
     public boolean canLendAKey() {
-        return this.getNumberOfKeys() > (this.nodeKeys.length / 2);
+        return this.getNumberOfKeys() > (this.nodeKeys.capacity() / 2);
     }
 
     public Node<T> getLeftSibling() {
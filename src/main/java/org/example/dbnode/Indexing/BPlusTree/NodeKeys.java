@@ -0,0 +1,24 @@
+package org.example.dbnode.Indexing.BPlusTree;
+
+/**
+ * The key slots of a node, one more than the order so a node can hold the overflowing key until it is split.
+ * Keys are kept in an Object[] by default. Numeric trees keep them in primitive arrays, so no key is a heap
+ * object of its own and comparisons never unbox.
+ */
+abstract class NodeKeys<T extends Comparable<T>> {
+
+    abstract int capacity();
+
+    abstract T get(int index);
+
+    // a null key empties the slot
+    abstract void set(int index, T key);
+
+    /**
+     * Searches the first {@code count} keys with the contract of {@link java.util.Arrays#binarySearch(Object[], int, int, Object)}.
+     */
+    abstract int binarySearch(int count, T key);
+
+    // empty slots of the same kind and capacity, for a new node of the same tree
+    abstract NodeKeys<T> newEmpty();
+}
@@ -0,0 +1,37 @@
+package org.example.dbnode.Indexing.BPlusTree;
+
+import java.util.Arrays;
+
+class ObjectNodeKeys<T extends Comparable<T>> extends NodeKeys<T> {
+    private final Object[] keys;
+
+    ObjectNodeKeys(int capacity) {
+        this.keys = new Object[capacity];
+    }
+
+    @Override
+    int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        return (T) keys[index];
+    }
+
+    @Override
+    void set(int index, T key) {
+        keys[index] = key;
+    }
+
+    @Override
+    int binarySearch(int count, T key) {
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    @Override
+    NodeKeys<T> newEmpty() {
+        return new ObjectNodeKeys<>(keys.length);
+    }
+}
@@ -1,33 +1,99 @@
 package org.example.dbnode.Indexing;
 import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
+import org.example.dbnode.Storage.DocumentLocation;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CollectionIndex {
-    private BPlusTree<String, Integer> bPlusTree;
+    private volatile BPlusTree<String, DocumentLocation> bPlusTree;
+    // bytes of the live documents, kept up to date by every location change so the compactor never walks the tree
+    private final AtomicLong liveBytes = new AtomicLong();
+    // odd while a compaction moves the documents, a read that saw it change may have used a location of the old files
+    private final AtomicLong relocationStamp = new AtomicLong();
 
     public CollectionIndex() {
-        this.bPlusTree = new BPlusTree<>();
+        this(BPlusTree.DEFAULT_ORDER);
+    }
+
+    public CollectionIndex(int order) {
+        this.bPlusTree = new BPlusTree<>(order);
     }
 
-    public BPlusTree<String, Integer> getBPlusTree() {
+    public BPlusTree<String, DocumentLocation> getBPlusTree() {
         return bPlusTree;
     }
 
-    public void setBPlusTree(BPlusTree<String, Integer> bPlusTree) {
+    public void setBPlusTree(BPlusTree<String, DocumentLocation> bPlusTree) {
         this.bPlusTree = bPlusTree;
+        long bytes = 0;
+        Iterator<Map.Entry<String, DocumentLocation>> entries = bPlusTree.range(null, null, true);
+        while (entries.hasNext()) {
+            bytes += lengthOf(entries.next().getValue());
+        }
+        liveBytes.set(bytes);
+    }
+
+    /**
+     * Replaces every entry with the given locations, the tree is bulk loaded on the side and swapped in.
+     */
+    public void load(Map<String, DocumentLocation> locations) {
+        BPlusTree<String, DocumentLocation> loaded = new BPlusTree<>(bPlusTree.getOrder());
+        loaded.bulkLoad(locations);
+        this.bPlusTree = loaded;
+        liveBytes.set(locations.values().stream().mapToLong(CollectionIndex::lengthOf).sum());
     }
 
-    public void insert(String key, Integer value) {
+    public void insert(String key, DocumentLocation value) {
+        DocumentLocation previous = bPlusTree.search(key);
         bPlusTree.insert(key, value);
+        liveBytes.addAndGet(lengthOf(value) - lengthOf(previous));
     }
 
     public void delete(String key) {
-        bPlusTree.delete(key);
+        DocumentLocation previous = bPlusTree.search(key);
+        if (previous != null) {
+            bPlusTree.delete(key);
+            liveBytes.addAndGet(-lengthOf(previous));
+        }
     }
 
-    public Integer search(String key) {
+    public DocumentLocation search(String key) {
         return bPlusTree.search(key);
     }
     public int getSize(){
-        return bPlusTree.getAllEntries().size();
+        return (int) bPlusTree.size();
+    }
+
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    public long getRelocationStamp() {
+        return relocationStamp.get();
+    }
+
+    public static boolean isRelocating(long stamp) {
+        return (stamp & 1) != 0;
+    }
+
+    /**
+     * Called before the files of the collection are replaced, readers that do not hold the collection lock
+     * retry any read that overlapped the relocation.
+     */
+    public void beginRelocation() {
+        relocationStamp.updateAndGet(stamp -> isRelocating(stamp) ? stamp : stamp + 1);
+    }
+
+    /**
+     * Called once the new locations are loaded, or the relocation was abandoned.
+     */
+    public void endRelocation() {
+        relocationStamp.updateAndGet(stamp -> isRelocating(stamp) ? stamp + 1 : stamp);
+    }
+
+    private static long lengthOf(DocumentLocation location) {
+        return location == null ? 0 : Math.max(location.getLength(), 0);
     }
 }
\ No newline at end of file
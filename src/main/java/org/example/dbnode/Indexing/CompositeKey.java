@@ -0,0 +1,90 @@
+package org.example.dbnode.Indexing;
+
+import java.util.Arrays;
+
+/**
+ * The values of several properties of a document, ordered by the first value, then the second and so on.
+ * <p>
+ * Range bounds over a prefix of the properties are built with {@link #lowest} and {@link #highest}, which sort before
+ * and after every value they stand in for, so one walk of the tree covers every key sharing the prefix.
+ */
+public final class CompositeKey implements Comparable<CompositeKey> {
+
+    private static final Object LOWEST = new Object();
+    private static final Object HIGHEST = new Object();
+
+    private final Object[] values;
+
+    private CompositeKey(Object[] values) {
+        this.values = values;
+    }
+
+    public static CompositeKey of(Object... values) {
+        return new CompositeKey(values.clone());
+    }
+
+    /**
+     * Returns the key sorting before every key starting with the given values.
+     */
+    public static CompositeKey lowest(Object... prefix) {
+        return padded(prefix, LOWEST);
+    }
+
+    /**
+     * Returns the key sorting after every key starting with the given values.
+     */
+    public static CompositeKey highest(Object... prefix) {
+        return padded(prefix, HIGHEST);
+    }
+
+    private static CompositeKey padded(Object[] prefix, Object sentinel) {
+        Object[] values = Arrays.copyOf(prefix, prefix.length + 1);
+        values[prefix.length] = sentinel;
+        return new CompositeKey(values);
+    }
+
+    /**
+     * Returns the value of the property at the position.
+     */
+    public Object get(int position) {
+        return values[position];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compareTo(CompositeKey other) {
+        int length = Math.min(values.length, other.values.length);
+        for (int i = 0; i < length; i++) {
+            Object value = values[i], otherValue = other.values[i];
+            if (value == otherValue) {
+                continue;
+            }
+            if (value == LOWEST || otherValue == HIGHEST) {
+                return -1;
+            }
+            if (value == HIGHEST || otherValue == LOWEST) {
+                return 1;
+            }
+            int comparison = ((Comparable<Object>) value).compareTo(otherValue);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(values.length, other.values.length);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompositeKey key && Arrays.equals(values, key.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.dbnode.Indexing;
+
+import lombok.Getter;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An inverted index over several properties of a collection, keyed by their values in declaration order. It answers
+ * equality on a prefix of its properties, optionally followed by a range on the next one, with a single walk of
+ * consecutive leaves. Documents missing one of the properties are left out.
+ */
+@Getter
+public class CompoundIndex {
+    private final List<String> propertyNames;
+    private final InvertedPropertyIndex<CompositeKey> index;
+
+    public CompoundIndex(List<String> propertyNames, DocumentOrdinals ordinals) {
+        this.propertyNames = List.copyOf(propertyNames);
+        this.index = new InvertedPropertyIndex<>(ordinals);
+    }
+
+    public void insert(Object[] values, String documentId) {
+        index.insert(CompositeKey.of(values), documentId);
+    }
+
+    public void remove(Object[] values, String documentId) {
+        index.remove(CompositeKey.of(values), documentId);
+    }
+
+    /**
+     * Adds to the bitmap the ordinals of the documents whose leading properties equal the prefix and, when bounds are
+     * given, whose next property falls between them. A null bound leaves that side open.
+     */
+    public void addPostings(Object[] prefix, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive, BitSet target) {
+        boolean ranged = lower != null || upper != null;
+        if (!ranged && prefix.length == propertyNames.size()) {
+            index.postings(CompositeKey.of(prefix)).addTo(target);
+            return;
+        }
+        CompositeKey from, to;
+        if (!ranged) {
+            from = CompositeKey.lowest(prefix);
+            to = CompositeKey.highest(prefix);
+        } else {
+            from = lower == null ? CompositeKey.lowest(prefix) : bound(prefix, lower, !lowerInclusive);
+            to = upper == null ? CompositeKey.highest(prefix) : bound(prefix, upper, upperInclusive);
+        }
+        index.range(from, lowerInclusive || lower == null, to, upperInclusive || upper == null)
+                .forEachRemaining(posting -> posting.getValue().addTo(target));
+    }
+
+    // the prefix followed by the bound value, then padded past or before every key carrying that value
+    private CompositeKey bound(Object[] prefix, Object value, boolean past) {
+        Object[] values = new Object[prefix.length + 1];
+        System.arraycopy(prefix, 0, values, 0, prefix.length);
+        values[prefix.length] = value;
+        if (values.length == propertyNames.size()) {
+            return CompositeKey.of(values);
+        }
+        return past ? CompositeKey.highest(values) : CompositeKey.lowest(values);
+    }
+}
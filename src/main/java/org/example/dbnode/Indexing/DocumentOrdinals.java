@@ -0,0 +1,112 @@
+package org.example.dbnode.Indexing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense int numbers given to the documents of a collection, so posting lists can hold ordinals instead of ids.
+ * <p>
+ * An ordinal is taken the first time a document reaches an index and given up when it leaves the collection,
+ * once the document is out of every posting list. Given up ordinals are handed out again lowest first, so the
+ * numbering stays dense and the bitmaps short however many documents came and went.
+ * <p>
+ * Readers take postings without the lock, so a bitmap taken before a document left may still hold its ordinal. Code
+ * matching postings against each other or turning them back into ids does it between {@link #beginRead} and
+ * {@link #endRead}: an ordinal given up while a read is under way is only handed out again once no read is, so
+ * every ordinal of a bitmap stands for the same document until the read ends.
+ */
+public class DocumentOrdinals {
+
+    private final Map<String, Integer> ordinals;
+    // written under the lock, the array is replaced when it grows so readers always see a complete one
+    private volatile String[] documentIds;
+    private final BitSet live;
+    private final BitSet free;
+    // given up while reads were under way, free once none is
+    private final BitSet retired;
+    private int readers;
+    private int nextOrdinal;
+
+    public DocumentOrdinals() {
+        this.ordinals = new ConcurrentHashMap<>();
+        this.documentIds = new String[64];
+        this.live = new BitSet();
+        this.free = new BitSet();
+        this.retired = new BitSet();
+    }
+
+    public int ordinalOf(String documentId) {
+        Integer ordinal = ordinals.get(documentId);
+        return ordinal != null ? ordinal : assign(documentId);
+    }
+
+    /**
+     * Returns the ordinal of the document, or -1 when it has none.
+     */
+    public int find(String documentId) {
+        Integer ordinal = ordinals.get(documentId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Returns the id of the document behind the ordinal, or null when it left the collection.
+     */
+    public String documentId(int ordinal) {
+        String[] ids = documentIds;
+        return ordinal < ids.length ? ids[ordinal] : null;
+    }
+
+    public synchronized void release(String documentId) {
+        Integer ordinal = ordinals.remove(documentId);
+        if (ordinal != null) {
+            documentIds[ordinal] = null;
+            live.clear(ordinal);
+            (readers == 0 ? free : retired).set(ordinal);
+        }
+    }
+
+    /**
+     * Keeps the ordinals given up from here on from being handed out again until the matching {@link #endRead}.
+     */
+    public synchronized void beginRead() {
+        readers++;
+    }
+
+    public synchronized void endRead() {
+        if (--readers == 0) {
+            free.or(retired);
+            retired.clear();
+        }
+    }
+
+    /**
+     * Returns the ordinals of every document currently numbered.
+     */
+    public synchronized BitSet liveOrdinals() {
+        return (BitSet) live.clone();
+    }
+
+    private synchronized int assign(String documentId) {
+        Integer existing = ordinals.get(documentId);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = free.nextSetBit(0);
+        if (ordinal >= 0) {
+            free.clear(ordinal);
+        } else {
+            ordinal = nextOrdinal++;
+        }
+        String[] ids = documentIds;
+        if (ordinal == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[ordinal] = documentId;
+        documentIds = ids;
+        live.set(ordinal);
+        ordinals.put(documentId, ordinal);
+        return ordinal;
+    }
+}
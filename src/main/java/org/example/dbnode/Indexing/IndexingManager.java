@@ -1,13 +1,23 @@
 package org.example.dbnode.Indexing;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.log4j.Log4j2;
 import org.example.dbnode.DatabaseDiskCRUD;
+import org.example.dbnode.Enum.StorageMode;
+import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Indexing.BPlusTree.DoubleBPlusTree;
+import org.example.dbnode.Indexing.BPlusTree.LongBPlusTree;
 import org.example.dbnode.DatabaseRegistry;
 import org.example.dbnode.Model.Document;
+import org.example.dbnode.Model.PropertyRange;
+import org.example.dbnode.Model.PropertySort;
 import org.example.dbnode.Model.Schema;
 import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Storage.DocumentLocation;
+import org.example.dbnode.Storage.JsonArrayStorage;
+import org.example.dbnode.Storage.SegmentedLogStorage;
 import org.example.dbnode.Util.DataTypes.DataTypeCaster;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,27 +28,41 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
 @Log4j2
 @Component
 public class IndexingManager {
 
     private final Map<String, CollectionIndex> collectionsIndexMap;
     private final Map<String, PropertyIndex> propertyIndexMap;
-    private final Map<String, InvertedPropertyIndex> invertedPropertyIndexMap;
+    private final Map<String, InvertedPropertyIndex<?>> invertedPropertyIndexMap;
+    private final Map<String, DocumentOrdinals> documentOrdinalsMap;
+    private final Map<String, List<CompoundIndex>> compoundIndexMap;
+    private final Map<String, Set<String>> indexedPropertiesMap;
+    private final Map<String, Map<String, NgramIndex>> ngramIndexMap;
     private final DatabaseDiskCRUD databaseDiskCRUD;
     private final FileService fileService;
     private final DatabaseRegistry databaseRegistry;
     private final DataTypeCaster dataTypeCaster;
+    private final SegmentedLogStorage segmentedLogStorage;
+    private final JsonArrayStorage jsonArrayStorage;
 
     @Autowired
-    public IndexingManager(@Lazy DatabaseDiskCRUD databaseDiskCRUD, FileService fileService, @Lazy DatabaseRegistry databaseRegistry, DataTypeCaster dataTypeCaster) {
+    public IndexingManager(@Lazy DatabaseDiskCRUD databaseDiskCRUD, FileService fileService, @Lazy DatabaseRegistry databaseRegistry, DataTypeCaster dataTypeCaster, SegmentedLogStorage segmentedLogStorage, JsonArrayStorage jsonArrayStorage) {
         this.collectionsIndexMap = new ConcurrentHashMap<>();
         this.propertyIndexMap = new ConcurrentHashMap<>();
         this.invertedPropertyIndexMap = new ConcurrentHashMap<>();
+        this.documentOrdinalsMap = new ConcurrentHashMap<>();
+        this.compoundIndexMap = new ConcurrentHashMap<>();
+        this.indexedPropertiesMap = new ConcurrentHashMap<>();
+        this.ngramIndexMap = new ConcurrentHashMap<>();
         this.databaseDiskCRUD = databaseDiskCRUD;
         this.fileService = fileService;
         this.databaseRegistry = databaseRegistry;
         this.dataTypeCaster = dataTypeCaster;
+        this.segmentedLogStorage = segmentedLogStorage;
+        this.jsonArrayStorage = jsonArrayStorage;
     }
     
     public void init() throws ResourceNotFoundException {
@@ -49,6 +73,12 @@ public class IndexingManager {
         }
         for (String dbName : allDatabases) {
             loadAllIndexes(dbName);
+            for (String collectionName : databaseDiskCRUD.readCollections(dbName)) {
+                Schema schema = databaseDiskCRUD.getCollectionSchema(dbName, collectionName);
+                if (schema != null && schema.getStorage() == StorageMode.LOG && segmentedLogStorage.collectionExists(dbName, collectionName)) {
+                    loadCollectionIndexFromSegments(dbName, collectionName);
+                }
+            }
         }
     }
     public void createCollectionIndex(String databaseName, String collectionName) {
@@ -68,37 +98,113 @@ public class IndexingManager {
         return collectionIndex;
     }
 
-    public void insertDocumentIntoCollectionIndex(String databaseName , String collectionName, String documentId) throws ResourceNotFoundException {
+    public void insertDocumentIntoCollectionIndex(String databaseName , String collectionName, String documentId, DocumentLocation location) throws ResourceNotFoundException {
         CollectionIndex collectionIndex = getCollectionIndex(databaseName,collectionName);
-        Integer existingValue = collectionIndex.search(documentId);
+        DocumentLocation existingValue = collectionIndex.search(documentId);
         if (existingValue == null) {
-            int index = collectionIndex.getSize();
-            collectionIndex.insert(documentId, index);
-            String indexFilePath = fileService.getCollectionIndexFile(databaseName, collectionName).getPath();
-            fileService.appendToIndexFile(indexFilePath, documentId, String.valueOf(index));
+            collectionIndex.insert(documentId, location);
+            // Log collections rebuild their index from the segments on startup, no index file to maintain
+            if (!location.isInSegment()) {
+                fileService.appendCollectionIndexEntry(databaseName, collectionName, documentId, location.toString());
+            }
         }else {
             log.error("Entry already exists in the index for collection: " + collectionName);
         }
     }
 
+    /**
+     * Inserts a batch of new documents, their index file entries are appended with a single write.
+     */
+    public void insertDocumentsIntoCollectionIndex(String databaseName, String collectionName, Map<String, DocumentLocation> locations) throws ResourceNotFoundException {
+        CollectionIndex collectionIndex = getCollectionIndex(databaseName, collectionName);
+        Map<String, String> indexFileEntries = new LinkedHashMap<>();
+        for (Map.Entry<String, DocumentLocation> entry : locations.entrySet()) {
+            collectionIndex.insert(entry.getKey(), entry.getValue());
+            if (!entry.getValue().isInSegment()) {
+                indexFileEntries.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        if (!indexFileEntries.isEmpty()) {
+            fileService.appendCollectionIndexEntries(databaseName, collectionName, indexFileEntries);
+        }
+    }
+
+    public void relocateDocumentInCollectionIndex(String databaseName, String collectionName, String documentId, DocumentLocation location) throws ResourceNotFoundException {
+        CollectionIndex collectionIndex = getCollectionIndex(databaseName,collectionName);
+        collectionIndex.insert(documentId, location);
+        if (!location.isInSegment()) {
+            fileService.appendCollectionIndexEntry(databaseName, collectionName, documentId, location.toString());
+        }
+    }
+
+    /**
+     * Removes the document from the collection index, the other documents keep their locations
+     * since storages leave a tombstone behind instead of moving bytes.
+     */
     public void deleteDocumentFromCollectionIndex(String databaseName, String collectionName, String documentId) throws ResourceNotFoundException {
         CollectionIndex collectionIndex = getCollectionIndex(databaseName,collectionName);
-        Integer deletedIndex = collectionIndex.search(documentId);
+        DocumentLocation deletedLocation = collectionIndex.search(documentId);
 
-        if (deletedIndex == null) {
+        if (deletedLocation == null) {
             log.error("Document not found in the index, deletion failed.");
             throw new IllegalArgumentException("Document not found in the index.");
         }
 
         collectionIndex.delete(documentId);
-        updateIndexes(collectionIndex, deletedIndex);
-        fileService.rewriteIndexFile(databaseName, collectionName, collectionIndex);
+        getDocumentOrdinals(databaseName, collectionName).release(documentId);
+        if (!deletedLocation.isInSegment()) {
+            fileService.appendCollectionIndexEntry(databaseName, collectionName, documentId, FileService.DELETED_INDEX_ENTRY);
+        }
+    }
+
+    /**
+     * Records that the documents of the collection are about to move, before a compaction replaces its files.
+     * Readers retry the reads that overlap the move.
+     * Until {@link #replaceCollectionIndexLocations} rewrote the index file, a restart rebuilds the collection index
+     * from the collection file rather than trusting offsets that may point into the replaced one.
+     */
+    public void beginCollectionRelocation(String databaseName, String collectionName) throws ResourceNotFoundException, OperationFailedException {
+        getCollectionIndex(databaseName, collectionName).beginRelocation();
+        fileService.createCollectionRelocationMarker(databaseName, collectionName);
+    }
+
+    /**
+     * Lets the readers go back to the locations of the collection index, whether the relocation completed or not.
+     */
+    public void endCollectionRelocation(String databaseName, String collectionName) throws ResourceNotFoundException {
+        getCollectionIndex(databaseName, collectionName).endRelocation();
     }
+
+    /**
+     * Swaps in the locations a compaction produced, also squashing the index file down to one line per document.
+     */
+    public void replaceCollectionIndexLocations(String databaseName, String collectionName, Map<String, DocumentLocation> locations) throws ResourceNotFoundException, OperationFailedException {
+        CollectionIndex collectionIndex = getCollectionIndex(databaseName,collectionName);
+        // the locations cover every live document of the collection, rebuild the tree rather than updating it key by key
+        collectionIndex.load(locations);
+        boolean inSegments = locations.values().stream().anyMatch(DocumentLocation::isInSegment);
+        if (!inSegments) {
+            try {
+                fileService.rewriteIndexFile(databaseName, collectionName, collectionIndex);
+            } catch (IOException e) {
+                log.error("Failed to rewrite the index file of collection " + collectionName + ": " + e.getMessage());
+                throw new OperationFailedException("rewrite collection index");
+            }
+        }
+        fileService.deleteFile(fileService.getCollectionRelocationMarker(databaseName, collectionName));
+    }
+
     public boolean deleteCollectionIndex(String databaseName,String collectionName) {
         String key = getCollectionIndexKey(databaseName, collectionName);
         if (collectionsIndexMap.containsKey(key)) {
             // Delete all property indexes for this collection
             propertyIndexMap.entrySet().removeIf(entry -> entry.getKey().startsWith(key));
+            // the inverted indexes go along with the ordinals their postings refer to
+            invertedPropertyIndexMap.keySet().removeIf(propertyIndexKey -> propertyIndexKey.startsWith(key + "::"));
+            documentOrdinalsMap.remove(key);
+            compoundIndexMap.remove(key);
+            indexedPropertiesMap.remove(key);
+            ngramIndexMap.remove(key);
 
             collectionsIndexMap.remove(key);
             File indexesDirectory = fileService.getCollectionIndexesDirectory(databaseName, collectionName);
@@ -113,24 +219,8 @@ public class IndexingManager {
             return true;
     }
 
-    private void updateIndexes(@NotNull CollectionIndex collectionIndex, Integer deletedIndex) {
-        List<Map.Entry<String, Integer>> allEntries = new ArrayList<>(collectionIndex.getBPlusTree().getAllEntries());
-        Map<String, Integer> updatedEntries = new HashMap<>();
-
-        for (Map.Entry<String, Integer> entry : allEntries) {
-            int currentIndex = entry.getValue();
-            updatedEntries.put(entry.getKey(), currentIndex > deletedIndex ? currentIndex - 1 : currentIndex);
-        }
-
-        updatedEntries.remove(deletedIndex);
-        collectionIndex.getBPlusTree().clearTree();
-
-        for (Map.Entry<String, Integer> entry : updatedEntries.entrySet()) {
-            collectionIndex.insert(entry.getKey(), entry.getValue());
-        }
-    }
-    public Integer searchInCollectionIndex(String databaseName,String collectionName, String documentId) throws ResourceNotFoundException {
-        Integer result =  getCollectionIndex(databaseName,collectionName).search(documentId);
+    public DocumentLocation searchInCollectionIndex(String databaseName,String collectionName, String documentId) throws ResourceNotFoundException {
+        DocumentLocation result =  getCollectionIndex(databaseName,collectionName).search(documentId);
         if (result == null) {
             log.error("Document not found in the index.");
             throw new ResourceNotFoundException("Document (in " + collectionName+")");
@@ -151,18 +241,213 @@ public class IndexingManager {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
         if (!invertedPropertyIndexMap.containsKey(propertyIndexKey)) {
             String propertyDataType = dataTypeCaster.getDataType(databaseName, collectionName, propertyName);
-            InvertedPropertyIndex index;
+            DocumentOrdinals ordinals = getDocumentOrdinals(databaseName, collectionName);
+            InvertedPropertyIndex<?> index;
             switch (Objects.requireNonNull(propertyDataType).toUpperCase()) {
-                case "STRING" -> index = new InvertedPropertyIndex<String>();
-                case "INTEGER" -> index = new InvertedPropertyIndex<Integer>();
-                case "NUMBER" -> index = new InvertedPropertyIndex<Double>();
-                case "BOOLEAN" -> index = new InvertedPropertyIndex<Boolean>();
+                case "STRING" -> index = new InvertedPropertyIndex<String>(ordinals);
+                case "INTEGER" -> index = new InvertedPropertyIndex<>(new LongBPlusTree<PostingList>(), ordinals);
+                case "NUMBER" -> index = new InvertedPropertyIndex<>(new DoubleBPlusTree<PostingList>(), ordinals);
+                case "BOOLEAN" -> index = new InvertedPropertyIndex<Boolean>(ordinals);
                 default -> throw new IllegalArgumentException("Invalid data type for property: " + propertyName);
             }
             invertedPropertyIndexMap.put(propertyIndexKey, index);
         }
     }
 
+    /**
+     * Returns the ordinals the inverted indexes of the collection number its documents with.
+     */
+    public DocumentOrdinals getDocumentOrdinals(String databaseName, String collectionName) {
+        return documentOrdinalsMap.computeIfAbsent(getCollectionIndexKey(databaseName, collectionName), key -> new DocumentOrdinals());
+    }
+
+    /**
+     * Tells whether writes have to maintain indexes for the property, as the schema of the collection declares.
+     * The answer is kept until the declared indexes change, so unindexed properties cost a lookup per write.
+     */
+    public boolean isPropertyIndexed(String databaseName, String collectionName, String propertyName) throws ResourceNotFoundException {
+        String key = getCollectionIndexKey(databaseName, collectionName);
+        Set<String> indexedProperties = indexedPropertiesMap.get(key);
+        if (indexedProperties == null) {
+            Schema schema = databaseDiskCRUD.getCollectionSchema(databaseName, collectionName);
+            indexedProperties = schema == null ? Set.of() : schema.getIndexedProperties();
+            indexedPropertiesMap.put(key, indexedProperties);
+        }
+        return indexedProperties.contains(propertyName);
+    }
+
+    /**
+     * Forgets what was read from the schema about the indexes of the collection, compound indexes are rebuilt
+     * from the property indexes the next time they are used.
+     */
+    public void invalidateIndexDefinitions(String databaseName, String collectionName) {
+        String key = getCollectionIndexKey(databaseName, collectionName);
+        indexedPropertiesMap.remove(key);
+        compoundIndexMap.remove(key);
+        ngramIndexMap.remove(key);
+    }
+
+    /**
+     * Indexes a property of a collection holding documents already, from their document id to value pairs.
+     */
+    public void buildPropertyIndex(String databaseName, String collectionName, String propertyName, Map<String, String> values) throws ResourceNotFoundException {
+        String key = getPropertyIndexKey(databaseName, collectionName, propertyName);
+        PropertyIndex propertyIndex = new PropertyIndex();
+        propertyIndex.load(values);
+        fileService.createPropertyIndexFile(databaseName, collectionName, propertyName);
+        fileService.rewritePropertyIndexFile(fileService.getPropertyIndexFile(databaseName, collectionName, propertyName), propertyIndex);
+        propertyIndexMap.put(key, propertyIndex);
+
+        invertedPropertyIndexMap.remove(key);
+        createInvertedPropertyIndex(databaseName, collectionName, propertyName);
+        loadInvertedPropertyIndex(databaseName, collectionName, propertyName, invertedPropertyIndexMap.get(key), values);
+        log.info("built index on property: " + propertyName + " of collection: " + collectionName + " (" + values.size() + " documents)");
+    }
+
+    public void dropPropertyIndex(String databaseName, String collectionName, String propertyName) {
+        String key = getPropertyIndexKey(databaseName, collectionName, propertyName);
+        propertyIndexMap.remove(key);
+        invertedPropertyIndexMap.remove(key);
+        ngramIndexMap.remove(getCollectionIndexKey(databaseName, collectionName));
+        File indexFile = fileService.getPropertyIndexFile(databaseName, collectionName, propertyName);
+        if (indexFile.exists() && !fileService.deleteFile(indexFile)) {
+            log.error("Failed to delete index file of property: " + propertyName + " in collection: " + collectionName);
+        }
+        log.info("dropped index on property: " + propertyName + " of collection: " + collectionName);
+    }
+
+    /**
+     * Returns the compound indexes the schema of the collection declares. They are built from the property indexes
+     * the first time the collection asks for them and kept up to date by the document writes from then on.
+     */
+    public List<CompoundIndex> getCompoundIndexes(String databaseName, String collectionName) throws ResourceNotFoundException {
+        String key = getCollectionIndexKey(databaseName, collectionName);
+        List<CompoundIndex> compoundIndexes = compoundIndexMap.get(key);
+        if (compoundIndexes != null) {
+            return compoundIndexes;
+        }
+        synchronized (compoundIndexMap) {
+            compoundIndexes = compoundIndexMap.get(key);
+            if (compoundIndexes == null) {
+                compoundIndexes = buildCompoundIndexes(databaseName, collectionName);
+                compoundIndexMap.put(key, compoundIndexes);
+            }
+            return compoundIndexes;
+        }
+    }
+
+    private List<CompoundIndex> buildCompoundIndexes(String databaseName, String collectionName) throws ResourceNotFoundException {
+        Schema schema = databaseDiskCRUD.getCollectionSchema(databaseName, collectionName);
+        if (schema == null || schema.getCompoundIndexes().isEmpty()) {
+            return List.of();
+        }
+        List<CompoundIndex> compoundIndexes = new ArrayList<>();
+        for (List<String> propertyNames : schema.getCompoundIndexes()) {
+            CompoundIndex compoundIndex = new CompoundIndex(propertyNames, getDocumentOrdinals(databaseName, collectionName));
+            PropertyIndex leadingIndex = propertyIndexMap.get(getPropertyIndexKey(databaseName, collectionName, propertyNames.get(0)));
+            if (leadingIndex != null) {
+                Iterator<Map.Entry<String, String>> documents = leadingIndex.getBPlusTree().range(null, null, true);
+                while (documents.hasNext()) {
+                    String documentId = documents.next().getKey();
+                    Object[] values = compoundValues(databaseName, collectionName, propertyNames, propertyName -> {
+                        PropertyIndex propertyIndex = propertyIndexMap.get(getPropertyIndexKey(databaseName, collectionName, propertyName));
+                        return propertyIndex == null ? null : propertyIndex.search(documentId);
+                    });
+                    if (values != null) {
+                        compoundIndex.insert(values, documentId);
+                    }
+                }
+            }
+            compoundIndexes.add(compoundIndex);
+            log.info("built compound index on " + propertyNames + " for collection: " + collectionName);
+        }
+        return compoundIndexes;
+    }
+
+    /**
+     * Returns the ngram indexes the schema of the collection declares, by property. Like compound indexes they are
+     * built the first time the collection asks for them, from the inverted indexes of their properties.
+     */
+    public Map<String, NgramIndex> getNgramIndexes(String databaseName, String collectionName) throws ResourceNotFoundException {
+        String key = getCollectionIndexKey(databaseName, collectionName);
+        Map<String, NgramIndex> ngramIndexes = ngramIndexMap.get(key);
+        if (ngramIndexes != null) {
+            return ngramIndexes;
+        }
+        synchronized (ngramIndexMap) {
+            ngramIndexes = ngramIndexMap.get(key);
+            if (ngramIndexes == null) {
+                Schema schema = databaseDiskCRUD.getCollectionSchema(databaseName, collectionName);
+                ngramIndexes = new HashMap<>();
+                for (String propertyName : schema == null ? Set.<String>of() : schema.getNgramIndexes()) {
+                    NgramIndex ngramIndex = new NgramIndex(propertyName, getDocumentOrdinals(databaseName, collectionName));
+                    InvertedPropertyIndex<?> invertedPropertyIndex = invertedPropertyIndexMap.get(getPropertyIndexKey(databaseName, collectionName, propertyName));
+                    if (invertedPropertyIndex != null) {
+                        ngramIndex.load(asStringIndex(invertedPropertyIndex).range(null, true, null, true));
+                    }
+                    ngramIndexes.put(propertyName, ngramIndex);
+                    log.info("built ngram index on property: " + propertyName + " for collection: " + collectionName);
+                }
+                ngramIndexMap.put(key, ngramIndexes);
+            }
+            return ngramIndexes;
+        }
+    }
+
+    public void insertDocumentIntoCompoundIndexes(String databaseName, String collectionName, String documentId, ObjectNode documentContent) throws ResourceNotFoundException {
+        for (CompoundIndex compoundIndex : getCompoundIndexes(databaseName, collectionName)) {
+            Object[] values = compoundValues(databaseName, collectionName, compoundIndex.getPropertyNames(), documentValue(documentContent));
+            if (values != null) {
+                compoundIndex.insert(values, documentId);
+            }
+        }
+    }
+
+    public void deleteDocumentFromCompoundIndexes(String databaseName, String collectionName, String documentId, ObjectNode documentContent) throws ResourceNotFoundException {
+        for (CompoundIndex compoundIndex : getCompoundIndexes(databaseName, collectionName)) {
+            Object[] values = compoundValues(databaseName, collectionName, compoundIndex.getPropertyNames(), documentValue(documentContent));
+            if (values != null) {
+                compoundIndex.remove(values, documentId);
+            }
+        }
+    }
+
+    /**
+     * Adds to the bitmap the ordinals of the documents whose leading properties in the compound index equal the given
+     * values and, when a range is given, whose next property falls in it.
+     */
+    public void addCompoundPostings(String databaseName, String collectionName, CompoundIndex compoundIndex, List<String> prefixValues, PropertyRange range, BitSet ordinals) throws ResourceNotFoundException {
+        List<String> propertyNames = compoundIndex.getPropertyNames();
+        Object[] prefix = new Object[prefixValues.size()];
+        for (int i = 0; i < prefix.length; i++) {
+            prefix[i] = dataTypeCaster.castToDataType(prefixValues.get(i), databaseName, collectionName, propertyNames.get(i));
+        }
+        Object lower = null, upper = null;
+        if (range != null) {
+            String rangedProperty = propertyNames.get(prefix.length);
+            lower = range.getLower() == null ? null : dataTypeCaster.castToDataType(range.getLower(), databaseName, collectionName, rangedProperty);
+            upper = range.getUpper() == null ? null : dataTypeCaster.castToDataType(range.getUpper(), databaseName, collectionName, rangedProperty);
+        }
+        compoundIndex.addPostings(prefix, lower, range != null && range.isLowerInclusive(), upper, range != null && range.isUpperInclusive(), ordinals);
+    }
+
+    // the cast values of the properties, or null when the document misses one of them
+    private Object[] compoundValues(String databaseName, String collectionName, List<String> propertyNames, Function<String, String> valueOf) throws ResourceNotFoundException {
+        Object[] values = new Object[propertyNames.size()];
+        for (int i = 0; i < values.length; i++) {
+            String value = valueOf.apply(propertyNames.get(i));
+            if (value == null || value.equals("null")) {
+                return null;
+            }
+            values[i] = dataTypeCaster.castToDataType(value, databaseName, collectionName, propertyNames.get(i));
+        }
+        return values;
+    }
+
+    private static Function<String, String> documentValue(ObjectNode documentContent) {
+        return propertyName -> documentContent.hasNonNull(propertyName) ? documentContent.get(propertyName).toString() : null;
+    }
+
     public PropertyIndex getPropertyIndex(String databaseName,String collectionName, String propertyName) throws ResourceNotFoundException {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
         PropertyIndex index = propertyIndexMap.get(propertyIndexKey);
@@ -172,9 +457,9 @@ public class IndexingManager {
         return index;
     }
 
-    public InvertedPropertyIndex getInvertedPropertyIndex(String databaseName, String collectionName, String propertyName) throws ResourceNotFoundException {
+    public InvertedPropertyIndex<?> getInvertedPropertyIndex(String databaseName, String collectionName, String propertyName) throws ResourceNotFoundException {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
-        InvertedPropertyIndex invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
+        InvertedPropertyIndex<?> invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
         if (invertedPropertyIndex == null) {
             throw new ResourceNotFoundException("Inverted Property Index");
         }
@@ -197,10 +482,32 @@ public class IndexingManager {
             log.error("Entry already exists in property index for collection: " + collectionName + " property: " + propertyName);
         }
     }
-    @SuppressWarnings("unchecked")
+    /**
+     * Inserts the property values of a batch of documents, keyed by document id, rewriting the index file once.
+     */
+    public void insertIntoPropertyIndex(String databaseName, String collectionName, String propertyName, Map<String, String> propertyValues) {
+        String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
+        PropertyIndex propertyIndex = propertyIndexMap.get(propertyIndexKey);
+        if(propertyIndex == null){
+            createPropertyIndex(databaseName,collectionName,propertyName);
+            propertyIndex = propertyIndexMap.get(propertyIndexKey);
+        }
+        Map<String, String> changedValues = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : propertyValues.entrySet()) {
+            if (!entry.getValue().equals(propertyIndex.search(entry.getKey()))) {
+                propertyIndex.insert(entry.getKey(), entry.getValue());
+                changedValues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!changedValues.isEmpty()) {
+            String indexFilePath = fileService.getPropertyIndexFile(databaseName, collectionName, propertyName).getPath();
+            fileService.appendToIndexFile(indexFilePath, changedValues);
+            log.info("Inserted " + changedValues.size() + " entries in property index for collection: " + collectionName + " property: " + propertyName);
+        }
+    }
     public void insertIntoInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, String propertyValue, String documentId) {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
-        InvertedPropertyIndex invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
+        InvertedPropertyIndex<?> invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
         if(invertedPropertyIndex == null){
             try {
                 createInvertedPropertyIndex(databaseName,collectionName,propertyName);
@@ -213,16 +520,14 @@ public class IndexingManager {
 
         try {
             Object propertyValueCasted = dataTypeCaster.castToDataType(propertyValue, databaseName, collectionName, propertyName);
-            if (propertyValueCasted instanceof String) {
-                invertedPropertyIndex.insert((String) propertyValueCasted, documentId);
-            } else if (propertyValueCasted instanceof Integer) {
-                invertedPropertyIndex.insert((Integer) propertyValueCasted, documentId);
-            } else if (propertyValueCasted instanceof Double) {
-                invertedPropertyIndex.insert((Double) propertyValueCasted, documentId);
-            } else if (propertyValueCasted instanceof Boolean) {
-                invertedPropertyIndex.insert((Boolean) propertyValueCasted, documentId);
-            } else {
+            if (propertyValueCasted == null) {
                 log.error("Failed to cast property value to a valid data type.");
+            } else {
+                insertValue(invertedPropertyIndex, propertyValueCasted, documentId);
+                NgramIndex ngramIndex = getNgramIndexes(databaseName, collectionName).get(propertyName);
+                if (propertyValueCasted instanceof String text && ngramIndex != null) {
+                    ngramIndex.insert(text, documentId);
+                }
             }
             log.info("Inserted new entry in inverted property index for collection: " + collectionName + " property: " + propertyName + " value: " + propertyValue);
         }catch (Exception e){
@@ -230,6 +535,32 @@ public class IndexingManager {
             throw new RuntimeException("Failed to insert into inverted property index.");
         }
     }
+    /**
+     * Inserts the property values of a batch of documents, keyed by document id. The documents sharing a value
+     * go into its postings, and those of its trigrams, with a single update.
+     */
+    public void insertIntoInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, Map<String, String> propertyValues) throws ResourceNotFoundException {
+        String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
+        if (!invertedPropertyIndexMap.containsKey(propertyIndexKey)) {
+            createInvertedPropertyIndex(databaseName, collectionName, propertyName);
+        }
+        Map<Object, List<String>> documentIdsByValue = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : propertyValues.entrySet()) {
+            Object propertyValueCasted = dataTypeCaster.castToDataType(entry.getValue(), databaseName, collectionName, propertyName);
+            if (propertyValueCasted == null) {
+                log.error("Failed to cast property value to a valid data type.");
+                continue;
+            }
+            documentIdsByValue.computeIfAbsent(propertyValueCasted, value -> new ArrayList<>()).add(entry.getKey());
+        }
+        insertGroupedDocuments(invertedPropertyIndexMap.get(propertyIndexKey), documentIdsByValue);
+        NgramIndex ngramIndex = getNgramIndexes(databaseName, collectionName).get(propertyName);
+        if (ngramIndex != null) {
+            documentIdsByValue.forEach((value, documentIds) -> ngramIndex.insert((String) value, documentIds));
+        }
+        log.info("Inserted " + propertyValues.size() + " entries in inverted property index for collection: " + collectionName + " property: " + propertyName);
+    }
+
     public String searchInPropertyIndex(String databaseName,String collectionName, String propertyName, String documentId) throws ResourceNotFoundException {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
         PropertyIndex propertyIndex = propertyIndexMap.get(propertyIndexKey);
@@ -238,27 +569,177 @@ public class IndexingManager {
         }
         return propertyIndex.search(documentId);
     }
-    @SuppressWarnings("unchecked")
     public List<String> searchInInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, String propertyValue) throws ResourceNotFoundException {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
-        InvertedPropertyIndex invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
+        InvertedPropertyIndex<?> invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
 
         if (invertedPropertyIndex == null) {
             throw new ResourceNotFoundException("Inverted Property Index");
         }
         Object propertyValueCasted = dataTypeCaster.castToDataType(propertyValue, databaseName, collectionName, propertyName);
-        if (propertyValueCasted instanceof String) {
-            return invertedPropertyIndex.search((String) propertyValueCasted);
-        } else if (propertyValueCasted instanceof Integer) {
-            return invertedPropertyIndex.search((Integer) propertyValueCasted);
-        } else if (propertyValueCasted instanceof Double) {
-            return invertedPropertyIndex.search((Double) propertyValueCasted);
-        } else if (propertyValueCasted instanceof Boolean) {
-            return invertedPropertyIndex.search((Boolean) propertyValueCasted);
-        } else {
+        if (propertyValueCasted == null) {
             log.error("Failed to cast property value to a valid data type.");
             return new ArrayList<>();
         }
+        DocumentOrdinals ordinals = getDocumentOrdinals(databaseName, collectionName);
+        ordinals.beginRead();
+        try {
+            return invertedPropertyIndex.documentIds(postingsOf(invertedPropertyIndex, propertyValueCasted));
+        } finally {
+            ordinals.endRead();
+        }
+    }
+    /**
+     * Returns the ids of the documents whose property value falls in the range, in value order. The bounds are cast
+     * to the type of the property and the inverted index leaves are walked lazily from the lower bound on, so the walk
+     * is to be done between {@link DocumentOrdinals#beginRead} and {@link DocumentOrdinals#endRead}.
+     */
+    public Iterator<String> searchRangeInInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, PropertyRange range) throws ResourceNotFoundException {
+        InvertedPropertyIndex<?> invertedPropertyIndex = getInvertedPropertyIndex(databaseName, collectionName, propertyName);
+        Object lower = range.getLower() == null ? null : dataTypeCaster.castToDataType(range.getLower(), databaseName, collectionName, propertyName);
+        Object upper = range.getUpper() == null ? null : dataTypeCaster.castToDataType(range.getUpper(), databaseName, collectionName, propertyName);
+        Iterator<Map.Entry<Object, PostingList>> postings = postingsBetween(invertedPropertyIndex, lower, range.isLowerInclusive(), upper, range.isUpperInclusive());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(postings, Spliterator.ORDERED), false)
+                .flatMap(posting -> invertedPropertyIndex.documentIds(posting.getValue()).stream())
+                .iterator();
+    }
+
+    /**
+     * Returns a cursor over the documents in the order of the property, see {@link SortCursor}. {@code after} is a
+     * position the cursor handed out before, the walk resumes right after it, or null to start from the beginning.
+     */
+    public SortCursor<?> sortInInvertedPropertyIndex(String databaseName, String collectionName, PropertySort sort, String after) throws ResourceNotFoundException {
+        InvertedPropertyIndex<?> invertedPropertyIndex = getInvertedPropertyIndex(databaseName, collectionName, sort.getPropertyName());
+        if (after == null) {
+            return sortedAfter(invertedPropertyIndex, sort.isDescending(), null, null);
+        }
+        int separator = endOfQuotedText(after);
+        if (separator < 0 || separator == after.length() || after.charAt(separator) != ':') {
+            throw new IllegalArgumentException("Malformed sort cursor: " + after);
+        }
+        String afterDocumentId = DataTypeCaster.unquote(after.substring(0, separator));
+        Object afterValue = dataTypeCaster.castToDataType(after.substring(separator + 1), databaseName, collectionName, sort.getPropertyName());
+        if (afterValue == null) {
+            throw new IllegalArgumentException("Malformed sort cursor: " + after);
+        }
+        return sortedAfter(invertedPropertyIndex, sort.isDescending(), afterValue, afterDocumentId);
+    }
+
+    // the index right past the JSON string the text starts with, -1 when it does not start with one
+    private static int endOfQuotedText(String text) {
+        if (text.isEmpty() || text.charAt(0) != '"') {
+            return -1;
+        }
+        for (int i = 1; i < text.length(); i++) {
+            if (text.charAt(i) == '\\') {
+                i++;
+            } else if (text.charAt(i) == '"') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ordinals of the documents having the property value, see {@link #getDocumentOrdinals}.
+     */
+    public PostingList searchPostingsInInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, String propertyValue) throws ResourceNotFoundException {
+        InvertedPropertyIndex<?> invertedPropertyIndex = getInvertedPropertyIndex(databaseName, collectionName, propertyName);
+        Object propertyValueCasted = dataTypeCaster.castToDataType(propertyValue, databaseName, collectionName, propertyName);
+        if (propertyValueCasted == null) {
+            return PostingList.EMPTY;
+        }
+        return postingsOf(invertedPropertyIndex, propertyValueCasted);
+    }
+
+    /**
+     * Adds to the bitmap the ordinals of the documents whose string property starts with the prefix, walking the
+     * values of the inverted index from the prefix up to the first value past it.
+     */
+    public void addPrefixPostingsFromInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, String prefix, BitSet ordinals) throws ResourceNotFoundException {
+        checkStringProperty(databaseName, collectionName, propertyName);
+        if (!invertedPropertyIndexExists(databaseName, collectionName, propertyName)) {
+            return;
+        }
+        InvertedPropertyIndex<String> invertedPropertyIndex = asStringIndex(getInvertedPropertyIndex(databaseName, collectionName, propertyName));
+        Iterator<Map.Entry<String, PostingList>> postings = invertedPropertyIndex.range(prefix, true, prefixUpperBound(prefix), false);
+        postings.forEachRemaining(posting -> posting.getValue().addTo(ordinals));
+    }
+
+    /**
+     * Adds to the bitmap the ordinals of the documents whose string property contains the text. With an ngram index
+     * on the property only the documents having every trigram of the text are checked, otherwise, or for a text
+     * shorter than a trigram, each distinct value of the inverted index is.
+     */
+    public void addContainsPostingsFromInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, String text, BitSet ordinals) throws ResourceNotFoundException {
+        checkStringProperty(databaseName, collectionName, propertyName);
+        if (!invertedPropertyIndexExists(databaseName, collectionName, propertyName)) {
+            return;
+        }
+        NgramIndex ngramIndex = getNgramIndexes(databaseName, collectionName).get(propertyName);
+        BitSet candidates = ngramIndex == null ? null : ngramIndex.candidates(text);
+        if (candidates == null) {
+            InvertedPropertyIndex<String> invertedPropertyIndex = asStringIndex(getInvertedPropertyIndex(databaseName, collectionName, propertyName));
+            invertedPropertyIndex.range(null, true, null, true).forEachRemaining(posting -> {
+                if (posting.getKey().contains(text)) {
+                    posting.getValue().addTo(ordinals);
+                }
+            });
+            return;
+        }
+        DocumentOrdinals documentOrdinals = getDocumentOrdinals(databaseName, collectionName);
+        PropertyIndex propertyIndex = propertyIndexMap.get(getPropertyIndexKey(databaseName, collectionName, propertyName));
+        for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+            String documentId = documentOrdinals.documentId(ordinal);
+            String value = documentId == null || propertyIndex == null ? null : propertyIndex.search(documentId);
+            if (value != null && DataTypeCaster.unquote(value).contains(text)) {
+                ordinals.set(ordinal);
+            }
+        }
+    }
+
+    private void checkStringProperty(String databaseName, String collectionName, String propertyName) throws ResourceNotFoundException {
+        if (!dataTypeCaster.getDataType(databaseName, collectionName, propertyName).equalsIgnoreCase("string")) {
+            throw new IllegalArgumentException("Only string properties can be searched by prefix or substring: " + propertyName);
+        }
+    }
+
+    // the smallest string greater than every string starting with the prefix, null when there is none
+    static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    /**
+     * Counts the documents whose property value falls in the range from the sizes of the postings alone.
+     */
+    public long countRangeInInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, PropertyRange range) throws ResourceNotFoundException {
+        InvertedPropertyIndex<?> invertedPropertyIndex = getInvertedPropertyIndex(databaseName, collectionName, propertyName);
+        Object lower = range.getLower() == null ? null : dataTypeCaster.castToDataType(range.getLower(), databaseName, collectionName, propertyName);
+        Object upper = range.getUpper() == null ? null : dataTypeCaster.castToDataType(range.getUpper(), databaseName, collectionName, propertyName);
+        Iterator<Map.Entry<Object, PostingList>> postings = postingsBetween(invertedPropertyIndex, lower, range.isLowerInclusive(), upper, range.isUpperInclusive());
+        long count = 0;
+        while (postings.hasNext()) {
+            count += postings.next().getValue().size();
+        }
+        return count;
+    }
+
+    /**
+     * Adds the ordinals of the documents whose property value falls in the range to the bitmap.
+     */
+    public void addRangePostingsFromInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, PropertyRange range, BitSet ordinals) throws ResourceNotFoundException {
+        InvertedPropertyIndex<?> invertedPropertyIndex = getInvertedPropertyIndex(databaseName, collectionName, propertyName);
+        Object lower = range.getLower() == null ? null : dataTypeCaster.castToDataType(range.getLower(), databaseName, collectionName, propertyName);
+        Object upper = range.getUpper() == null ? null : dataTypeCaster.castToDataType(range.getUpper(), databaseName, collectionName, propertyName);
+        Iterator<Map.Entry<Object, PostingList>> postings = postingsBetween(invertedPropertyIndex, lower, range.isLowerInclusive(), upper, range.isUpperInclusive());
+        postings.forEachRemaining(posting -> posting.getValue().addTo(ordinals));
     }
     public void deleteFromPropertyIndex(String databaseName,String collectionName, String propertyName, String documentId) throws ResourceNotFoundException {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
@@ -268,27 +749,37 @@ public class IndexingManager {
             throw new ResourceNotFoundException("Property Index");
         }
         propertyIndex.delete(documentId);
-        fileService.rewritePropertyIndexFile(fileService.getPropertyIndexFile(databaseName, collectionName, propertyName), propertyIndex);
+        fileService.appendToIndexFile(fileService.getPropertyIndexFile(databaseName, collectionName, propertyName).getPath(), documentId, FileService.DELETED_INDEX_ENTRY);
+    }
+
+    /**
+     * Squashes the property index files of the collection down to one line per indexed document,
+     * dropping the tombstones and superseded lines the appends left behind.
+     */
+    public void rewritePropertyIndexFiles(String databaseName, String collectionName) throws ResourceNotFoundException {
+        for (String propertyName : databaseDiskCRUD.getCollectionSchema(databaseName, collectionName).getIndexedProperties()) {
+            PropertyIndex propertyIndex = propertyIndexMap.get(getPropertyIndexKey(databaseName, collectionName, propertyName));
+            if (propertyIndex != null) {
+                fileService.rewritePropertyIndexFile(fileService.getPropertyIndexFile(databaseName, collectionName, propertyName), propertyIndex);
+            }
+        }
     }
-    @SuppressWarnings("unchecked")
     public void deleteDocumentFromInvertedPropertyIndex(String databaseName, String collectionName, String propertyName,String propertyValue, String documentId) throws ResourceNotFoundException {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
-        InvertedPropertyIndex invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
+        InvertedPropertyIndex<?> invertedPropertyIndex = invertedPropertyIndexMap.get(propertyIndexKey);
         if (invertedPropertyIndex == null) {
             log.error("Inverted Property Index does not exist.");
             throw new ResourceNotFoundException("Inverted Property Index");
         }
         Object propertyValueCasted = dataTypeCaster.castToDataType(propertyValue, databaseName, collectionName, propertyName);
-        if (propertyValueCasted instanceof String) {
-            invertedPropertyIndex.search("\""+ propertyValueCasted +"\"").remove(documentId);
-        } else if (propertyValueCasted instanceof Integer) {
-            invertedPropertyIndex.search((Integer) propertyValueCasted).remove(documentId);
-        } else if (propertyValueCasted instanceof Double) {
-            invertedPropertyIndex.search((Double) propertyValueCasted).remove(documentId);
-        } else if (propertyValueCasted instanceof Boolean) {
-            invertedPropertyIndex.search((Boolean) propertyValueCasted).remove(documentId);
-        } else {
+        if (propertyValueCasted == null) {
             log.error("Failed to cast property value to a valid data type.");
+            return;
+        }
+        removeValue(invertedPropertyIndex, propertyValueCasted, documentId);
+        NgramIndex ngramIndex = getNgramIndexes(databaseName, collectionName).get(propertyName);
+        if (propertyValueCasted instanceof String text && ngramIndex != null) {
+            ngramIndex.remove(text, documentId);
         }
     }
     public void loadAllIndexes(String databaseName) throws ResourceNotFoundException {
@@ -329,14 +820,36 @@ public class IndexingManager {
         }
         CollectionIndex collectionIndex = new CollectionIndex();
         collectionsIndexMap.put(getCollectionIndexKey(databaseName,collectionName), collectionIndex);
-        Map<String, Integer> indexData = fileService.readCollectionIndexFile(indexFile);
-        for (Map.Entry<String, Integer> entry : indexData.entrySet()) {
-            collectionIndex.insert(entry.getKey(), entry.getValue());
+        Map<String, DocumentLocation> indexData = fileService.readCollectionIndexFile(indexFile);
+        // Index files holding array positions predate byte offsets, rebuild them from the collection file
+        boolean positional = indexData.values().stream().anyMatch(location -> !location.isInSegment() && !location.hasByteRange());
+        // So are those a crash left behind while a compaction was moving the documents
+        File relocationMarker = fileService.getCollectionRelocationMarker(databaseName, collectionName);
+        boolean relocating = relocationMarker.exists() && fileService.getCollectionFile(databaseName, collectionName).exists();
+        if (positional || relocating) {
+            indexData = jsonArrayStorage.readLiveLocations(databaseName, collectionName);
+        }
+        collectionIndex.load(indexData);
+        if (positional || relocating) {
+            try {
+                fileService.rewriteIndexFile(databaseName, collectionName, collectionIndex);
+                fileService.deleteFile(relocationMarker);
+                log.info("rebuilt byte offset index for collection: " + collectionName);
+            } catch (IOException e) {
+                log.error("Failed to rewrite the rebuilt index file of collection " + collectionName + ": " + e.getMessage());
+            }
         }
         log.info("loaded index for collection: " + collectionName);
     }
 
-    @SuppressWarnings("unchecked")
+    public void loadCollectionIndexFromSegments(String databaseName, String collectionName) {
+        CollectionIndex collectionIndex = new CollectionIndex();
+        Map<String, DocumentLocation> liveLocations = segmentedLogStorage.readLiveLocations(databaseName, collectionName);
+        collectionIndex.load(liveLocations);
+        collectionsIndexMap.put(getCollectionIndexKey(databaseName,collectionName), collectionIndex);
+        log.info("rebuilt index for collection: " + collectionName + " from its segments (" + liveLocations.size() + " documents)");
+    }
+
     public void loadPropertyIndex(String databaseName,String collectionName , @NotNull String indexFileName) throws ResourceNotFoundException {
         String[] split = indexFileName.split("_");
         String propertyName = split[0];
@@ -349,58 +862,141 @@ public class IndexingManager {
         PropertyIndex propertyIndex = new PropertyIndex();
         propertyIndexMap.put(key, propertyIndex);
 
-        InvertedPropertyIndex invertedPropertyIndex = invertedPropertyIndexMap.get(key);
+        InvertedPropertyIndex<?> invertedPropertyIndex = invertedPropertyIndexMap.get(key);
         if(invertedPropertyIndex == null){
             createInvertedPropertyIndex(databaseName,collectionName,propertyName);
             invertedPropertyIndex = invertedPropertyIndexMap.get(key);
         }
-        String propertyType = dataTypeCaster.getDataType(databaseName, collectionName, propertyName);
         Map<String, String> indexData = fileService.readPropertyIndexFile(indexFile);
 
+        propertyIndex.load(indexData);
+        loadInvertedPropertyIndex(databaseName, collectionName, propertyName, invertedPropertyIndex, indexData);
+        log.info("loaded property index for collection: " + collectionName + " property: " + propertyName);
+    }
+
+    private void loadInvertedPropertyIndex(String databaseName, String collectionName, String propertyName, InvertedPropertyIndex<?> invertedPropertyIndex, Map<String, String> indexData) throws ResourceNotFoundException {
+        String propertyType = dataTypeCaster.getDataType(databaseName, collectionName, propertyName);
         switch (Objects.requireNonNull(propertyType).toUpperCase()) {
-            case "STRING" -> {
-                for (Map.Entry<String, String> entry : indexData.entrySet()) {
-                    propertyIndex.insert(entry.getKey(), entry.getValue());
-                    invertedPropertyIndex.insert(entry.getValue(), entry.getKey());
-                }
-            }
-            case "INTEGER" -> {
-                for (Map.Entry<String, String> entry : indexData.entrySet()) {
-                    propertyIndex.insert(entry.getKey(), entry.getValue());
-                    invertedPropertyIndex.insert(Integer.parseInt(entry.getValue()), entry.getKey());
-                }
-            }
-            case "NUMBER" -> {
-                for (Map.Entry<String, String> entry : indexData.entrySet()) {
-                    propertyIndex.insert(entry.getKey(), entry.getValue());
-                    invertedPropertyIndex.insert(Double.parseDouble(entry.getValue()), entry.getKey());
-                }
-            }
-            case "BOOLEAN" -> {
-                for (Map.Entry<String, String> entry : indexData.entrySet()) {
-                    propertyIndex.insert(entry.getKey(), entry.getValue());
-                    invertedPropertyIndex.insert(Boolean.parseBoolean(entry.getValue()), entry.getKey());
-                }
-            }
+            case "STRING" -> loadValues(invertedPropertyIndex, indexData, DataTypeCaster::unquote);
+            case "INTEGER" -> loadValues(invertedPropertyIndex, indexData, Long::parseLong);
+            case "NUMBER" -> loadValues(invertedPropertyIndex, indexData, Double::parseDouble);
+            case "BOOLEAN" -> loadValues(invertedPropertyIndex, indexData, Boolean::parseBoolean);
             default -> log.error("Failed to cast property value to a valid data type.");
         }
-        log.info("loaded property index for collection: " + collectionName + " property: " + propertyName);
+    }
+
+    // The inverted indexes are kept by property whatever the type of their values. The helpers below hand an index
+    // values the DataTypeCaster already cast to the type of its property, or parsers producing that type.
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> void loadValues(InvertedPropertyIndex<T> invertedPropertyIndex, Map<String, String> indexData, Function<String, ?> parser) {
+        invertedPropertyIndex.load(indexData, value -> (T) parser.apply(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> void insertValue(InvertedPropertyIndex<T> invertedPropertyIndex, Object value, String documentId) {
+        invertedPropertyIndex.insert((T) value, documentId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> void insertGroupedDocuments(InvertedPropertyIndex<T> invertedPropertyIndex, Map<Object, List<String>> documentIdsByValue) {
+        documentIdsByValue.forEach((value, documentIds) -> invertedPropertyIndex.insert((T) value, documentIds));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> void removeValue(InvertedPropertyIndex<T> invertedPropertyIndex, Object value, String documentId) {
+        invertedPropertyIndex.remove((T) value, documentId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> PostingList postingsOf(InvertedPropertyIndex<T> invertedPropertyIndex, Object value) {
+        return invertedPropertyIndex.postings((T) value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> Iterator<Map.Entry<Object, PostingList>> postingsBetween(InvertedPropertyIndex<T> invertedPropertyIndex, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+        Iterator<? extends Map.Entry<?, PostingList>> postings = invertedPropertyIndex.range((T) lower, lowerInclusive, (T) upper, upperInclusive);
+        return (Iterator<Map.Entry<Object, PostingList>>) postings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> SortCursor<T> sortedAfter(InvertedPropertyIndex<T> invertedPropertyIndex, boolean descending, Object afterValue, String afterDocumentId) {
+        return invertedPropertyIndex.sorted(descending, (T) afterValue, afterDocumentId);
+    }
+
+    // only string properties get ngram indexes and prefix or substring searches, which check the type first
+    @SuppressWarnings("unchecked")
+    private static InvertedPropertyIndex<String> asStringIndex(InvertedPropertyIndex<?> invertedPropertyIndex) {
+        return (InvertedPropertyIndex<String>) invertedPropertyIndex;
     }
 
     public void deleteDocumentRelatedIndexes(String databaseName,String collectionName, String documentId) throws ResourceNotFoundException {
         Document document = databaseDiskCRUD.fetchDocumentFromDatabase(databaseName, collectionName, documentId)
                                             .orElseThrow(() -> new ResourceNotFoundException("Document with id : "+documentId));
-        ObjectNode documentContent = document.getContent();
+        deleteDocumentFromPropertyIndexes(databaseName, collectionName, documentId, document.getContent());
+        // Delete from collection index
+        deleteDocumentFromCollectionIndex(databaseName,collectionName, documentId);
+    }
+
+    /**
+     * Removes a batch of documents, keyed by id, from every index of the collection.
+     * Each property index file and the collection index file get a single append of tombstones.
+     */
+    public void deleteDocumentsRelatedIndexes(String databaseName, String collectionName, Map<String, ObjectNode> documents) throws ResourceNotFoundException {
+        Schema collectionSchema = databaseDiskCRUD.getCollectionSchema(databaseName, collectionName);
+        for (String propertyName : collectionSchema.getIndexedProperties()) {
+            PropertyIndex propertyIndex = propertyIndexMap.get(getPropertyIndexKey(databaseName, collectionName, propertyName));
+            Map<String, String> tombstones = new LinkedHashMap<>();
+            for (Map.Entry<String, ObjectNode> document : documents.entrySet()) {
+                JsonNode propertyValue = document.getValue().get(propertyName);
+                if (propertyValue == null) {
+                    continue;
+                }
+                if (propertyIndex != null) {
+                    propertyIndex.delete(document.getKey());
+                    tombstones.put(document.getKey(), FileService.DELETED_INDEX_ENTRY);
+                }
+                deleteDocumentFromInvertedPropertyIndex(databaseName, collectionName, propertyName, propertyValue.toString(), document.getKey());
+            }
+            if (!tombstones.isEmpty()) {
+                fileService.appendToIndexFile(fileService.getPropertyIndexFile(databaseName, collectionName, propertyName).getPath(), tombstones);
+            }
+        }
+        for (Map.Entry<String, ObjectNode> document : documents.entrySet()) {
+            deleteDocumentFromCompoundIndexes(databaseName, collectionName, document.getKey(), document.getValue());
+        }
+
+        CollectionIndex collectionIndex = getCollectionIndex(databaseName, collectionName);
+        DocumentOrdinals ordinals = getDocumentOrdinals(databaseName, collectionName);
+        Map<String, String> indexFileEntries = new LinkedHashMap<>();
+        for (String documentId : documents.keySet()) {
+            DocumentLocation deletedLocation = collectionIndex.search(documentId);
+            if (deletedLocation == null) {
+                continue;
+            }
+            collectionIndex.delete(documentId);
+            ordinals.release(documentId);
+            if (!deletedLocation.isInSegment()) {
+                indexFileEntries.put(documentId, FileService.DELETED_INDEX_ENTRY);
+            }
+        }
+        if (!indexFileEntries.isEmpty()) {
+            fileService.appendCollectionIndexEntries(databaseName, collectionName, indexFileEntries);
+        }
+    }
+    public void deleteDocumentFromPropertyIndexes(String databaseName, String collectionName, String documentId, ObjectNode documentContent) throws ResourceNotFoundException {
         Schema collectionSchema = databaseDiskCRUD.getCollectionSchema(databaseName, collectionName);
         // Delete from all property indexes
-        for (String propertyName : collectionSchema.getProperties().keySet()) {
-            String propertyValue = documentContent.get(propertyName).asText();
+        for (String propertyName : collectionSchema.getIndexedProperties()) {
+            if (!documentContent.has(propertyName)) {
+                continue;
+            }
+            String propertyValue = documentContent.get(propertyName).toString();
 
             deleteFromPropertyIndex(databaseName,collectionName, propertyName, documentId);
             deleteDocumentFromInvertedPropertyIndex(databaseName,collectionName, propertyName, propertyValue, documentId);
         }
-        // Delete from collection index
-        deleteDocumentFromCollectionIndex(databaseName,collectionName, documentId);
+        deleteDocumentFromCompoundIndexes(databaseName, collectionName, documentId, documentContent);
     }
 
 
@@ -416,6 +1012,10 @@ public class IndexingManager {
         String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
         return propertyIndexMap.containsKey(propertyIndexKey);
     }
+    public boolean invertedPropertyIndexExists(String databaseName,String collectionName, String propertyName) {
+        String propertyIndexKey = getPropertyIndexKey(databaseName, collectionName, propertyName);
+        return invertedPropertyIndexMap.containsKey(propertyIndexKey);
+    }
     public String getCollectionIndexKey(String databaseName,String collectionName) {
         return databaseName + "::" + collectionName;
     }
@@ -429,6 +1029,10 @@ public class IndexingManager {
         collectionsIndexMap.clear();
         propertyIndexMap.clear();
         invertedPropertyIndexMap.clear();
+        documentOrdinalsMap.clear();
+        compoundIndexMap.clear();
+        indexedPropertiesMap.clear();
+        ngramIndexMap.clear();
     }
 
 }
@@ -4,34 +4,180 @@ import lombok.Getter;
 import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 @Getter
 public class InvertedPropertyIndex<T extends Comparable<T>> {
-    private final BPlusTree<T,List<String>> index ;
+    // posting lists are never changed once in the tree, writers replace them so readers can hold on to them,
+    // which only copies the container of the chunk an update falls in, see PostingList
+    private volatile BPlusTree<T, PostingList> index ;
+    // shared by every index of the collection so postings of different properties can be combined
+    private final DocumentOrdinals ordinals;
+    // the documents by (value, id) for sorted walks, built the first time the index is sorted on and kept up to date
+    // by the writers from then on, the id is the entry value
+    private volatile BPlusTree<CompositeKey, String> sortOrder;
 
-    public InvertedPropertyIndex() {
-        index = new BPlusTree<>();
+    public InvertedPropertyIndex(DocumentOrdinals ordinals) {
+        this(new BPlusTree<>(BPlusTree.DEFAULT_ORDER), ordinals);
     }
 
-    public void insert(T propertyValue, String documentId) {
-        List<String> documentIds = index.search(propertyValue);
-        if (documentIds == null) {
-            documentIds = new ArrayList<>();
+    // numeric properties pass a LongBPlusTree or DoubleBPlusTree so their keys stay primitive
+    public InvertedPropertyIndex(BPlusTree<T, PostingList> index, DocumentOrdinals ordinals) {
+        this.index = index;
+        this.ordinals = ordinals;
+    }
+
+    /**
+     * Replaces every entry with the postings of the given document id to value pairs, grouped by parsed value
+     * and bulk loaded in value order.
+     */
+    public synchronized void load(Map<String, String> values, Function<String, T> parser) {
+        TreeMap<T, OrdinalsBuilder> builders = new TreeMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            builders.computeIfAbsent(parser.apply(entry.getValue()), value -> new OrdinalsBuilder())
+                    .add(ordinals.ordinalOf(entry.getKey()));
+        }
+        TreeMap<T, PostingList> postings = new TreeMap<>();
+        builders.forEach((value, builder) -> postings.put(value, builder.build()));
+        index.bulkLoad(postings.entrySet().iterator());
+        sortOrder = null;
+    }
+
+    public synchronized void insert(T propertyValue, String documentId) {
+        int ordinal = ordinals.ordinalOf(documentId);
+        PostingList postings = index.search(propertyValue);
+        index.insert(propertyValue, (postings == null ? PostingList.EMPTY : postings).with(ordinal));
+        if (sortOrder != null) {
+            sortOrder.insert(CompositeKey.of(propertyValue, documentId), documentId);
+        }
+    }
+
+    /**
+     * Adds a batch of documents having the value with a single update of its postings.
+     */
+    public synchronized void insert(T propertyValue, Collection<String> documentIds) {
+        OrdinalsBuilder builder = new OrdinalsBuilder();
+        documentIds.forEach(documentId -> builder.add(ordinals.ordinalOf(documentId)));
+        PostingList postings = index.search(propertyValue);
+        index.insert(propertyValue, (postings == null ? PostingList.EMPTY : postings).union(builder.build()));
+        if (sortOrder != null) {
+            documentIds.forEach(documentId -> sortOrder.insert(CompositeKey.of(propertyValue, documentId), documentId));
+        }
+    }
+
+    public synchronized void remove(T propertyValue, String documentId) {
+        int ordinal = ordinals.find(documentId);
+        PostingList postings = index.search(propertyValue);
+        if (ordinal < 0 || postings == null || !postings.contains(ordinal)) {
+            return;
+        }
+        PostingList updated = postings.without(ordinal);
+        if (updated.isEmpty()) {
+            index.delete(propertyValue);
+        } else {
+            index.insert(propertyValue, updated);
+        }
+        if (sortOrder != null) {
+            sortOrder.delete(CompositeKey.of(propertyValue, documentId));
         }
-        documentIds.add(documentId);
-        index.insert(propertyValue, documentIds);
     }
 
     public List<String> search(T propertyValue) {
-        List<String> documentIds = index.search(propertyValue);
-        if (documentIds == null) {
-            return new ArrayList<>();
+        return documentIds(postings(propertyValue));
+    }
+
+    public PostingList postings(T propertyValue) {
+        PostingList postings = index.search(propertyValue);
+        return postings == null ? PostingList.EMPTY : postings;
+    }
+
+    /**
+     * Walks the postings of the values between the bounds in value order, a null bound leaves that side open.
+     */
+    public Iterator<Map.Entry<T, PostingList>> range(T from, boolean fromInclusive, T to, boolean toInclusive) {
+        return index.range(from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Walks the postings of the values between the bounds in descending value order, starting next to {@code to}.
+     */
+    public Iterator<Map.Entry<T, PostingList>> descendingRange(T from, boolean fromInclusive, T to, boolean toInclusive) {
+        return index.descendingRange(from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Walks the documents in value order, see {@link SortCursor}. A null value starts from the first value in that
+     * order, otherwise the walk resumes right after the document with the id among those having the value. The first
+     * sorted walk builds the (value, id) order of the documents, which the writes keep up from then on.
+     */
+    public SortCursor<T> sorted(boolean descending, T afterValue, String afterDocumentId) {
+        return new SortCursor<>(sortOrder(), descending, afterValue, afterDocumentId);
+    }
+
+    private BPlusTree<CompositeKey, String> sortOrder() {
+        BPlusTree<CompositeKey, String> built = sortOrder;
+        if (built != null) {
+            return built;
         }
+        synchronized (this) {
+            if (sortOrder == null) {
+                List<Map.Entry<CompositeKey, String>> entries = new ArrayList<>();
+                index.range(null, true, null, true).forEachRemaining(posting -> {
+                    List<String> documentIds = documentIds(posting.getValue());
+                    documentIds.sort(null);
+                    documentIds.forEach(documentId -> entries.add(Map.entry(CompositeKey.of(posting.getKey(), documentId), documentId)));
+                });
+                BPlusTree<CompositeKey, String> tree = new BPlusTree<>(BPlusTree.DEFAULT_ORDER);
+                tree.bulkLoad(entries.iterator());
+                sortOrder = tree;
+            }
+            return sortOrder;
+        }
+    }
+
+    /**
+     * Returns the ids behind the ordinals of the postings in ordinal order.
+     */
+    public List<String> documentIds(PostingList postings) {
+        List<String> documentIds = new ArrayList<>(postings.size());
+        postings.forEach(ordinal -> {
+            String documentId = ordinals.documentId(ordinal);
+            if (documentId != null) {
+                documentIds.add(documentId);
+            }
+        });
         return documentIds;
     }
 
-    public void delete(T propertyValue) {
+    public synchronized void delete(T propertyValue) {
         index.delete(propertyValue);
+        if (sortOrder != null) {
+            List<CompositeKey> keys = new ArrayList<>();
+            sortOrder.range(CompositeKey.lowest(propertyValue), true, CompositeKey.highest(propertyValue), true)
+                    .forEachRemaining(entry -> keys.add(entry.getKey()));
+            keys.forEach(sortOrder::delete);
+        }
+    }
+
+    static class OrdinalsBuilder {
+        private int[] ordinals = new int[4];
+        private int count;
+
+        void add(int ordinal) {
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, count * 2);
+            }
+            ordinals[count++] = ordinal;
+        }
+
+        PostingList build() {
+            return PostingList.of(ordinals, count);
+        }
     }
-}
\ No newline at end of file
+}
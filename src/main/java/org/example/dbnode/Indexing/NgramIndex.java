@@ -0,0 +1,122 @@
+package org.example.dbnode.Indexing;
+
+import lombok.Getter;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Substring lookups on a string property: the posting list of the documents whose value holds each trigram. A search
+ * text of three characters or more can only be in the documents having all of its trigrams, the intersection of their
+ * lists, which leaves candidates to check against their value since the trigrams may be apart.
+ * <p>
+ * It is built from the inverted index of the property, whose values it splits once each however many documents share
+ * them, and kept up to date along with it.
+ */
+public class NgramIndex {
+    public static final int GRAM_LENGTH = 3;
+
+    @Getter
+    private final String propertyName;
+    private final DocumentOrdinals ordinals;
+    private final Map<String, PostingList> grams = new ConcurrentHashMap<>();
+
+    public NgramIndex(String propertyName, DocumentOrdinals ordinals) {
+        this.propertyName = propertyName;
+        this.ordinals = ordinals;
+    }
+
+    /**
+     * Builds the index from the values of the property and their postings.
+     */
+    public synchronized void load(Iterator<Map.Entry<String, PostingList>> values) {
+        Map<String, InvertedPropertyIndex.OrdinalsBuilder> builders = new HashMap<>();
+        while (values.hasNext()) {
+            Map.Entry<String, PostingList> value = values.next();
+            for (String gram : gramsOf(value.getKey())) {
+                InvertedPropertyIndex.OrdinalsBuilder builder = builders.computeIfAbsent(gram, key -> new InvertedPropertyIndex.OrdinalsBuilder());
+                value.getValue().forEach(builder::add);
+            }
+        }
+        grams.clear();
+        builders.forEach((gram, builder) -> grams.put(gram, builder.build()));
+    }
+
+    public synchronized void insert(String value, String documentId) {
+        int ordinal = ordinals.ordinalOf(documentId);
+        for (String gram : gramsOf(value)) {
+            grams.compute(gram, (key, postings) -> (postings == null ? PostingList.EMPTY : postings).with(ordinal));
+        }
+    }
+
+    /**
+     * Adds a batch of documents sharing the value, each of its trigrams gets a single update of its postings.
+     */
+    public synchronized void insert(String value, Collection<String> documentIds) {
+        InvertedPropertyIndex.OrdinalsBuilder builder = new InvertedPropertyIndex.OrdinalsBuilder();
+        documentIds.forEach(documentId -> builder.add(ordinals.ordinalOf(documentId)));
+        PostingList added = builder.build();
+        for (String gram : gramsOf(value)) {
+            grams.compute(gram, (key, postings) -> (postings == null ? PostingList.EMPTY : postings).union(added));
+        }
+    }
+
+    public synchronized void remove(String value, String documentId) {
+        int ordinal = ordinals.find(documentId);
+        if (ordinal < 0) {
+            return;
+        }
+        for (String gram : gramsOf(value)) {
+            grams.computeIfPresent(gram, (key, postings) -> {
+                PostingList updated = postings.without(ordinal);
+                return updated.isEmpty() ? null : updated;
+            });
+        }
+    }
+
+    /**
+     * Returns the ordinals of the documents whose value may contain the text, or null when the text is too short to
+     * have a trigram and the index can not narrow the search.
+     */
+    public BitSet candidates(String text) {
+        Set<String> textGrams = gramsOf(text);
+        if (textGrams.isEmpty()) {
+            return null;
+        }
+        PostingList smallest = null;
+        for (String gram : textGrams) {
+            PostingList postings = grams.get(gram);
+            if (postings == null) {
+                return new BitSet();
+            }
+            if (smallest == null || postings.size() < smallest.size()) {
+                smallest = postings;
+            }
+        }
+        BitSet result = smallest.toBitSet();
+        for (String gram : textGrams) {
+            PostingList postings = grams.get(gram);
+            if (postings == null) {
+                return new BitSet();
+            }
+            if (postings != smallest) {
+                postings.retainIn(result);
+            }
+        }
+        return result;
+    }
+
+    static Set<String> gramsOf(String value) {
+        Set<String> valueGrams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            valueGrams.add(value.substring(i, i + GRAM_LENGTH));
+        }
+        return valueGrams;
+    }
+}
@@ -0,0 +1,536 @@
+package org.example.dbnode.Indexing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * The document ordinals having one property value, never changed once built.
+ * <p>
+ * Like a Roaring bitmap the ordinals are split by their high 16 bits into chunks of 65536, each kept in a container
+ * of whichever form is smaller: a sorted array of the low 16 bits while the chunk holds up to 4096 ordinals, two bytes
+ * per document, and a bitmap of 8 KB past that. Unique values cost one small array, boolean and other low cardinality
+ * values become bitmaps that set operations go through a word at a time.
+ * <p>
+ * {@link #with} and {@link #without} share every container but the one they change, so an update copies at most
+ * 8 KB however long the list is.
+ */
+public final class PostingList {
+
+    public static final PostingList EMPTY = new PostingList(new char[0], new Container[0], 0);
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_ARRAY_CARDINALITY = 4096;
+
+    // the high 16 bits of the ordinals of each container, ascending
+    private final char[] keys;
+    private final Container[] containers;
+    private final int size;
+
+    private PostingList(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Builds a list from the first {@code count} entries of the array, which it takes over and sorts.
+     */
+    public static PostingList of(int[] ordinals, int count) {
+        Arrays.sort(ordinals, 0, count);
+        char[] keys = new char[count == 0 ? 0 : (ordinals[count - 1] >>> CHUNK_BITS) + 1];
+        Container[] containers = new Container[keys.length];
+        int containerCount = 0;
+        int size = 0;
+        int start = 0;
+        while (start < count) {
+            int key = ordinals[start] >>> CHUNK_BITS;
+            int end = start;
+            while (end < count && ordinals[end] >>> CHUNK_BITS == key) {
+                end++;
+            }
+            Container container = Container.of(ordinals, start, end);
+            keys[containerCount] = (char) key;
+            containers[containerCount++] = container;
+            size += container.cardinality();
+            start = end;
+        }
+        if (containerCount == 0) {
+            return EMPTY;
+        }
+        return new PostingList(Arrays.copyOf(keys, containerCount), Arrays.copyOf(containers, containerCount), size);
+    }
+
+    public PostingList with(int ordinal) {
+        int index = indexOf(ordinal >>> CHUNK_BITS);
+        if (index >= 0) {
+            Container updated = containers[index].add((char) ordinal);
+            if (updated == containers[index]) {
+                return this;
+            }
+            Container[] updatedContainers = containers.clone();
+            updatedContainers[index] = updated;
+            return new PostingList(keys, updatedContainers, size + 1);
+        }
+        index = -index - 1;
+        char[] updatedKeys = new char[keys.length + 1];
+        Container[] updatedContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, updatedKeys, 0, index);
+        System.arraycopy(containers, 0, updatedContainers, 0, index);
+        updatedKeys[index] = (char) (ordinal >>> CHUNK_BITS);
+        updatedContainers[index] = new ArrayContainer(new char[] {(char) ordinal});
+        System.arraycopy(keys, index, updatedKeys, index + 1, keys.length - index);
+        System.arraycopy(containers, index, updatedContainers, index + 1, containers.length - index);
+        return new PostingList(updatedKeys, updatedContainers, size + 1);
+    }
+
+    public PostingList without(int ordinal) {
+        int index = indexOf(ordinal >>> CHUNK_BITS);
+        if (index < 0) {
+            return this;
+        }
+        Container updated = containers[index].remove((char) ordinal);
+        if (updated == containers[index]) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        if (updated.cardinality() > 0) {
+            Container[] updatedContainers = containers.clone();
+            updatedContainers[index] = updated;
+            return new PostingList(keys, updatedContainers, size - 1);
+        }
+        char[] updatedKeys = new char[keys.length - 1];
+        Container[] updatedContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, updatedKeys, 0, index);
+        System.arraycopy(containers, 0, updatedContainers, 0, index);
+        System.arraycopy(keys, index + 1, updatedKeys, index, keys.length - index - 1);
+        System.arraycopy(containers, index + 1, updatedContainers, index, containers.length - index - 1);
+        return new PostingList(updatedKeys, updatedContainers, size - 1);
+    }
+
+    /**
+     * Returns the list holding the ordinals of both lists, sharing the containers of the chunks only one of them has.
+     */
+    public PostingList union(PostingList other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        char[] unionKeys = new char[keys.length + other.keys.length];
+        Container[] unionContainers = new Container[unionKeys.length];
+        int count = 0;
+        int unionSize = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                unionKeys[count] = keys[i];
+                unionContainers[count] = containers[i++];
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                unionKeys[count] = other.keys[j];
+                unionContainers[count] = other.containers[j++];
+            } else {
+                unionKeys[count] = keys[i];
+                unionContainers[count] = containers[i++].union(other.containers[j++]);
+            }
+            unionSize += unionContainers[count++].cardinality();
+        }
+        return new PostingList(Arrays.copyOf(unionKeys, count), Arrays.copyOf(unionContainers, count), unionSize);
+    }
+
+    public boolean contains(int ordinal) {
+        int index = indexOf(ordinal >>> CHUNK_BITS);
+        return index >= 0 && containers[index].contains((char) ordinal);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns whether any chunk of the list is dense enough to be kept as a bitmap.
+     */
+    public boolean isBitmap() {
+        for (Container container : containers) {
+            if (container instanceof BitmapContainer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the smallest ordinal of the list not below {@code from}, or -1 when there is none.
+     */
+    public int nextOrdinal(int from) {
+        int index = indexOf(from >>> CHUNK_BITS);
+        if (index >= 0) {
+            int low = containers[index].next(from & (CHUNK_SIZE - 1));
+            if (low >= 0) {
+                return base(index) | low;
+            }
+            index++;
+        } else {
+            index = -index - 1;
+        }
+        return index < containers.length ? base(index) | containers[index].next(0) : -1;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < containers.length; i++) {
+            containers[i].forEach(base(i), action);
+        }
+    }
+
+    public BitSet toBitSet() {
+        BitSet result = new BitSet(containers.length == 0 ? 0 : base(containers.length - 1) + CHUNK_SIZE);
+        addTo(result);
+        return result;
+    }
+
+    /**
+     * Counts the ordinals of the list the target holds too, without changing either.
+     */
+    public int intersectionSize(BitSet target) {
+        int count = 0;
+        for (int i = 0; i < containers.length; i++) {
+            count += containers[i].intersectionSize(target, base(i));
+        }
+        return count;
+    }
+
+    public void addTo(BitSet target) {
+        for (int i = 0; i < containers.length; i++) {
+            containers[i].addTo(target, base(i));
+        }
+    }
+
+    /**
+     * Clears from the target every ordinal missing from this list. Array containers probe the target's ordinals
+     * one by one, which is what an intersection started from its smallest operand leaves behind.
+     */
+    public void retainIn(BitSet target) {
+        int cleared = 0;
+        for (int i = 0; i < containers.length; i++) {
+            int base = base(i);
+            target.clear(cleared, base);
+            containers[i].retainIn(target, base);
+            cleared = base + CHUNK_SIZE;
+        }
+        target.clear(cleared, Math.max(cleared, target.length()));
+    }
+
+    public void removeFrom(BitSet target) {
+        for (int i = 0; i < containers.length; i++) {
+            containers[i].removeFrom(target, base(i));
+        }
+    }
+
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, (char) key);
+    }
+
+    private int base(int index) {
+        return keys[index] << CHUNK_BITS;
+    }
+
+    /**
+     * The ordinals of one chunk of 65536, as their low 16 bits.
+     */
+    private sealed interface Container permits ArrayContainer, BitmapContainer {
+
+        static Container of(int[] sortedOrdinals, int start, int end) {
+            char[] values = new char[end - start];
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                if (count == 0 || values[count - 1] != (char) sortedOrdinals[i]) {
+                    values[count++] = (char) sortedOrdinals[i];
+                }
+            }
+            ArrayContainer container = new ArrayContainer(count == values.length ? values : Arrays.copyOf(values, count));
+            return count > MAX_ARRAY_CARDINALITY ? container.toBitmap() : container;
+        }
+
+        int cardinality();
+
+        boolean contains(char value);
+
+        // return this when the value was already there, or missing for remove
+        Container add(char value);
+
+        Container remove(char value);
+
+        Container union(Container other);
+
+        // the smallest value not below from, or -1
+        int next(int from);
+
+        void forEach(int base, IntConsumer action);
+
+        int intersectionSize(BitSet target, int base);
+
+        void addTo(BitSet target, int base);
+
+        void retainIn(BitSet target, int base);
+
+        void removeFrom(BitSet target, int base);
+    }
+
+    private record ArrayContainer(char[] values) implements Container {
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        public Container add(char value) {
+            int index = Arrays.binarySearch(values, value);
+            if (index >= 0) {
+                return this;
+            }
+            index = -index - 1;
+            char[] updated = new char[values.length + 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            updated[index] = value;
+            System.arraycopy(values, index, updated, index + 1, values.length - index);
+            ArrayContainer container = new ArrayContainer(updated);
+            return updated.length > MAX_ARRAY_CARDINALITY ? container.toBitmap() : container;
+        }
+
+        @Override
+        public Container remove(char value) {
+            int index = Arrays.binarySearch(values, value);
+            if (index < 0) {
+                return this;
+            }
+            char[] updated = new char[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+            return new ArrayContainer(updated);
+        }
+
+        @Override
+        public Container union(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.union(this);
+            }
+            char[] otherValues = ((ArrayContainer) other).values;
+            char[] merged = new char[values.length + otherValues.length];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < values.length || j < otherValues.length) {
+                if (j == otherValues.length || (i < values.length && values[i] < otherValues[j])) {
+                    merged[count++] = values[i++];
+                } else if (i == values.length || otherValues[j] < values[i]) {
+                    merged[count++] = otherValues[j++];
+                } else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer container = new ArrayContainer(count == merged.length ? merged : Arrays.copyOf(merged, count));
+            return count > MAX_ARRAY_CARDINALITY ? container.toBitmap() : container;
+        }
+
+        @Override
+        public int next(int from) {
+            int index = Arrays.binarySearch(values, (char) from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < values.length ? values[index] : -1;
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer action) {
+            for (char value : values) {
+                action.accept(base | value);
+            }
+        }
+
+        @Override
+        public int intersectionSize(BitSet target, int base) {
+            int count = 0;
+            for (char value : values) {
+                if (target.get(base | value)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void addTo(BitSet target, int base) {
+            for (char value : values) {
+                target.set(base | value);
+            }
+        }
+
+        @Override
+        public void retainIn(BitSet target, int base) {
+            for (int ordinal = target.nextSetBit(base); ordinal >= 0 && ordinal < base + CHUNK_SIZE; ordinal = target.nextSetBit(ordinal + 1)) {
+                if (Arrays.binarySearch(values, (char) ordinal) < 0) {
+                    target.clear(ordinal);
+                }
+            }
+        }
+
+        @Override
+        public void removeFrom(BitSet target, int base) {
+            for (char value : values) {
+                target.clear(base | value);
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            long[] words = new long[CHUNK_SIZE / Long.SIZE];
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return new BitmapContainer(words, values.length);
+        }
+    }
+
+    private record BitmapContainer(long[] words, int cardinality) implements Container {
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public Container add(char value) {
+            if (contains(value)) {
+                return this;
+            }
+            long[] updated = words.clone();
+            updated[value >>> 6] |= 1L << value;
+            return new BitmapContainer(updated, cardinality + 1);
+        }
+
+        @Override
+        public Container remove(char value) {
+            if (!contains(value)) {
+                return this;
+            }
+            long[] updated = words.clone();
+            updated[value >>> 6] &= ~(1L << value);
+            if (cardinality - 1 > MAX_ARRAY_CARDINALITY) {
+                return new BitmapContainer(updated, cardinality - 1);
+            }
+            char[] values = new char[cardinality - 1];
+            int count = 0;
+            for (int i = 0; i < updated.length; i++) {
+                for (long word = updated[i]; word != 0; word &= word - 1) {
+                    values[count++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values);
+        }
+
+        @Override
+        public Container union(Container other) {
+            long[] updated = words.clone();
+            if (other instanceof BitmapContainer bitmap) {
+                for (int i = 0; i < updated.length; i++) {
+                    updated[i] |= bitmap.words[i];
+                }
+            } else {
+                for (char value : ((ArrayContainer) other).values) {
+                    updated[value >>> 6] |= 1L << value;
+                }
+            }
+            int unionCardinality = 0;
+            for (long word : updated) {
+                unionCardinality += Long.bitCount(word);
+            }
+            return new BitmapContainer(updated, unionCardinality);
+        }
+
+        @Override
+        public int next(int from) {
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == words.length) {
+                    return -1;
+                }
+                word = words[index];
+            }
+            return index * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    action.accept(base + i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        @Override
+        public int intersectionSize(BitSet target, int base) {
+            long[] targetWords = target.get(base, base + CHUNK_SIZE).toLongArray();
+            int count = 0;
+            for (int i = 0; i < targetWords.length; i++) {
+                count += Long.bitCount(words[i] & targetWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        public void addTo(BitSet target, int base) {
+            forEachRun(words, base, target::set);
+        }
+
+        @Override
+        public void retainIn(BitSet target, int base) {
+            long[] missing = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                missing[i] = ~words[i];
+            }
+            forEachRun(missing, base, target::clear);
+        }
+
+        @Override
+        public void removeFrom(BitSet target, int base) {
+            forEachRun(words, base, target::clear);
+        }
+
+        // BitSet has no way in for whole words, runs of set bits go through its range operations instead
+        private static void forEachRun(long[] words, int base, RangeConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int start = Long.numberOfTrailingZeros(word);
+                    long rest = ~word & (-1L << start);
+                    int end = rest == 0 ? Long.SIZE : Long.numberOfTrailingZeros(rest);
+                    action.accept(base + i * Long.SIZE + start, base + i * Long.SIZE + end);
+                    word = end == Long.SIZE ? 0 : word & (-1L << end);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeConsumer {
+        void accept(int from, int to);
+    }
+}
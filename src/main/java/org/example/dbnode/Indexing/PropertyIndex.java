@@ -2,11 +2,17 @@ package org.example.dbnode.Indexing;
 
 import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
 
+import java.util.Map;
+
 public class PropertyIndex {
-    private BPlusTree<String, String> bPlusTree;
+    private volatile BPlusTree<String, String> bPlusTree;
 
     public PropertyIndex() {
-        this.bPlusTree = new BPlusTree<>();
+        this(BPlusTree.DEFAULT_ORDER);
+    }
+
+    public PropertyIndex(int order) {
+        this.bPlusTree = new BPlusTree<>(order);
     }
 
     public BPlusTree<String, String> getBPlusTree() {
@@ -17,6 +23,15 @@ public class PropertyIndex {
         this.bPlusTree = bPlusTree;
     }
 
+    /**
+     * Replaces every entry with the given document id to value pairs in one bulk load.
+     */
+    public void load(Map<String, String> values) {
+        BPlusTree<String, String> loaded = new BPlusTree<>(bPlusTree.getOrder());
+        loaded.bulkLoad(values);
+        this.bPlusTree = loaded;
+    }
+
     public void insert(String propertyValue, String index) {
         bPlusTree.insert(propertyValue, index);
     }
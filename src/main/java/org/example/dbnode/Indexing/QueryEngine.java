@@ -0,0 +1,226 @@
+package org.example.dbnode.Indexing;
+
+import org.example.dbnode.Enum.QueryOperator;
+import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Model.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a {@link Query} to the bitmap of the matching document ordinals from the posting lists of the inverted
+ * property indexes, without reading any document.
+ * <p>
+ * An and looks up its equality operands first since their posting lists come straight from the index, stops as soon
+ * as one of them is empty, then intersects from the smallest list up so every step costs at most the size of the
+ * smallest. A not under an and is subtracted from the intersection instead of being complemented against the whole
+ * collection, only a not standing on its own needs every document of the collection. When a compound index of the
+ * collection starts with properties the and tests for equality, optionally followed by one it tests a range of, the
+ * index answers those operands together with a single walk. Prefix predicates walk the values of the inverted index
+ * starting with the prefix, substring predicates go through the ngram index of the property when it has one.
+ */
+@Component
+public class QueryEngine {
+
+    private final IndexingManager indexingManager;
+
+    public QueryEngine(IndexingManager indexingManager) {
+        this.indexingManager = indexingManager;
+    }
+
+    /**
+     * Returns the ids of the documents matching the query.
+     */
+    public List<String> evaluate(String databaseName, String collectionName, Query query) throws ResourceNotFoundException {
+        DocumentOrdinals ordinals = indexingManager.getDocumentOrdinals(databaseName, collectionName);
+        ordinals.beginRead();
+        try {
+            BitSet matches = match(databaseName, collectionName, query);
+            List<String> documentIds = new ArrayList<>(matches.cardinality());
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                String documentId = ordinals.documentId(ordinal);
+                if (documentId != null) {
+                    documentIds.add(documentId);
+                }
+            }
+            return documentIds;
+        } finally {
+            ordinals.endRead();
+        }
+    }
+
+    /**
+     * Returns the ordinals of the documents matching the query, to be used between
+     * {@link DocumentOrdinals#beginRead} and {@link DocumentOrdinals#endRead}.
+     */
+    public BitSet match(String databaseName, String collectionName, Query query) throws ResourceNotFoundException {
+        return switch (query.getOperator()) {
+            case EQ -> postings(databaseName, collectionName, query).toBitSet();
+            case RANGE -> {
+                BitSet ordinals = new BitSet();
+                indexingManager.addRangePostingsFromInvertedPropertyIndex(databaseName, collectionName, query.getPropertyName(), query.getRange(), ordinals);
+                yield ordinals;
+            }
+            case PREFIX -> {
+                BitSet ordinals = new BitSet();
+                indexingManager.addPrefixPostingsFromInvertedPropertyIndex(databaseName, collectionName, query.getPropertyName(), query.getValue(), ordinals);
+                yield ordinals;
+            }
+            case CONTAINS -> {
+                BitSet ordinals = new BitSet();
+                indexingManager.addContainsPostingsFromInvertedPropertyIndex(databaseName, collectionName, query.getPropertyName(), query.getValue(), ordinals);
+                yield ordinals;
+            }
+            case AND -> intersect(databaseName, collectionName, query.getOperands());
+            case OR -> union(databaseName, collectionName, query.getOperands());
+            case NOT -> {
+                BitSet ordinals = allOrdinals(databaseName, collectionName);
+                ordinals.andNot(match(databaseName, collectionName, query.getOperands().get(0)));
+                yield ordinals;
+            }
+        };
+    }
+
+    private BitSet intersect(String databaseName, String collectionName, List<Query> operands) throws ResourceNotFoundException {
+        List<Query> remaining = new ArrayList<>(operands);
+        BitSet compound = matchCompound(databaseName, collectionName, remaining);
+        if (compound != null && compound.isEmpty()) {
+            return compound;
+        }
+        List<PostingList> postings = new ArrayList<>();
+        List<Query> included = new ArrayList<>();
+        List<Query> excluded = new ArrayList<>();
+        for (Query operand : remaining) {
+            if (operand.getOperator() == QueryOperator.EQ) {
+                PostingList posting = postings(databaseName, collectionName, operand);
+                if (posting.isEmpty()) {
+                    return new BitSet();
+                }
+                postings.add(posting);
+            } else if (operand.getOperator() == QueryOperator.NOT) {
+                excluded.add(operand.getOperands().get(0));
+            } else {
+                included.add(operand);
+            }
+        }
+
+        List<BitSet> bitmaps = new ArrayList<>(included.size() + 1);
+        if (compound != null) {
+            bitmaps.add(compound);
+        }
+        for (Query operand : included) {
+            BitSet ordinals = match(databaseName, collectionName, operand);
+            if (ordinals.isEmpty()) {
+                return ordinals;
+            }
+            bitmaps.add(ordinals);
+        }
+        postings.sort(Comparator.comparingInt(PostingList::size));
+        bitmaps.sort(Comparator.comparingInt(BitSet::cardinality));
+
+        BitSet result;
+        if (!postings.isEmpty() && (bitmaps.isEmpty() || postings.get(0).size() <= bitmaps.get(0).cardinality())) {
+            result = postings.remove(0).toBitSet();
+        } else if (!bitmaps.isEmpty()) {
+            result = bitmaps.remove(0);
+        } else {
+            result = allOrdinals(databaseName, collectionName);
+        }
+        for (int i = 0; i < postings.size() && !result.isEmpty(); i++) {
+            postings.get(i).retainIn(result);
+        }
+        for (int i = 0; i < bitmaps.size() && !result.isEmpty(); i++) {
+            result.and(bitmaps.get(i));
+        }
+        for (int i = 0; i < excluded.size() && !result.isEmpty(); i++) {
+            Query operand = excluded.get(i);
+            if (operand.getOperator() == QueryOperator.EQ) {
+                postings(databaseName, collectionName, operand).removeFrom(result);
+            } else {
+                result.andNot(match(databaseName, collectionName, operand));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Answers with the compound index covering the most operands, at least two, and takes them off the list.
+     * Returns null when no compound index applies.
+     */
+    private BitSet matchCompound(String databaseName, String collectionName, List<Query> operands) throws ResourceNotFoundException {
+        Map<String, Query> equalities = new HashMap<>();
+        Map<String, Query> ranges = new HashMap<>();
+        for (Query operand : operands) {
+            if (operand.getOperator() == QueryOperator.EQ) {
+                equalities.putIfAbsent(operand.getPropertyName(), operand);
+            } else if (operand.getOperator() == QueryOperator.RANGE) {
+                ranges.putIfAbsent(operand.getPropertyName(), operand);
+            }
+        }
+        if (equalities.isEmpty()) {
+            return null;
+        }
+        CompoundIndex best = null;
+        int bestPrefix = 0;
+        Query bestRange = null;
+        for (CompoundIndex compoundIndex : indexingManager.getCompoundIndexes(databaseName, collectionName)) {
+            List<String> propertyNames = compoundIndex.getPropertyNames();
+            int prefix = 0;
+            while (prefix < propertyNames.size() && equalities.containsKey(propertyNames.get(prefix))) {
+                prefix++;
+            }
+            Query range = prefix > 0 && prefix < propertyNames.size() ? ranges.get(propertyNames.get(prefix)) : null;
+            int covered = prefix + (range != null ? 1 : 0);
+            if (covered >= 2 && covered > bestPrefix + (bestRange != null ? 1 : 0)) {
+                best = compoundIndex;
+                bestPrefix = prefix;
+                bestRange = range;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        List<String> prefixValues = new ArrayList<>(bestPrefix);
+        for (int i = 0; i < bestPrefix; i++) {
+            Query equality = equalities.get(best.getPropertyNames().get(i));
+            prefixValues.add(equality.getValue());
+            operands.remove(equality);
+        }
+        if (bestRange != null) {
+            operands.remove(bestRange);
+        }
+        BitSet ordinals = new BitSet();
+        indexingManager.addCompoundPostings(databaseName, collectionName, best, prefixValues, bestRange != null ? bestRange.getRange() : null, ordinals);
+        return ordinals;
+    }
+
+    private BitSet union(String databaseName, String collectionName, List<Query> operands) throws ResourceNotFoundException {
+        BitSet result = new BitSet();
+        for (Query operand : operands) {
+            if (operand.getOperator() == QueryOperator.EQ) {
+                postings(databaseName, collectionName, operand).addTo(result);
+            } else {
+                result.or(match(databaseName, collectionName, operand));
+            }
+        }
+        return result;
+    }
+
+    private PostingList postings(String databaseName, String collectionName, Query operand) throws ResourceNotFoundException {
+        return indexingManager.searchPostingsInInvertedPropertyIndex(databaseName, collectionName, operand.getPropertyName(), operand.getValue());
+    }
+
+    // documents without any indexed property get their ordinal here
+    private BitSet allOrdinals(String databaseName, String collectionName) throws ResourceNotFoundException {
+        CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
+        DocumentOrdinals ordinals = indexingManager.getDocumentOrdinals(databaseName, collectionName);
+        BitSet result = new BitSet();
+        collectionIndex.getBPlusTree().range(null, null, true).forEachRemaining(entry -> result.set(ordinals.ordinalOf(entry.getKey())));
+        return result;
+    }
+}
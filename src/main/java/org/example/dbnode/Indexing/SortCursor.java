@@ -0,0 +1,58 @@
+package org.example.dbnode.Indexing;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Walks the documents of an inverted index in property value order, ascending or descending, documents sharing a
+ * value in id order, reversed along with the values when descending. The walk follows the (value, id) order the index
+ * keeps for sorting, so the first K documents cost a descent of that tree and K steps along its leaves, however many
+ * documents share a value.
+ * <p>
+ * The {@link #position()} of the last document returned is a keyset cursor: the value and the document id, which
+ * resume the walk right after that document however the index changed in between, on any node holding the collection.
+ * Resuming seeks to that key, it does not walk the documents before it.
+ */
+public class SortCursor<T extends Comparable<T>> implements Iterator<String> {
+    private final Iterator<Map.Entry<CompositeKey, String>> documents;
+    private T returnedValue;
+    private String returnedDocumentId;
+
+    SortCursor(BPlusTree<CompositeKey, String> sortOrder, boolean descending, T afterValue, String afterDocumentId) {
+        CompositeKey after = afterValue == null ? null : CompositeKey.of(afterValue, afterDocumentId);
+        this.documents = descending ? sortOrder.descendingRange(null, true, after, false) : sortOrder.range(after, false, null, true);
+        if (after != null) {
+            this.returnedValue = afterValue;
+            this.returnedDocumentId = afterDocumentId;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return documents.hasNext();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public String next() {
+        Map.Entry<CompositeKey, String> document = documents.next();
+        returnedValue = (T) document.getKey().get(0);
+        returnedDocumentId = document.getValue();
+        return returnedDocumentId;
+    }
+
+    /**
+     * Returns the cursor to resume after the last document returned as "id:value", the id and string values quoted
+     * as JSON so the value parses back as the type of the property. Null before the first document.
+     */
+    public String position() {
+        if (returnedValue == null) {
+            return null;
+        }
+        String valueText = returnedValue instanceof String text ? TextNode.valueOf(text).toString() : returnedValue.toString();
+        return TextNode.valueOf(returnedDocumentId).toString() + ":" + valueText;
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.dbnode.Model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+/**
+ * Aggregates of one group of documents, or of the whole collection when the group is null. The count is the number
+ * of documents in the group, sum, min, max and avg cover those having the aggregated property and are null when no
+ * property is aggregated or no document of the group has it.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Aggregate {
+    private final Object group;
+    private final long count;
+    private Double sum;
+    private Double min;
+    private Double max;
+    // documents of the group having the aggregated property
+    private long valueCount;
+
+    public Aggregate(Object group, long count) {
+        this.group = group;
+        this.count = count;
+    }
+
+    /**
+     * Adds {@code occurrences} documents having the value.
+     */
+    public void add(double value, long occurrences) {
+        sum = (sum == null ? 0 : sum) + value * occurrences;
+        min = min == null ? value : Math.min(min, value);
+        max = max == null ? value : Math.max(max, value);
+        valueCount += occurrences;
+    }
+
+    public Double getAvg() {
+        return valueCount == 0 ? null : sum / valueCount;
+    }
+}
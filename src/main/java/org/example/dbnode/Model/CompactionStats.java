@@ -0,0 +1,29 @@
+package org.example.dbnode.Model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Space usage of a collection and what the compactor did to it so far.
+ * Pause times are how long the collection lock was held by a compaction.
+ */
+@Getter
+@Setter
+public class CompactionStats {
+    private long fileBytes;
+    private long liveBytes;
+    private double deadRatio;
+    private long compactions;
+    private long reclaimedBytes;
+    private long lastPauseMillis;
+    private long maxPauseMillis;
+    private long totalPauseMillis;
+
+    public synchronized void recordCompaction(long pauseMillis, long reclaimed) {
+        compactions++;
+        reclaimedBytes += reclaimed;
+        lastPauseMillis = pauseMillis;
+        maxPauseMillis = Math.max(maxPauseMillis, pauseMillis);
+        totalPauseMillis += pauseMillis;
+    }
+}
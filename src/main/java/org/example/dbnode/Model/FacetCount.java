@@ -0,0 +1,17 @@
+package org.example.dbnode.Model;
+
+import lombok.Getter;
+
+/**
+ * A value of a facet property and how many documents of the result set have it.
+ */
+@Getter
+public class FacetCount {
+    private final Object value;
+    private final long count;
+
+    public FacetCount(Object value, long count) {
+        this.value = value;
+        this.count = count;
+    }
+}
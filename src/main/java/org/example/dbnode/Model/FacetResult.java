@@ -0,0 +1,25 @@
+package org.example.dbnode.Model;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The size of a result set and the most frequent values of each facet property within it, by property in the order
+ * they were asked for.
+ */
+@Getter
+public class FacetResult {
+    private final long total;
+    private final Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+
+    public FacetResult(long total) {
+        this.total = total;
+    }
+
+    public void addFacet(String propertyName, List<FacetCount> counts) {
+        facets.put(propertyName, counts);
+    }
+}
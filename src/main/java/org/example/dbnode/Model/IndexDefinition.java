@@ -0,0 +1,64 @@
+package org.example.dbnode.Model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Getter;
+import org.example.dbnode.Enum.IndexKind;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * An index a collection schema declares: {"properties": ["city"], "kind": "inverted"} indexes one property for
+ * equality and range lookups, {"properties": ["tenant", "status"], "kind": "compound"} indexes several together.
+ * {"properties": ["email"], "kind": "ngram"} adds substring lookups on a string property to its inverted index.
+ * The kind can be left out, it follows from the number of properties.
+ */
+@Getter
+public class IndexDefinition {
+    private final List<String> propertyNames;
+    private final IndexKind kind;
+
+    public IndexDefinition(List<String> propertyNames, IndexKind kind) {
+        if (propertyNames.isEmpty() || new HashSet<>(propertyNames).size() != propertyNames.size()) {
+            throw new IllegalArgumentException("An index takes one or more distinct properties");
+        }
+        if ((kind != IndexKind.COMPOUND) != (propertyNames.size() == 1)) {
+            throw new IllegalArgumentException("An inverted or ngram index takes one property, a compound index two or more");
+        }
+        this.propertyNames = List.copyOf(propertyNames);
+        this.kind = kind;
+    }
+
+    public static IndexDefinition of(JsonNode node) {
+        if (node == null || !node.path("properties").isArray()) {
+            throw new IllegalArgumentException("An index needs an array of properties");
+        }
+        List<String> propertyNames = new ArrayList<>();
+        node.get("properties").forEach(propertyName -> propertyNames.add(propertyName.asText()));
+        IndexKind kind;
+        if (node.hasNonNull("kind")) {
+            try {
+                kind = IndexKind.valueOf(node.get("kind").asText().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown index kind: " + node.get("kind").asText());
+            }
+        } else {
+            kind = defaultKind(propertyNames);
+        }
+        return new IndexDefinition(propertyNames, kind);
+    }
+
+    public static IndexKind defaultKind(List<String> propertyNames) {
+        return propertyNames.size() == 1 ? IndexKind.INVERTED : IndexKind.COMPOUND;
+    }
+
+    public ObjectNode toJson() {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        propertyNames.forEach(node.putArray("properties")::add);
+        node.put("kind", kind.name().toLowerCase());
+        return node;
+    }
+}
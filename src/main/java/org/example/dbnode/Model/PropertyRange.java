@@ -0,0 +1,49 @@
+package org.example.dbnode.Model;
+
+import lombok.Getter;
+
+/**
+ * Bounds of a range filter on an indexed property, as given on the request before they are cast to the type
+ * of the property in the schema. A null bound leaves that side of the range open.
+ */
+@Getter
+public class PropertyRange {
+    private final String lower;
+    private final boolean lowerInclusive;
+    private final String upper;
+    private final boolean upperInclusive;
+
+    public PropertyRange(String lower, boolean lowerInclusive, String upper, boolean upperInclusive) {
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+    }
+
+    /**
+     * Builds the range from the gt, gte, lt, lte and between request parameters, between taking both inclusive
+     * bounds separated by a comma. Returns null when none of them is given.
+     */
+    public static PropertyRange of(String gt, String gte, String lt, String lte, String between) {
+        if (gt == null && gte == null && lt == null && lte == null && between == null) {
+            return null;
+        }
+        if (between != null) {
+            if (gt != null || gte != null || lt != null || lte != null) {
+                throw new IllegalArgumentException("between can not be combined with gt, gte, lt or lte");
+            }
+            String[] bounds = between.split(",", 2);
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("between takes two values separated by a comma");
+            }
+            return new PropertyRange(bounds[0], true, bounds[1], true);
+        }
+        if (gt != null && gte != null) {
+            throw new IllegalArgumentException("Only one of gt and gte can be given");
+        }
+        if (lt != null && lte != null) {
+            throw new IllegalArgumentException("Only one of lt and lte can be given");
+        }
+        return new PropertyRange(gt != null ? gt : gte, gte != null, lt != null ? lt : lte, lte != null);
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.dbnode.Model;
+
+import lombok.Getter;
+import org.example.dbnode.Enum.SortDirection;
+
+/**
+ * The order documents are returned in, by the values of an indexed property.
+ */
+@Getter
+public class PropertySort {
+    private final String propertyName;
+    private final SortDirection direction;
+
+    public PropertySort(String propertyName, SortDirection direction) {
+        this.propertyName = propertyName;
+        this.direction = direction;
+    }
+
+    /**
+     * Parses the sort request parameter, {@code <property>:asc} or {@code <property>:desc}, ascending when the
+     * direction is left out. Returns null for a null parameter.
+     */
+    public static PropertySort of(String sort) {
+        if (sort == null) {
+            return null;
+        }
+        int separator = sort.lastIndexOf(':');
+        String propertyName = separator < 0 ? sort : sort.substring(0, separator);
+        if (propertyName.isBlank()) {
+            throw new IllegalArgumentException("sort needs a property name");
+        }
+        if (separator < 0) {
+            return new PropertySort(propertyName, SortDirection.ASC);
+        }
+        try {
+            return new PropertySort(propertyName, SortDirection.valueOf(sort.substring(separator + 1).toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort direction: " + sort.substring(separator + 1));
+        }
+    }
+
+    public boolean isDescending() {
+        return direction == SortDirection.DESC;
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.dbnode.Model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+import org.example.dbnode.Enum.QueryOperator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tree of predicates on indexed properties. Its JSON form nests {"and": [...]}, {"or": [...]} and {"not": {...}}
+ * around leaves naming a property and either an {@code eq} value or range bounds, e.g.
+ * <pre>
+ * {"and": [{"property": "city", "eq": "Amman"}, {"property": "age", "gte": 30, "lt": 40}, {"not": {"property": "active", "eq": false}}]}
+ * </pre>
+ * {@code between} takes an array of two inclusive bounds. Leaves on string properties can also match by
+ * {@code startsWith} or {@code contains}, e.g. {"property": "email", "contains": "@example"}.
+ */
+@Getter
+public class Query {
+    private final QueryOperator operator;
+    private final List<Query> operands;
+    private final String propertyName;
+    private final String value;
+    private final PropertyRange range;
+
+    private Query(QueryOperator operator, List<Query> operands, String propertyName, String value, PropertyRange range) {
+        this.operator = operator;
+        this.operands = operands;
+        this.propertyName = propertyName;
+        this.value = value;
+        this.range = range;
+    }
+
+    public static Query of(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("A query must be a JSON object");
+        }
+        if (node.has("and") || node.has("or")) {
+            if (node.size() != 1) {
+                throw new IllegalArgumentException("and/or must be the only field of their object");
+            }
+            Map.Entry<String, JsonNode> field = node.fields().next();
+            if (!field.getValue().isArray() || field.getValue().isEmpty()) {
+                throw new IllegalArgumentException(field.getKey() + " takes a non empty array of queries");
+            }
+            List<Query> operands = new ArrayList<>(field.getValue().size());
+            for (JsonNode operand : field.getValue()) {
+                operands.add(of(operand));
+            }
+            return new Query(field.getKey().equals("and") ? QueryOperator.AND : QueryOperator.OR, operands, null, null, null);
+        }
+        if (node.has("not")) {
+            if (node.size() != 1) {
+                throw new IllegalArgumentException("not must be the only field of its object");
+            }
+            return new Query(QueryOperator.NOT, List.of(of(node.get("not"))), null, null, null);
+        }
+        return leaf(node);
+    }
+
+    private static Query leaf(JsonNode node) {
+        if (!node.hasNonNull("property")) {
+            throw new IllegalArgumentException("A predicate needs a property, or an and/or/not of predicates");
+        }
+        String propertyName = node.get("property").asText();
+        if (node.has("eq")) {
+            if (node.size() != 2) {
+                throw new IllegalArgumentException("eq can not be combined with range bounds");
+            }
+            return new Query(QueryOperator.EQ, List.of(), propertyName, scalar(node, "eq"), null);
+        }
+        for (String textOperator : List.of("startsWith", "contains")) {
+            if (node.has(textOperator)) {
+                if (node.size() != 2) {
+                    throw new IllegalArgumentException(textOperator + " can not be combined with other predicate fields");
+                }
+                if (!node.get(textOperator).isTextual()) {
+                    throw new IllegalArgumentException(textOperator + " takes a string");
+                }
+                QueryOperator operator = textOperator.equals("startsWith") ? QueryOperator.PREFIX : QueryOperator.CONTAINS;
+                return new Query(operator, List.of(), propertyName, node.get(textOperator).asText(), null);
+            }
+        }
+        for (Iterator<String> fields = node.fieldNames(); fields.hasNext(); ) {
+            String field = fields.next();
+            if (!List.of("property", "gt", "gte", "lt", "lte", "between").contains(field)) {
+                throw new IllegalArgumentException("Unknown predicate field: " + field);
+            }
+        }
+        PropertyRange range;
+        if (node.has("between")) {
+            JsonNode bounds = node.get("between");
+            if (!bounds.isArray() || bounds.size() != 2) {
+                throw new IllegalArgumentException("between takes an array of two values");
+            }
+            if (node.size() != 2) {
+                throw new IllegalArgumentException("between can not be combined with gt, gte, lt or lte");
+            }
+            range = new PropertyRange(bounds.get(0).asText(), true, bounds.get(1).asText(), true);
+        } else {
+            range = PropertyRange.of(scalar(node, "gt"), scalar(node, "gte"), scalar(node, "lt"), scalar(node, "lte"), null);
+        }
+        if (range == null) {
+            throw new IllegalArgumentException("The predicate on " + propertyName + " needs eq, gt, gte, lt, lte or between");
+        }
+        return new Query(QueryOperator.RANGE, List.of(), propertyName, null, range);
+    }
+
+    private static String scalar(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null) {
+            return null;
+        }
+        if (!value.isValueNode() || value.isNull()) {
+            throw new IllegalArgumentException(field + " takes a string, number or boolean");
+        }
+        return value.asText();
+    }
+}
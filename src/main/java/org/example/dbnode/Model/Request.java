@@ -18,11 +18,13 @@ public class Request {
     private String url;
     private HttpMethod method;
     private final Map<String, Object> params;
+    private final Map<String, Object> uriVariables;
     private JsonNode body; // Change the type of body to JsonNode
     private final HttpHeaders headers;
 
     public Request() {
         params = new HashMap<>();
+        uriVariables = new HashMap<>();
         headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
     }
@@ -32,6 +34,12 @@ public class Request {
         return this;
     }
 
+    // Expanded into the {name} placeholders of the url, encoded so that reserved characters survive as data
+    public Request addUriVariable(String key, Object value){
+        uriVariables.put(key,value);
+        return this;
+    }
+
     public Request addHeader(String key, String value){
         headers.add(key,value);
         return this;
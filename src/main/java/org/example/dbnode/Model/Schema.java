@@ -4,12 +4,17 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.module.jsonSchema.jakarta.*;
+import com.networknt.schema.JsonSchema;
 import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SpecVersion;
 import com.networknt.schema.ValidationMessage;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.dbnode.Enum.DocumentFormat;
+import org.example.dbnode.Enum.IndexKind;
+import org.example.dbnode.Enum.StorageMode;
 
 import java.io.IOException;
 import java.util.*;
@@ -22,6 +27,16 @@ public class Schema {
     private String type;
     private Map<String, String> properties;
     private String[] required;
+    private StorageMode storage = StorageMode.ARRAY;
+    private DocumentFormat format = DocumentFormat.JSON;
+    // the indexes kept up to date on writes, null for schemas declaring none where every property is indexed
+    private List<IndexDefinition> indexes;
+
+    public Schema(String type, Map<String, String> properties, String[] required) {
+        this.type = type;
+        this.properties = properties;
+        this.required = required;
+    }
 
     public ObjectNode toJson() {
         ObjectMapper mapper = new ObjectMapper();
@@ -43,9 +58,7 @@ public class Schema {
     public static JsonNode fromClass(Class<?> clazz) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         JsonSchemaGenerator schemaGen = new JsonSchemaGenerator(mapper);
-        JsonSchema schema = schemaGen.generateSchema(clazz);
-
-        return mapper.convertValue(schema, JsonNode.class);
+        return mapper.convertValue(schemaGen.generateSchema(clazz), JsonNode.class);
     }
 
     public static Schema of(String jsonSchema) throws IOException {
@@ -64,8 +77,86 @@ public class Schema {
         });
 
         String[] required = requiredList.toArray(new String[0]);
+        StorageMode storage = schemaNode.has("storage")
+                ? StorageMode.valueOf(schemaNode.get("storage").asText().toUpperCase())
+                : StorageMode.ARRAY;
+        DocumentFormat format = schemaNode.has("format")
+                ? DocumentFormat.valueOf(schemaNode.get("format").asText().toUpperCase())
+                : DocumentFormat.JSON;
+        // Binary documents can not be embedded in a JSON array file, they are always kept in a log
+        if (format != DocumentFormat.JSON) {
+            storage = StorageMode.LOG;
+        }
+
+        List<IndexDefinition> indexes = null;
+        if (schemaNode.has("indexes")) {
+            indexes = new ArrayList<>();
+            for (JsonNode indexNode : schemaNode.get("indexes")) {
+                IndexDefinition index = IndexDefinition.of(indexNode);
+                validateIndex(properties, index);
+                indexes.add(index);
+            }
+        }
+
+        return new Schema(type, properties, required, storage, format, indexes);
+    }
+
+    /**
+     * Returns the declared indexes, an inverted index per property when the schema declares none.
+     */
+    public List<IndexDefinition> getIndexDefinitions() {
+        if (indexes != null) {
+            return indexes;
+        }
+        List<IndexDefinition> definitions = new ArrayList<>();
+        for (String propertyName : properties.keySet()) {
+            definitions.add(new IndexDefinition(List.of(propertyName), IndexKind.INVERTED));
+        }
+        return definitions;
+    }
+
+    /**
+     * Returns the properties writes have to index. Properties of a compound index count too, compound indexes
+     * are rebuilt from their property indexes.
+     */
+    public Set<String> getIndexedProperties() {
+        Set<String> indexedProperties = new HashSet<>();
+        getIndexDefinitions().forEach(index -> indexedProperties.addAll(index.getPropertyNames()));
+        return indexedProperties;
+    }
 
-        return new Schema(type, properties, required);
+    public void validateIndex(IndexDefinition index) {
+        validateIndex(properties, index);
+    }
+
+    private static void validateIndex(Map<String, String> properties, IndexDefinition index) {
+        if (!properties.keySet().containsAll(index.getPropertyNames())) {
+            throw new IllegalArgumentException("Index on properties missing from the schema: " + index.getPropertyNames());
+        }
+        if (index.getKind() == IndexKind.NGRAM && !properties.get(index.getPropertyNames().get(0)).equalsIgnoreCase("string")) {
+            throw new IllegalArgumentException("Only string properties can have an ngram index: " + index.getPropertyNames().get(0));
+        }
+    }
+
+    // the properties having an ngram index on top of their inverted index
+    public Set<String> getNgramIndexes() {
+        Set<String> ngramIndexes = new HashSet<>();
+        for (IndexDefinition index : getIndexDefinitions()) {
+            if (index.getKind() == IndexKind.NGRAM) {
+                ngramIndexes.add(index.getPropertyNames().get(0));
+            }
+        }
+        return ngramIndexes;
+    }
+
+    public List<List<String>> getCompoundIndexes() {
+        List<List<String>> compoundIndexes = new ArrayList<>();
+        for (IndexDefinition index : getIndexDefinitions()) {
+            if (index.getKind() == IndexKind.COMPOUND) {
+                compoundIndexes.add(index.getPropertyNames());
+            }
+        }
+        return compoundIndexes;
     }
 
     public static void main(String[] args) throws IOException {
@@ -98,9 +189,14 @@ public class Schema {
     }*/
     public boolean validateDocument(ObjectNode jsonToValidate) {
         JsonNode schemaNode = this.toJson();
-        Set<ValidationMessage> validationMessages = JsonSchemaFactory.getInstance().getSchema(schemaNode).validate(jsonToValidate);
+        Set<ValidationMessage> validationMessages = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V4).getSchema(schemaNode).validate(jsonToValidate);
         return validationMessages.isEmpty();
     }
+    // The compiled schema is shared by the validating threads, building it is the expensive part
+    public boolean validateDocuments(List<ObjectNode> documentsToValidate) {
+        JsonSchema compiledSchema = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V4).getSchema(this.toJson());
+        return documentsToValidate.parallelStream().allMatch(document -> compiledSchema.validate(document).isEmpty());
+    }
 }
     /*
     // Example JSON Schema
@@ -1,14 +1,20 @@
 package org.example.dbnode.Service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.log4j.Log4j2;
 import org.example.dbnode.DatabaseDiskCRUD;
 import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceAlreadyExistsException;
 import org.example.dbnode.Exception.ResourceNotFoundException;
 import org.example.dbnode.DatabaseRegistry;
+import org.example.dbnode.Enum.DocumentFormat;
+import org.example.dbnode.Enum.IndexKind;
+import org.example.dbnode.Model.CompactionStats;
+import org.example.dbnode.Model.IndexDefinition;
 import org.example.dbnode.Model.Schema;
 import org.example.dbnode.Service.Interfaces.CollectionService;
+import org.example.dbnode.Storage.CollectionCompactor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -19,11 +25,13 @@ import java.util.List;
 public class CollectionServiceImpl implements CollectionService {
     private final DatabaseDiskCRUD databaseDiskCRUD;
     private final DatabaseRegistry databaseRegistry;
+    private final CollectionCompactor collectionCompactor;
 
     @Autowired
-    public CollectionServiceImpl(DatabaseDiskCRUD databaseDiskCRUD, DatabaseRegistry databaseRegistry) {
+    public CollectionServiceImpl(DatabaseDiskCRUD databaseDiskCRUD, DatabaseRegistry databaseRegistry, CollectionCompactor collectionCompactor) {
         this.databaseDiskCRUD = databaseDiskCRUD;
         this.databaseRegistry = databaseRegistry;
+        this.collectionCompactor = collectionCompactor;
     }
 
 
@@ -49,4 +57,37 @@ public class CollectionServiceImpl implements CollectionService {
         return databaseDiskCRUD.readCollections(databaseName);
     }
 
+    public CompactionStats getCompactionStats(String databaseName, String collectionName) throws ResourceNotFoundException {
+        log.info("reading compaction stats of collection: " + collectionName + " in database: " + databaseName);
+        return collectionCompactor.getStats(databaseName, collectionName);
+    }
+
+    public CompactionStats compactCollection(String databaseName, String collectionName) throws ResourceNotFoundException, OperationFailedException {
+        log.info("compacting collection: " + collectionName + " in database: " + databaseName);
+        return collectionCompactor.compact(databaseName, collectionName);
+    }
+
+    public void convertCollectionFormat(String databaseName, String collectionName, DocumentFormat format) throws ResourceNotFoundException, OperationFailedException, IOException {
+        log.info("converting collection: " + collectionName + " in database: " + databaseName + " to " + format);
+        ObjectNode schema = databaseDiskCRUD.convertCollectionFormat(databaseName, collectionName, format);
+        databaseRegistry.addCollection(databaseName, collectionName, schema);
+    }
+
+    public List<IndexDefinition> getIndexes(String databaseName, String collectionName) throws ResourceNotFoundException {
+        log.info("reading indexes of collection: " + collectionName + " in database: " + databaseName);
+        return databaseDiskCRUD.getCollectionSchema(databaseName, collectionName).getIndexDefinitions();
+    }
+
+    public void createIndex(String databaseName, String collectionName, IndexDefinition index) throws ResourceNotFoundException, ResourceAlreadyExistsException, OperationFailedException, IOException {
+        log.info("creating index on " + index.getPropertyNames() + " of collection: " + collectionName + " in database: " + databaseName);
+        ObjectNode schema = databaseDiskCRUD.createIndex(databaseName, collectionName, index);
+        databaseRegistry.addCollection(databaseName, collectionName, schema);
+    }
+
+    public void dropIndex(String databaseName, String collectionName, List<String> propertyNames, IndexKind kind) throws ResourceNotFoundException, OperationFailedException, IOException {
+        log.info("dropping " + kind.name().toLowerCase() + " index on " + propertyNames + " of collection: " + collectionName + " in database: " + databaseName);
+        ObjectNode schema = databaseDiskCRUD.dropIndex(databaseName, collectionName, propertyNames, kind);
+        databaseRegistry.addCollection(databaseName, collectionName, schema);
+    }
+
 }
@@ -1,5 +1,6 @@
 package org.example.dbnode.Service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.log4j.Log4j2;
@@ -8,13 +9,20 @@ import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceNotFoundException;
 import org.example.dbnode.Exception.SchemaMismatchException;
 import org.example.dbnode.Exception.VersionMismatchException;
+import org.example.dbnode.Indexing.AggregationEngine;
+import org.example.dbnode.Model.Aggregate;
 import org.example.dbnode.Model.Document;
+import org.example.dbnode.Model.FacetResult;
+import org.example.dbnode.Model.PropertyRange;
+import org.example.dbnode.Model.PropertySort;
+import org.example.dbnode.Model.Query;
 import org.example.dbnode.Model.Schema;
 import org.example.dbnode.Service.Interfaces.DocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,11 +32,13 @@ import java.util.UUID;
 public class DocumentServiceImpl implements DocumentService {
     private final DatabaseDiskCRUD databaseDiskCRUD;
     private final CollectionServiceImpl collectionService;
+    private final AggregationEngine aggregationEngine;
 
     @Autowired
-    public DocumentServiceImpl(DatabaseDiskCRUD databaseDiskCRUD, CollectionServiceImpl collectionService) {
+    public DocumentServiceImpl(DatabaseDiskCRUD databaseDiskCRUD, CollectionServiceImpl collectionService, AggregationEngine aggregationEngine) {
         this.databaseDiskCRUD = databaseDiskCRUD;
         this.collectionService = collectionService;
+        this.aggregationEngine = aggregationEngine;
     }
 
     public Document createDocument(String databaseName, String collectionName, ObjectNode documentJson,Optional<String> documentIdOpt) throws OperationFailedException, IOException, ResourceNotFoundException, SchemaMismatchException {
@@ -45,12 +55,38 @@ public class DocumentServiceImpl implements DocumentService {
         return newDoc;
     }
 
+    public List<Document> createDocuments(String databaseName, String collectionName, List<ObjectNode> documentsJson) throws OperationFailedException, ResourceNotFoundException, SchemaMismatchException {
+        log.info("adding " + documentsJson.size() + " documents to collection: " + collectionName + " in database: " + databaseName);
+        Schema schema = collectionService.getCollectionSchema(databaseName, collectionName);
+        if (!schema.validateDocuments(documentsJson)) {
+            throw new SchemaMismatchException();
+        }
+        List<Document> documents = new ArrayList<>(documentsJson.size());
+        for (ObjectNode documentJson : documentsJson) {
+            if (!documentJson.hasNonNull("_id")) {
+                documentJson.put("_id", UUID.randomUUID().toString());
+            }
+            documents.add(new Document(documentJson));
+        }
+        List<Document> newDocs = databaseDiskCRUD.createDocuments(databaseName, collectionName, documents);
+        log.info("Created " + newDocs.size() + " documents successfully");
+        return newDocs;
+    }
+
     public void deleteDocumentById(String databaseName, String collectionName, String documentId) throws OperationFailedException, ResourceNotFoundException {
         log.info("deleting document: " + documentId + " from collection: " + collectionName + " in database: " + databaseName);
         databaseDiskCRUD.deleteDocumentFromCollection(databaseName, collectionName, documentId);
         log.info("Deleted Document with id : "+documentId+" successfully");
     }
 
+    public int deleteDocuments(String databaseName, String collectionName, List<String> documentIds) throws OperationFailedException, ResourceNotFoundException {
+        log.info("deleting " + documentIds.size() + " documents from collection: " + collectionName + " in database: " + databaseName);
+        // The ids may come straight from an inverted index posting list, which the deletion itself modifies
+        int deletedDocuments = databaseDiskCRUD.deleteDocumentsFromCollection(databaseName, collectionName, new ArrayList<>(documentIds));
+        log.info("Deleted " + deletedDocuments + " documents successfully");
+        return deletedDocuments;
+    }
+
     public void updateDocument(String databaseName, String collectionName, String documentId,ObjectNode updatedProperties) throws OperationFailedException, ResourceNotFoundException, VersionMismatchException {
         log.info("updating document: " + documentId + " in collection: " + collectionName + " in database: " + databaseName);
         databaseDiskCRUD.updateDocument(databaseName, collectionName, documentId, updatedProperties);
@@ -67,11 +103,62 @@ public class DocumentServiceImpl implements DocumentService {
         return databaseDiskCRUD.fetchDocumentFromDatabase(databaseName, collectionName, documentId);
     }
 
+    public FacetResult facetDocuments(String databaseName, String collectionName, Query filter, List<String> propertyNames, int limit) throws ResourceNotFoundException {
+        log.info("counting facets " + propertyNames + " of collection: " + collectionName + " in database: " + databaseName);
+        return aggregationEngine.facets(databaseName, collectionName, filter, propertyNames, limit);
+    }
+
+    public boolean documentExists(String databaseName, String collectionName, String documentId) throws ResourceNotFoundException {
+        log.info("checking document: " + documentId + " exists in collection: " + collectionName + " in database: " + databaseName);
+        return databaseDiskCRUD.documentExists(databaseName, collectionName, documentId);
+    }
+
+    /**
+     * Counts the whole collection when no property is given, otherwise the documents matching the property value or range.
+     */
+    public long countDocuments(String databaseName, String collectionName, String propertyName, String propertyValue, PropertyRange range) throws ResourceNotFoundException {
+        log.info("counting documents in collection: " + collectionName + " in database: " + databaseName + (propertyName == null ? "" : " by property: " + propertyName));
+        if (propertyName == null) {
+            return databaseDiskCRUD.countDocuments(databaseName, collectionName);
+        }
+        return databaseDiskCRUD.countDocumentsByProperty(databaseName, collectionName, propertyName, propertyValue, range);
+    }
+
+    public List<Aggregate> aggregateDocuments(String databaseName, String collectionName, String groupBy, String propertyName) throws ResourceNotFoundException {
+        log.info("aggregating documents in collection: " + collectionName + " in database: " + databaseName + " grouped by: " + groupBy + " over: " + propertyName);
+        return aggregationEngine.aggregate(databaseName, collectionName, groupBy, propertyName);
+    }
+
     public List<JsonNode> fetchAllDocumentsFromCollection(String databaseName, String collectionName) throws ResourceNotFoundException {
         log.info("fetching all documents from collection: " + collectionName + " in database: " + databaseName);
         return databaseDiskCRUD.fetchAllDocumentsFromCollection(databaseName, collectionName);
     }
 
+    public String writeCollectionDocuments(String databaseName, String collectionName, String after, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        log.info("streaming documents from collection: " + collectionName + " in database: " + databaseName + " after: " + after + " limit: " + limit);
+        return databaseDiskCRUD.writeCollectionDocuments(databaseName, collectionName, after, limit, generator);
+    }
+
+    public int writeDocumentsByPropertyValue(String databaseName, String collectionName, String propertyName, String propertyValue, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        log.info("streaming documents from collection: " + collectionName + " in database: " + databaseName + " with property: " + propertyName + " having value: " + propertyValue);
+        return databaseDiskCRUD.writeDocumentsByPropertyValue(databaseName, collectionName, propertyName, propertyValue, generator);
+    }
+
+    public String writeDocumentsSortedByProperty(String databaseName, String collectionName, PropertySort sort, String after, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        log.info("streaming documents from collection: " + collectionName + " in database: " + databaseName + " sorted by: " + sort.getPropertyName() + " " + sort.getDirection() + " after: " + after + " limit: " + limit);
+        return databaseDiskCRUD.writeDocumentsSortedByProperty(databaseName, collectionName, sort, after, limit, generator);
+    }
+
+    public int writeDocumentsByPropertyRange(String databaseName, String collectionName, String propertyName, PropertyRange range, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        log.info("streaming documents from collection: " + collectionName + " in database: " + databaseName + " with property: " + propertyName + " between: " + range.getLower() + " and " + range.getUpper());
+        return databaseDiskCRUD.writeDocumentsByPropertyRange(databaseName, collectionName, propertyName, range, limit, generator);
+    }
+
+    public int writeDocumentsByQuery(String databaseName, String collectionName, Query query, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException {
+        log.info("streaming documents from collection: " + collectionName + " in database: " + databaseName + " matching a query");
+        return databaseDiskCRUD.writeDocumentsByQuery(databaseName, collectionName, query, limit, generator);
+    }
+
     public List<JsonNode> fetchAllDocumentsByPropertyValue(String databaseName, String collectionName, String propertyName, String propertyValue) throws ResourceNotFoundException {
         log.info("fetching all documents from collection: " + collectionName + " in database: " + databaseName + " with property: " + propertyName + " having value: " + propertyValue);
         return databaseDiskCRUD.fetchAllDocumentsByPropertyValue(databaseName, collectionName, propertyName, propertyValue);
@@ -14,17 +14,23 @@ import org.apache.commons.io.FileUtils;
 import org.example.dbnode.Enum.Role;
 import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
 import org.example.dbnode.Indexing.CollectionIndex;
 import org.example.dbnode.Model.Schema;
 import org.example.dbnode.Model.User;
+import org.example.dbnode.Storage.DocumentLocation;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Service;
 import org.example.dbnode.Indexing.PropertyIndex;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -35,6 +41,8 @@ public final class FileService {
     private static final String ROOT_PATH = "src/main/resources/databases";
     private static final String USERS_FILE_PATH ="src/main/resources/users/users.json";
     private static final String ADMINS_FILE_PATH ="src/main/resources/users/admins.json";
+    private static final String WAL_FILE_PATH = "src/main/resources/wal/dbnode.wal";
+    public static final String DELETED_INDEX_ENTRY = "deleted";
 
     private static final class InstanceHolder {
         private static final FileService instance = new FileService();
@@ -103,6 +111,46 @@ public final class FileService {
     public File getCollectionFile(String databaseName,String collectionName) {
         return new File(getCollectionsPath(databaseName) + "/" + collectionName + ".json");
     }
+    public File getCollectionSegmentsDirectory(String databaseName, String collectionName) {
+        return new File(getCollectionsPath(databaseName) + "/" + collectionName);
+    }
+    public File getSegmentFile(String databaseName, String collectionName, int segment) {
+        return new File(getCollectionSegmentsDirectory(databaseName, collectionName) + "/" + String.format("%08d", segment) + ".segment");
+    }
+    public boolean isSegmentFile(String fileName) {
+        return fileName.endsWith(".segment");
+    }
+    public File getWriteAheadLogFile() {
+        return new File(WAL_FILE_PATH);
+    }
+    /**
+     * Flushes the documents, schema and index files of a collection to the disk, used to checkpoint the write ahead log.
+     * Files that are gone, the collection having been deleted meanwhile, are skipped.
+     */
+    public void forceCollectionFiles(String databaseName, String collectionName) throws IOException {
+        List<Path> roots = List.of(getCollectionFile(databaseName, collectionName).toPath(),
+                getCollectionSegmentsDirectory(databaseName, collectionName).toPath(),
+                getCollectionIndexesDirectory(databaseName, collectionName).toPath(),
+                getSchemaFilePath(databaseName, collectionName).toPath());
+        for (Path root : roots) {
+            if (!Files.exists(root)) {
+                continue;
+            }
+            List<Path> paths;
+            try (Stream<Path> pathStream = Files.walk(root)) {
+                paths = pathStream.filter(Files::isRegularFile).toList();
+            } catch (NoSuchFileException | UncheckedIOException e) {
+                continue;
+            }
+            for (Path path : paths) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                } catch (NoSuchFileException e) {
+                    log.info("Skipped flushing " + path + ", it was deleted");
+                }
+            }
+        }
+    }
     public void deleteDirectory(File directory) throws IOException {
         FileUtils.deleteDirectory(directory);
     }
@@ -128,28 +176,20 @@ public final class FileService {
         }
     }
 
-    public void rewriteIndexFile(String databaseName, String collectionName, CollectionIndex collectionIndex) {
+    public void rewriteIndexFile(String databaseName, String collectionName, CollectionIndex collectionIndex) throws IOException {
         File file = getCollectionIndexFile(databaseName, collectionName);
-        List<Map.Entry<String, Integer>> allEntries = collectionIndex.getBPlusTree().getAllEntries();
+        BPlusTree<String, DocumentLocation> tree = collectionIndex.getBPlusTree();
 
-        if (!allEntries.isEmpty()) {
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-                for (Map.Entry<String, Integer> entry : allEntries) {
-                    writer.write(entry.getKey() + "," + entry.getValue());
-                    writer.newLine();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-                log.error("Failed to rewrite index file");
-            }
+        if (tree.size() > 0) {
+            replaceIndexFile(file, tree.range(null, null, true));
         }else if (fileExists(file.getPath())) {
             file.delete();
         }
     }
     public void rewritePropertyIndexFile(File propertyIndexFile, PropertyIndex propertyIndex) {
         try {
-            List<Map.Entry<String, String>> allEntries = propertyIndex.getBPlusTree().getAllEntries();
-            if (allEntries.isEmpty()) {
+            BPlusTree<String, String> tree = propertyIndex.getBPlusTree();
+            if (tree.size() == 0) {
                 if (fileExists(propertyIndexFile.getPath())) {
                     propertyIndexFile.delete();
                     File parentDir = propertyIndexFile.getParentFile();
@@ -160,24 +200,76 @@ public final class FileService {
                 }
                 return;
             }
-            propertyIndexFile.createNewFile();
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(propertyIndexFile))) {
-                for (Map.Entry<String, String> entry : allEntries) {
-                    writer.write(entry.getKey() + "," + entry.getValue());
-                    writer.newLine();
-                }
-            }
+            replaceIndexFile(propertyIndexFile, tree.range(null, null, true));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-    public Map<String, Integer> readCollectionIndexFile(File indexFile) {
-        Map<String, Integer> indexData = new HashMap<>();
+
+    /**
+     * Writes the entries to a file next to the index file, syncs it and renames it over the index file,
+     * so that a crash leaves either the previous index file or the complete new one, never a truncated one.
+     */
+    private void replaceIndexFile(File indexFile, Iterator<? extends Map.Entry<String, ?>> entries) throws IOException {
+        File rewrittenFile = new File(indexFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(rewrittenFile);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out))) {
+            while (entries.hasNext()) {
+                Map.Entry<String, ?> entry = entries.next();
+                writer.write(entry.getKey() + "," + entry.getValue());
+                writer.newLine();
+            }
+            writer.flush();
+            out.getChannel().force(true);
+        }
+        Files.move(rewrittenFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(indexFile.getParentFile());
+    }
+
+    /**
+     * Makes the files created, renamed or deleted in the directory durable.
+     */
+    public void forceDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory, the rename is then as durable as the file system makes it
+            log.warn("Failed to flush directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Present while a compaction moves the documents of the collection and the collection index file still holds
+     * their previous offsets.
+     */
+    public File getCollectionRelocationMarker(String databaseName, String collectionName) {
+        return new File(getCollectionIndexesDirectory(databaseName, collectionName) + "/" + collectionName + "_relocating");
+    }
+
+    public void createCollectionRelocationMarker(String databaseName, String collectionName) throws OperationFailedException {
+        createCollectionIndexDirectory(databaseName, collectionName);
+        File marker = getCollectionRelocationMarker(databaseName, collectionName);
+        try (FileChannel channel = FileChannel.open(marker.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException e) {
+            throw new OperationFailedException("mark collection as relocating");
+        }
+        forceDirectory(marker.getParentFile());
+    }
+
+    public Map<String, DocumentLocation> readCollectionIndexFile(File indexFile) {
+        // kept in file order, an index file the tree rewrote is already sorted and loads without sorting again
+        Map<String, DocumentLocation> indexData = new LinkedHashMap<>();
         try (Scanner scanner = new Scanner(indexFile)) {
             while (scanner.hasNextLine()) {
                 String[] parts = scanner.nextLine().split(",", 2);
                 if (parts.length >= 2) {
-                    indexData.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+                    // Entries are appended, a later line for the same document supersedes the earlier ones
+                    if (parts[1].trim().equals(DELETED_INDEX_ENTRY)) {
+                        indexData.remove(parts[0].trim());
+                    } else {
+                        indexData.put(parts[0].trim(), DocumentLocation.parse(parts[1]));
+                    }
                 }
             }
         } catch (IOException e) {
@@ -186,12 +278,17 @@ public final class FileService {
         return indexData;
     }
     public Map<String, String> readPropertyIndexFile(File indexFile) {
-        Map<String, String> indexData = new HashMap<>();
+        Map<String, String> indexData = new LinkedHashMap<>();
         try (Scanner scanner = new Scanner(indexFile)) {
             while (scanner.hasNextLine()) {
                 String[] parts = scanner.nextLine().split(",", 2);
                 if (parts.length >= 2) {
-                    indexData.put(parts[0].trim(), parts[1].trim());
+                    // same as the collection index file, string values are quoted so a tombstone never clashes with one
+                    if (parts[1].trim().equals(DELETED_INDEX_ENTRY)) {
+                        indexData.remove(parts[0].trim());
+                    } else {
+                        indexData.put(parts[0].trim(), parts[1].trim());
+                    }
                 }
             }
         } catch (IOException e) {
@@ -212,27 +309,6 @@ public final class FileService {
             return null;
         }
     }
-    public void writeDocumentToCollection(File collectionFile, ObjectNode document) throws ResourceNotFoundException, OperationFailedException {
-        ObjectMapper mapper = new ObjectMapper();
-        try (RandomAccessFile file = new RandomAccessFile(collectionFile, "rw")) {
-            long endPosition = file.length() - 1;
-            file.seek(endPosition);
-            if (collectionFile.length() > 2) {
-                file.seek(endPosition - 1);
-                file.writeBytes(",");
-            }
-            String documentDataString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(document);
-            // Add indentation to the document data string
-            String indentedDocumentDataString = "\n\t" + documentDataString.replace("\n", "\n\t");
-            file.writeBytes(indentedDocumentDataString);
-            file.writeBytes("\n]");
-        } catch (FileNotFoundException e) {
-            throw new ResourceNotFoundException("Collection file");
-        } catch (IOException e) {
-            throw new OperationFailedException("write document to collection file");
-        }
-    }
-
     public boolean writeJsonArrayFile(Path filePath, ArrayNode jsonArray) {
         try {
             Files.createDirectories(filePath.getParent());
@@ -304,21 +380,36 @@ public final class FileService {
         }
     }
     public void appendToIndexFile(String path, Object key, String value) {
+        appendToIndexFile(path, Map.of(key.toString(), value));
+    }
+    // Only the new lines are written, a later line for the same document supersedes the earlier ones when the file is read
+    public void appendToIndexFile(String path, Map<String, String> entries) {
+        StringBuilder lines = new StringBuilder();
+        entries.forEach((key, value) -> lines.append(key).append(',').append(value).append(System.lineSeparator()));
         try {
             Path filePath = Paths.get(path);
             Files.createDirectories(filePath.getParent());
-            List<String> lines = new ArrayList<>();
-            if (Files.exists(filePath)) {
-                lines = Files.readAllLines(filePath);
-                lines.removeIf(line -> line.startsWith(key.toString() + ","));
-            }
-            lines.add(key + "," + value);
-            Files.write(filePath, lines);
+            Files.writeString(filePath, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
         } catch (IOException e) {
             e.printStackTrace();
             log.error("Failed to append to index file");
         }
     }
+    public void appendCollectionIndexEntry(String databaseName, String collectionName, String documentId, String value) {
+        appendCollectionIndexEntries(databaseName, collectionName, Map.of(documentId, value));
+    }
+    public void appendCollectionIndexEntries(String databaseName, String collectionName, Map<String, String> entries) {
+        Path filePath = getCollectionIndexFile(databaseName, collectionName).toPath();
+        StringBuilder lines = new StringBuilder();
+        entries.forEach((documentId, value) -> lines.append(documentId).append(',').append(value).append(System.lineSeparator()));
+        try {
+            Files.createDirectories(filePath.getParent());
+            Files.writeString(filePath, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Failed to append to collection index file");
+        }
+    }
     public ObjectNode stampVersionOnDocument(ObjectNode document) {
         ObjectNode newDocument = JsonNodeFactory.instance.objectNode();
         newDocument.put("_version", 0);
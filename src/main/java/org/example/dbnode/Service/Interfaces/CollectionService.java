@@ -1,9 +1,13 @@
 package org.example.dbnode.Service.Interfaces;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import org.example.dbnode.Enum.DocumentFormat;
+import org.example.dbnode.Enum.IndexKind;
 import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceAlreadyExistsException;
 import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Model.CompactionStats;
+import org.example.dbnode.Model.IndexDefinition;
 import org.example.dbnode.Model.Schema;
 
 import java.io.IOException;
@@ -14,4 +18,10 @@ public interface CollectionService {
     void createCollection(String databaseName, String collectionName, JsonNode jsonSchema) throws ResourceAlreadyExistsException, IOException, ResourceNotFoundException, OperationFailedException;
     void deleteCollection(String databaseName, String collectionName) throws ResourceNotFoundException, IOException, OperationFailedException;
     List<String> readCollections(String databaseName);
+    CompactionStats getCompactionStats(String databaseName, String collectionName) throws ResourceNotFoundException;
+    CompactionStats compactCollection(String databaseName, String collectionName) throws ResourceNotFoundException, OperationFailedException;
+    void convertCollectionFormat(String databaseName, String collectionName, DocumentFormat format) throws ResourceNotFoundException, OperationFailedException, IOException;
+    List<IndexDefinition> getIndexes(String databaseName, String collectionName) throws ResourceNotFoundException;
+    void createIndex(String databaseName, String collectionName, IndexDefinition index) throws ResourceNotFoundException, ResourceAlreadyExistsException, OperationFailedException, IOException;
+    void dropIndex(String databaseName, String collectionName, List<String> propertyNames, IndexKind kind) throws ResourceNotFoundException, OperationFailedException, IOException;
 }
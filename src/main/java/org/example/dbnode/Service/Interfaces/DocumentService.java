@@ -1,12 +1,18 @@
 package org.example.dbnode.Service.Interfaces;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.example.dbnode.Exception.OperationFailedException;
 import org.example.dbnode.Exception.ResourceNotFoundException;
 import org.example.dbnode.Exception.SchemaMismatchException;
 import org.example.dbnode.Exception.VersionMismatchException;
+import org.example.dbnode.Model.Aggregate;
 import org.example.dbnode.Model.Document;
+import org.example.dbnode.Model.FacetResult;
+import org.example.dbnode.Model.PropertyRange;
+import org.example.dbnode.Model.PropertySort;
+import org.example.dbnode.Model.Query;
 
 import java.io.IOException;
 import java.util.List;
@@ -14,11 +20,22 @@ import java.util.Optional;
 
 public interface DocumentService {
     Document createDocument(String databaseName, String collectionName, ObjectNode documentJson, Optional<String> documentIdOpt) throws OperationFailedException, IOException, ResourceNotFoundException, SchemaMismatchException;
+    List<Document> createDocuments(String databaseName, String collectionName, List<ObjectNode> documentsJson) throws OperationFailedException, ResourceNotFoundException, SchemaMismatchException;
     void deleteDocumentById(String databaseName, String collectionName, String documentId) throws OperationFailedException, ResourceNotFoundException;
+    int deleteDocuments(String databaseName, String collectionName, List<String> documentIds) throws OperationFailedException, ResourceNotFoundException;
     void updateDocument(String databaseName, String collectionName, String documentId, ObjectNode updatedProperties) throws OperationFailedException, ResourceNotFoundException, VersionMismatchException;
     String readDocumentProperty(String databaseName, String collectionName, String documentId, String propertyName) throws ResourceNotFoundException;
     Optional<Document> fetchDocument(String databaseName, String collectionName, String documentId);
+    List<Aggregate> aggregateDocuments(String databaseName, String collectionName, String groupBy, String propertyName) throws ResourceNotFoundException;
+    FacetResult facetDocuments(String databaseName, String collectionName, Query filter, List<String> propertyNames, int limit) throws ResourceNotFoundException;
+    boolean documentExists(String databaseName, String collectionName, String documentId) throws ResourceNotFoundException;
+    long countDocuments(String databaseName, String collectionName, String propertyName, String propertyValue, PropertyRange range) throws ResourceNotFoundException;
     List<JsonNode> fetchAllDocumentsFromCollection(String databaseName, String collectionName) throws ResourceNotFoundException;
+    String writeCollectionDocuments(String databaseName, String collectionName, String after, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException;
+    int writeDocumentsByPropertyValue(String databaseName, String collectionName, String propertyName, String propertyValue, JsonGenerator generator) throws ResourceNotFoundException, IOException;
+    String writeDocumentsSortedByProperty(String databaseName, String collectionName, PropertySort sort, String after, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException;
+    int writeDocumentsByPropertyRange(String databaseName, String collectionName, String propertyName, PropertyRange range, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException;
+    int writeDocumentsByQuery(String databaseName, String collectionName, Query query, int limit, JsonGenerator generator) throws ResourceNotFoundException, IOException;
     List<JsonNode> fetchAllDocumentsByPropertyValue(String databaseName, String collectionName, String propertyName, String propertyValue) throws ResourceNotFoundException;
     List<String> fetchAllDocumentsIdsByPropertyValue(String databaseName, String collectionName, String propertyName, String propertyValue) throws ResourceNotFoundException;
     List<String> fetchAllDocumentsIdsFromCollection(String databaseName, String collectionName) throws ResourceNotFoundException;
@@ -5,6 +5,7 @@ import org.example.dbnode.Exception.ResourceNotFoundException;
 import org.example.dbnode.Indexing.IndexingManager;
 import org.example.dbnode.DatabaseRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,7 +21,7 @@ public class LocksManager {
     private final IndexingManager indexingManager;
 
     @Autowired
-    public LocksManager(DatabaseRegistry databaseRegistry, IndexingManager indexingManager) {
+    public LocksManager(@Lazy DatabaseRegistry databaseRegistry, IndexingManager indexingManager) {
         this.databaseLocks = new ConcurrentHashMap<>();
         this.collectionLocks = new ConcurrentHashMap<>();
         this.documentLocks = new ConcurrentHashMap<>();
@@ -0,0 +1,136 @@
+package org.example.dbnode.Storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.example.dbnode.DatabaseDiskCRUD;
+import org.example.dbnode.DatabaseRegistry;
+import org.example.dbnode.Exception.OperationFailedException;
+import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Indexing.IndexingManager;
+import org.example.dbnode.Model.CompactionStats;
+import org.example.dbnode.Service.LocksManager;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reclaims the space left behind by tombstones and superseded document versions.
+ * <p>
+ * A background thread periodically compares the bytes each collection takes on disk with the bytes
+ * of its live documents, which the collection index counts as documents are written and deleted.
+ * Collections whose dead ratio crossed the threshold are compacted in one pass under the collection lock,
+ * remapping every location in the collection index at once and squashing the property index files
+ * down to their live entries.
+ */
+@Log4j2
+@Component
+public class CollectionCompactor {
+
+    private static final long CHECK_INTERVAL_SECONDS = 30;
+    private static final double DEAD_RATIO_THRESHOLD = 0.5;
+    private static final long MIN_DEAD_BYTES = 64 * 1024;
+
+    private final DatabaseDiskCRUD databaseDiskCRUD;
+    private final DatabaseRegistry databaseRegistry;
+    private final IndexingManager indexingManager;
+    private final LocksManager locksManager;
+    private final Map<String, CompactionStats> collectionStats;
+    private ScheduledExecutorService scheduler;
+
+    public CollectionCompactor(DatabaseDiskCRUD databaseDiskCRUD, DatabaseRegistry databaseRegistry, IndexingManager indexingManager, LocksManager locksManager) {
+        this.databaseDiskCRUD = databaseDiskCRUD;
+        this.databaseRegistry = databaseRegistry;
+        this.indexingManager = indexingManager;
+        this.locksManager = locksManager;
+        this.collectionStats = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts the periodic checks, called once the indexes are loaded and the write ahead log replayed.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "collection-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compactWhereNeeded, CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public CompactionStats getStats(String databaseName, String collectionName) throws ResourceNotFoundException {
+        CompactionStats stats = collectionStats.computeIfAbsent(indexingManager.getCollectionIndexKey(databaseName, collectionName), key -> new CompactionStats());
+        long fileBytes = databaseDiskCRUD.getStorage(databaseName, collectionName).fileBytes(databaseName, collectionName);
+        long liveBytes = indexingManager.getCollectionIndex(databaseName, collectionName).getLiveBytes();
+        stats.setFileBytes(fileBytes);
+        stats.setLiveBytes(liveBytes);
+        stats.setDeadRatio(fileBytes == 0 ? 0 : Math.max(0, 1 - (double) liveBytes / fileBytes));
+        return stats;
+    }
+
+    public CompactionStats compact(String databaseName, String collectionName) throws ResourceNotFoundException, OperationFailedException {
+        DocumentStorage storage = databaseDiskCRUD.getStorage(databaseName, collectionName);
+        ReentrantLock collectionLock = locksManager.getCollectionLock(databaseName, collectionName);
+        long bytesBefore, bytesAfter, pauseMillis;
+        collectionLock.lock();
+        long start = System.nanoTime();
+        try {
+            bytesBefore = storage.fileBytes(databaseName, collectionName);
+            indexingManager.beginCollectionRelocation(databaseName, collectionName);
+            Map<String, DocumentLocation> compactedLocations = storage.compact(databaseName, collectionName, readLiveLocations(databaseName, collectionName));
+            indexingManager.replaceCollectionIndexLocations(databaseName, collectionName, compactedLocations);
+            indexingManager.rewritePropertyIndexFiles(databaseName, collectionName);
+            bytesAfter = storage.fileBytes(databaseName, collectionName);
+        } finally {
+            indexingManager.endCollectionRelocation(databaseName, collectionName);
+            pauseMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            collectionLock.unlock();
+        }
+        long reclaimedBytes = Math.max(0, bytesBefore - bytesAfter);
+        CompactionStats stats = getStats(databaseName, collectionName);
+        stats.recordCompaction(pauseMillis, reclaimedBytes);
+        log.info("Compacted collection " + collectionName + " in database " + databaseName + ": reclaimed " + reclaimedBytes + " bytes, paused writes for " + pauseMillis + " ms");
+        return stats;
+    }
+
+    /**
+     * Compacts every collection whose dead ratio crossed the threshold, run by the background thread once started.
+     */
+    public void compactWhereNeeded() {
+        for (String databaseName : databaseRegistry.readDatabases()) {
+            for (String collectionName : databaseDiskCRUD.readCollections(databaseName)) {
+                try {
+                    CompactionStats stats = getStats(databaseName, collectionName);
+                    if (stats.getDeadRatio() >= DEAD_RATIO_THRESHOLD && stats.getFileBytes() - stats.getLiveBytes() >= MIN_DEAD_BYTES) {
+                        compact(databaseName, collectionName);
+                    }
+                } catch (Exception e) {
+                    log.error("Compaction check failed for collection " + collectionName + " in database " + databaseName + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Map<String, DocumentLocation> readLiveLocations(String databaseName, String collectionName) throws ResourceNotFoundException {
+        Map<String, DocumentLocation> liveLocations = new LinkedHashMap<>();
+        indexingManager.getCollectionIndex(databaseName, collectionName).getBPlusTree().range(null, null, true)
+                .forEachRemaining(entry -> liveLocations.put(entry.getKey(), entry.getValue()));
+        return liveLocations;
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.dbnode.Storage;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Where a document lives on disk.
+ * Documents of a JSON array collection are addressed by the byte offset and length of their
+ * object inside the array file, documents of a log collection by the segment file, the byte offset and the length of their record.
+ */
+@Getter
+@EqualsAndHashCode
+public final class DocumentLocation {
+    private static final int NO_SEGMENT = -1;
+    private static final int UNKNOWN_LENGTH = -1;
+
+    private final int segment;
+    private final long offset;
+    private final int length;
+
+    private DocumentLocation(int segment, long offset, int length) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static DocumentLocation atOffset(long offset, int length) {
+        return new DocumentLocation(NO_SEGMENT, offset, length);
+    }
+
+    public static DocumentLocation inSegment(int segment, long offset, int length) {
+        return new DocumentLocation(segment, offset, length);
+    }
+
+    public boolean isInSegment() {
+        return segment != NO_SEGMENT;
+    }
+
+    /**
+     * Index files written before byte offsets were introduced hold array positions,
+     * those locations carry no length and have to be rebuilt from the collection file.
+     */
+    public boolean hasByteRange() {
+        return length != UNKNOWN_LENGTH;
+    }
+
+    public static DocumentLocation parse(String value) {
+        String trimmed = value.trim();
+        int separator = trimmed.indexOf(':');
+        if (separator >= 0) {
+            return new DocumentLocation(Integer.parseInt(trimmed.substring(0, separator)), Long.parseLong(trimmed.substring(separator + 1)), UNKNOWN_LENGTH);
+        }
+        separator = trimmed.indexOf('+');
+        if (separator >= 0) {
+            return atOffset(Long.parseLong(trimmed.substring(0, separator)), Integer.parseInt(trimmed.substring(separator + 1)));
+        }
+        return new DocumentLocation(NO_SEGMENT, Long.parseLong(trimmed), UNKNOWN_LENGTH);
+    }
+
+    @Override
+    public String toString() {
+        if (isInSegment()) {
+            return segment + ":" + offset;
+        }
+        return hasByteRange() ? offset + "+" + length : String.valueOf(offset);
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.dbnode.Storage;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.dbnode.Exception.OperationFailedException;
+import org.example.dbnode.Exception.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk layout of the documents of a collection.
+ * Implementations only move bytes, keeping the indexes up to date is left to the caller.
+ * An update may return a new location for the document, which the caller has to record in the collection index.
+ */
+public interface DocumentStorage {
+    void createCollection(String databaseName, String collectionName) throws OperationFailedException;
+    boolean collectionExists(String databaseName, String collectionName);
+    boolean deleteCollection(String databaseName, String collectionName);
+    DocumentLocation appendDocument(String databaseName, String collectionName, ObjectNode document) throws ResourceNotFoundException, OperationFailedException;
+    /**
+     * Appends the documents in a single write and returns their locations in the same order.
+     */
+    List<DocumentLocation> appendDocuments(String databaseName, String collectionName, List<ObjectNode> documents) throws ResourceNotFoundException, OperationFailedException;
+    DocumentLocation updateDocument(String databaseName, String collectionName, DocumentLocation location, ObjectNode document) throws ResourceNotFoundException, OperationFailedException;
+    void deleteDocument(String databaseName, String collectionName, String documentId, DocumentLocation location) throws ResourceNotFoundException, OperationFailedException;
+    /**
+     * Deletes the documents, keyed by id, in a single pass over the collection.
+     */
+    void deleteDocuments(String databaseName, String collectionName, Map<String, DocumentLocation> locations) throws ResourceNotFoundException, OperationFailedException;
+    ObjectNode readDocument(String databaseName, String collectionName, DocumentLocation location);
+    /**
+     * Copies the document token by token from its bytes on disk to the generator, without building a tree.
+     * Returns false when there is no document at the location.
+     */
+    boolean copyDocument(String databaseName, String collectionName, DocumentLocation location, JsonGenerator generator) throws IOException;
+    List<JsonNode> readDocuments(String databaseName, String collectionName, List<DocumentLocation> locations);
+    List<JsonNode> readAllDocuments(String databaseName, String collectionName) throws ResourceNotFoundException;
+    Map<String, DocumentLocation> readLiveLocations(String databaseName, String collectionName);
+    /**
+     * Bytes the collection takes on disk, live documents plus whatever deletes and updates left behind.
+     */
+    long fileBytes(String databaseName, String collectionName);
+    /**
+     * Rewrites the collection with only the given live documents and returns their new locations.
+     * The caller holds the collection lock and swaps the returned locations into the collection index.
+     */
+    Map<String, DocumentLocation> compact(String databaseName, String collectionName, Map<String, DocumentLocation> liveLocations) throws OperationFailedException;
+}
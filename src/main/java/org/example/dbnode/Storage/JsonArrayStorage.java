@@ -0,0 +1,357 @@
+package org.example.dbnode.Storage;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import lombok.extern.log4j.Log4j2;
+import org.example.dbnode.Exception.OperationFailedException;
+import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Service.FileService;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Default storage, the whole collection is kept as a single JSON array in {@code <collection>.json}.
+ * <p>
+ * Every document is addressed by the byte offset and length of its object in the file, so a point read
+ * only parses that slice. Existing bytes never move outside of {@link #compact} : a delete overwrites the
+ * document with a {@code null} tombstone, an update that fits in the old slot is padded with whitespace and
+ * a bigger one tombstones the old slot and appends the document at the end of the array.
+ * Reads parse straight from a memory mapping of the file.
+ */
+@Log4j2
+@Component
+public class JsonArrayStorage implements DocumentStorage {
+
+    private static final byte[] TOMBSTONE = "null".getBytes(StandardCharsets.UTF_8);
+
+    private final FileService fileService;
+    private final MappedFileCache mappedFiles;
+    private final ObjectMapper mapper;
+
+    public JsonArrayStorage(FileService fileService, MappedFileCache mappedFiles) {
+        this.fileService = fileService;
+        this.mappedFiles = mappedFiles;
+        this.mapper = new ObjectMapper();
+    }
+
+    @Override
+    public void createCollection(String databaseName, String collectionName) throws OperationFailedException {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        fileService.createDirectoryIfNotExist(collectionFile.getParentFile().toPath());
+        // Empty Json for Collection
+        fileService.writeToFile(collectionFile, "[]");
+    }
+
+    @Override
+    public boolean collectionExists(String databaseName, String collectionName) {
+        return fileService.fileExists(fileService.getCollectionFile(databaseName, collectionName).getPath());
+    }
+
+    @Override
+    public boolean deleteCollection(String databaseName, String collectionName) {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        mappedFiles.invalidate(collectionFile);
+        return fileService.deleteFile(collectionFile);
+    }
+
+    @Override
+    public DocumentLocation appendDocument(String databaseName, String collectionName, ObjectNode document) throws ResourceNotFoundException, OperationFailedException {
+        return appendDocuments(databaseName, collectionName, List.of(document)).get(0);
+    }
+
+    @Override
+    public List<DocumentLocation> appendDocuments(String databaseName, String collectionName, List<ObjectNode> documents) throws ResourceNotFoundException, OperationFailedException {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        try (RandomAccessFile file = new RandomAccessFile(collectionFile, "rw")) {
+            long closingBracket = lastNonWhitespace(file, file.length());
+            long lastElementEnd = lastNonWhitespace(file, closingBracket) + 1;
+            if (closingBracket < 0 || lastElementEnd <= 0) {
+                throw new OperationFailedException("read the existing collection");
+            }
+            file.seek(lastElementEnd - 1);
+            boolean firstDocument = file.read() == '[';
+            // The whole batch goes out in one write that replaces the closing bracket
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            List<DocumentLocation> locations = new ArrayList<>(documents.size());
+            for (ObjectNode document : documents) {
+                byte[] documentBytes = encode(document);
+                batch.writeBytes((firstDocument ? "\n\t" : ",\n\t").getBytes(StandardCharsets.UTF_8));
+                locations.add(DocumentLocation.atOffset(lastElementEnd + batch.size(), documentBytes.length));
+                batch.writeBytes(documentBytes);
+                firstDocument = false;
+            }
+            batch.writeBytes("\n]".getBytes(StandardCharsets.UTF_8));
+            file.seek(lastElementEnd);
+            file.write(batch.toByteArray());
+            file.setLength(file.getFilePointer());
+            return locations;
+        } catch (FileNotFoundException e) {
+            throw new ResourceNotFoundException("Collection file");
+        } catch (IOException e) {
+            throw new OperationFailedException("write document to collection file");
+        }
+    }
+
+    @Override
+    public DocumentLocation updateDocument(String databaseName, String collectionName, DocumentLocation location, ObjectNode document) throws ResourceNotFoundException, OperationFailedException {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        byte[] documentBytes = encode(document);
+        if (documentBytes.length > location.getLength()) {
+            writeTombstone(collectionFile, location);
+            return appendDocument(databaseName, collectionName, document);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(collectionFile, "rw")) {
+            file.seek(location.getOffset());
+            file.write(padded(documentBytes, location.getLength()));
+            return location;
+        } catch (FileNotFoundException e) {
+            throw new ResourceNotFoundException("Collection file");
+        } catch (IOException e) {
+            throw new OperationFailedException("update document");
+        }
+    }
+
+    @Override
+    public void deleteDocument(String databaseName, String collectionName, String documentId, DocumentLocation location) throws ResourceNotFoundException, OperationFailedException {
+        writeTombstone(fileService.getCollectionFile(databaseName, collectionName), location);
+    }
+
+    @Override
+    public void deleteDocuments(String databaseName, String collectionName, Map<String, DocumentLocation> locations) throws ResourceNotFoundException, OperationFailedException {
+        List<DocumentLocation> slots = new ArrayList<>(locations.values());
+        // Front to back so the tombstones are written in one sweep over the file
+        slots.sort(Comparator.comparingLong(DocumentLocation::getOffset));
+        try (RandomAccessFile file = new RandomAccessFile(fileService.getCollectionFile(databaseName, collectionName), "rw")) {
+            for (DocumentLocation location : slots) {
+                file.seek(location.getOffset());
+                file.write(padded(TOMBSTONE, location.getLength()));
+            }
+        } catch (FileNotFoundException e) {
+            throw new ResourceNotFoundException("Collection file");
+        } catch (IOException e) {
+            throw new OperationFailedException("delete documents");
+        }
+    }
+
+    @Override
+    public ObjectNode readDocument(String databaseName, String collectionName, DocumentLocation location) {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        try {
+            return readDocument(collectionFile, location);
+        } catch (IOException e) {
+            log.error("Failed to read document at " + location + " from collection " + collectionName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean copyDocument(String databaseName, String collectionName, DocumentLocation location, JsonGenerator generator) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(openSlot(fileService.getCollectionFile(databaseName, collectionName), location))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            generator.copyCurrentStructure(parser);
+            return true;
+        }
+    }
+
+    @Override
+    public List<JsonNode> readDocuments(String databaseName, String collectionName, List<DocumentLocation> locations) {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        List<JsonNode> documents = new ArrayList<>();
+        try {
+            for (DocumentLocation location : locations) {
+                documents.add(readDocument(collectionFile, location));
+            }
+        } catch (IOException e) {
+            log.error("Failed to read documents from collection " + collectionName + ": " + e.getMessage());
+        }
+        return documents;
+    }
+
+    @Override
+    public List<JsonNode> readAllDocuments(String databaseName, String collectionName) throws ResourceNotFoundException {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        if (!collectionFile.exists()) {
+            throw new ResourceNotFoundException("Collection");
+        }
+        ArrayNode jsonArray;
+        try {
+            jsonArray = (ArrayNode) mapper.readTree(new ByteBufferBackedInputStream(mappedFiles.map(collectionFile)));
+        } catch (IOException e) {
+            log.warn("Mapped read of collection " + collectionName + " failed, reading it from the file: " + e.getMessage());
+            jsonArray = fileService.getCollectionDocuments(databaseName, collectionName);
+        }
+        List<JsonNode> documents = new ArrayList<>();
+        for (JsonNode jsonNode : jsonArray) {
+            // Skip the tombstones of deleted documents
+            if (jsonNode.isObject()) {
+                documents.add(jsonNode);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Streams through the array file and returns the byte range of every document by id,
+     * used to rebuild the collection index.
+     */
+    @Override
+    public Map<String, DocumentLocation> readLiveLocations(String databaseName, String collectionName) {
+        Map<String, DocumentLocation> liveLocations = new LinkedHashMap<>();
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        try (JsonParser parser = mapper.getFactory().createParser(collectionFile)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return liveLocations;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT || token == JsonToken.VALUE_NULL) {
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                long start = parser.getTokenLocation().getByteOffset();
+                JsonNode document = parser.readValueAsTree();
+                long end = parser.getCurrentLocation().getByteOffset();
+                liveLocations.put(document.get("_id").asText(), DocumentLocation.atOffset(start, (int) (end - start)));
+            }
+        } catch (IOException e) {
+            log.error("Failed to scan collection " + collectionName + ": " + e.getMessage());
+        }
+        return liveLocations;
+    }
+
+    @Override
+    public long fileBytes(String databaseName, String collectionName) {
+        return fileService.getCollectionFile(databaseName, collectionName).length();
+    }
+
+    /**
+     * Writes the live documents, without their padding, to a new array file in their current order
+     * and, once it is synced, moves it over the collection file.
+     */
+    @Override
+    public Map<String, DocumentLocation> compact(String databaseName, String collectionName, Map<String, DocumentLocation> liveLocations) throws OperationFailedException {
+        File collectionFile = fileService.getCollectionFile(databaseName, collectionName);
+        File compactedFile = new File(collectionFile.getPath() + ".compact");
+        List<Map.Entry<String, DocumentLocation>> entries = new ArrayList<>(liveLocations.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().getOffset()));
+
+        Map<String, DocumentLocation> compactedLocations = new LinkedHashMap<>();
+        try (FileChannel source = FileChannel.open(collectionFile.toPath(), StandardOpenOption.READ);
+             FileOutputStream compactedOut = new FileOutputStream(compactedFile);
+             OutputStream target = new BufferedOutputStream(compactedOut)) {
+            long position = 0;
+            target.write('[');
+            position++;
+            for (Map.Entry<String, DocumentLocation> entry : entries) {
+                byte[] documentBytes = trimPadding(readSlot(source, entry.getValue()));
+                byte[] prefix = (compactedLocations.isEmpty() ? "\n\t" : ",\n\t").getBytes(StandardCharsets.UTF_8);
+                target.write(prefix);
+                target.write(documentBytes);
+                compactedLocations.put(entry.getKey(), DocumentLocation.atOffset(position + prefix.length, documentBytes.length));
+                position += prefix.length + documentBytes.length;
+            }
+            target.write("\n]".getBytes(StandardCharsets.UTF_8));
+            // The rename below must not reach the disk before the bytes it publishes
+            target.flush();
+            compactedOut.getChannel().force(true);
+        } catch (IOException e) {
+            log.error("Failed to compact collection " + collectionName + ": " + e.getMessage());
+            compactedFile.delete();
+            throw new OperationFailedException("compact collection");
+        }
+        try {
+            Files.move(compactedFile.toPath(), collectionFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            fileService.forceDirectory(collectionFile.getParentFile());
+            mappedFiles.invalidate(collectionFile);
+        } catch (IOException e) {
+            log.error("Failed to replace collection file of " + collectionName + ": " + e.getMessage());
+            throw new OperationFailedException("compact collection");
+        }
+        return compactedLocations;
+    }
+
+    private ObjectNode readDocument(File collectionFile, DocumentLocation location) throws IOException {
+        return (ObjectNode) mapper.readTree(openSlot(collectionFile, location));
+    }
+
+    private InputStream openSlot(File collectionFile, DocumentLocation location) throws IOException {
+        try {
+            return new ByteBufferBackedInputStream(mappedFiles.slice(collectionFile, location.getOffset(), location.getLength()));
+        } catch (IOException e) {
+            // Files too large to be mapped are read through a channel
+            try (FileChannel channel = FileChannel.open(collectionFile.toPath(), StandardOpenOption.READ)) {
+                return new ByteArrayInputStream(readSlot(channel, location));
+            }
+        }
+    }
+
+    private byte[] readSlot(FileChannel channel, DocumentLocation location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.getLength());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, location.getOffset() + buffer.position()) < 0) {
+                throw new IOException("unexpected end of collection file");
+            }
+        }
+        return buffer.array();
+    }
+
+    private void writeTombstone(File collectionFile, DocumentLocation location) throws ResourceNotFoundException, OperationFailedException {
+        try (RandomAccessFile file = new RandomAccessFile(collectionFile, "rw")) {
+            file.seek(location.getOffset());
+            file.write(padded(TOMBSTONE, location.getLength()));
+        } catch (FileNotFoundException e) {
+            throw new ResourceNotFoundException("Collection file");
+        } catch (IOException e) {
+            throw new OperationFailedException("delete document");
+        }
+    }
+
+    private byte[] padded(byte[] bytes, int slotLength) {
+        byte[] slot = Arrays.copyOf(bytes, slotLength);
+        Arrays.fill(slot, bytes.length, slotLength, (byte) ' ');
+        return slot;
+    }
+
+    private byte[] trimPadding(byte[] slot) {
+        int length = slot.length;
+        while (length > 0 && slot[length - 1] == ' ') {
+            length--;
+        }
+        return Arrays.copyOf(slot, length);
+    }
+
+    private byte[] encode(ObjectNode document) throws OperationFailedException {
+        try {
+            String documentDataString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(document);
+            // Add indentation to the document data string
+            return documentDataString.replace("\n", "\n\t").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new OperationFailedException("serialize document");
+        }
+    }
+
+    private long lastNonWhitespace(RandomAccessFile file, long before) throws IOException {
+        for (long position = before - 1; position >= 0; position--) {
+            file.seek(position);
+            if (!Character.isWhitespace(file.read())) {
+                return position;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.dbnode.Storage;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only memory mappings of collection and segment files, shared by all readers.
+ * <p>
+ * A file is mapped on its first read and the mapping is reused until a read asks for bytes past its end,
+ * at which point the file grew and is mapped again at its new size. Reads within the mapping are served
+ * from the page cache without a system call. Writes go through regular channels and are visible through
+ * the mapping since both share the page cache, but a file that is replaced or deleted must be invalidated.
+ */
+@Log4j2
+@Component
+public class MappedFileCache {
+
+    private final Map<String, MappedByteBuffer> mappings;
+
+    public MappedFileCache() {
+        this.mappings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns a view of {@code length} bytes of the file starting at {@code offset}.
+     */
+    public ByteBuffer slice(File file, long offset, int length) throws IOException {
+        MappedByteBuffer mapping = mappings.get(file.getPath());
+        if (mapping == null || offset + length > mapping.capacity()) {
+            mapping = remap(file, offset + length);
+        }
+        return mapping.slice((int) offset, length);
+    }
+
+    /**
+     * Returns a view of the whole file at its current size.
+     */
+    public ByteBuffer map(File file) throws IOException {
+        long size = file.length();
+        MappedByteBuffer mapping = mappings.get(file.getPath());
+        if (mapping == null || mapping.capacity() != size) {
+            mapping = remap(file, size);
+        }
+        return mapping.slice(0, (int) Math.min(size, mapping.capacity()));
+    }
+
+    public void invalidate(File file) {
+        mappings.remove(file.getPath());
+    }
+
+    public void invalidateDirectory(File directory) {
+        String prefix = directory.getPath() + File.separator;
+        mappings.keySet().removeIf(path -> path.startsWith(prefix));
+    }
+
+    private synchronized MappedByteBuffer remap(File file, long requiredBytes) throws IOException {
+        MappedByteBuffer current = mappings.get(file.getPath());
+        if (current != null && current.capacity() == file.length() && current.capacity() >= requiredBytes) {
+            return current;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < requiredBytes) {
+                throw new IOException("read past the end of " + file.getName());
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file.getName() + " is too large to be mapped");
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mappings.put(file.getPath(), mapping);
+            return mapping;
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package org.example.dbnode.Storage;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.log4j.Log4j2;
+import org.example.dbnode.Enum.DocumentFormat;
+import org.example.dbnode.Exception.OperationFailedException;
+import org.example.dbnode.Exception.ResourceNotFoundException;
+import org.example.dbnode.Service.FileService;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Log structured storage, documents are appended as records to rolling segment files
+ * under {@code collections/<collection>/}. Updates append a new version of the document
+ * and deletes append a tombstone, so no write ever rewrites existing bytes.
+ * <p>
+ * Record layout : {@code [int length][int crc32][byte type][short idLength][id][document]},
+ * where length and crc32 cover everything after the first 8 bytes. The low bits of the type tell a put from
+ * a delete, the high bits the {@link DocumentFormat} the document is encoded in, so records of different
+ * formats can share a segment while a collection is being converted.
+ * Point reads parse the document straight from a memory mapping of its segment.
+ */
+@Log4j2
+@Component
+public class SegmentedLogStorage implements DocumentStorage {
+
+    private static final long SEGMENT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int RECORD_PREFIX_BYTES = 8;
+    private static final byte PUT_RECORD = 1;
+    private static final byte DELETE_RECORD = 2;
+    private static final int RECORD_KIND_MASK = 0x0F;
+    private static final int FORMAT_SHIFT = 4;
+
+    private final FileService fileService;
+    private final MappedFileCache mappedFiles;
+    private final Map<DocumentFormat, ObjectMapper> mappers;
+    private final Map<String, SegmentWriter> writers;
+    private final Map<String, DocumentFormat> collectionFormats;
+
+    public SegmentedLogStorage(FileService fileService, MappedFileCache mappedFiles) {
+        this.fileService = fileService;
+        this.mappedFiles = mappedFiles;
+        this.mappers = new EnumMap<>(DocumentFormat.class);
+        this.mappers.put(DocumentFormat.JSON, new ObjectMapper());
+        this.mappers.put(DocumentFormat.SMILE, new ObjectMapper(new SmileFactory()));
+        this.mappers.put(DocumentFormat.CBOR, new ObjectMapper(new CBORFactory()));
+        this.writers = new ConcurrentHashMap<>();
+        this.collectionFormats = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Sets the format new records of the collection are written in, existing records keep theirs.
+     */
+    public void setDocumentFormat(String databaseName, String collectionName, DocumentFormat format) {
+        collectionFormats.put(getWriterKey(databaseName, collectionName), format);
+    }
+
+    public DocumentFormat getDocumentFormat(String databaseName, String collectionName) {
+        return collectionFormats.getOrDefault(getWriterKey(databaseName, collectionName), DocumentFormat.JSON);
+    }
+
+    @Override
+    public void createCollection(String databaseName, String collectionName) {
+        fileService.createDirectoryIfNotExist(fileService.getCollectionSegmentsDirectory(databaseName, collectionName).toPath());
+    }
+
+    @Override
+    public boolean collectionExists(String databaseName, String collectionName) {
+        return fileService.getCollectionSegmentsDirectory(databaseName, collectionName).isDirectory();
+    }
+
+    @Override
+    public boolean deleteCollection(String databaseName, String collectionName) {
+        closeWriter(getWriterKey(databaseName, collectionName));
+        collectionFormats.remove(getWriterKey(databaseName, collectionName));
+        mappedFiles.invalidateDirectory(fileService.getCollectionSegmentsDirectory(databaseName, collectionName));
+        try {
+            fileService.deleteRecursively(fileService.getCollectionSegmentsDirectory(databaseName, collectionName).toPath());
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to delete segments of collection : " + collectionName);
+            return false;
+        }
+    }
+
+    public void closeDatabase(String databaseName) {
+        String prefix = databaseName + "::";
+        for (String key : new ArrayList<>(writers.keySet())) {
+            if (key.startsWith(prefix)) {
+                closeWriter(key);
+            }
+        }
+        for (String key : new ArrayList<>(collectionFormats.keySet())) {
+            if (key.startsWith(prefix)) {
+                collectionFormats.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public DocumentLocation appendDocument(String databaseName, String collectionName, ObjectNode document) throws OperationFailedException {
+        return appendDocumentRecord(databaseName, collectionName, document);
+    }
+
+    @Override
+    public List<DocumentLocation> appendDocuments(String databaseName, String collectionName, List<ObjectNode> documents) throws OperationFailedException {
+        DocumentFormat format = getDocumentFormat(databaseName, collectionName);
+        List<ByteBuffer> records = new ArrayList<>(documents.size());
+        for (ObjectNode document : documents) {
+            records.add(encodeRecord(recordType(PUT_RECORD, format), document.get("_id").asText(), serialize(document, format)));
+        }
+        return appendRecords(databaseName, collectionName, records);
+    }
+
+    @Override
+    public DocumentLocation updateDocument(String databaseName, String collectionName, DocumentLocation location, ObjectNode document) throws OperationFailedException {
+        return appendDocumentRecord(databaseName, collectionName, document);
+    }
+
+    @Override
+    public void deleteDocument(String databaseName, String collectionName, String documentId, DocumentLocation location) throws OperationFailedException {
+        appendRecord(databaseName, collectionName, recordType(DELETE_RECORD, DocumentFormat.JSON), documentId, new byte[0]);
+    }
+
+    @Override
+    public void deleteDocuments(String databaseName, String collectionName, Map<String, DocumentLocation> locations) throws OperationFailedException {
+        List<ByteBuffer> records = new ArrayList<>(locations.size());
+        for (String documentId : locations.keySet()) {
+            records.add(encodeRecord(recordType(DELETE_RECORD, DocumentFormat.JSON), documentId, new byte[0]));
+        }
+        appendRecords(databaseName, collectionName, records);
+    }
+
+    @Override
+    public ObjectNode readDocument(String databaseName, String collectionName, DocumentLocation location) {
+        File segmentFile = fileService.getSegmentFile(databaseName, collectionName, location.getSegment());
+        try {
+            return readMappedDocument(segmentFile, location);
+        } catch (IOException e) {
+            log.error("Failed to read document at " + location + " in collection " + collectionName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean copyDocument(String databaseName, String collectionName, DocumentLocation location, JsonGenerator generator) throws IOException {
+        try (JsonParser parser = openMappedDocument(fileService.getSegmentFile(databaseName, collectionName, location.getSegment()), location)) {
+            if (parser == null || parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            generator.copyCurrentStructure(parser);
+            return true;
+        }
+    }
+
+    @Override
+    public List<JsonNode> readDocuments(String databaseName, String collectionName, List<DocumentLocation> locations) {
+        List<JsonNode> documents = new ArrayList<>();
+        try {
+            for (DocumentLocation location : locations) {
+                ObjectNode document = readMappedDocument(fileService.getSegmentFile(databaseName, collectionName, location.getSegment()), location);
+                if (document != null) {
+                    documents.add(document);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read documents from collection " + collectionName + ": " + e.getMessage());
+        }
+        return documents;
+    }
+
+    @Override
+    public List<JsonNode> readAllDocuments(String databaseName, String collectionName) throws ResourceNotFoundException {
+        if (!collectionExists(databaseName, collectionName)) {
+            throw new ResourceNotFoundException("Collection");
+        }
+        Map<String, JsonNode> liveDocuments = new LinkedHashMap<>();
+        scan(databaseName, collectionName, (record, location) -> {
+            if (record.type() == DELETE_RECORD) {
+                liveDocuments.remove(record.documentId());
+            } else {
+                liveDocuments.put(record.documentId(), decodeDocument(record));
+            }
+        });
+        return new ArrayList<>(liveDocuments.values());
+    }
+
+    /**
+     * Replays the segments of a collection and returns the location of the latest version
+     * of every document that has not been deleted, used to rebuild the collection index on startup.
+     */
+    @Override
+    public Map<String, DocumentLocation> readLiveLocations(String databaseName, String collectionName) {
+        Map<String, DocumentLocation> liveLocations = new LinkedHashMap<>();
+        scan(databaseName, collectionName, (record, location) -> {
+            if (record.type() == DELETE_RECORD) {
+                liveLocations.remove(record.documentId());
+            } else {
+                liveLocations.put(record.documentId(), location);
+            }
+        });
+        return liveLocations;
+    }
+
+    @Override
+    public long fileBytes(String databaseName, String collectionName) {
+        long bytes = 0;
+        for (int segment : listSegments(databaseName, collectionName)) {
+            bytes += fileService.getSegmentFile(databaseName, collectionName, segment).length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies the live records into fresh segments after the active one, then drops every older segment,
+     * superseded versions and delete records go away with them. Documents not in the current format
+     * of the collection are converted on the way.
+     */
+    @Override
+    public Map<String, DocumentLocation> compact(String databaseName, String collectionName, Map<String, DocumentLocation> liveLocations) throws OperationFailedException {
+        Map<String, DocumentLocation> compactedLocations = new LinkedHashMap<>();
+        Map<Integer, FileChannel> channels = new HashMap<>();
+        try {
+            DocumentFormat format = getDocumentFormat(databaseName, collectionName);
+            SegmentWriter writer = getWriter(databaseName, collectionName);
+            synchronized (writer) {
+                int firstCompactedSegment = writer.segment + 1;
+                writer.roll(fileService.getSegmentFile(databaseName, collectionName, firstCompactedSegment));
+
+                List<Map.Entry<String, DocumentLocation>> entries = new ArrayList<>(liveLocations.entrySet());
+                entries.sort(Comparator.comparingInt((Map.Entry<String, DocumentLocation> entry) -> entry.getValue().getSegment())
+                                       .thenComparingLong(entry -> entry.getValue().getOffset()));
+                for (Map.Entry<String, DocumentLocation> entry : entries) {
+                    DocumentLocation location = entry.getValue();
+                    FileChannel channel = channels.get(location.getSegment());
+                    if (channel == null) {
+                        channel = FileChannel.open(fileService.getSegmentFile(databaseName, collectionName, location.getSegment()).toPath(), StandardOpenOption.READ);
+                        channels.put(location.getSegment(), channel);
+                    }
+                    LogRecord record = readRecord(channel, location.getOffset());
+                    if (record == null || record.type() != PUT_RECORD) {
+                        throw new IOException("no document record at " + location);
+                    }
+                    byte[] document = record.format() == format
+                            ? record.document()
+                            : mappers.get(format).writeValueAsBytes(mappers.get(record.format()).readTree(record.document()));
+                    compactedLocations.put(entry.getKey(), appendRecord(databaseName, collectionName, recordType(PUT_RECORD, format), entry.getKey(), document));
+                }
+                writer.channel.force(false);
+                // the new segment has to survive a crash before the ones it replaces are gone
+                fileService.forceDirectory(fileService.getCollectionSegmentsDirectory(databaseName, collectionName));
+
+                channels.values().forEach(this::closeQuietly);
+                channels.clear();
+                for (int segment : listSegments(databaseName, collectionName)) {
+                    if (segment < firstCompactedSegment) {
+                        File segmentFile = fileService.getSegmentFile(databaseName, collectionName, segment);
+                        mappedFiles.invalidate(segmentFile);
+                        Files.deleteIfExists(segmentFile.toPath());
+                    }
+                }
+            }
+            return compactedLocations;
+        } catch (IOException e) {
+            log.error("Failed to compact collection " + collectionName + ": " + e.getMessage());
+            throw new OperationFailedException("compact collection");
+        } finally {
+            channels.values().forEach(this::closeQuietly);
+        }
+    }
+
+    private void scan(String databaseName, String collectionName, BiConsumer<LogRecord, DocumentLocation> visitor) {
+        for (int segment : listSegments(databaseName, collectionName)) {
+            File segmentFile = fileService.getSegmentFile(databaseName, collectionName, segment);
+            try (FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+                long position = 0;
+                LogRecord record;
+                while ((record = readRecord(channel, position)) != null) {
+                    visitor.accept(record, DocumentLocation.inSegment(segment, position, RECORD_PREFIX_BYTES + record.length()));
+                    position += RECORD_PREFIX_BYTES + record.length();
+                }
+            } catch (IOException e) {
+                log.error("Failed to scan segment " + segmentFile.getName() + " of collection " + collectionName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private DocumentLocation appendRecord(String databaseName, String collectionName, byte type, String documentId, byte[] document) throws OperationFailedException {
+        return appendRecords(databaseName, collectionName, List.of(encodeRecord(type, documentId, document))).get(0);
+    }
+
+    /**
+     * Writes the records with one gathering write per segment they land in, rolling to a new segment when the current one is full.
+     */
+    private List<DocumentLocation> appendRecords(String databaseName, String collectionName, List<ByteBuffer> records) throws OperationFailedException {
+        List<DocumentLocation> locations = new ArrayList<>(records.size());
+        try {
+            SegmentWriter writer = getWriter(databaseName, collectionName);
+            synchronized (writer) {
+                int start = 0;
+                while (start < records.size()) {
+                    int end = start;
+                    long batchBytes = 0;
+                    while (end < records.size()) {
+                        int recordSize = records.get(end).remaining();
+                        if (writer.size + batchBytes > 0 && writer.size + batchBytes + recordSize > SEGMENT_MAX_BYTES) {
+                            break;
+                        }
+                        locations.add(DocumentLocation.inSegment(writer.segment, writer.size + batchBytes, recordSize));
+                        batchBytes += recordSize;
+                        end++;
+                    }
+                    if (end == start) {
+                        writer.roll(fileService.getSegmentFile(databaseName, collectionName, writer.segment + 1));
+                        log.info("Rolled collection " + collectionName + " to segment " + writer.segment);
+                        continue;
+                    }
+                    ByteBuffer[] batch = records.subList(start, end).toArray(new ByteBuffer[0]);
+                    long written = 0;
+                    while (written < batchBytes) {
+                        written += writer.channel.write(batch);
+                    }
+                    writer.size += batchBytes;
+                    start = end;
+                }
+                return locations;
+            }
+        } catch (IOException e) {
+            log.error("Failed to append record to collection " + collectionName + ": " + e.getMessage());
+            throw new OperationFailedException("append record to collection log");
+        }
+    }
+
+    private SegmentWriter getWriter(String databaseName, String collectionName) throws IOException {
+        String key = getWriterKey(databaseName, collectionName);
+        SegmentWriter writer = writers.get(key);
+        if (writer == null) {
+            synchronized (writers) {
+                writer = writers.get(key);
+                if (writer == null) {
+                    writer = openWriter(databaseName, collectionName);
+                    writers.put(key, writer);
+                }
+            }
+        }
+        return writer;
+    }
+
+    private SegmentWriter openWriter(String databaseName, String collectionName) throws IOException {
+        List<Integer> segments = listSegments(databaseName, collectionName);
+        int segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        File segmentFile = fileService.getSegmentFile(databaseName, collectionName, segment);
+        FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Drop a partially written record left behind by a crash, otherwise new records would land after it and never be read
+        long validSize = 0;
+        LogRecord record;
+        while ((record = readRecord(channel, validSize)) != null) {
+            validSize += RECORD_PREFIX_BYTES + record.length();
+        }
+        if (validSize < channel.size()) {
+            log.warn("Truncating " + (channel.size() - validSize) + " trailing bytes of segment " + segmentFile.getName() + " in collection " + collectionName);
+            channel.truncate(validSize);
+        }
+        channel.position(validSize);
+        return new SegmentWriter(segment, channel, validSize);
+    }
+
+    private void closeWriter(String key) {
+        SegmentWriter writer = writers.remove(key);
+        if (writer != null) {
+            synchronized (writer) {
+                closeQuietly(writer.channel);
+            }
+        }
+    }
+
+    private List<Integer> listSegments(String databaseName, String collectionName) {
+        File[] segmentFiles = fileService.getCollectionSegmentsDirectory(databaseName, collectionName)
+                .listFiles((dir, name) -> fileService.isSegmentFile(name));
+        List<Integer> segments = new ArrayList<>();
+        if (segmentFiles != null) {
+            for (File segmentFile : segmentFiles) {
+                String fileName = segmentFile.getName();
+                segments.add(Integer.parseInt(fileName.substring(0, fileName.indexOf('.'))));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private LogRecord readRecord(FileChannel channel, long offset) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_BYTES);
+        if (readFully(channel, prefix, offset) < RECORD_PREFIX_BYTES) {
+            return null;
+        }
+        prefix.flip();
+        int length = prefix.getInt();
+        int checksum = prefix.getInt();
+        if (length <= 0 || offset + RECORD_PREFIX_BYTES + length > channel.size()) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (readFully(channel, body, offset + RECORD_PREFIX_BYTES) < length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+        if ((int) crc.getValue() != checksum) {
+            log.warn("Checksum mismatch for record at offset " + offset);
+            return null;
+        }
+        body.flip();
+        int type = Byte.toUnsignedInt(body.get());
+        byte[] id = new byte[body.getShort()];
+        body.get(id);
+        byte[] document = new byte[body.remaining()];
+        body.get(document);
+        return new LogRecord((byte) (type & RECORD_KIND_MASK), formatOf(type), new String(id, StandardCharsets.UTF_8), document, length);
+    }
+
+    private int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private ByteBuffer encodeRecord(byte type, String documentId, byte[] document) {
+        byte[] id = documentId.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 2 + id.length + document.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_PREFIX_BYTES + length);
+        record.position(RECORD_PREFIX_BYTES);
+        record.put(type);
+        record.putShort((short) id.length);
+        record.put(id);
+        record.put(document);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_PREFIX_BYTES, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private DocumentLocation appendDocumentRecord(String databaseName, String collectionName, ObjectNode document) throws OperationFailedException {
+        DocumentFormat format = getDocumentFormat(databaseName, collectionName);
+        return appendRecord(databaseName, collectionName, recordType(PUT_RECORD, format), document.get("_id").asText(), serialize(document, format));
+    }
+
+    private byte[] serialize(ObjectNode document, DocumentFormat format) throws OperationFailedException {
+        try {
+            return mappers.get(format).writeValueAsBytes(document);
+        } catch (IOException e) {
+            throw new OperationFailedException("serialize document");
+        }
+    }
+
+    private byte recordType(byte kind, DocumentFormat format) {
+        return (byte) (kind | format.ordinal() << FORMAT_SHIFT);
+    }
+
+    private DocumentFormat formatOf(int type) {
+        return DocumentFormat.values()[type >>> FORMAT_SHIFT];
+    }
+
+    private ObjectNode readMappedDocument(File segmentFile, DocumentLocation location) throws IOException {
+        try (JsonParser parser = openMappedDocument(segmentFile, location)) {
+            return parser == null ? null : parser.readValueAsTree();
+        }
+    }
+
+    /**
+     * Returns a parser over the document bytes of the record in the format they were written in,
+     * or null when the record is not a document.
+     */
+    private JsonParser openMappedDocument(File segmentFile, DocumentLocation location) throws IOException {
+        ByteBuffer record = mappedFiles.slice(segmentFile, location.getOffset(), location.getLength());
+        record.position(RECORD_PREFIX_BYTES);
+        int type = Byte.toUnsignedInt(record.get());
+        if ((type & RECORD_KIND_MASK) != PUT_RECORD) {
+            return null;
+        }
+        int idLength = Short.toUnsignedInt(record.getShort());
+        record.position(record.position() + idLength);
+        return mappers.get(formatOf(type)).createParser(new ByteBufferBackedInputStream(record));
+    }
+
+    private ObjectNode decodeDocument(LogRecord record) {
+        if (record == null || record.type() != PUT_RECORD) {
+            return null;
+        }
+        try {
+            return (ObjectNode) mappers.get(record.format()).readTree(record.document());
+        } catch (IOException e) {
+            log.error("Failed to parse document " + record.documentId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close segment file: " + e.getMessage());
+        }
+    }
+
+    private String getWriterKey(String databaseName, String collectionName) {
+        return databaseName + "::" + collectionName;
+    }
+
+    private record LogRecord(byte type, DocumentFormat format, String documentId, byte[] document, int length) {
+    }
+
+    private static final class SegmentWriter {
+        private int segment;
+        private FileChannel channel;
+        private long size;
+
+        private SegmentWriter(int segment, FileChannel channel, long size) {
+            this.segment = segment;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        private void roll(File nextSegmentFile) throws IOException {
+            channel.close();
+            channel = FileChannel.open(nextSegmentFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            segment++;
+            size = 0;
+        }
+    }
+}
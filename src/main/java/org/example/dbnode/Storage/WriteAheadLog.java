@@ -0,0 +1,480 @@
+package org.example.dbnode.Storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.example.dbnode.Exception.OperationFailedException;
+import org.example.dbnode.Service.FileService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write ahead log shared by all the collections of the node.
+ * <p>
+ * A writer appends the record of its change and waits with {@link #awaitApplied(long)}, the collection files are
+ * not touched on the request thread. A single committer thread writes everything that was appended while the
+ * previous batch was in flight, syncs it with one {@code FileChannel.force}, and only then hands the batch to the
+ * {@link Applier}, which writes it to the collection files a collection at a time. A record is therefore on disk
+ * before any byte of its change is, and a replay can redo a change whose write to the collection was torn by a crash.
+ * <p>
+ * A checkpoint flushes the files of the collections changed since the previous one and empties the log.
+ * Deleting a collection or a database appends a {@link Operation#DROP} record instead, so that a replay skips the
+ * records logged for it before without flushing anything else. A record the applier rejects is followed by an
+ * {@link Operation#ABORT} marker carrying its sequence number, synced before the writer is told, so a replay never
+ * applies a change that was reported as failed.
+ * Record layout : {@code [int length][int crc32][long lsn][byte operation][db][collection][id][document]}.
+ */
+@Log4j2
+@Component
+public class WriteAheadLog {
+
+    private static final long CHECKPOINT_THRESHOLD_BYTES = 64L * 1024 * 1024;
+    private static final int RECORD_PREFIX_BYTES = 8;
+
+    public enum Operation {
+        PUT,
+        DELETE,
+        // the collection, or the whole database when the collection name is empty, was deleted
+        DROP,
+        // the record with the same sequence number could not be applied and was reported as failed
+        ABORT
+    }
+
+    public record LogEntry(long lsn, Operation operation, String databaseName, String collectionName, String documentId, ObjectNode document) {
+    }
+
+    /**
+     * Writes durable records to the collection files and the indexes.
+     */
+    @FunctionalInterface
+    public interface Applier {
+        /**
+         * Applies the records in log order and returns the sequence numbers of those that could not be applied.
+         */
+        Set<Long> apply(List<LogEntry> entries);
+    }
+
+    private record CollectionName(String databaseName, String collectionName) {
+    }
+
+    private final FileService fileService;
+    private final ObjectMapper mapper;
+    private final ReentrantLock lock;
+    private final Condition recordsPending;
+    private final Condition appliedLsnAdvanced;
+    private final Object fileLock;
+    private final FileChannel channel;
+    private final Thread committer;
+    private final Set<CollectionName> changedCollections;
+    private final NavigableSet<Long> failedLsns;
+    private List<ByteBuffer> pendingRecords;
+    private List<LogEntry> pendingEntries;
+    private volatile Applier applier;
+    private long lastLsn;
+    private long appliedLsn;
+    private volatile boolean running;
+
+    @Autowired
+    public WriteAheadLog(FileService fileService) throws IOException {
+        this(fileService, fileService.getWriteAheadLogFile());
+    }
+
+    public WriteAheadLog(FileService fileService, File logFile) throws IOException {
+        this.fileService = fileService;
+        this.mapper = new ObjectMapper();
+        this.lock = new ReentrantLock();
+        this.recordsPending = lock.newCondition();
+        this.appliedLsnAdvanced = lock.newCondition();
+        this.fileLock = new Object();
+        this.changedCollections = new HashSet<>();
+        this.failedLsns = new TreeSet<>();
+        this.pendingRecords = new ArrayList<>();
+        this.pendingEntries = new ArrayList<>();
+
+        fileService.createDirectoryIfNotExist(logFile.getParentFile().toPath());
+        this.channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        List<LogEntry> entries = readEntries();
+        // abort markers repeat the sequence number of an earlier record
+        this.lastLsn = entries.stream().mapToLong(LogEntry::lsn).max().orElse(0);
+        this.appliedLsn = lastLsn;
+        // A record torn by a crash was never acknowledged, drop it so new records follow the last complete one
+        long validLength = validLength();
+        this.channel.truncate(validLength);
+        this.channel.position(validLength);
+
+        this.running = true;
+        this.committer = new Thread(this::runCommitter, "wal-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    public void setApplier(Applier applier) {
+        this.applier = applier;
+    }
+
+    /**
+     * Queues a record and returns its log sequence number, the change is neither durable nor applied
+     * until {@link #awaitApplied(long)} returns for it.
+     */
+    public long append(Operation operation, String databaseName, String collectionName, String documentId, ObjectNode document) throws OperationFailedException {
+        Map<String, ObjectNode> documents = new HashMap<>();
+        documents.put(documentId, document);
+        return append(operation, databaseName, collectionName, documents);
+    }
+
+    /**
+     * Queues one record per document, keyed by id, with consecutive sequence numbers and returns the last one.
+     * The documents of delete records are null.
+     */
+    public long append(Operation operation, String databaseName, String collectionName, Map<String, ObjectNode> documents) throws OperationFailedException {
+        lock.lock();
+        try {
+            for (Map.Entry<String, ObjectNode> document : documents.entrySet()) {
+                long lsn = lastLsn + 1;
+                pendingRecords.add(encode(lsn, operation, databaseName, collectionName, document.getKey(), document.getValue()));
+                pendingEntries.add(new LogEntry(lsn, operation, databaseName, collectionName, document.getKey(), document.getValue()));
+                lastLsn = lsn;
+            }
+            recordsPending.signal();
+            return lastLsn;
+        } catch (IOException e) {
+            throw new OperationFailedException("append to write ahead log");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that the collection was deleted, a replay skips the records logged for it before.
+     * Nothing waits for the record, it is flushed with the next batch ahead of any record that follows it.
+     */
+    public void dropCollection(String databaseName, String collectionName) {
+        appendDrop(databaseName, collectionName);
+    }
+
+    public void dropDatabase(String databaseName) {
+        appendDrop(databaseName, "");
+    }
+
+    public void awaitApplied(long lsn) throws OperationFailedException {
+        awaitApplied(lsn, lsn);
+    }
+
+    /**
+     * Waits until the records with sequence numbers between the two bounds, both included, are durable and applied
+     * to the collection files. Throws when one of them could not be written to the log or applied.
+     */
+    public void awaitApplied(long firstLsn, long lastLsn) throws OperationFailedException {
+        lock.lock();
+        try {
+            while (appliedLsn < lastLsn) {
+                appliedLsnAdvanced.await();
+            }
+            NavigableSet<Long> failed = failedLsns.subSet(firstLsn, true, lastLsn, true);
+            if (!failed.isEmpty()) {
+                failed.clear();
+                throw new OperationFailedException("commit write ahead log");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationFailedException("commit write ahead log");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the files of the collections changed since the previous checkpoint and empties the log.
+     * Only called once every record in the log was applied, by the committer between two batches, after a replay
+     * or on shutdown.
+     */
+    public void checkpoint() {
+        synchronized (fileLock) {
+            try {
+                for (CollectionName collection : changedCollections) {
+                    fileService.forceCollectionFiles(collection.databaseName(), collection.collectionName());
+                }
+                changedCollections.clear();
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                log.info("Write ahead log checkpoint completed");
+            } catch (IOException e) {
+                log.error("Write ahead log checkpoint failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies the records left in the log by a crash, skipping the aborted ones and those of collections deleted
+     * after them, then checkpoints. Records are applied by document version so replaying twice is harmless.
+     */
+    public void replay() {
+        List<LogEntry> entries = readEntries();
+        Map<CollectionName, Long> dropLsns = new HashMap<>();
+        Set<Long> abortedLsns = new HashSet<>();
+        for (LogEntry entry : entries) {
+            if (entry.operation() == Operation.DROP) {
+                dropLsns.put(new CollectionName(entry.databaseName(), entry.collectionName()), entry.lsn());
+            } else if (entry.operation() == Operation.ABORT) {
+                abortedLsns.add(entry.lsn());
+            }
+        }
+        List<LogEntry> liveEntries = new ArrayList<>();
+        for (LogEntry entry : entries) {
+            if (entry.operation() == Operation.DROP || entry.operation() == Operation.ABORT || abortedLsns.contains(entry.lsn())) {
+                continue;
+            }
+            long collectionDropLsn = dropLsns.getOrDefault(new CollectionName(entry.databaseName(), entry.collectionName()), 0L);
+            long databaseDropLsn = dropLsns.getOrDefault(new CollectionName(entry.databaseName(), ""), 0L);
+            if (entry.lsn() > Math.max(collectionDropLsn, databaseDropLsn)) {
+                liveEntries.add(entry);
+            }
+        }
+        Set<Long> failed = liveEntries.isEmpty() || applier == null ? Set.of() : applier.apply(liveEntries);
+        for (Long lsn : failed) {
+            log.error("Failed to replay write ahead log record " + lsn);
+        }
+        synchronized (fileLock) {
+            for (LogEntry entry : liveEntries) {
+                changedCollections.add(new CollectionName(entry.databaseName(), entry.collectionName()));
+            }
+        }
+        log.info("Replayed " + (liveEntries.size() - failed.size()) + " of " + entries.size() + " write ahead log records");
+        checkpoint();
+    }
+
+    public List<LogEntry> readEntries() {
+        List<LogEntry> entries = new ArrayList<>();
+        synchronized (fileLock) {
+            try {
+                long position = 0;
+                byte[] body;
+                while ((body = readRecordBody(position)) != null) {
+                    entries.add(decode(body));
+                    position += RECORD_PREFIX_BYTES + body.length;
+                }
+            } catch (IOException e) {
+                log.error("Failed to read write ahead log: " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    // Applies what is still queued, then checkpoints so that the next start has nothing to replay
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        lock.lock();
+        try {
+            recordsPending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        committer.join();
+        checkpoint();
+        channel.close();
+    }
+
+    private void appendDrop(String databaseName, String collectionName) {
+        try {
+            append(Operation.DROP, databaseName, collectionName, "", null);
+        } catch (OperationFailedException e) {
+            log.error("Failed to log the deletion of " + databaseName + "/" + collectionName + ", a replay may bring back its last changes");
+        }
+    }
+
+    private void runCommitter() {
+        while (true) {
+            List<ByteBuffer> batch;
+            List<LogEntry> batchEntries;
+            lock.lock();
+            try {
+                while (pendingRecords.isEmpty() && running) {
+                    recordsPending.awaitUninterruptibly();
+                }
+                if (pendingRecords.isEmpty()) {
+                    return;
+                }
+                batch = pendingRecords;
+                batchEntries = pendingEntries;
+                pendingRecords = new ArrayList<>();
+                pendingEntries = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+
+            boolean committed = false;
+            boolean checkpointNeeded = false;
+            synchronized (fileLock) {
+                long batchStart = -1;
+                try {
+                    batchStart = channel.position();
+                    ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                    while (buffers[buffers.length - 1].hasRemaining()) {
+                        channel.write(buffers);
+                    }
+                    channel.force(false);
+                    committed = true;
+                    checkpointNeeded = channel.size() > CHECKPOINT_THRESHOLD_BYTES;
+                    for (LogEntry entry : batchEntries) {
+                        if (entry.operation() != Operation.DROP) {
+                            changedCollections.add(new CollectionName(entry.databaseName(), entry.collectionName()));
+                        }
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to commit write ahead log: " + e.getMessage());
+                    discardBatch(batchStart);
+                }
+            }
+
+            // The batch is durable, its changes reach the collection files only now
+            Set<Long> batchFailures;
+            if (!committed) {
+                batchFailures = new HashSet<>();
+                batchEntries.forEach(entry -> batchFailures.add(entry.lsn()));
+            } else {
+                batchFailures = applier == null ? Set.of() : applyBatch(batchEntries);
+                if (!batchFailures.isEmpty()) {
+                    abort(batchFailures);
+                }
+            }
+
+            lock.lock();
+            try {
+                failedLsns.addAll(batchFailures);
+                appliedLsn = batchEntries.get(batchEntries.size() - 1).lsn();
+                appliedLsnAdvanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (checkpointNeeded) {
+                checkpoint();
+            }
+        }
+    }
+
+    private Set<Long> applyBatch(List<LogEntry> batchEntries) {
+        try {
+            return applier.apply(batchEntries);
+        } catch (RuntimeException e) {
+            log.error("Failed to apply write ahead log records: " + e.getMessage());
+            Set<Long> batchFailures = new HashSet<>();
+            batchEntries.forEach(entry -> batchFailures.add(entry.lsn()));
+            return batchFailures;
+        }
+    }
+
+    // The failed records are durable already, a replay would apply them unless the log says they were abandoned
+    private void abort(Set<Long> failedBatchLsns) {
+        synchronized (fileLock) {
+            long markersStart = -1;
+            try {
+                markersStart = channel.position();
+                for (Long lsn : new TreeSet<>(failedBatchLsns)) {
+                    ByteBuffer marker = encode(lsn, Operation.ABORT, "", "", "", null);
+                    while (marker.hasRemaining()) {
+                        channel.write(marker);
+                    }
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                log.error("Failed to log aborted write ahead log records " + failedBatchLsns + ", a replay may apply them: " + e.getMessage());
+                discardBatch(markersStart);
+            }
+        }
+    }
+
+    // A batch that failed half written would hide the records appended after it from the next replay
+    private void discardBatch(long batchStart) {
+        if (batchStart < 0) {
+            return;
+        }
+        try {
+            channel.truncate(batchStart);
+            channel.position(batchStart);
+        } catch (IOException e) {
+            log.error("Failed to discard a partially written write ahead log batch: " + e.getMessage());
+        }
+    }
+
+    private ByteBuffer encode(long lsn, Operation operation, String databaseName, String collectionName, String documentId, ObjectNode document) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(lsn);
+        out.writeByte(operation.ordinal());
+        out.writeUTF(databaseName);
+        out.writeUTF(collectionName);
+        out.writeUTF(documentId);
+        if (document != null) {
+            out.write(mapper.writeValueAsBytes(document));
+        }
+        out.flush();
+        byte[] body = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_PREFIX_BYTES + body.length);
+        record.putInt(body.length);
+        record.putInt((int) crc.getValue());
+        record.put(body);
+        record.flip();
+        return record;
+    }
+
+    private LogEntry decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        long lsn = in.readLong();
+        Operation operation = Operation.values()[in.readByte()];
+        String databaseName = in.readUTF();
+        String collectionName = in.readUTF();
+        String documentId = in.readUTF();
+        byte[] document = in.readAllBytes();
+        ObjectNode documentNode = document.length == 0 ? null : (ObjectNode) mapper.readTree(document);
+        return new LogEntry(lsn, operation, databaseName, collectionName, documentId, documentNode);
+    }
+
+    private long validLength() {
+        long position = 0;
+        try {
+            byte[] body;
+            while ((body = readRecordBody(position)) != null) {
+                position += RECORD_PREFIX_BYTES + body.length;
+            }
+        } catch (IOException e) {
+            log.error("Failed to read write ahead log: " + e.getMessage());
+        }
+        return position;
+    }
+
+    private byte[] readRecordBody(long position) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_BYTES);
+        if (channel.read(prefix, position) < RECORD_PREFIX_BYTES) {
+            return null;
+        }
+        prefix.flip();
+        int length = prefix.getInt();
+        int checksum = prefix.getInt();
+        if (length <= 0 || position + RECORD_PREFIX_BYTES + length > channel.size()) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        while (body.hasRemaining()) {
+            if (channel.read(body, position + RECORD_PREFIX_BYTES + body.position()) < 0) {
+                return null;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        return (int) crc.getValue() == checksum ? body.array() : null;
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.dbnode.Util.DataTypes;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.example.dbnode.DatabaseDiskCRUD;
 import org.example.dbnode.Exception.ResourceNotFoundException;
 import org.example.dbnode.Model.Schema;
@@ -7,10 +9,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.util.Objects;
 @Component
 public class DataTypeCaster {
 
+    private static final ObjectReader JSON_READER = new ObjectMapper().readerFor(String.class);
+
     private final DatabaseDiskCRUD databaseDiskCRUD;
     @Autowired
     public DataTypeCaster(@Lazy DatabaseDiskCRUD databaseDiskCRUD) {
@@ -20,14 +25,29 @@ public class DataTypeCaster {
     public Object castToDataType(String value, String databaseName,String collectionName, String propertyName) throws ResourceNotFoundException {
         String dataType = getDataType(databaseName,collectionName, propertyName);
         return switch (Objects.requireNonNull(dataType).toUpperCase()) {
-            case "STRING" -> value;
-            case "INTEGER" -> Integer.parseInt(value);
+            case "STRING" -> unquote(value);
+            case "INTEGER" -> Long.parseLong(value);
             case "NUMBER" -> Double.parseDouble(value);
             case "BOOLEAN" -> Boolean.parseBoolean(value);
             default -> null;
         };
     }
 
+    /**
+     * Strings are indexed by their text. Values taken from the JSON of a document come quoted and escaped,
+     * quoting them would order "John Smith" before "John".
+     */
+    public static String unquote(String value) {
+        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return value;
+        }
+        try {
+            return JSON_READER.readValue(value);
+        } catch (IOException e) {
+            return value.substring(1, value.length() - 1);
+        }
+    }
+
     public String getDataType(String databaseName, String collectionName, String property) throws ResourceNotFoundException {
         Schema schema = databaseDiskCRUD.getCollectionSchema(databaseName, collectionName);
         String dataType = schema.getProperties().get(property);
@@ -1,14 +1,17 @@
 package org.example.dbnode.Util.DataTypes;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
+import org.example.dbnode.Indexing.BPlusTree.DoubleBPlusTree;
+import org.example.dbnode.Indexing.BPlusTree.LongBPlusTree;
+import org.example.dbnode.Indexing.DocumentOrdinals;
 import org.example.dbnode.Indexing.InvertedPropertyIndex;
+import org.example.dbnode.Indexing.PostingList;
 
 public class InvertedIndexFactory {
-    private final Map<String, InvertedPropertyIndex> bTreeMap;
+    private final Map<String, InvertedPropertyIndex<?>> bTreeMap;
 
     private static class InstanceHolder {
         private static final InvertedIndexFactory INSTANCE = new InvertedIndexFactory();
@@ -22,12 +25,12 @@ public class InvertedIndexFactory {
         bTreeMap = new HashMap<>();
     }
 
-    public InvertedPropertyIndex get(String documentDataType) {
+    public InvertedPropertyIndex<?> get(String documentDataType, DocumentOrdinals ordinals) {
         return switch (documentDataType) {
-            case "string" -> new InvertedPropertyIndex<String>();
-            case "integer" -> new InvertedPropertyIndex<Integer>();
-            case "number" -> new InvertedPropertyIndex<Double>();
-            case "boolean" -> new InvertedPropertyIndex<Boolean>();
+            case "string" -> new InvertedPropertyIndex<String>(ordinals);
+            case "integer" -> new InvertedPropertyIndex<>(new LongBPlusTree<PostingList>(), ordinals);
+            case "number" -> new InvertedPropertyIndex<>(new DoubleBPlusTree<PostingList>(), ordinals);
+            case "boolean" -> new InvertedPropertyIndex<Boolean>(ordinals);
             default -> throw new IllegalArgumentException("Unsupported data type: " + documentDataType);
         };
     }
@@ -0,0 +1,123 @@
+package org.example.dbnode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.dbnode.Indexing.AggregationEngine;
+import org.example.dbnode.Indexing.BPlusTree.LongBPlusTree;
+import org.example.dbnode.Indexing.CollectionIndex;
+import org.example.dbnode.Indexing.DocumentOrdinals;
+import org.example.dbnode.Indexing.IndexingManager;
+import org.example.dbnode.Indexing.InvertedPropertyIndex;
+import org.example.dbnode.Indexing.QueryEngine;
+import org.example.dbnode.Model.Aggregate;
+import org.example.dbnode.Model.FacetResult;
+import org.example.dbnode.Model.Query;
+import org.example.dbnode.Storage.DocumentLocation;
+import org.example.dbnode.Util.DataTypes.DataTypeCaster;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+public class AggregationEngineTest {
+    private static final String[] STATUS = {"open", "closed", "open", "open", "closed", "pending"};
+    // the last document has no amount
+    private static final long[] AMOUNT = {10, 20, 30, 10, 5};
+    private DocumentOrdinals ordinals;
+    private InvertedPropertyIndex<Long> amounts;
+    private IndexingManager indexes;
+    private AggregationEngine aggregationEngine;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ordinals = new DocumentOrdinals();
+        InvertedPropertyIndex<String> statuses = new InvertedPropertyIndex<>(ordinals);
+        amounts = new InvertedPropertyIndex<>(new LongBPlusTree<>(4), ordinals);
+        CollectionIndex collectionIndex = new CollectionIndex();
+        for (int i = 0; i < STATUS.length; i++) {
+            statuses.insert(STATUS[i], "doc" + i);
+            if (i < AMOUNT.length) {
+                amounts.insert(AMOUNT[i], "doc" + i);
+            }
+            collectionIndex.insert("doc" + i, DocumentLocation.atOffset(i, 64));
+        }
+        indexes = Mockito.mock(IndexingManager.class);
+        DataTypeCaster dataTypeCaster = Mockito.mock(DataTypeCaster.class);
+        when(indexes.getCollectionIndex("db", "tickets")).thenReturn(collectionIndex);
+        when(indexes.getDocumentOrdinals("db", "tickets")).thenReturn(ordinals);
+        when(indexes.isPropertyIndexed(Mockito.eq("db"), Mockito.eq("tickets"), Mockito.any())).thenReturn(true);
+        when(indexes.invertedPropertyIndexExists(Mockito.eq("db"), Mockito.eq("tickets"), Mockito.any())).thenReturn(true);
+        Mockito.doReturn(statuses).when(indexes).getInvertedPropertyIndex("db", "tickets", "status");
+        Mockito.doReturn(amounts).when(indexes).getInvertedPropertyIndex("db", "tickets", "amount");
+        when(dataTypeCaster.getDataType("db", "tickets", "amount")).thenReturn("integer");
+        when(dataTypeCaster.getDataType("db", "tickets", "status")).thenReturn("string");
+        aggregationEngine = new AggregationEngine(indexes, new QueryEngine(indexes), dataTypeCaster);
+    }
+
+    @Test
+    public void aggregate_coversEveryDocument_withoutAGroup() throws Exception {
+        Aggregate total = aggregationEngine.aggregate("db", "tickets", null, "amount").get(0);
+        assertEquals(6, total.getCount());
+        assertEquals(75.0, total.getSum());
+        assertEquals(5.0, total.getMin());
+        assertEquals(30.0, total.getMax());
+        assertEquals(15.0, total.getAvg());
+    }
+
+    @Test
+    public void aggregate_groupsByTheValuesOfTheGroupProperty() throws Exception {
+        List<Aggregate> groups = aggregationEngine.aggregate("db", "tickets", "status", "amount");
+        assertEquals(List.of("closed", "open", "pending"), groups.stream().map(Aggregate::getGroup).toList());
+        assertEquals(List.of(2L, 3L, 1L), groups.stream().map(Aggregate::getCount).toList());
+        assertEquals(25.0, groups.get(0).getSum());
+        assertEquals(50.0, groups.get(1).getSum());
+        assertEquals(30.0, groups.get(1).getMax());
+    }
+
+    @Test
+    public void aggregate_leavesTheStatisticsOfAGroupWithoutValuesEmpty() throws Exception {
+        Aggregate pending = aggregationEngine.aggregate("db", "tickets", "status", "amount").get(2);
+        assertEquals(1, pending.getCount());
+        assertNull(pending.getAvg());
+    }
+
+    @Test
+    public void aggregate_rejectsANonNumericProperty() {
+        assertThrows(IllegalArgumentException.class, () -> aggregationEngine.aggregate("db", "tickets", "amount", "status"));
+    }
+
+    @Test
+    public void facets_countTheValuesOfTheDocumentsWithinTheFilter() throws Exception {
+        // the tickets worth at least 10, that is every one but doc4 and the one without an amount
+        FacetResult facets = aggregationEngine.facets("db", "tickets", amountAtLeast(10), List.of("status", "amount"), 5);
+        assertEquals(4, facets.getTotal());
+        assertEquals("open", facets.getFacets().get("status").get(0).getValue());
+        assertEquals(3, facets.getFacets().get("status").get(0).getCount());
+        assertEquals(10L, facets.getFacets().get("amount").get(0).getValue());
+        assertEquals(2, facets.getFacets().get("amount").get(0).getCount());
+    }
+
+    @Test
+    public void facets_keepOnlyTheMostFrequentValues() throws Exception {
+        FacetResult facets = aggregationEngine.facets("db", "tickets", amountAtLeast(10), List.of("status"), 1);
+        assertEquals(1, facets.getFacets().get("status").size());
+        assertEquals("open", facets.getFacets().get("status").get(0).getValue());
+    }
+
+    @Test
+    public void facets_countEveryDocument_withoutAFilter() throws Exception {
+        FacetResult facets = aggregationEngine.facets("db", "tickets", null, List.of("status"), 5);
+        assertEquals(6, facets.getTotal());
+        assertEquals(2, facets.getFacets().get("status").get(1).getCount());
+    }
+
+    private Query amountAtLeast(long amount) throws Exception {
+        Mockito.doAnswer(invocation -> {
+            amounts.range(amount, true, null, true).forEachRemaining(posting -> posting.getValue().addTo(invocation.getArgument(4)));
+            return null;
+        }).when(indexes).addRangePostingsFromInvertedPropertyIndex(Mockito.eq("db"), Mockito.eq("tickets"), Mockito.eq("amount"), Mockito.any(), Mockito.any());
+        return Query.of(new ObjectMapper().readTree("{\"property\": \"amount\", \"gte\": " + amount + "}"));
+    }
+}
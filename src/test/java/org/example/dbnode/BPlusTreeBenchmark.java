@@ -0,0 +1,111 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Insert, bulk load and lookup throughput of the B+ tree for random UUID keys, the shape of our collection indexes.
+ * Not part of the test suite, run it on its own with enough heap for the largest key count:
+ * <pre>
+ * java -Xmx8g -cp target/classes:target/test-classes org.example.dbnode.BPlusTreeBenchmark [keyCounts] [orders]
+ * </pre>
+ * Both arguments are comma separated lists, they default to 1000000,10000000 and 4,32,128,256.
+ */
+public class BPlusTreeBenchmark {
+
+    private static final int LOOKUPS = 2_000_000;
+    private static final int WARMUP_KEYS = 200_000;
+
+    public static void main(String[] args) {
+        int[] keyCounts = parse(args.length > 0 ? args[0] : "1000000,10000000");
+        int[] orders = parse(args.length > 1 ? args[1] : "4,32,128,256");
+
+        // Let the JIT compile the tree code before anything is measured
+        for (int order : orders) {
+            run(generateKeys(WARMUP_KEYS), order, false);
+        }
+        for (int keyCount : keyCounts) {
+            String[] keys = generateKeys(keyCount);
+            for (int order : orders) {
+                run(keys, order, true);
+            }
+        }
+    }
+
+    private static void run(String[] keys, int order, boolean report) {
+        BPlusTree<String, Integer> tree = new BPlusTree<>(order);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < keys.length; i++) {
+            tree.insert(keys[i], i);
+        }
+        long insertNanos = System.nanoTime() - start;
+
+        String[] sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+        start = System.nanoTime();
+        new BPlusTree<String, Integer>(order).bulkLoad(entries(sortedKeys));
+        long loadNanos = System.nanoTime() - start;
+
+        Random random = new Random(42);
+        long found = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (tree.search(keys[random.nextInt(keys.length)]) != null) {
+                found++;
+            }
+        }
+        long lookupNanos = System.nanoTime() - start;
+
+        if (found != LOOKUPS) {
+            throw new IllegalStateException("lookups missed " + (LOOKUPS - found) + " keys");
+        }
+        if (report) {
+            System.out.printf("keys=%,d order=%d insert=%,.0f ops/s sorted bulk load=%,.0f ops/s lookup=%,.0f ops/s%n",
+                    keys.length, order,
+                    keys.length / (insertNanos / 1e9),
+                    keys.length / (loadNanos / 1e9),
+                    LOOKUPS / (lookupNanos / 1e9));
+        }
+    }
+
+    private static Iterator<Map.Entry<String, Integer>> entries(String[] sortedKeys) {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < sortedKeys.length;
+            }
+
+            @Override
+            public Map.Entry<String, Integer> next() {
+                return new AbstractMap.SimpleEntry<>(sortedKeys[next], next++);
+            }
+        };
+    }
+
+    private static String[] generateKeys(int count) {
+        Random random = new Random(7);
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+        }
+        return keys;
+    }
+
+    private static int[] parse(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.BPlusTree.BPlusTree;
+import org.example.dbnode.Indexing.BPlusTree.DoubleBPlusTree;
+import org.example.dbnode.Indexing.BPlusTree.LongBPlusTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class BPlusTreeTest {
+
+    @Test
+    public void bulkLoad_keepsEveryEntryInKeyOrder() {
+        Map<Integer, String> entries = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put(i * 3, "doc" + i);
+        }
+        BPlusTree<Integer, String> tree = new BPlusTree<>(4);
+        tree.bulkLoad(entries);
+
+        assertEquals(1000, tree.size());
+        assertEquals(List.copyOf(entries.entrySet()).toString(), tree.getAllEntries().toString());
+        assertEquals("doc333", tree.search(999));
+        assertNull(tree.search(1000));
+    }
+
+    @Test
+    public void bulkLoad_acceptsInsertsAndDeletesAfterwards() {
+        Map<Integer, String> entries = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put(i * 2, "doc" + i);
+        }
+        BPlusTree<Integer, String> tree = new BPlusTree<>(4);
+        tree.bulkLoad(entries);
+
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i * 2 + 1, "odd" + i);
+            tree.delete(i * 2);
+        }
+        assertEquals(1000, tree.size());
+        assertNull(tree.search(0));
+        assertEquals("odd999", tree.search(1999));
+        List<Map.Entry<Integer, String>> all = tree.getAllEntries();
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getKey() < all.get(i).getKey());
+        }
+    }
+
+    @Test
+    public void bulkLoad_replacesThePreviousContent() {
+        BPlusTree<Integer, String> tree = new BPlusTree<>(4);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i, "old" + i);
+        }
+        tree.bulkLoad(Map.of(500, "new"));
+        assertEquals(1, tree.size());
+        assertNull(tree.search(5));
+
+        tree.bulkLoad(Map.of());
+        assertEquals(0, tree.size());
+        assertEquals(1, tree.height());
+    }
+
+    @Test
+    public void bulkLoad_rejectsKeysOutOfOrder() {
+        BPlusTree<Integer, String> tree = new BPlusTree<>(4);
+        List<Map.Entry<Integer, String>> entries = List.of(new AbstractMap.SimpleEntry<>(2, "b"), new AbstractMap.SimpleEntry<>(1, "a"));
+        assertThrows(IllegalArgumentException.class, () -> tree.bulkLoad(entries.iterator()));
+    }
+
+    @Test
+    public void longTree_keepsKeysInNumericOrder() {
+        BPlusTree<Long, String> tree = new LongBPlusTree<>(4);
+        for (long value = 50; value >= -50; value--) {
+            tree.insert(value * 1_000_000_000_000L, "doc" + value);
+        }
+        tree.delete(0L);
+
+        List<Map.Entry<Long, String>> entries = tree.getAllEntries();
+        assertEquals(100, entries.size());
+        assertEquals(-50_000_000_000_000L, entries.get(0).getKey());
+        for (int i = 1; i < 100; i++) {
+            assertTrue(entries.get(i - 1).getKey() < entries.get(i).getKey());
+        }
+        assertEquals("doc7", tree.search(7_000_000_000_000L));
+        assertNull(tree.search(0L));
+    }
+
+    @Test
+    public void doubleTree_keepsKeysInNumericOrder() {
+        BPlusTree<Double, String> tree = new DoubleBPlusTree<>(4);
+        for (long value = 50; value >= -50; value--) {
+            tree.insert(value / 4.0, "doc" + value);
+        }
+        tree.delete(0.0);
+
+        List<Map.Entry<Double, String>> entries = tree.getAllEntries();
+        assertEquals(100, entries.size());
+        assertEquals(-12.5, entries.get(0).getKey());
+        for (int i = 1; i < 100; i++) {
+            assertTrue(entries.get(i - 1).getKey() < entries.get(i).getKey());
+        }
+        assertEquals("doc-3", tree.search(-0.75));
+        assertNull(tree.search(0.0));
+    }
+
+    @Test
+    public void range_walksOnlyTheKeysBetweenItsBounds() {
+        BPlusTree<Long, String> tree = numberedTree(1000);
+
+        List<Long> keys = new ArrayList<>();
+        tree.range(100L, 110L, false).forEachRemaining(entry -> keys.add(entry.getKey()));
+        assertEquals(List.of(101L, 102L, 103L, 104L, 105L, 106L, 107L, 108L, 109L), keys);
+    }
+
+    @Test
+    public void range_leavesANullBoundOpen() {
+        BPlusTree<Long, String> tree = numberedTree(1000);
+
+        List<Long> keys = new ArrayList<>();
+        tree.range(995L, true, null, true).forEachRemaining(entry -> keys.add(entry.getKey()));
+        assertEquals(List.of(995L, 996L, 997L, 998L, 999L), keys);
+        assertEquals(0L, tree.range(null, null, true).next().getKey());
+    }
+
+    @Test
+    public void sizeAndHeight_followInsertsAndDeletes() {
+        BPlusTree<Long, String> tree = new LongBPlusTree<>(4);
+        assertEquals(0, tree.size());
+        assertEquals(1, tree.height());
+
+        for (long value = 0; value < 1000; value++) {
+            tree.insert(value, "doc" + value);
+        }
+        tree.insert(10L, "replaced");
+        assertEquals(1000, tree.size());
+        assertTrue(tree.height() > 1);
+
+        for (long value = 0; value < 1000; value++) {
+            tree.delete(value);
+        }
+        assertEquals(0, tree.size());
+        assertEquals(1, tree.height());
+        assertFalse(tree.range(null, null, true).hasNext());
+    }
+
+    @Test
+    public void descendingRange_walksTheSameKeysAsRange_inReverse() {
+        BPlusTree<Long, Long> tree = new BPlusTree<>(4);
+        for (long i = 0; i < 300; i++) {
+            tree.insert((i * 17) % 300, i);
+        }
+        for (long i = 0; i < 300; i += 4) {
+            tree.delete(i);
+        }
+
+        List<Long> ascending = new ArrayList<>();
+        tree.range(30L, false, 200L, true).forEachRemaining(entry -> ascending.add(entry.getKey()));
+        List<Long> descending = new ArrayList<>();
+        tree.descendingRange(30L, false, 200L, true).forEachRemaining(entry -> descending.add(0, entry.getKey()));
+        assertEquals(ascending, descending);
+        assertEquals(299L, tree.descendingRange(null, true, null, true).next().getKey());
+    }
+
+    private static BPlusTree<Long, String> numberedTree(int count) {
+        BPlusTree<Long, String> tree = new LongBPlusTree<>(4);
+        for (long value = 0; value < count; value++) {
+            tree.insert(value, "doc" + value);
+        }
+        return tree;
+    }
+}
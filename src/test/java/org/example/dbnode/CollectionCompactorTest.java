@@ -0,0 +1,103 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.CollectionIndex;
+import org.example.dbnode.Indexing.IndexingManager;
+import org.example.dbnode.Service.LocksManager;
+import org.example.dbnode.Storage.CollectionCompactor;
+import org.example.dbnode.Storage.DocumentLocation;
+import org.example.dbnode.Storage.DocumentStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+public class CollectionCompactorTest {
+    private DatabaseDiskCRUD databaseDiskCRUD;
+    private IndexingManager indexingManager;
+    private DocumentStorage storage;
+    private CollectionCompactor compactor;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        databaseDiskCRUD = Mockito.mock(DatabaseDiskCRUD.class);
+        DatabaseRegistry databaseRegistry = Mockito.mock(DatabaseRegistry.class);
+        indexingManager = Mockito.mock(IndexingManager.class);
+        LocksManager locksManager = Mockito.mock(LocksManager.class);
+        storage = Mockito.mock(DocumentStorage.class);
+        when(databaseRegistry.readDatabases()).thenReturn(List.of("db"));
+        when(databaseDiskCRUD.readCollections("db")).thenReturn(List.of("bloated", "healthy", "small"));
+        when(databaseDiskCRUD.getStorage(Mockito.eq("db"), Mockito.any())).thenReturn(storage);
+        when(locksManager.getCollectionLock(Mockito.eq("db"), Mockito.any())).thenReturn(new ReentrantLock());
+        when(indexingManager.getCollectionIndexKey(Mockito.any(), Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0) + "::" + invocation.getArgument(1));
+        compactor = new CollectionCompactor(databaseDiskCRUD, databaseRegistry, indexingManager, locksManager);
+    }
+
+    @Test
+    public void getStats_comparesTheFileWithTheLiveDocuments() throws Exception {
+        collection("bloated", 400 * 1024, 100 * 1024);
+
+        assertEquals(400 * 1024, compactor.getStats("db", "bloated").getFileBytes());
+        assertEquals(100 * 1024, compactor.getStats("db", "bloated").getLiveBytes());
+        assertEquals(0.75, compactor.getStats("db", "bloated").getDeadRatio());
+    }
+
+    @Test
+    public void compactWhereNeeded_compactsOnlyTheCollectionsPastTheThreshold() throws Exception {
+        collection("bloated", 400 * 1024, 100 * 1024);
+        // most of it is live
+        collection("healthy", 120 * 1024, 100 * 1024);
+        // mostly dead but too small to be worth a rewrite
+        collection("small", 40 * 1024, 10 * 1024);
+        when(storage.compact(Mockito.eq("db"), Mockito.eq("bloated"), Mockito.any())).thenReturn(Map.of());
+
+        compactor.compactWhereNeeded();
+        Mockito.verify(storage).compact(Mockito.eq("db"), Mockito.eq("bloated"), Mockito.any());
+        Mockito.verify(storage, Mockito.never()).compact(Mockito.eq("db"), Mockito.eq("healthy"), Mockito.any());
+        Mockito.verify(storage, Mockito.never()).compact(Mockito.eq("db"), Mockito.eq("small"), Mockito.any());
+        Mockito.verify(indexingManager).replaceCollectionIndexLocations("db", "bloated", Map.of());
+        Mockito.verify(indexingManager).rewritePropertyIndexFiles("db", "bloated");
+    }
+
+    @Test
+    public void compact_recordsTheReclaimedBytes() throws Exception {
+        collection("bloated", 400 * 1024, 100 * 1024);
+        when(storage.compact(Mockito.eq("db"), Mockito.eq("bloated"), Mockito.any())).thenAnswer(invocation -> {
+            when(storage.fileBytes("db", "bloated")).thenReturn(100 * 1024L);
+            return Map.of();
+        });
+
+        compactor.compact("db", "bloated");
+        assertEquals(1, compactor.getStats("db", "bloated").getCompactions());
+        assertEquals(300 * 1024, compactor.getStats("db", "bloated").getReclaimedBytes());
+        assertEquals(0.0, compactor.getStats("db", "bloated").getDeadRatio());
+    }
+
+    @Test
+    public void compact_marksTheCollectionRelocating_whileItsFilesMove() throws Exception {
+        collection("bloated", 400 * 1024, 100 * 1024);
+        when(storage.compact(Mockito.eq("db"), Mockito.eq("bloated"), Mockito.any())).thenReturn(Map.of());
+
+        compactor.compact("db", "bloated");
+        InOrder inOrder = Mockito.inOrder(indexingManager, storage);
+        inOrder.verify(indexingManager).beginCollectionRelocation("db", "bloated");
+        inOrder.verify(storage).compact(Mockito.eq("db"), Mockito.eq("bloated"), Mockito.any());
+        inOrder.verify(indexingManager).replaceCollectionIndexLocations("db", "bloated", Map.of());
+        inOrder.verify(indexingManager).endCollectionRelocation("db", "bloated");
+    }
+
+    // a collection whose documents take liveBytes of the fileBytes it has on disk
+    private void collection(String collectionName, long fileBytes, long liveBytes) throws Exception {
+        CollectionIndex collectionIndex = new CollectionIndex();
+        for (int i = 0; i < liveBytes / 1024; i++) {
+            collectionIndex.insert("doc" + i, DocumentLocation.atOffset(i * 1024L, 1024));
+        }
+        when(indexingManager.getCollectionIndex("db", collectionName)).thenReturn(collectionIndex);
+        when(storage.fileBytes("db", collectionName)).thenReturn(fileBytes);
+    }
+}
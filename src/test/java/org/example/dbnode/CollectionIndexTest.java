@@ -0,0 +1,179 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.CollectionIndex;
+import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Storage.DocumentLocation;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class CollectionIndexTest {
+
+    @Test
+    public void getEntriesAfter_pagesInIdOrder_afterDeletes() {
+        CollectionIndex collectionIndex = new CollectionIndex();
+        for (int i = 0; i < 500; i++) {
+            collectionIndex.insert(String.format("doc%03d", (i * 7) % 500), DocumentLocation.atOffset(i, 64));
+        }
+        for (int i = 0; i < 500; i += 3) {
+            collectionIndex.delete(String.format("doc%03d", i));
+        }
+
+        String after = null;
+        int pages = 0, entries = 0;
+        List<Map.Entry<String, DocumentLocation>> page;
+        while (!(page = collectionIndex.getBPlusTree().getEntriesAfter(after, 50)).isEmpty()) {
+            for (Map.Entry<String, DocumentLocation> entry : page) {
+                assertTrue(after == null || entry.getKey().compareTo(after) > 0);
+                after = entry.getKey();
+                entries++;
+            }
+            pages++;
+        }
+        assertEquals(333, entries);
+        assertEquals(7, pages);
+    }
+
+    @Test
+    public void load_keepsEveryEntry() {
+        Map<String, DocumentLocation> locations = evenDocumentLocations();
+        CollectionIndex collectionIndex = new CollectionIndex(4);
+        collectionIndex.load(locations);
+
+        assertEquals(1000, collectionIndex.getSize());
+        for (Map.Entry<String, DocumentLocation> entry : locations.entrySet()) {
+            assertEquals(entry.getValue().toString(), collectionIndex.search(entry.getKey()).toString());
+        }
+    }
+
+    @Test
+    public void load_acceptsInsertsAndDeletesAfterwards() {
+        CollectionIndex collectionIndex = new CollectionIndex(4);
+        collectionIndex.load(evenDocumentLocations());
+
+        for (int i = 0; i < 1000; i++) {
+            collectionIndex.insert(String.format("doc%04d", i * 2 + 1), DocumentLocation.atOffset(i, 32));
+            collectionIndex.delete(String.format("doc%04d", i * 2));
+        }
+        assertEquals(1000, collectionIndex.getSize());
+        assertNull(collectionIndex.search("doc0000"));
+        assertNotNull(collectionIndex.search("doc1999"));
+    }
+
+    @Test
+    public void insertAndDelete_stayConsistent_underConcurrentWritersAndReaders() throws InterruptedException {
+        CollectionIndex collectionIndex = new CollectionIndex(8);
+        for (int i = 0; i < 3000; i += 3) {
+            collectionIndex.insert(String.format("doc%04d", i), DocumentLocation.atOffset(i, 64));
+        }
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int writer = 0; writer < 2; writer++) {
+            int first = writer + 1;
+            threads.add(new Thread(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int i = first; i < 3000; i += 3) {
+                        collectionIndex.insert(String.format("doc%04d", i), DocumentLocation.atOffset(i, 32));
+                    }
+                    for (int i = first; i < 3000; i += 3) {
+                        collectionIndex.delete(String.format("doc%04d", i));
+                    }
+                }
+            }));
+        }
+        for (int reader = 0; reader < 2; reader++) {
+            threads.add(new Thread(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int i = 0; i < 3000; i += 3) {
+                        if (collectionIndex.search(String.format("doc%04d", i)) == null) {
+                            failure.compareAndSet(null, "lost doc" + i);
+                        }
+                    }
+                    String previous = null;
+                    for (Map.Entry<String, DocumentLocation> entry : collectionIndex.getBPlusTree().getAllEntries()) {
+                        if (previous != null && previous.compareTo(entry.getKey()) >= 0) {
+                            failure.compareAndSet(null, "scanned " + entry.getKey() + " after " + previous);
+                        }
+                        previous = entry.getKey();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(1000, collectionIndex.getSize());
+    }
+
+    @Test
+    public void liveBytes_followInsertsUpdatesAndDeletes() {
+        CollectionIndex collectionIndex = new CollectionIndex(4);
+        for (int i = 0; i < 100; i++) {
+            collectionIndex.insert("doc" + i, DocumentLocation.atOffset(i * 100L, 100));
+        }
+        assertEquals(10_000, collectionIndex.getLiveBytes());
+
+        collectionIndex.insert("doc0", DocumentLocation.atOffset(20_000, 250));
+        collectionIndex.delete("doc1");
+        collectionIndex.delete("missing");
+        assertEquals(10_050, collectionIndex.getLiveBytes());
+
+        collectionIndex.load(Map.of("doc0", DocumentLocation.atOffset(0, 64)));
+        assertEquals(64, collectionIndex.getLiveBytes());
+    }
+
+    private static Map<String, DocumentLocation> evenDocumentLocations() {
+        Map<String, DocumentLocation> locations = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            locations.put(String.format("doc%04d", i * 2), DocumentLocation.atOffset(i, 64));
+        }
+        return locations;
+    }
+
+    @Test
+    public void relocationStamp_changesAroundARelocation_andEndsOnlyOnce() {
+        CollectionIndex collectionIndex = new CollectionIndex();
+        long before = collectionIndex.getRelocationStamp();
+        assertFalse(CollectionIndex.isRelocating(before));
+
+        collectionIndex.beginRelocation();
+        assertTrue(CollectionIndex.isRelocating(collectionIndex.getRelocationStamp()));
+        collectionIndex.endRelocation();
+        collectionIndex.endRelocation();
+        long after = collectionIndex.getRelocationStamp();
+        assertFalse(CollectionIndex.isRelocating(after));
+        assertEquals(before + 2, after);
+    }
+
+    @Test
+    public void rewriteIndexFile_replacesTheFileWholeWithOneLinePerDocument() throws Exception {
+        FileService fileService = FileService.getInstance();
+        String databaseName = "collectionIndexTest";
+        try {
+            fileService.createCollectionIndexFile(databaseName, "people");
+            File indexFile = fileService.getCollectionIndexFile(databaseName, "people");
+            fileService.appendToIndexFile(indexFile.getPath(), Map.of("a", DocumentLocation.atOffset(0, 10).toString()));
+            fileService.appendToIndexFile(indexFile.getPath(), Map.of("a", FileService.DELETED_INDEX_ENTRY));
+            CollectionIndex collectionIndex = new CollectionIndex();
+            collectionIndex.insert("b", DocumentLocation.atOffset(2, 20));
+            collectionIndex.insert("c", DocumentLocation.atOffset(24, 30));
+
+            fileService.rewriteIndexFile(databaseName, "people", collectionIndex);
+            assertEquals(Map.of("b", DocumentLocation.atOffset(2, 20), "c", DocumentLocation.atOffset(24, 30)), fileService.readCollectionIndexFile(indexFile));
+            assertEquals(2, Files.readAllLines(indexFile.toPath()).size());
+            assertFalse(new File(indexFile.getPath() + ".tmp").exists());
+        } finally {
+            fileService.deleteRecursively(fileService.getDatabaseDirectory(databaseName).toPath());
+        }
+    }
+}
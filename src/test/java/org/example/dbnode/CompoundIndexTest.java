@@ -0,0 +1,79 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.CompoundIndex;
+import org.example.dbnode.Indexing.DocumentOrdinals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class CompoundIndexTest {
+    private static final String[] STATUSES = {"active", "blocked", "pending"};
+    private DocumentOrdinals ordinals;
+    private CompoundIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        ordinals = new DocumentOrdinals();
+        index = new CompoundIndex(List.of("tenant", "status", "age"), ordinals);
+        for (int i = 0; i < 300; i++) {
+            index.insert(new Object[] {"tenant" + (i % 3), STATUSES[i % 7 % 3], (long) (i % 50)}, "doc" + i);
+        }
+    }
+
+    @Test
+    public void addPostings_answersAFirstPropertyPrefix() {
+        BitSet byTenant = new BitSet();
+        index.addPostings(new Object[] {"tenant1"}, null, false, null, false, byTenant);
+        assertEquals(100, byTenant.cardinality());
+    }
+
+    @Test
+    public void addPostings_answersATwoPropertyPrefix() {
+        BitSet byTenantAndStatus = new BitSet();
+        index.addPostings(new Object[] {"tenant2", "pending"}, null, false, null, false, byTenantAndStatus);
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 == 2 && i % 7 % 3 == 2) {
+                expected.set(ordinals.ordinalOf("doc" + i));
+            }
+        }
+        assertEquals(expected, byTenantAndStatus);
+    }
+
+    @Test
+    public void addPostings_answersAPrefixPlusARangeOnTheNextProperty() {
+        BitSet ranged = new BitSet();
+        index.addPostings(new Object[] {"tenant2", "pending"}, 10L, false, 20L, true, ranged);
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 == 2 && i % 7 % 3 == 2 && i % 50 > 10 && i % 50 <= 20) {
+                expected.set(ordinals.ordinalOf("doc" + i));
+            }
+        }
+        assertEquals(expected, ranged);
+    }
+
+    @Test
+    public void addPostings_answersEveryProperty() {
+        BitSet exact = new BitSet();
+        index.addPostings(new Object[] {"tenant2", "pending", 20L}, null, false, null, false, exact);
+        assertFalse(exact.isEmpty());
+        exact.stream().forEach(ordinal -> {
+            int i = Integer.parseInt(ordinals.documentId(ordinal).substring(3));
+            assertEquals(List.of(2, 2, 20), List.of(i % 3, i % 7 % 3, i % 50));
+        });
+    }
+
+    @Test
+    public void remove_dropsOnlyThatDocument() {
+        index.remove(new Object[] {"tenant0", "active", 0L}, "doc0");
+
+        BitSet removed = new BitSet();
+        index.addPostings(new Object[] {"tenant0", "active", 0L}, null, false, null, false, removed);
+        assertFalse(removed.get(ordinals.ordinalOf("doc0")));
+        assertTrue(removed.get(ordinals.ordinalOf("doc150")));
+    }
+}
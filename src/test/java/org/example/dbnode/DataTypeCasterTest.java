@@ -0,0 +1,18 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Util.DataTypes.DataTypeCaster;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class DataTypeCasterTest {
+
+    @Test
+    public void unquote_unescapesQuotedText() {
+        assertEquals("John \"JJ\" Smith", DataTypeCaster.unquote("\"John \\\"JJ\\\" Smith\""));
+    }
+
+    @Test
+    public void unquote_keepsUnquotedText() {
+        assertEquals("John", DataTypeCaster.unquote("John"));
+    }
+}
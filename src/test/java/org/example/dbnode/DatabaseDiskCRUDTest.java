@@ -1,18 +1,40 @@
 package org.example.dbnode;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 import lombok.extern.log4j.Log4j2;
 import org.example.dbnode.Exception.*;
+import org.example.dbnode.Indexing.IndexingManager;
 import org.example.dbnode.Model.Document;
+import org.example.dbnode.Model.PropertyRange;
+import org.example.dbnode.Model.Schema;
 import org.example.dbnode.Model.TestModel;
+import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Service.Interfaces.CollectionService;
+import org.example.dbnode.Service.Interfaces.DatabaseService;
+import org.example.dbnode.Storage.CollectionCompactor;
+import org.example.dbnode.Storage.DocumentLocation;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 @Log4j2
@@ -20,6 +42,16 @@ import static org.junit.jupiter.api.Assertions.*;
 class DatabaseDiskCRUDTest {
     @Autowired
     private DatabaseDiskCRUD databaseDiskCRUD;
+    @Autowired
+    private IndexingManager indexingManager;
+    @Autowired
+    private DatabaseService databaseService;
+    @Autowired
+    private CollectionService collectionService;
+    @Autowired
+    private FileService fileService;
+    @Autowired
+    private CollectionCompactor collectionCompactor;
 
     @Test
     void createDatabaseSuccessfully() throws Exception {
@@ -93,6 +125,231 @@ class DatabaseDiskCRUDTest {
         assertNotNull(databaseDiskCRUD.fetchDocumentFromDatabase("testDB", "testCollection", document.getId()));
     }
 
+    @Test
+    void addDocumentsToCollectionSuccessfully() throws Exception {
+        databaseDiskCRUD.createDatabase("testDB");
+        databaseDiskCRUD.createCollectionFromClass("testDB", "testCollection", TestModel.class);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TestModel testModel = new TestModel();
+            testModel.setName("Test Name " + i);
+            Document document = new Document(testModel.toJson(testModel));
+            document.setId(UUID.randomUUID().toString());
+            documents.add(document);
+        }
+        databaseDiskCRUD.createDocuments("testDB", "testCollection", documents);
+        for (Document document : documents) {
+            assertTrue(databaseDiskCRUD.fetchDocumentFromDatabase("testDB", "testCollection", document.getId()).isPresent());
+        }
+        assertThrows(OperationFailedException.class, () -> databaseDiskCRUD.createDocuments("testDB", "testCollection", List.of(documents.get(0))));
+    }
+
+    @Test
+    void deleteDocumentsByPropertyValueSuccessfully() throws Exception {
+        String databaseName = createIsolatedDatabase();
+        try {
+            // a value wrapped in quotes only matches its postings when deleted by its JSON text
+            String sharedName = "\"Shared\"";
+            List<Document> documents = addTestModels(databaseName, sharedName, sharedName, "Other");
+
+            String filterValue = TextNode.valueOf(sharedName).toString();
+            List<String> matchingIds = databaseDiskCRUD.fetchAllDocumentIdsByPropertyValue(databaseName, "testCollection", "name", filterValue);
+            assertEquals(2, matchingIds.size());
+            assertEquals(2, databaseDiskCRUD.deleteDocumentsFromCollection(databaseName, "testCollection", new ArrayList<>(matchingIds)));
+
+            assertEquals(1, databaseDiskCRUD.countDocuments(databaseName, "testCollection"));
+            for (Document document : documents.subList(0, 2)) {
+                assertFalse(indexingManager.documentExistsInCollectionIndex(databaseName, "testCollection", document.getId()));
+            }
+            assertTrue(indexingManager.documentExistsInCollectionIndex(databaseName, "testCollection", documents.get(2).getId()));
+            assertTrue(databaseDiskCRUD.fetchAllDocumentIdsByPropertyValue(databaseName, "testCollection", "name", filterValue).isEmpty());
+            assertEquals(0, indexingManager.searchPostingsInInvertedPropertyIndex(databaseName, "testCollection", "name", filterValue).size());
+            assertEquals(List.of(documents.get(2).getId()), databaseDiskCRUD.fetchAllDocumentIdsByPropertyValue(databaseName, "testCollection", "name", "Other"));
+        } finally {
+            databaseService.deleteDatabase(databaseName);
+        }
+    }
+
+    @Test
+    void updateDocumentMovesItsPostingsToTheNewValue() throws Exception {
+        String databaseName = createIsolatedDatabase();
+        try {
+            String quotedName = "\"Quoted\"";
+            Document document = addTestModels(databaseName, quotedName).get(0);
+            ObjectNode updatedProperties = new ObjectMapper().createObjectNode();
+            updatedProperties.put("name", "Plain");
+            updatedProperties.put("_version", 0);
+            databaseDiskCRUD.updateDocument(databaseName, "testCollection", document.getId(), updatedProperties);
+
+            assertEquals(0, indexingManager.searchPostingsInInvertedPropertyIndex(databaseName, "testCollection", "name", TextNode.valueOf(quotedName).toString()).size());
+            assertEquals(List.of(document.getId()), databaseDiskCRUD.fetchAllDocumentIdsByPropertyValue(databaseName, "testCollection", "name", "Plain"));
+        } finally {
+            databaseService.deleteDatabase(databaseName);
+        }
+    }
+
+    @Test
+    void loadCollectionIndexRebuildsTheOffsetsOfAnInterruptedCompaction() throws Exception {
+        String databaseName = createIsolatedDatabase();
+        try {
+            List<Document> documents = addTestModels(databaseName, "Alexandra", "Omar", "Lina");
+            databaseDiskCRUD.deleteDocumentFromCollection(databaseName, "testCollection", documents.get(0).getId());
+            Map<String, DocumentLocation> liveLocations = new LinkedHashMap<>();
+            for (Document document : documents.subList(1, 3)) {
+                liveLocations.put(document.getId(), indexingManager.searchInCollectionIndex(databaseName, "testCollection", document.getId()));
+            }
+            // the node crashes once the collection file is replaced, before the index file gets the new offsets
+            indexingManager.beginCollectionRelocation(databaseName, "testCollection");
+            databaseDiskCRUD.getStorage(databaseName, "testCollection").compact(databaseName, "testCollection", liveLocations);
+
+            File indexFile = fileService.getCollectionIndexFile(databaseName, "testCollection");
+            indexingManager.loadCollectionIndex(databaseName, indexFile.getName());
+            for (Document document : documents.subList(1, 3)) {
+                assertEquals(document.getId(), databaseDiskCRUD.fetchNodeById(databaseName, "testCollection", document.getId()).get("_id").asText());
+            }
+            assertEquals(2, fileService.readCollectionIndexFile(indexFile).size());
+            assertFalse(fileService.getCollectionRelocationMarker(databaseName, "testCollection").exists());
+        } finally {
+            databaseService.deleteDatabase(databaseName);
+        }
+    }
+
+    @Test
+    void readsReturnTheRightDocumentsWhileCompactionsMoveThem() throws Exception {
+        String databaseName = createIsolatedDatabase();
+        try {
+            String[] names = new String[300];
+            Arrays.fill(names, "Name");
+            List<Document> documents = addTestModels(databaseName, names);
+            List<String> keptIds = new ArrayList<>(), deletedIds = new ArrayList<>();
+            for (int i = 0; i < documents.size(); i++) {
+                (i % 3 == 0 ? keptIds : deletedIds).add(documents.get(i).getId());
+            }
+
+            AtomicBoolean compacting = new AtomicBoolean(true);
+            AtomicReference<String> failure = new AtomicReference<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                Thread reader = new Thread(() -> {
+                    Random random = new Random();
+                    while (compacting.get() && failure.get() == null) {
+                        String documentId = keptIds.get(random.nextInt(keptIds.size()));
+                        ObjectNode document = databaseDiskCRUD.fetchNodeById(databaseName, "testCollection", documentId);
+                        if (document == null || !documentId.equals(document.path("_id").asText())) {
+                            failure.set(documentId + " read as " + document);
+                        }
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            // every round deletes documents ahead of the kept ones, so each compaction moves them
+            for (int round = 0; round < 10; round++) {
+                databaseDiskCRUD.deleteDocumentsFromCollection(databaseName, "testCollection", deletedIds.subList(round * 20, round * 20 + 20));
+                collectionCompactor.compact(databaseName, "testCollection");
+            }
+            compacting.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertNull(failure.get());
+        } finally {
+            databaseService.deleteDatabase(databaseName);
+        }
+    }
+
+    @Test
+    void countDocumentsFromTheIndexes() throws Exception {
+        String databaseName = createIsolatedDatabase();
+        try {
+            // every property of the schema is indexed, but no document has one yet
+            assertEquals(0, databaseDiskCRUD.countDocuments(databaseName, "testCollection"));
+            assertEquals(0, databaseDiskCRUD.countDocumentsByProperty(databaseName, "testCollection", "name", "Lina", null));
+
+            addTestModels(databaseName, "Lina", "Omar", "Lina", "Alexandra");
+            assertEquals(4, databaseDiskCRUD.countDocuments(databaseName, "testCollection"));
+            assertEquals(2, databaseDiskCRUD.countDocumentsByProperty(databaseName, "testCollection", "name", "Lina", null));
+            assertEquals(0, databaseDiskCRUD.countDocumentsByProperty(databaseName, "testCollection", "name", "Nobody", null));
+            assertEquals(2, databaseDiskCRUD.countDocumentsByProperty(databaseName, "testCollection", "number", null, new PropertyRange("1", true, "3", false)));
+            assertEquals(3, databaseDiskCRUD.countDocumentsByProperty(databaseName, "testCollection", "number", null, PropertyRange.of("0", null, null, null, null)));
+            assertThrows(IllegalArgumentException.class, () -> databaseDiskCRUD.countDocumentsByProperty(databaseName, "testCollection", "nickname", "Lina", null));
+        } finally {
+            databaseService.deleteDatabase(databaseName);
+        }
+    }
+
+    @Test
+    void documentExistsFromTheCollectionIndex() throws Exception {
+        String databaseName = createIsolatedDatabase();
+        try {
+            List<Document> documents = addTestModels(databaseName, "Lina", "Omar");
+            databaseDiskCRUD.deleteDocumentFromCollection(databaseName, "testCollection", documents.get(1).getId());
+
+            assertTrue(databaseDiskCRUD.documentExists(databaseName, "testCollection", documents.get(0).getId()));
+            assertFalse(databaseDiskCRUD.documentExists(databaseName, "testCollection", documents.get(1).getId()));
+            assertFalse(databaseDiskCRUD.documentExists(databaseName, "testCollection", UUID.randomUUID().toString()));
+        } finally {
+            databaseService.deleteDatabase(databaseName);
+        }
+    }
+
+    @Test
+    void writeCollectionDocumentsCountsOnlyTheDocumentsItWrote() throws Exception {
+        String databaseName = createIsolatedDatabase();
+        try {
+            List<String> documentIds = new ArrayList<>(addTestModels(databaseName, "Lina", "Omar", "Alexandra").stream().map(Document::getId).toList());
+            Collections.sort(documentIds);
+            StringWriter page = new StringWriter();
+            AtomicBoolean deleted = new AtomicBoolean();
+            // the second document is deleted once the page walk already holds its id
+            JsonGenerator generator = new JsonGeneratorDelegate(new ObjectMapper().createGenerator(page)) {
+                @Override
+                public void writeEndObject() throws IOException {
+                    super.writeEndObject();
+                    if (getOutputContext().inArray() && deleted.compareAndSet(false, true)) {
+                        try {
+                            databaseDiskCRUD.deleteDocumentFromCollection(databaseName, "testCollection", documentIds.get(1));
+                        } catch (Exception e) {
+                            throw new IOException(e);
+                        }
+                    }
+                }
+            };
+            generator.writeStartArray();
+            assertNull(databaseDiskCRUD.writeCollectionDocuments(databaseName, "testCollection", null, 2, generator));
+            generator.writeEndArray();
+            generator.close();
+
+            List<String> writtenIds = new ArrayList<>();
+            new ObjectMapper().readTree(page.toString()).forEach(document -> writtenIds.add(document.get("_id").asText()));
+            assertEquals(List.of(documentIds.get(0), documentIds.get(2)), writtenIds);
+        } finally {
+            databaseService.deleteDatabase(databaseName);
+        }
+    }
+
+    // a database of its own with a registered "testCollection" of TestModel, so no test depends on another one
+    private String createIsolatedDatabase() throws Exception {
+        String databaseName = "testDB" + UUID.randomUUID().toString().replace("-", "");
+        databaseService.createDatabase(databaseName);
+        collectionService.createCollection(databaseName, "testCollection", Schema.fromClass(TestModel.class));
+        return databaseName;
+    }
+
+    private List<Document> addTestModels(String databaseName, String... names) throws Exception {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            TestModel testModel = new TestModel();
+            testModel.setName(names[i]);
+            testModel.setNumber(i);
+            Document document = new Document(testModel.toJson(testModel));
+            document.setId(UUID.randomUUID().toString());
+            documents.add(document);
+        }
+        databaseDiskCRUD.createDocuments(databaseName, "testCollection", documents);
+        return documents;
+    }
+
     @Test
     void addDocumentToNonexistentCollection() {
         TestModel testModel = new TestModel();
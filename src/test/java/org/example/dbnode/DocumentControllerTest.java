@@ -0,0 +1,113 @@
+package org.example.dbnode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.dbnode.Controller.DocumentController;
+import org.example.dbnode.Service.AuthenticationServiceImpl;
+import org.example.dbnode.Service.DocumentServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+public class DocumentControllerTest {
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private DocumentServiceImpl documentService;
+    private DocumentController controller;
+
+    @BeforeEach
+    public void setUp() {
+        documentService = Mockito.mock(DocumentServiceImpl.class);
+        controller = new DocumentController(Mockito.mock(AuthenticationServiceImpl.class), documentService);
+    }
+
+    @Test
+    public void fetchByPropertyValue_streamsOneDocumentPerLine_asNdjson() throws Exception {
+        when(documentService.writeDocumentsByPropertyValue(Mockito.eq("db"), Mockito.eq("people"), Mockito.eq("name"), Mockito.eq("Lina"), Mockito.any()))
+                .thenAnswer(invocation -> write(invocation.getArgument(4), "a", "b", "c"));
+
+        MockHttpServletResponse response = fetch("name", "Lina", null, null, NDJSON);
+        assertEquals(NDJSON, response.getContentType().split(";")[0]);
+        String body = response.getContentAsString();
+        assertTrue(body.endsWith("\n"));
+        List<String> lines = List.of(body.split("\n"));
+        assertEquals(3, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(document(List.of("a", "b", "c").get(i)), mapper.readTree(lines.get(i)));
+        }
+    }
+
+    @Test
+    public void fetchByPropertyValue_leavesTheBodyEmpty_whenNoDocumentMatches() throws Exception {
+        when(documentService.writeDocumentsByPropertyValue(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(0);
+
+        assertEquals("", fetch("name", "Nobody", null, null, NDJSON).getContentAsString());
+    }
+
+    @Test
+    public void fetchCollection_streamsOneDocumentPerLine_asNdjson() throws Exception {
+        when(documentService.writeCollectionDocuments(Mockito.eq("db"), Mockito.eq("people"), Mockito.isNull(), Mockito.eq(2), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    write(invocation.getArgument(4), "a", "b");
+                    return "b";
+                });
+
+        assertEquals(document("a") + "\n" + document("b") + "\n", fetch(null, null, 2, null, NDJSON).getContentAsString());
+    }
+
+    @Test
+    public void fetchCollection_answersAPageWithItsDocumentsAndTheNextCursor() throws Exception {
+        when(documentService.writeCollectionDocuments(Mockito.eq("db"), Mockito.eq("people"), Mockito.isNull(), Mockito.eq(2), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    write(invocation.getArgument(4), "a", "b");
+                    return "b";
+                });
+        when(documentService.writeCollectionDocuments(Mockito.eq("db"), Mockito.eq("people"), Mockito.eq("b"), Mockito.eq(2), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    write(invocation.getArgument(4), "c");
+                    return null;
+                });
+
+        JsonNode first = mapper.readTree(fetch(null, null, 2, null, null).getContentAsString());
+        List<String> fields = new ArrayList<>();
+        first.fieldNames().forEachRemaining(fields::add);
+        assertEquals(List.of("documents", "next"), fields);
+        assertEquals(mapper.createArrayNode().add(document("a")).add(document("b")), first.get("documents"));
+        assertEquals("b", first.get("next").asText());
+
+        JsonNode last = mapper.readTree(fetch(null, null, 2, "b", null).getContentAsString());
+        assertEquals(mapper.createArrayNode().add(document("c")), last.get("documents"));
+        assertTrue(last.get("next").isNull());
+    }
+
+    private MockHttpServletResponse fetch(String propertyName, String propertyValue, Integer limit, String after, String accept) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(controller.fetchCollectionDocuments("db", "people", propertyName, propertyValue, null, null, null, null, null,
+                limit, after, null, accept, "admin", "admin", response));
+        return response;
+    }
+
+    // writes the documents the way the storage copies them, as root values of the generator
+    private int write(JsonGenerator generator, String... ids) throws Exception {
+        for (String id : ids) {
+            generator.writeTree(document(id));
+        }
+        return ids.length;
+    }
+
+    private ObjectNode document(String id) {
+        ObjectNode document = mapper.createObjectNode();
+        document.put("_id", id);
+        document.put("name", "name of " + id);
+        return document;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.DocumentOrdinals;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class DocumentOrdinalsTest {
+
+    @Test
+    public void ordinalOf_numbersDocumentsDensely_andOnce() {
+        DocumentOrdinals ordinals = new DocumentOrdinals();
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, ordinals.ordinalOf("doc" + i));
+        }
+        assertEquals(7, ordinals.ordinalOf("doc7"));
+        assertEquals("doc150", ordinals.documentId(150));
+        assertEquals(-1, ordinals.find("missing"));
+    }
+
+    @Test
+    public void release_handsTheOrdinalsOutAgain_lowestFirst() {
+        DocumentOrdinals ordinals = new DocumentOrdinals();
+        for (int i = 0; i < 10; i++) {
+            ordinals.ordinalOf("doc" + i);
+        }
+        ordinals.release("doc8");
+        ordinals.release("doc3");
+
+        assertNull(ordinals.documentId(3));
+        assertEquals(-1, ordinals.find("doc3"));
+        assertFalse(ordinals.liveOrdinals().get(3));
+        assertEquals(3, ordinals.ordinalOf("new1"));
+        assertEquals(8, ordinals.ordinalOf("new2"));
+        assertEquals(10, ordinals.ordinalOf("new3"));
+        assertEquals(11, ordinals.liveOrdinals().cardinality());
+    }
+
+    @Test
+    public void release_keepsTheOrdinalsFromReadsUnderWay_untilTheLastOneEnds() {
+        DocumentOrdinals ordinals = new DocumentOrdinals();
+        for (int i = 0; i < 4; i++) {
+            ordinals.ordinalOf("doc" + i);
+        }
+        ordinals.beginRead();
+        ordinals.beginRead();
+        ordinals.release("doc1");
+
+        // a bitmap taken by either read may still hold 1 for doc1
+        assertEquals(4, ordinals.ordinalOf("new1"));
+        ordinals.endRead();
+        assertEquals(5, ordinals.ordinalOf("new2"));
+        ordinals.endRead();
+        assertEquals(1, ordinals.ordinalOf("new3"));
+
+        // given up with no read under way, free right away
+        ordinals.release("doc2");
+        assertEquals(2, ordinals.ordinalOf("new4"));
+    }
+}
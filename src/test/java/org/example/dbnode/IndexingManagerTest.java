@@ -5,6 +5,7 @@ import org.example.dbnode.Indexing.CollectionIndex;
 import org.example.dbnode.Indexing.IndexingManager;
 import org.example.dbnode.Indexing.PropertyIndex;
 import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Storage.DocumentLocation;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -51,10 +52,10 @@ public class IndexingManagerTest {
         int index = 0;
 
         indexingManager.createCollectionIndex(databaseName, collectionName);
-        indexingManager.insertDocumentIntoCollectionIndex(databaseName, collectionName, documentId);
+        indexingManager.insertDocumentIntoCollectionIndex(databaseName, collectionName, documentId, DocumentLocation.atOffset(index, 64));
 
-        Integer result = indexingManager.searchInCollectionIndex(databaseName, collectionName, documentId);
-        assertEquals(index, result);
+        DocumentLocation result = indexingManager.searchInCollectionIndex(databaseName, collectionName, documentId);
+        assertEquals(index, result.getOffset());
     }
 
     @Test
@@ -65,7 +66,7 @@ public class IndexingManagerTest {
         int index = 1;
 
         indexingManager.createCollectionIndex(databaseName, collectionName);
-        indexingManager.insertDocumentIntoCollectionIndex(databaseName, collectionName, documentId);
+        indexingManager.insertDocumentIntoCollectionIndex(databaseName, collectionName, documentId, DocumentLocation.atOffset(0, 64));
         indexingManager.deleteDocumentFromCollectionIndex(databaseName, collectionName, documentId);
 
         assertThrows(ResourceNotFoundException.class, () -> indexingManager.searchInCollectionIndex(databaseName, collectionName, documentId));
@@ -135,7 +136,7 @@ public class IndexingManagerTest {
 
         // Create and populate indexes
         indexingManager.createCollectionIndex(databaseName, collectionName);
-        indexingManager.insertDocumentIntoCollectionIndex(databaseName, collectionName, documentId);
+        indexingManager.insertDocumentIntoCollectionIndex(databaseName, collectionName, documentId, DocumentLocation.atOffset(collectionIndexValue, 64));
         indexingManager.createPropertyIndex(databaseName, collectionName, propertyName);
         indexingManager.insertIntoPropertyIndex(databaseName, collectionName, propertyName, propertyIndexValue, documentId);
 
@@ -145,7 +146,7 @@ public class IndexingManagerTest {
         // Verify that the indexes were loaded correctly
         CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
         assertNotNull(collectionIndex);
-        assertEquals(collectionIndexValue, collectionIndex.search(documentId));
+        assertEquals(DocumentLocation.atOffset(collectionIndexValue, 64), collectionIndex.search(documentId));
 
         PropertyIndex propertyIndex = indexingManager.getPropertyIndex(databaseName, collectionName, propertyName);
         assertNotNull(propertyIndex);
@@ -161,15 +162,15 @@ public class IndexingManagerTest {
         when(indexFile.exists()).thenReturn(true);
         when(indexFile.getPath()).thenReturn("src/main/resources/databases/"+databaseName +"/indexes/" + collectionName +"/"+collectionName+ "_collection_index.txt");
 
-        Map<String, Integer> indexData = new ConcurrentHashMap<>();
-        indexData.put("doc1", 1);
+        Map<String, DocumentLocation> indexData = new ConcurrentHashMap<>();
+        indexData.put("doc1", DocumentLocation.atOffset(1, 64));
         when(fileService.readCollectionIndexFile(indexFile)).thenReturn(indexData);
 
         indexingManager.loadCollectionIndex(databaseName, collectionName + "_collection_index.txt");
 
         CollectionIndex collectionIndex = indexingManager.getCollectionIndex(databaseName, collectionName);
         assertNotNull(collectionIndex);
-        assertEquals(1, collectionIndex.search("doc1"));
+        assertEquals(DocumentLocation.atOffset(1, 64), collectionIndex.search("doc1"));
     }
 
     @Test
@@ -0,0 +1,72 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.BPlusTree.DoubleBPlusTree;
+import org.example.dbnode.Indexing.BPlusTree.LongBPlusTree;
+import org.example.dbnode.Indexing.DocumentOrdinals;
+import org.example.dbnode.Indexing.InvertedPropertyIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class InvertedPropertyIndexTest {
+
+    @Test
+    public void insertBatch_matchesInsertingOneDocumentAtATime() {
+        InvertedPropertyIndex<Long> batched = new InvertedPropertyIndex<>(new LongBPlusTree<>(4), new DocumentOrdinals());
+        InvertedPropertyIndex<Long> single = new InvertedPropertyIndex<>(new LongBPlusTree<>(4), new DocumentOrdinals());
+        for (long value = 0; value < 5; value++) {
+            List<String> documentIds = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                documentIds.add("doc" + value + "-" + i);
+            }
+            batched.insert(value, documentIds.subList(0, 1000));
+            batched.insert(value, documentIds.subList(1000, 2000));
+            for (String documentId : documentIds) {
+                single.insert(value, documentId);
+            }
+        }
+
+        for (long value = 0; value < 5; value++) {
+            assertEquals(single.search(value), batched.search(value));
+            assertEquals(2000, batched.postings(value).size());
+        }
+    }
+
+    @Test
+    public void load_groupsTheDocumentsByParsedValue() {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("doc" + i, String.valueOf(i % 10));
+        }
+        InvertedPropertyIndex<Long> index = new InvertedPropertyIndex<>(new LongBPlusTree<>(4), new DocumentOrdinals());
+        index.insert(42L, "stale");
+        index.load(values, Long::parseLong);
+
+        assertTrue(index.search(42L).isEmpty());
+        assertEquals(10, index.search(3L).size());
+        assertTrue(index.search(3L).contains("doc93"));
+        List<Long> keys = new ArrayList<>();
+        index.range(null, true, null, true).forEachRemaining(entry -> keys.add(entry.getKey()));
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), keys);
+    }
+
+    @Test
+    public void range_walksThePostingsBetweenItsBounds() {
+        InvertedPropertyIndex<Double> index = new InvertedPropertyIndex<>(new DoubleBPlusTree<>(4), new DocumentOrdinals());
+        for (int i = 0; i < 40; i++) {
+            index.insert(i / 10.0, "doc" + i);
+        }
+        index.insert(2.0, "other");
+
+        List<String> documentIds = new ArrayList<>();
+        index.range(1.5, false, 3.0, true).forEachRemaining(posting -> documentIds.addAll(index.documentIds(posting.getValue())));
+        assertEquals(16, documentIds.size());
+        assertEquals("doc16", documentIds.get(0));
+        assertEquals(List.of("doc20", "other"), documentIds.subList(4, 6));
+        assertEquals("doc30", documentIds.get(documentIds.size() - 1));
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.dbnode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Storage.DocumentLocation;
+import org.example.dbnode.Storage.JsonArrayStorage;
+import org.example.dbnode.Storage.MappedFileCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class JsonArrayStorageTest {
+    private static final String DATABASE = "jsonArrayStorageTest";
+    private static final String COLLECTION = "people";
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final FileService fileService = FileService.getInstance();
+    private JsonArrayStorage storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        storage = new JsonArrayStorage(fileService, new MappedFileCache());
+        storage.createCollection(DATABASE, COLLECTION);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        fileService.deleteRecursively(fileService.getDatabaseDirectory(DATABASE).toPath());
+    }
+
+    @Test
+    public void appendDocuments_readBackFromTheirByteRanges() throws Exception {
+        List<DocumentLocation> locations = storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", "Sara"), document("b", "Omar")));
+        DocumentLocation third = storage.appendDocument(DATABASE, COLLECTION, document("c", "Lina"));
+
+        assertEquals(document("a", "Sara"), storage.readDocument(DATABASE, COLLECTION, locations.get(0)));
+        assertEquals(document("b", "Omar"), storage.readDocument(DATABASE, COLLECTION, locations.get(1)));
+        assertEquals(document("c", "Lina"), storage.readDocument(DATABASE, COLLECTION, third));
+        // the file stays a valid JSON array
+        assertEquals(3, mapper.readTree(fileService.getCollectionFile(DATABASE, COLLECTION)).size());
+    }
+
+    @Test
+    public void updateDocument_reusesTheSlot_whenTheDocumentFits() throws Exception {
+        DocumentLocation location = storage.appendDocument(DATABASE, COLLECTION, document("a", "Alexandra"));
+        DocumentLocation next = storage.appendDocument(DATABASE, COLLECTION, document("b", "Omar"));
+        long fileBytes = storage.fileBytes(DATABASE, COLLECTION);
+
+        assertEquals(location, storage.updateDocument(DATABASE, COLLECTION, location, document("a", "Sara")));
+        assertEquals(document("a", "Sara"), storage.readDocument(DATABASE, COLLECTION, location));
+        assertEquals(document("b", "Omar"), storage.readDocument(DATABASE, COLLECTION, next));
+        assertEquals(fileBytes, storage.fileBytes(DATABASE, COLLECTION));
+    }
+
+    @Test
+    public void readLiveLocations_findsTheByteRangeOfEveryDocument() throws Exception {
+        List<DocumentLocation> locations = storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", "Sara"), document("b", "Omar")));
+
+        Map<String, DocumentLocation> live = storage.readLiveLocations(DATABASE, COLLECTION);
+        assertEquals(locations.get(0), live.get("a"));
+        assertEquals(locations.get(1), live.get("b"));
+    }
+
+    @Test
+    public void updateDocument_tombstonesTheSlotAndAppends_whenTheDocumentOutgrowsIt() throws Exception {
+        DocumentLocation location = storage.appendDocument(DATABASE, COLLECTION, document("a", "Sara"));
+        DocumentLocation next = storage.appendDocument(DATABASE, COLLECTION, document("b", "Omar"));
+
+        DocumentLocation moved = storage.updateDocument(DATABASE, COLLECTION, location, document("a", "Alexandra Katherine"));
+        assertTrue(moved.getOffset() > next.getOffset());
+        assertEquals(document("a", "Alexandra Katherine"), storage.readDocument(DATABASE, COLLECTION, moved));
+        assertEquals(document("b", "Omar"), storage.readDocument(DATABASE, COLLECTION, next));
+        assertEquals(List.of(document("b", "Omar"), document("a", "Alexandra Katherine")), storage.readAllDocuments(DATABASE, COLLECTION));
+    }
+
+    @Test
+    public void deleteDocuments_tombstoneTheirSlots_withoutMovingTheOthers() throws Exception {
+        List<DocumentLocation> locations = storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", "Sara"), document("b", "Omar"), document("c", "Lina")));
+        long fileBytes = storage.fileBytes(DATABASE, COLLECTION);
+
+        storage.deleteDocuments(DATABASE, COLLECTION, Map.of("a", locations.get(0), "c", locations.get(2)));
+        assertEquals(fileBytes, storage.fileBytes(DATABASE, COLLECTION));
+        assertEquals(document("b", "Omar"), storage.readDocument(DATABASE, COLLECTION, locations.get(1)));
+        assertEquals(List.of(document("b", "Omar")), storage.readAllDocuments(DATABASE, COLLECTION));
+        assertEquals(List.of("b"), List.copyOf(storage.readLiveLocations(DATABASE, COLLECTION).keySet()));
+    }
+
+    @Test
+    public void compact_dropsTombstonesAndPadding_andReturnsTheNewLocations() throws Exception {
+        List<DocumentLocation> locations = storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", "Alexandra"), document("b", "Omar"), document("c", "Lina")));
+        storage.deleteDocument(DATABASE, COLLECTION, "b", locations.get(1));
+        DocumentLocation updated = storage.updateDocument(DATABASE, COLLECTION, locations.get(0), document("a", "Sara"));
+        long fileBytes = storage.fileBytes(DATABASE, COLLECTION);
+        Map<String, DocumentLocation> live = new LinkedHashMap<>();
+        live.put("a", updated);
+        live.put("c", locations.get(2));
+
+        Map<String, DocumentLocation> compacted = storage.compact(DATABASE, COLLECTION, live);
+        assertTrue(storage.fileBytes(DATABASE, COLLECTION) < fileBytes);
+        assertEquals(document("a", "Sara"), storage.readDocument(DATABASE, COLLECTION, compacted.get("a")));
+        assertEquals(document("c", "Lina"), storage.readDocument(DATABASE, COLLECTION, compacted.get("c")));
+        assertEquals(compacted, storage.readLiveLocations(DATABASE, COLLECTION));
+        assertEquals(2, mapper.readTree(fileService.getCollectionFile(DATABASE, COLLECTION)).size());
+    }
+
+    private ObjectNode document(String id, String name) {
+        ObjectNode document = mapper.createObjectNode();
+        document.put("_id", id);
+        document.put("name", name);
+        return document;
+    }
+}
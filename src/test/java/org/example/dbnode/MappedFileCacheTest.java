@@ -0,0 +1,97 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Storage.MappedFileCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class MappedFileCacheTest {
+    private final MappedFileCache mappedFiles = new MappedFileCache();
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mapped");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        FileService.getInstance().deleteRecursively(directory);
+    }
+
+    @Test
+    public void slice_readsTheBytesAtTheOffset() throws IOException {
+        File file = write(directory.resolve("collection.json"), "[{\"_id\":\"a\"}]");
+        assertEquals("{\"_id\":\"a\"}", text(mappedFiles.slice(file, 1, 11)));
+    }
+
+    @Test
+    public void slice_remapsAFileThatGrew() throws IOException {
+        File file = write(directory.resolve("00000001.segment"), "hello");
+        assertEquals("hello", text(mappedFiles.slice(file, 0, 5)));
+
+        Files.writeString(file.toPath(), " world", StandardOpenOption.APPEND);
+        assertEquals("world", text(mappedFiles.slice(file, 6, 5)));
+        assertEquals("hello world", text(mappedFiles.map(file)));
+    }
+
+    @Test
+    public void slice_throws_pastTheEndOfTheFile() throws IOException {
+        File file = write(directory.resolve("00000001.segment"), "hello");
+        assertThrows(IOException.class, () -> mappedFiles.slice(file, 3, 5));
+    }
+
+    @Test
+    public void invalidate_dropsTheMappingOfAReplacedFile() throws IOException {
+        File file = write(directory.resolve("collection.json"), "[1]");
+        assertEquals("[1]", text(mappedFiles.map(file)));
+
+        replace(file, "[2]");
+        // a file moved over the mapped one keeps the old bytes mapped until invalidated
+        assertEquals("[1]", text(mappedFiles.map(file)));
+        mappedFiles.invalidate(file);
+        assertEquals("[2]", text(mappedFiles.map(file)));
+    }
+
+    @Test
+    public void invalidateDirectory_dropsOnlyTheMappingsOfFilesUnderIt() throws IOException {
+        Path segments = Files.createDirectory(directory.resolve("events"));
+        File segment = write(segments.resolve("00000001.segment"), "old");
+        File sibling = write(directory.resolve("events.json"), "old");
+        mappedFiles.map(segment);
+        mappedFiles.map(sibling);
+
+        replace(segment, "new");
+        replace(sibling, "new");
+        mappedFiles.invalidateDirectory(segments.toFile());
+        assertEquals("new", text(mappedFiles.map(segment)));
+        assertEquals("old", text(mappedFiles.map(sibling)));
+    }
+
+    private static File write(Path path, String content) throws IOException {
+        return Files.writeString(path, content).toFile();
+    }
+
+    // moves a new file over the given one, the way compaction swaps a collection file
+    private static void replace(File file, String content) throws IOException {
+        Path replacement = Files.writeString(file.toPath().resolveSibling(file.getName() + ".new"), content);
+        Files.move(replacement, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.DocumentOrdinals;
+import org.example.dbnode.Indexing.InvertedPropertyIndex;
+import org.example.dbnode.Indexing.NgramIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class NgramIndexTest {
+    private DocumentOrdinals ordinals;
+    private NgramIndex ngramIndex;
+
+    @BeforeEach
+    public void setUp() {
+        ordinals = new DocumentOrdinals();
+        InvertedPropertyIndex<String> emails = new InvertedPropertyIndex<>(ordinals);
+        emails.insert("sara@example.com", "a");
+        emails.insert("omar@example.org", "b");
+        emails.insert("sara@mail.com", "c");
+        emails.insert("ampl-mple@host.com", "d");
+        ngramIndex = new NgramIndex("email", ordinals);
+        ngramIndex.load(emails.range(null, true, null, true));
+    }
+
+    @Test
+    public void candidates_areTheDocumentsHavingEveryTrigram() {
+        BitSet candidates = ngramIndex.candidates("example");
+        assertEquals(Set.of(ordinals.find("a"), ordinals.find("b")), candidates.stream().boxed().collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void candidates_includeDocumentsHavingTheTrigramsApart() {
+        // d has every trigram of "ample" without containing it, candidates are only checked afterwards
+        assertTrue(ngramIndex.candidates("ample").get(ordinals.find("d")));
+    }
+
+    @Test
+    public void candidates_areEmpty_whenATrigramIsInNoDocument() {
+        assertTrue(ngramIndex.candidates("nowhere").isEmpty());
+    }
+
+    @Test
+    public void candidates_areNull_whenTheTextIsShorterThanATrigram() {
+        assertNull(ngramIndex.candidates("sa"));
+    }
+
+    @Test
+    public void insertAndRemove_keepTheCandidatesUpToDate() {
+        ngramIndex.insert("lina@example.com", "e");
+        ngramIndex.remove("sara@example.com", "a");
+
+        BitSet candidates = ngramIndex.candidates("example.com");
+        assertEquals(1, candidates.cardinality());
+        assertTrue(candidates.get(ordinals.find("e")));
+    }
+
+    @Test
+    public void insertBatch_addsEveryDocumentOfTheValue() {
+        ngramIndex.insert("team@example.net", List.of("f", "g", "h"));
+
+        BitSet candidates = ngramIndex.candidates("example.net");
+        assertEquals(Set.of(ordinals.find("f"), ordinals.find("g"), ordinals.find("h")), candidates.stream().boxed().collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.PostingList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class PostingListTest {
+
+    @Test
+    public void with_keepsSparseOrdinalsInArrays() {
+        PostingList sparse = everyNth(0, 100_000, 1000);
+        assertEquals(100, sparse.size());
+        assertFalse(sparse.isBitmap());
+    }
+
+    @Test
+    public void with_turnsDenseChunksIntoBitmaps() {
+        PostingList dense = everyNth(0, 100_000, 2);
+        assertEquals(50_000, dense.size());
+        assertTrue(dense.isBitmap());
+    }
+
+    @Test
+    public void retainIn_intersectsArraysWithBitmaps() {
+        PostingList sparse = everyNth(0, 100_000, 1000);
+        BitSet both = everyNth(0, 100_000, 2).toBitSet();
+        sparse.retainIn(both);
+        assertEquals(sparse.toBitSet(), both);
+    }
+
+    @Test
+    public void without_turnsABitmapBackIntoAnArray_andEndsAtEmpty() {
+        PostingList dense = everyNth(0, 100_000, 2);
+        for (int ordinal = 2; ordinal < 100_000; ordinal += 2) {
+            dense = dense.without(ordinal);
+        }
+        assertEquals(1, dense.size());
+        assertTrue(dense.contains(0));
+        assertFalse(dense.isBitmap());
+        assertSame(PostingList.EMPTY, dense.without(0));
+    }
+
+    @Test
+    public void ordinalsPastTheFirstChunk_keepTheirOwnContainers() {
+        int[] ordinals = {3, 65_535, 65_536, 200_000, 5_000_000};
+        PostingList postings = PostingList.EMPTY;
+        for (int i = ordinals.length - 1; i >= 0; i--) {
+            postings = postings.with(ordinals[i]);
+        }
+
+        assertEquals(ordinals.length, postings.size());
+        List<Integer> walked = new ArrayList<>();
+        postings.forEach(walked::add);
+        assertEquals(List.of(3, 65_535, 65_536, 200_000, 5_000_000), walked);
+        assertEquals(65_536, postings.nextOrdinal(65_536));
+        assertEquals(200_000, postings.nextOrdinal(65_537));
+        assertEquals(5_000_000, postings.nextOrdinal(200_001));
+        assertEquals(-1, postings.nextOrdinal(5_000_001));
+        assertFalse(postings.contains(131_072));
+    }
+
+    @Test
+    public void without_dropsTheContainerItEmpties() {
+        PostingList postings = PostingList.EMPTY.with(1).with(70_000).with(140_000);
+        PostingList updated = postings.without(70_000);
+
+        assertEquals(2, updated.size());
+        assertEquals(140_000, updated.nextOrdinal(2));
+        assertTrue(postings.contains(70_000));
+    }
+
+    @Test
+    public void union_matchesAddingEveryOrdinal_inBothForms() {
+        Random random = new Random(18);
+        PostingList left = PostingList.EMPTY;
+        PostingList right = PostingList.EMPTY;
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 20_000; i++) {
+            // the first chunk gets dense enough for bitmaps, the rest stays sparse
+            int ordinal = i % 2 == 0 ? random.nextInt(65_536) : random.nextInt(1_000_000);
+            if (random.nextBoolean()) {
+                left = left.with(ordinal);
+            } else {
+                right = right.with(ordinal);
+            }
+            expected.set(ordinal);
+        }
+        BitSet leftBefore = left.toBitSet();
+
+        PostingList union = left.union(right);
+        assertEquals(expected, union.toBitSet());
+        assertEquals(expected.cardinality(), union.size());
+        assertTrue(union.isBitmap());
+        assertEquals(leftBefore, left.toBitSet());
+        assertSame(left, left.union(PostingList.EMPTY));
+    }
+
+    @Test
+    public void of_sortsTheOrdinalsIntoTheirChunks() {
+        int[] ordinals = {200_000, 7, 65_536, 3, -1};
+        PostingList postings = PostingList.of(ordinals, 4);
+
+        List<Integer> walked = new ArrayList<>();
+        postings.forEach(walked::add);
+        assertEquals(List.of(3, 7, 65_536, 200_000), walked);
+        assertSame(PostingList.EMPTY, PostingList.of(new int[0], 0));
+    }
+
+    @Test
+    public void intersectionSize_countsAcrossChunks_withoutChangingTheTarget() {
+        PostingList postings = everyNth(0, 300_000, 3);
+        BitSet target = everyNth(0, 300_000, 2).toBitSet();
+        BitSet before = (BitSet) target.clone();
+
+        assertEquals(50_000, postings.intersectionSize(target));
+        assertEquals(before, target);
+    }
+
+    private static PostingList everyNth(int from, int to, int step) {
+        PostingList postings = PostingList.EMPTY;
+        for (int ordinal = from; ordinal < to; ordinal += step) {
+            postings = postings.with(ordinal);
+        }
+        return postings;
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Model.PropertyRange;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class PropertyRangeTest {
+
+    @Test
+    public void of_keepsWhichBoundsAreInclusive() {
+        PropertyRange range = PropertyRange.of("1.5", null, null, "3", null);
+        assertEquals("1.5", range.getLower());
+        assertFalse(range.isLowerInclusive());
+        assertEquals("3", range.getUpper());
+        assertTrue(range.isUpperInclusive());
+    }
+
+    @Test
+    public void of_splitsBetweenIntoTwoInclusiveBounds() {
+        PropertyRange range = PropertyRange.of(null, null, null, null, "10,20");
+        assertEquals("10", range.getLower());
+        assertEquals("20", range.getUpper());
+        assertTrue(range.isLowerInclusive());
+        assertTrue(range.isUpperInclusive());
+    }
+
+    @Test
+    public void of_returnsNull_whenNoBoundIsGiven() {
+        assertNull(PropertyRange.of(null, null, null, null, null));
+    }
+
+    @Test
+    public void of_rejectsConflictingBounds() {
+        assertThrows(IllegalArgumentException.class, () -> PropertyRange.of("1", "2", null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> PropertyRange.of(null, null, null, null, "1"));
+        assertThrows(IllegalArgumentException.class, () -> PropertyRange.of("1", null, null, null, "1,2"));
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.dbnode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.dbnode.Indexing.DocumentOrdinals;
+import org.example.dbnode.Indexing.IndexingManager;
+import org.example.dbnode.Indexing.PostingList;
+import org.example.dbnode.Indexing.QueryEngine;
+import org.example.dbnode.Model.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+public class QueryEngineTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private IndexingManager indexes;
+    private QueryEngine queryEngine;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        DocumentOrdinals ordinals = new DocumentOrdinals();
+        indexes = Mockito.mock(IndexingManager.class);
+        when(indexes.getDocumentOrdinals("db", "people")).thenReturn(ordinals);
+        when(indexes.searchPostingsInInvertedPropertyIndex("db", "people", "city", "Amman")).thenReturn(postings(ordinals, "a", "b", "c", "d"));
+        when(indexes.searchPostingsInInvertedPropertyIndex("db", "people", "city", "Irbid")).thenReturn(postings(ordinals, "e"));
+        when(indexes.searchPostingsInInvertedPropertyIndex("db", "people", "active", "false")).thenReturn(postings(ordinals, "b"));
+        when(indexes.searchPostingsInInvertedPropertyIndex("db", "people", "city", "Zarqa")).thenReturn(PostingList.EMPTY);
+        PostingList ages = postings(ordinals, "a", "b", "e", "f");
+        Mockito.doAnswer(invocation -> {
+            ages.addTo(invocation.getArgument(4));
+            return null;
+        }).when(indexes).addRangePostingsFromInvertedPropertyIndex(Mockito.eq("db"), Mockito.eq("people"), Mockito.eq("age"), Mockito.any(), Mockito.any());
+        queryEngine = new QueryEngine(indexes);
+    }
+
+    @Test
+    public void evaluate_combinesAndOrNotAndRangeOperands() throws Exception {
+        Query query = Query.of(mapper.readTree("{\"and\": [{\"or\": [{\"property\": \"city\", \"eq\": \"Amman\"}, {\"property\": \"city\", \"eq\": \"Irbid\"}]},"
+                + " {\"property\": \"age\", \"gte\": 30, \"lt\": 40}, {\"not\": {\"property\": \"active\", \"eq\": false}}]}"));
+        assertEquals(List.of("a", "e"), queryEngine.evaluate("db", "people", query));
+    }
+
+    @Test
+    public void evaluate_endsAnAndAtAnEmptyOperand_beforeWalkingItsRanges() throws Exception {
+        Query query = Query.of(mapper.readTree("{\"and\": [{\"property\": \"age\", \"between\": [30, 40]}, {\"property\": \"city\", \"eq\": \"Zarqa\"}]}"));
+        assertTrue(queryEngine.evaluate("db", "people", query).isEmpty());
+        Mockito.verify(indexes, Mockito.never()).addRangePostingsFromInvertedPropertyIndex(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private static PostingList postings(DocumentOrdinals ordinals, String... documentIds) {
+        PostingList postings = PostingList.EMPTY;
+        for (String documentId : documentIds) {
+            postings = postings.with(ordinals.ordinalOf(documentId));
+        }
+        return postings;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.dbnode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.dbnode.Enum.QueryOperator;
+import org.example.dbnode.Model.Query;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class QueryTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void of_rejectsAPredicateWithSeveralOperators() {
+        assertThrows(IllegalArgumentException.class, () -> Query.of(mapper.readTree("{\"property\": \"age\", \"eq\": 3, \"gt\": 1}")));
+    }
+
+    @Test
+    public void of_rejectsAnEmptyAnd() {
+        assertThrows(IllegalArgumentException.class, () -> Query.of(mapper.readTree("{\"and\": []}")));
+    }
+
+    @Test
+    public void of_readsContainsAndStartsWith() throws Exception {
+        assertEquals(QueryOperator.CONTAINS, Query.of(mapper.readTree("{\"property\": \"email\", \"contains\": \"@example\"}")).getOperator());
+        assertEquals(QueryOperator.PREFIX, Query.of(mapper.readTree("{\"property\": \"email\", \"startsWith\": \"sara\"}")).getOperator());
+    }
+
+    @Test
+    public void of_rejectsContainsCombinedWithARange() {
+        assertThrows(IllegalArgumentException.class, () -> Query.of(mapper.readTree("{\"property\": \"email\", \"contains\": \"a\", \"gt\": \"b\"}")));
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Enum.IndexKind;
+import org.example.dbnode.Model.IndexDefinition;
+import org.example.dbnode.Model.Schema;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class SchemaTest {
+    private static final String PROPERTIES = "\"properties\":{\"name\":{\"type\":\"string\"},\"age\":{\"type\":\"integer\"},\"bio\":{\"type\":\"string\"}}";
+
+    @Test
+    public void of_indexesEveryProperty_whenNoIndexIsDeclared() throws Exception {
+        Schema legacy = Schema.of("{\"type\":\"object\"," + PROPERTIES + "}");
+        assertEquals(Set.of("name", "age", "bio"), legacy.getIndexedProperties());
+        assertTrue(legacy.getCompoundIndexes().isEmpty());
+    }
+
+    @Test
+    public void of_indexesOnlyTheDeclaredProperties() throws Exception {
+        Schema declared = declaredSchema();
+        assertEquals(Set.of("name", "age"), declared.getIndexedProperties());
+        assertEquals(IndexKind.INVERTED, declared.getIndexDefinitions().get(0).getKind());
+        assertEquals(List.of(List.of("name", "age")), declared.getCompoundIndexes());
+    }
+
+    @Test
+    public void indexDefinition_roundTripsThroughJson() throws Exception {
+        IndexDefinition compound = IndexDefinition.of(declaredSchema().getIndexDefinitions().get(1).toJson());
+        assertEquals(List.of("name", "age"), compound.getPropertyNames());
+        assertEquals(IndexKind.COMPOUND, compound.getKind());
+    }
+
+    @Test
+    public void of_rejectsAnIndexOnAnUnknownProperty() {
+        assertThrows(IllegalArgumentException.class, () -> Schema.of("{\"type\":\"object\"," + PROPERTIES
+                + ",\"indexes\":[{\"properties\":[\"missing\"]}]}"));
+    }
+
+    @Test
+    public void of_rejectsAnNgramIndexOnANonStringProperty() {
+        assertThrows(IllegalArgumentException.class, () -> Schema.of("{\"type\":\"object\",\"properties\":{\"age\":{\"type\":\"integer\"}},"
+                + "\"indexes\":[{\"properties\":[\"age\"],\"kind\":\"ngram\"}]}"));
+    }
+
+    private static Schema declaredSchema() throws Exception {
+        return Schema.of("{\"type\":\"object\"," + PROPERTIES
+                + ",\"indexes\":[{\"properties\":[\"age\"]},{\"properties\":[\"name\",\"age\"]}]}");
+    }
+}
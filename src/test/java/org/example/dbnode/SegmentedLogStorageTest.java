@@ -0,0 +1,171 @@
+package org.example.dbnode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.dbnode.Enum.DocumentFormat;
+import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Storage.DocumentLocation;
+import org.example.dbnode.Storage.MappedFileCache;
+import org.example.dbnode.Storage.SegmentedLogStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class SegmentedLogStorageTest {
+    private static final String DATABASE = "segmentedLogStorageTest";
+    private static final String COLLECTION = "events";
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final FileService fileService = FileService.getInstance();
+    private SegmentedLogStorage storage;
+
+    @BeforeEach
+    public void setUp() {
+        storage = new SegmentedLogStorage(fileService, new MappedFileCache());
+        storage.createCollection(DATABASE, COLLECTION);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        storage.closeDatabase(DATABASE);
+        fileService.deleteRecursively(fileService.getDatabaseDirectory(DATABASE).toPath());
+    }
+
+    @Test
+    public void appendDocument_readsBackFromItsLocation() throws Exception {
+        DocumentLocation first = storage.appendDocument(DATABASE, COLLECTION, document("a", 1));
+        DocumentLocation second = storage.appendDocument(DATABASE, COLLECTION, document("b", 2));
+
+        assertEquals(document("a", 1), storage.readDocument(DATABASE, COLLECTION, first));
+        assertEquals(document("b", 2), storage.readDocument(DATABASE, COLLECTION, second));
+        assertEquals(first.getOffset() + first.getLength(), second.getOffset());
+    }
+
+    @Test
+    public void readLiveLocations_keepsTheLatestVersion_andSkipsDeletedDocuments() throws Exception {
+        storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", 1), document("b", 1), document("c", 1)));
+        DocumentLocation updated = storage.updateDocument(DATABASE, COLLECTION, null, document("a", 2));
+        storage.deleteDocument(DATABASE, COLLECTION, "b", null);
+
+        Map<String, DocumentLocation> live = storage.readLiveLocations(DATABASE, COLLECTION);
+        assertEquals(List.of("a", "c"), List.copyOf(live.keySet()));
+        assertEquals(updated, live.get("a"));
+        assertEquals(document("a", 2), storage.readDocument(DATABASE, COLLECTION, live.get("a")));
+    }
+
+    @Test
+    public void reopening_truncatesARecordTornAtTheTail() throws Exception {
+        storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", 1), document("b", 1), document("c", 1)));
+        storage.closeDatabase(DATABASE);
+        File segment = fileService.getSegmentFile(DATABASE, COLLECTION, 1);
+        long validLength = segment.length();
+        // the prefix of a record promising more bytes than the crash let through
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(validLength);
+            file.writeInt(100);
+            file.writeInt(0);
+            file.write(new byte[10]);
+        }
+
+        storage = new SegmentedLogStorage(fileService, new MappedFileCache());
+        assertEquals(3, storage.readLiveLocations(DATABASE, COLLECTION).size());
+        DocumentLocation appended = storage.appendDocument(DATABASE, COLLECTION, document("d", 1));
+        assertEquals(validLength, appended.getOffset());
+        assertEquals(List.of("a", "b", "c", "d"), List.copyOf(storage.readLiveLocations(DATABASE, COLLECTION).keySet()));
+        assertEquals(document("d", 1), storage.readDocument(DATABASE, COLLECTION, appended));
+    }
+
+    @Test
+    public void reopening_dropsATailRecordWithABadChecksum() throws Exception {
+        storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", 1), document("b", 1)));
+        DocumentLocation last = storage.appendDocument(DATABASE, COLLECTION, document("c", 1));
+        storage.closeDatabase(DATABASE);
+        try (RandomAccessFile file = new RandomAccessFile(fileService.getSegmentFile(DATABASE, COLLECTION, 1), "rw")) {
+            file.seek(last.getOffset() + last.getLength() - 2);
+            file.write('#');
+        }
+
+        storage = new SegmentedLogStorage(fileService, new MappedFileCache());
+        DocumentLocation appended = storage.appendDocument(DATABASE, COLLECTION, document("d", 1));
+        assertEquals(last.getOffset(), appended.getOffset());
+        assertEquals(List.of("a", "b", "d"), List.copyOf(storage.readLiveLocations(DATABASE, COLLECTION).keySet()));
+    }
+
+    @Test
+    public void compact_keepsOnlyTheLiveVersions_andDropsTheOldSegments() throws Exception {
+        storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", 1), document("b", 1), document("c", 1)));
+        storage.updateDocument(DATABASE, COLLECTION, null, document("a", 2));
+        storage.deleteDocument(DATABASE, COLLECTION, "b", null);
+        long fileBytes = storage.fileBytes(DATABASE, COLLECTION);
+
+        Map<String, DocumentLocation> compacted = storage.compact(DATABASE, COLLECTION, storage.readLiveLocations(DATABASE, COLLECTION));
+        assertTrue(storage.fileBytes(DATABASE, COLLECTION) < fileBytes);
+        assertFalse(fileService.getSegmentFile(DATABASE, COLLECTION, 1).exists());
+        assertEquals(compacted, storage.readLiveLocations(DATABASE, COLLECTION));
+        assertEquals(document("a", 2), storage.readDocument(DATABASE, COLLECTION, compacted.get("a")));
+        assertEquals(document("c", 1), storage.readDocument(DATABASE, COLLECTION, compacted.get("c")));
+    }
+
+    @Test
+    public void smileAndCborDocuments_readBackAsWritten() throws Exception {
+        ObjectNode nested = document("n", 1);
+        nested.putArray("tags").add("a").add(2.5).add(true).addNull();
+        nested.putObject("address").put("city", "Amman").put("zip", 11181);
+        for (DocumentFormat format : new DocumentFormat[] {DocumentFormat.SMILE, DocumentFormat.CBOR}) {
+            storage.setDocumentFormat(DATABASE, COLLECTION, format);
+            DocumentLocation location = storage.appendDocument(DATABASE, COLLECTION, nested);
+            assertEquals(nested, storage.readDocument(DATABASE, COLLECTION, location));
+            assertEquals(format.ordinal(), recordType(location) >>> 4);
+        }
+    }
+
+    @Test
+    public void copyDocument_writesABinaryDocumentAsJson() throws Exception {
+        storage.setDocumentFormat(DATABASE, COLLECTION, DocumentFormat.CBOR);
+        DocumentLocation location = storage.appendDocument(DATABASE, COLLECTION, document("a", 1));
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(json)) {
+            assertTrue(storage.copyDocument(DATABASE, COLLECTION, location, generator));
+        }
+        assertEquals(document("a", 1), mapper.readTree(json.toString()));
+    }
+
+    @Test
+    public void formats_shareTheLog_untilCompactionConvertsEveryDocument() throws Exception {
+        storage.appendDocuments(DATABASE, COLLECTION, List.of(document("a", 1), document("b", 1)));
+        storage.setDocumentFormat(DATABASE, COLLECTION, DocumentFormat.SMILE);
+        storage.appendDocument(DATABASE, COLLECTION, document("c", 1));
+        assertEquals(List.of(document("a", 1), document("b", 1), document("c", 1)), storage.readAllDocuments(DATABASE, COLLECTION));
+
+        Map<String, DocumentLocation> compacted = storage.compact(DATABASE, COLLECTION, storage.readLiveLocations(DATABASE, COLLECTION));
+        for (Map.Entry<String, DocumentLocation> entry : compacted.entrySet()) {
+            assertEquals(DocumentFormat.SMILE.ordinal(), recordType(entry.getValue()) >>> 4);
+            assertEquals(document(entry.getKey(), 1), storage.readDocument(DATABASE, COLLECTION, entry.getValue()));
+        }
+    }
+
+    private ObjectNode document(String id, int version) {
+        ObjectNode document = mapper.createObjectNode();
+        document.put("_id", id);
+        document.put("version", version);
+        document.put("payload", "event " + id);
+        return document;
+    }
+
+    // the type byte right after the length and checksum of the record
+    private int recordType(DocumentLocation location) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileService.getSegmentFile(DATABASE, COLLECTION, location.getSegment()), "r")) {
+            file.seek(location.getOffset() + 8);
+            return file.readUnsignedByte();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.dbnode;
+
+import org.example.dbnode.Indexing.BPlusTree.LongBPlusTree;
+import org.example.dbnode.Indexing.DocumentOrdinals;
+import org.example.dbnode.Indexing.InvertedPropertyIndex;
+import org.example.dbnode.Indexing.SortCursor;
+import org.example.dbnode.Util.DataTypes.DataTypeCaster;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class SortCursorTest {
+    private InvertedPropertyIndex<Long> scores;
+
+    // 60 documents over 6 scores, ten documents share each score
+    @BeforeEach
+    public void setUp() {
+        scores = new InvertedPropertyIndex<>(new LongBPlusTree<>(4), new DocumentOrdinals());
+        for (int i = 0; i < 60; i++) {
+            scores.insert((long) (i % 6), "doc" + i);
+        }
+    }
+
+    @Test
+    public void sorted_walksTheValuesAscending_tiesInIdOrder() {
+        List<String> all = walk(scores.sorted(false, null, null));
+        assertEquals(60, all.size());
+        assertEquals(List.of("doc0", "doc12", "doc18"), all.subList(0, 3));
+        assertEquals("doc59", all.get(59));
+    }
+
+    @Test
+    public void sorted_reversesTiesAlongWithTheValues_whenDescending() {
+        List<String> all = walk(scores.sorted(true, null, null));
+        assertEquals(60, all.size());
+        assertEquals(List.of("doc59", "doc53", "doc5"), all.subList(0, 3));
+        assertEquals("doc0", all.get(59));
+    }
+
+    @Test
+    public void position_resumesRightAfterTheLastDocument_ascending() {
+        assertEquals(walk(scores.sorted(false, null, null)), pageThrough(false, 7));
+    }
+
+    @Test
+    public void position_resumesRightAfterTheLastDocument_descending() {
+        assertEquals(walk(scores.sorted(true, null, null)), pageThrough(true, 7));
+    }
+
+    @Test
+    public void position_resumes_whenTheLastDocumentLeftTheIndex() {
+        SortCursor<Long> cursor = scores.sorted(false, null, null);
+        for (int i = 0; i < 3; i++) {
+            cursor.next();
+        }
+        String position = cursor.position();
+        scores.remove(0L, "doc18");
+
+        SortCursor<Long> resumed = resume(false, position);
+        assertEquals("doc24", resumed.next());
+    }
+
+    @Test
+    public void sorted_followsTheWritesMadeAfterTheFirstSortedWalk() {
+        walk(scores.sorted(false, null, null));
+        scores.insert(0L, "doc00");
+        scores.remove(0L, "doc12");
+        scores.insert(9L, List.of("docB", "docA"));
+        scores.delete(5L);
+
+        List<String> all = walk(scores.sorted(false, null, null));
+        assertEquals(List.of("doc0", "doc00", "doc18"), all.subList(0, 3));
+        assertEquals(List.of("docA", "docB"), all.subList(all.size() - 2, all.size()));
+        assertEquals(60 + 1 - 1 + 2 - 10, all.size());
+        assertEquals(all.subList(4, all.size()), walk(resume(false, "\"doc24\":0")));
+    }
+
+    @Test
+    public void position_quotesTheIdAndStringValues() {
+        InvertedPropertyIndex<String> names = new InvertedPropertyIndex<>(new DocumentOrdinals());
+        names.insert("x:\"y\"", "a:\"b\"");
+        SortCursor<String> cursor = names.sorted(false, null, null);
+        assertNull(cursor.position());
+
+        cursor.next();
+        assertEquals("\"a:\\\"b\\\"\":\"x:\\\"y\\\"\"", cursor.position());
+    }
+
+    private List<String> pageThrough(boolean descending, int pageSize) {
+        List<String> paged = new ArrayList<>();
+        SortCursor<Long> page = scores.sorted(descending, null, null);
+        while (true) {
+            for (int i = 0; i < pageSize && page.hasNext(); i++) {
+                paged.add(page.next());
+            }
+            if (!page.hasNext()) {
+                return paged;
+            }
+            page = resume(descending, page.position());
+        }
+    }
+
+    private SortCursor<Long> resume(boolean descending, String position) {
+        int separator = position.lastIndexOf(':');
+        return scores.sorted(descending, Long.parseLong(position.substring(separator + 1)), DataTypeCaster.unquote(position.substring(0, separator)));
+    }
+
+    private static List<String> walk(SortCursor<?> cursor) {
+        List<String> documentIds = new ArrayList<>();
+        cursor.forEachRemaining(documentIds::add);
+        return documentIds;
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.dbnode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.dbnode.Exception.OperationFailedException;
+import org.example.dbnode.Service.FileService;
+import org.example.dbnode.Storage.WriteAheadLog;
+import org.example.dbnode.Storage.WriteAheadLog.LogEntry;
+import org.example.dbnode.Storage.WriteAheadLog.Operation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class WriteAheadLogTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final FileService fileService = FileService.getInstance();
+    private final List<WriteAheadLog> logs = new ArrayList<>();
+    private File logFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        logFile = Files.createTempDirectory("wal").resolve("dbnode.wal").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (WriteAheadLog log : logs) {
+            log.close();
+        }
+        fileService.deleteRecursively(logFile.getParentFile().toPath());
+    }
+
+    @Test
+    public void awaitApplied_returnsOnceTheRecordIsInTheLog_andApplied() throws Exception {
+        WriteAheadLog log = open();
+        List<Long> durableWhenApplied = new CopyOnWriteArrayList<>();
+        log.setApplier(entries -> {
+            // the records of a batch are read back from the log file before anything is applied
+            log.readEntries().forEach(entry -> durableWhenApplied.add(entry.lsn()));
+            return Set.of();
+        });
+
+        long lsn = log.append(Operation.PUT, "db", "people", "a", document("a"));
+        log.awaitApplied(lsn);
+        assertEquals(List.of(lsn), durableWhenApplied);
+    }
+
+    @Test
+    public void replay_appliesTheRecordsACrashLeftInTheLog() throws Exception {
+        WriteAheadLog crashed = open();
+        crashed.setApplier(entries -> Set.of());
+        crashed.append(Operation.PUT, "db", "people", "a", document("a"));
+        crashed.append(Operation.PUT, "db", "people", "b", document("b"));
+        crashed.awaitApplied(crashed.append(Operation.DELETE, "db", "people", "a", null));
+
+        // the node restarts without the checkpoint a clean shutdown would have made
+        WriteAheadLog restarted = open();
+        List<LogEntry> replayed = replay(restarted);
+        assertEquals(List.of("PUT a", "PUT b", "DELETE a"), replayed.stream().map(entry -> entry.operation() + " " + entry.documentId()).toList());
+        assertEquals(document("b"), replayed.get(1).document());
+        assertTrue(restarted.readEntries().isEmpty());
+    }
+
+    @Test
+    public void replay_dropsARecordTornByTheCrash_andLogsAfterTheLastCompleteOne() throws Exception {
+        WriteAheadLog crashed = open();
+        crashed.setApplier(entries -> Set.of());
+        crashed.append(Operation.PUT, "db", "people", "a", document("a"));
+        crashed.awaitApplied(crashed.append(Operation.PUT, "db", "people", "b", document("b")));
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.seek(file.length());
+            file.writeInt(500);
+            file.writeInt(0);
+            file.write(new byte[20]);
+        }
+
+        WriteAheadLog restarted = open();
+        assertEquals(List.of("a", "b"), replay(restarted).stream().map(LogEntry::documentId).toList());
+        restarted.setApplier(entries -> Set.of());
+        long lsn = restarted.append(Operation.PUT, "db", "people", "c", document("c"));
+        restarted.awaitApplied(lsn);
+        assertEquals(3, lsn);
+        assertEquals(List.of("c"), restarted.readEntries().stream().map(LogEntry::documentId).toList());
+    }
+
+    @Test
+    public void replay_skipsTheRecordsOfCollectionsDeletedAfterThem() throws Exception {
+        WriteAheadLog crashed = open();
+        crashed.setApplier(entries -> Set.of());
+        crashed.append(Operation.PUT, "db", "people", "a", document("a"));
+        crashed.append(Operation.PUT, "db", "places", "b", document("b"));
+        crashed.append(Operation.PUT, "old", "people", "c", document("c"));
+        crashed.dropCollection("db", "people");
+        crashed.dropDatabase("old");
+        crashed.awaitApplied(crashed.append(Operation.PUT, "db", "people", "d", document("d")));
+
+        List<LogEntry> replayed = replay(open());
+        assertEquals(List.of("places b", "people d"), replayed.stream().map(entry -> entry.collectionName() + " " + entry.documentId()).toList());
+    }
+
+    @Test
+    public void replay_skipsTheRecordsReportedAsFailed() throws Exception {
+        WriteAheadLog crashed = open();
+        crashed.setApplier(entries -> {
+            Set<Long> failed = new HashSet<>();
+            entries.stream().filter(entry -> entry.documentId().equals("b")).forEach(entry -> failed.add(entry.lsn()));
+            return failed;
+        });
+        crashed.awaitApplied(crashed.append(Operation.PUT, "db", "people", "a", document("a")));
+        long failedLsn = crashed.append(Operation.PUT, "db", "people", "b", document("b"));
+        assertThrows(OperationFailedException.class, () -> crashed.awaitApplied(failedLsn));
+        crashed.awaitApplied(crashed.append(Operation.PUT, "db", "people", "c", document("c")));
+
+        WriteAheadLog restarted = open();
+        assertEquals(List.of("a", "c"), replay(restarted).stream().map(LogEntry::documentId).toList());
+        restarted.setApplier(entries -> Set.of());
+        long lsn = restarted.append(Operation.PUT, "db", "people", "d", document("d"));
+        restarted.awaitApplied(lsn);
+        assertEquals(4, lsn);
+    }
+
+    private WriteAheadLog open() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(fileService, logFile);
+        logs.add(log);
+        return log;
+    }
+
+    private List<LogEntry> replay(WriteAheadLog log) {
+        List<LogEntry> replayed = new ArrayList<>();
+        log.setApplier(entries -> {
+            replayed.addAll(entries);
+            return Set.of();
+        });
+        log.replay();
+        return replayed;
+    }
+
+    private ObjectNode document(String id) {
+        ObjectNode document = mapper.createObjectNode();
+        document.put("_id", id);
+        document.put("name", "name of " + id);
+        return document;
+    }
+}